@@ -0,0 +1,68 @@
+package com.equalexperts.logging;
+
+import com.equalexperts.logging.impl.StackTracePack;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Prints a stack trace stored in a stack trace pack (see StackTraceStorageFormat.PACK).
+ *
+ * Usage, with the reference from a log message, a pack file and offset, or a directory and fingerprint:
+ * <pre>
+ * LookupStackTrace file:///var/log/app/stacktraces.idx#fingerprint
+ * LookupStackTrace /var/log/app/stacktraces_0.pack#offset
+ * LookupStackTrace /var/log/app fingerprint
+ * </pre>
+ */
+public class LookupStackTrace {
+
+    public static void main(String... args) throws Exception {
+        int status = new LookupStackTrace(args).lookup(System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    private final String[] args;
+
+    LookupStackTrace(String... args) {
+        this.args = args;
+    }
+
+    /**
+     * @return 0 when the stack trace was printed, otherwise 1
+     */
+    public int lookup(PrintStream out, PrintStream err) throws Exception {
+        Optional<String> stackTrace;
+        if (args.length == 2) {
+            stackTrace = StackTracePack.read(Paths.get(args[0]), args[1]);
+        } else if ((args.length == 1) && (args[0].lastIndexOf('#') > 0)) {
+            stackTrace = lookupReference(args[0]);
+        } else {
+            err.println("Usage: LookupStackTrace <file:///.../stacktraces.idx#fingerprint> | <.../stacktraces_N.pack#offset> | <directory> <fingerprint>");
+            return 1;
+        }
+
+        if (!stackTrace.isPresent()) {
+            err.println("No stack trace found for " + String.join(" ", args));
+            return 1;
+        }
+        out.print(stackTrace.get());
+        return 0;
+    }
+
+    private Optional<String> lookupReference(String reference) throws Exception {
+        int separator = reference.lastIndexOf('#');
+        String location = reference.substring(0, separator);
+        String fragment = reference.substring(separator + 1);
+        Path file = location.startsWith("file:") ? Paths.get(URI.create(location)) : Paths.get(location);
+        if (file.getFileName().toString().equals(StackTracePack.INDEX_FILE_NAME)) {
+            return StackTracePack.read(file.toAbsolutePath().getParent(), fragment);
+        }
+        return Optional.of(StackTracePack.readRecord(file, Long.parseLong(fragment)).getStackTrace());
+    }
+}
@@ -40,10 +40,22 @@ public class OpsLoggerTestDouble <T extends Enum<T> & LogMessage> implements Ops
 
     @Override
     public void log(T message, Object... details) {
-        validate(message);
-        ensureImmutableDetails(details);
-        checkForTooManyFormatStringArguments(message.getMessagePattern(), details);
-        validateFormatString(message.getMessagePattern(), details);
+        validateLog(message, details);
+    }
+
+    @Override
+    public void logLong(T message, long detail) {
+        validateLog(message, detail);
+    }
+
+    @Override
+    public void logLong(T message, long first, long second) {
+        validateLog(message, first, second);
+    }
+
+    @Override
+    public void logLong(T message, String first, long second) {
+        validateLog(message, first, second);
     }
 
     @Override
@@ -73,6 +85,13 @@ public class OpsLoggerTestDouble <T extends Enum<T> & LogMessage> implements Ops
         return nestedLoggerDecorator.apply(new OpsLoggerTestDouble<>(nestedLoggerDecorator));
     }
 
+    private void validateLog(T message, Object... details) {
+        validate(message);
+        ensureImmutableDetails(details);
+        checkForTooManyFormatStringArguments(message.getMessagePattern(), details);
+        validateFormatString(message.getMessagePattern(), details);
+    }
+
     private void validateFormatString(String pattern, Object... details) {
         //noinspection ResultOfMethodCallIgnored
         String.format(pattern, details);
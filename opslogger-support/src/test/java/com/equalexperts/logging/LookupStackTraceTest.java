@@ -0,0 +1,82 @@
+package com.equalexperts.logging;
+
+import com.equalexperts.logging.impl.StackTracePack;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.*;
+
+public class LookupStackTraceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private final RuntimeException exception = new RuntimeException("blah!");
+    private Path directory;
+    private String reference;
+
+    @Before
+    public void setup() throws Exception {
+        directory = temporaryFolder.newFolder().toPath();
+        StackTracePack pack = StackTracePack.open(directory, StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        reference = pack.store("abc", exception);
+        pack.close();
+    }
+
+    @Test
+    public void lookup_shouldPrintTheStackTrace_givenTheReferenceFromALogMessage() throws Exception {
+        int status = new LookupStackTrace(reference).lookup(new PrintStream(out), new PrintStream(err));
+
+        assertEquals(0, status);
+        assertEquals(printed(exception), out.toString());
+    }
+
+    @Test
+    public void lookup_shouldPrintTheStackTrace_givenADirectoryAndAFingerprint() throws Exception {
+        int status = new LookupStackTrace(directory.toString(), "abc").lookup(new PrintStream(out), new PrintStream(err));
+
+        assertEquals(0, status);
+        assertEquals(printed(exception), out.toString());
+    }
+
+    @Test
+    public void lookup_shouldPrintTheStackTrace_givenAPackFileAndAnOffset() throws Exception {
+        Path packFile = directory.resolve(StackTracePack.segmentFileName(0));
+
+        int status = new LookupStackTrace(packFile + "#0").lookup(new PrintStream(out), new PrintStream(err));
+
+        assertEquals(0, status);
+        assertEquals(printed(exception), out.toString());
+    }
+
+    @Test
+    public void lookup_shouldReportAFailure_givenAnUnknownFingerprint() throws Exception {
+        int status = new LookupStackTrace(directory.toString(), "unknown").lookup(new PrintStream(out), new PrintStream(err));
+
+        assertEquals(1, status);
+        assertThat(err.toString(), containsString("No stack trace found"));
+    }
+
+    @Test
+    public void lookup_shouldPrintUsage_givenNoArguments() throws Exception {
+        int status = new LookupStackTrace().lookup(new PrintStream(out), new PrintStream(err));
+
+        assertEquals(1, status);
+        assertThat(err.toString(), containsString("Usage"));
+    }
+
+    private static String printed(Throwable throwable) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        throwable.printStackTrace(new PrintStream(result));
+        return result.toString();
+    }
+}
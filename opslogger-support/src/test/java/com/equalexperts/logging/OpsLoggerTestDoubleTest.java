@@ -137,6 +137,51 @@ public class OpsLoggerTestDoubleTest {
         }
     }
 
+    @Test
+    public void log_shouldAllowValidCalls_givenASingleCharOrIntDetail() throws Exception {
+        logger.log(TestMessages.CharacterConversion, 'q');
+        logger.log(TestMessages.Bar, 'q');
+        logger.log(TestMessages.HexConversion, -1);
+    }
+
+    @Test
+    public void logLong_shouldAllowValidCalls_givenPrimitiveDetails() throws Exception {
+        logger.logLong(TestMessages.Bar, 42L);
+        logger.logLong(TestMessages.MessageWithMultipleArguments, 42L, 43L);
+        logger.logLong(TestMessages.MessageWithMultipleArguments, "Foo", 42L);
+    }
+
+    @Test
+    public void logLong_shouldThrowAnException_givenAnInvalidFormatStringWithALongDetail() throws Exception {
+        try {
+            logger.logLong(TestMessages.BadFormatString, 42L);
+            fail("expected an exception");
+        } catch (IllegalFormatException e) {
+            //this exception is expected
+        }
+    }
+
+    @Test
+    public void logLong_shouldThrowAnExceptionWhenTooManyFormatStringArgumentsAreProvided_givenPrimitiveDetails() throws Exception {
+        try {
+            logger.logLong(TestMessages.Bar, "Foo", 42L);
+            fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Too many format string arguments provided", e.getMessage());
+        }
+    }
+
+    @Test
+    public void logLong_shouldNotCallAnOverloadedMethod_givenPrimitiveDetails() throws Exception {
+        //calling another method inside this log method can cause trouble with spying frameworks
+        OpsLogger<TestMessages> logger = spy(this.logger);
+
+        logger.logLong(TestMessages.MessageWithMultipleArguments, 42L, 43L);
+
+        verify(logger).logLong(TestMessages.MessageWithMultipleArguments, 42L, 43L);
+        verifyNoMoreInteractions(logger);
+    }
+
     @Test
     public void log_shouldNotCallAnOverloadedMethod() throws Exception {
         //calling another method inside this log method can cause trouble with spying frameworks
@@ -372,7 +417,9 @@ public class OpsLoggerTestDoubleTest {
         InvalidEmptyCode("", "Blah"),
         InvalidNullFormat("CODE-InvalidNullFormat", null),
         InvalidEmptyFormat("CODE-InvalidEmptyFormat", ""),
-        MessageWithMultipleArguments("CODE-MultipleArguments", "Multiple Format String Arguments: %s %s");
+        MessageWithMultipleArguments("CODE-MultipleArguments", "Multiple Format String Arguments: %s %s"),
+        CharacterConversion("CODE-CharacterConversion", "Character: %c"),
+        HexConversion("CODE-HexConversion", "Hex: %x");
 
         //region LogMessage implementation guts
         private final String messageCode;
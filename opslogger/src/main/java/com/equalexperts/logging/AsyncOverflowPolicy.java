@@ -0,0 +1,35 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>What an asynchronous OpsLogger does when its buffer is full.</p>
+ *
+ * <p>Policies that drop log messages keep a count of what was dropped, broken down by message code.
+ * The background thread periodically writes a summary of dropped messages to the log.</p>
+ *
+ * @see OpsLoggerFactory#setAsyncOverflowPolicy(AsyncOverflowPolicy)
+ */
+public enum AsyncOverflowPolicy {
+    /**
+     * The log(...) call waits until there is space in the buffer. Nothing is dropped.
+     */
+    BLOCK,
+
+    /**
+     * The message being logged is dropped. The log(...) call never waits.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest message in the buffer is dropped to make space for the message being logged.
+     * The log(...) call never waits.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The log(...) call waits for space in the buffer, up to the configured timeout, and then drops
+     * the message being logged.
+     *
+     * @see OpsLoggerFactory#setAsyncOverflowTimeout(java.time.Duration)
+     */
+    BLOCK_THEN_DROP_NEWEST
+}
@@ -0,0 +1,21 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>What an asynchronous OpsLogger does with the messages it has not written when it runs out of time to close.</p>
+ *
+ * @see OpsLoggerFactory#setAsyncCloseTimeout(java.time.Duration)
+ * @see OpsLoggerFactory#setAsyncShutdownFallback(AsyncShutdownFallback)
+ */
+public enum AsyncShutdownFallback {
+    /**
+     * Discard the messages, and report how many were discarded.
+     */
+    DISCARD,
+
+    /**
+     * Print each message to System.err without formatting it: the timestamp in milliseconds, the message code,
+     * the details and the exception (without its stack trace). This is much faster than formatting and writing
+     * the messages normally, so the tail of the log is kept even when the destination is slow.
+     */
+    RAW_DUMP
+}
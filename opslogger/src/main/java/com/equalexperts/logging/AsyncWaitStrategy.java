@@ -0,0 +1,41 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>What the background thread of an asynchronous OpsLogger does while it waits for log messages.</p>
+ *
+ * <p>Strategies which keep the background thread running pick up new messages sooner, at the cost of
+ * keeping a CPU core busy. Strategies which park the background thread use no CPU while idle, but a
+ * logging thread has to wake it up, which takes time.</p>
+ *
+ * @see OpsLoggerFactory#setAsyncWaitStrategy(AsyncWaitStrategy)
+ */
+public enum AsyncWaitStrategy {
+    /**
+     * The background thread parks until a log(...) call wakes it. Uses no CPU while idle.
+     */
+    BLOCKING,
+
+    /**
+     * The background thread sleeps briefly between checks for new messages, so log(...) calls never need
+     * to wake it. Uses little CPU while idle, but a message can wait for up to one sleep before it is written.
+     */
+    SLEEPING,
+
+    /**
+     * The background thread yields to other threads between checks for new messages. Picks up messages
+     * quickly, but keeps a CPU core busy unless other threads need it.
+     */
+    YIELDING,
+
+    /**
+     * The background thread checks for new messages continuously. Picks up messages fastest, but keeps a
+     * CPU core fully busy. Only suitable when a core can be dedicated to logging.
+     */
+    BUSY_SPIN,
+
+    /**
+     * The background thread spins briefly, then yields for a while, and then parks until a log(...) call
+     * wakes it. Bursts of messages are picked up quickly, and no CPU is used while the logger is idle.
+     */
+    PHASED_BACKOFF
+}
@@ -0,0 +1,29 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>How an OpsLogger writing to a path coordinates with other processes writing to the same file.</p>
+ *
+ * <p>The log file is always opened for appending, so each write goes to the end of the file.</p>
+ *
+ * @see OpsLoggerFactory#setFileLockingPolicy(FileLockingPolicy)
+ */
+public enum FileLockingPolicy {
+    /**
+     * Take an exclusive lock on the file for every batch of log messages, waiting for it if another
+     * process holds it. This is the default.
+     */
+    EXCLUSIVE_LOCK,
+
+    /**
+     * Try to lock the file for every batch of log messages, backing off briefly when another process
+     * holds the lock, and waiting for it after a bounded number of attempts. The number of contended
+     * batches is counted.
+     */
+    TRY_LOCK_WITH_BACKOFF,
+
+    /**
+     * Do not lock the file. Each batch of log messages is written with a single append, so lines do not
+     * interleave with other writers. Only suitable when this process is the only one writing to the file.
+     */
+    NONE
+}
@@ -2,6 +2,8 @@ package com.equalexperts.logging;
 
 import com.equalexperts.logging.impl.ActiveRotationRegistry;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * <p>OpsLogger is the interface used to log messages by the application. Instances are usually constructed as singletons
  * and injected into application classes via the application's usual dependency injection mechanism.</p>
@@ -17,6 +19,42 @@ public interface OpsLogger<T extends Enum<T> & LogMessage> extends AutoCloseable
      */
     void log(T message, Object... details);
 
+    /**
+     * <p>Log message using message.getMessagePattern as the format and a single number as the format argument.</p>
+     *
+     * <p>This and the other logLong methods avoid allocating a details array and boxing the number,
+     * which matters for frequently logged counters and ids. The number is always formatted as a long, so
+     * int, short, byte and char arguments should be logged with {@link #log(Enum, Object...)}, which keeps
+     * their type (for example, for %c, or %x of a negative int).</p>
+     * @param message enum to log
+     * @param detail format string argument to message.getMessagePattern()
+     */
+    default void logLong(T message, long detail) {
+        log(message, new Object[] {detail});
+    }
+
+    /**
+     * Log message using message.getMessagePattern as the format and two numbers as the format arguments.
+     * @see #logLong(Enum, long)
+     * @param message enum to log
+     * @param first first format string argument to message.getMessagePattern()
+     * @param second second format string argument to message.getMessagePattern()
+     */
+    default void logLong(T message, long first, long second) {
+        log(message, new Object[] {first, second});
+    }
+
+    /**
+     * Log message using message.getMessagePattern as the format and a string and a number as the format arguments.
+     * @see #logLong(Enum, long)
+     * @param message enum to log
+     * @param first first format string argument to message.getMessagePattern()
+     * @param second second format string argument to message.getMessagePattern()
+     */
+    default void logLong(T message, String first, long second) {
+        log(message, new Object[] {first, second});
+    }
+
     /**
      * Log message using message.getMessagePattern as the format and details as the format arguments, with
      * the processed cause added.
@@ -26,6 +64,46 @@ public interface OpsLogger<T extends Enum<T> & LogMessage> extends AutoCloseable
      */
     void logThrowable(T message, Throwable cause, Object... details);
 
+    /**
+     * <p>Log message like {@link #log(Enum, Object...)}, and return a future which completes once the message
+     * has been written and forced to the storage device.</p>
+     *
+     * <p>This lets an asynchronous logger be used for most messages, while still providing a wait point before
+     * acknowledging something critical. Waiting on the future costs the same as {@link #flush(boolean) flush(true)}.</p>
+     * @param message enum to log
+     * @param details format string arguments to message.getMessagePattern()
+     * @return a future which completes when the message is durable, or completes exceptionally if it could not be written
+     * (for example because it could not be formatted, or an asynchronous logger dropped it)
+     */
+    default CompletableFuture<Void> logDurable(T message, Object... details) {
+        log(message, details);
+        return flush(true);
+    }
+
+    /**
+     * Wait point for messages which have already been logged, without forcing them to the storage device.
+     * @see #flush(boolean)
+     * @return a future which completes once every message logged before the call has been written
+     */
+    default CompletableFuture<Void> flush() {
+        return flush(false);
+    }
+
+    /**
+     * <p>Return a future which completes once every message logged before the call has been written,
+     * and optionally forced to the storage device.</p>
+     *
+     * <p>Synchronous loggers write each message before log(...) returns, so the future returned by them has already
+     * completed unless force is requested. Asynchronous loggers keep running while the future is pending, so this is
+     * much cheaper than closing the logger. The future completes exceptionally if the messages could not be written,
+     * or if the logger has been closed.</p>
+     * @param force true to also force the written messages to the storage device, as FileChannel.force does
+     * @return a future which completes once the messages have been written
+     */
+    default CompletableFuture<Void> flush(boolean force) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Create a nested logger that uses a local DiagnosticContextSupplier, which is often
      * convenient during parallel stream processing.
@@ -1,13 +1,18 @@
 package com.equalexperts.logging;
 
 import com.equalexperts.logging.impl.AsyncOpsLoggerFactory;
+import com.equalexperts.logging.impl.AsyncSettings;
 import com.equalexperts.logging.impl.BasicOpsLoggerFactory;
 import com.equalexperts.logging.impl.InfrastructureFactory;
+import com.equalexperts.logging.impl.PathSettings;
+import com.equalexperts.logging.impl.StackTraceSettings;
+import com.equalexperts.logging.impl.SyncSettings;
 
 import java.io.PrintStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -26,10 +31,37 @@ public class OpsLoggerFactory {
 
     private Optional<PrintStream> loggerOutput = Optional.empty();
     private Optional<Path> logfilePath = Optional.empty();
+    private Optional<Boolean> keepFileOpen = Optional.empty();
+    private Optional<Duration> fileRotationCheckInterval = Optional.empty();
+    private Optional<Boolean> watchForFileRotation = Optional.empty();
+    private Optional<FileLockingPolicy> fileLockingPolicy = Optional.empty();
 
     private boolean async = false;
+    private Optional<Boolean> syncWriteCombining = Optional.empty();
+    private Optional<Integer> asyncBufferCapacity = Optional.empty();
+    private Optional<AsyncOverflowPolicy> asyncOverflowPolicy = Optional.empty();
+    private Optional<Duration> asyncOverflowTimeout = Optional.empty();
+    private Optional<Integer> asyncMaxBatchSize = Optional.empty();
+    private Optional<Long> asyncMaxBatchBytes = Optional.empty();
+    private Optional<Duration> asyncBatchLinger = Optional.empty();
+    private Optional<Boolean> asyncOffHeapBuffer = Optional.empty();
+    private Optional<Integer> asyncStripes = Optional.empty();
+    private Optional<Integer> asyncFormattingThreads = Optional.empty();
+    private Optional<Boolean> asyncFormatOnCallingThread = Optional.empty();
+    private Optional<AsyncWaitStrategy> asyncWaitStrategy = Optional.empty();
+    private Optional<Boolean> asyncSharedWriter = Optional.empty();
+    private Optional<Duration> asyncCloseTimeout = Optional.empty();
+    private Optional<AsyncShutdownFallback> asyncShutdownFallback = Optional.empty();
+    private Optional<Boolean> asyncShutdownHook = Optional.empty();
     private Optional<Boolean> storeStackTracesInFilesystem = Optional.empty();
     private Optional<Path> stackTraceStoragePath = Optional.empty();
+    private Optional<StackTraceFingerprint> stackTraceFingerprint = Optional.empty();
+    private Optional<Boolean> storeStackTracesInBackground = Optional.empty();
+    private Optional<Integer> stackTraceQueueCapacity = Optional.empty();
+    private Optional<StackTraceStorageFormat> stackTraceStorageFormat = Optional.empty();
+    private Optional<Long> stackTraceMaxTotalBytes = Optional.empty();
+    private Optional<Integer> stackTraceMaxFiles = Optional.empty();
+    private Optional<Duration> stackTraceMaxAge = Optional.empty();
     private Optional<Consumer<Throwable>> errorHandler = Optional.empty();
     private Optional<DiagnosticContextSupplier> contextSupplier = Optional.empty();
 
@@ -52,7 +84,8 @@ public class OpsLoggerFactory {
     }
 
     /**
-     * The path of the file to print the log strings to.  Is closed and reopened frequently to allow outside log rotation to work.
+     * The path of the file to print the log strings to.  Is closed and reopened frequently to allow outside log rotation to work,
+     * unless setKeepFileOpen is used.
      * The path is used as-is.
      * @param path path for log file
      * @return <code>this</code> for further configuration
@@ -65,6 +98,82 @@ public class OpsLoggerFactory {
         return this;
     }
 
+    /**
+     * <p>Keep the log file open between writes, instead of opening and closing it for every batch of log messages.</p>
+     *
+     * <p>Opening and closing the file is often the most expensive part of logging, particularly with synchronous
+     * loggers, which write one message per batch. When the file is kept open, the logger periodically checks
+     * whether the file has been moved or truncated by a log rotation tool, and reopens it if so
+     * (see setFileRotationCheckInterval). Rotation tools can also call {@link OpsLogger#refreshFileHandles()}
+     * after moving the file, so that it is reopened straight away.</p>
+     *
+     * <p>This setting has no effect unless a path is set (see setPath). It is disabled by default.</p>
+     *
+     * @param keepOpen true to keep the file open, false to reopen it for every batch
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setKeepFileOpen(boolean keepOpen) {
+        clearCachedInstance();
+        keepFileOpen = Optional.of(keepOpen);
+        return this;
+    }
+
+    /**
+     * <p>How often a log file which is kept open is checked for rotation. The default is one second.</p>
+     *
+     * <p>A check compares the identity (the inode on unix-like systems) and size of the file at the path with the
+     * file that is open, and reopens the file when it has been moved or truncated. Checks are only made when a
+     * batch of log messages is written, so an idle logger does no work. Zero checks before every batch.</p>
+     *
+     * <p>This setting has no effect unless the file is kept open (see setKeepFileOpen).</p>
+     *
+     * @param interval minimum time between checks. Must not be negative.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setFileRotationCheckInterval(Duration interval) {
+        validateParametersForSetFileRotationCheckInterval(interval);
+        clearCachedInstance();
+        fileRotationCheckInterval = Optional.of(interval);
+        return this;
+    }
+
+    /**
+     * <p>Watch the directory containing a log file which is kept open, so that rotation is checked for
+     * as soon as the file is moved or replaced, rather than at the next periodic check.</p>
+     *
+     * <p>This uses a {@link java.nio.file.WatchService}, which is efficient on most platforms but may be
+     * implemented by polling on others. This setting has no effect unless the file is kept open
+     * (see setKeepFileOpen). It is disabled by default.</p>
+     *
+     * @param watch true to watch the log file directory
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setWatchForFileRotation(boolean watch) {
+        clearCachedInstance();
+        watchForFileRotation = Optional.of(watch);
+        return this;
+    }
+
+    /**
+     * <p>Choose how the log file is locked while writing to it.</p>
+     *
+     * <p>By default, an exclusive lock is taken for every batch of log messages, so that several processes
+     * can safely write to the same file. When this process is the only one writing to the file, locking can be
+     * disabled with {@link FileLockingPolicy#NONE}, which avoids a significant cost on network-backed volumes.</p>
+     *
+     * <p>This setting has no effect unless a path is set (see setPath).</p>
+     *
+     * @param policy the file locking policy
+     * @return <code>this</code> for further configuration
+     * @see FileLockingPolicy
+     */
+    public OpsLoggerFactory setFileLockingPolicy(FileLockingPolicy policy) {
+        Objects.requireNonNull(policy, "policy must not be null");
+        clearCachedInstance();
+        fileLockingPolicy = Optional.of(policy);
+        return this;
+    }
+
     /**
      * <p>Should stack traces be placed in individual files or printed along with the log statements?</p>
      * <p>If called with true, each unique stack trace will placed in its own file. (see setStackTraceStoragePath).
@@ -97,6 +206,134 @@ public class OpsLoggerFactory {
         return this;
     }
 
+    /**
+     * <p>Choose how stack traces stored in the filesystem are fingerprinted.</p>
+     *
+     * <p>Each unique fingerprint is stored in its own file. MD5 (the default) hashes the printed stack trace, and
+     * names files the same way as earlier versions. STRUCTURAL hashes the throwable without printing it, which
+     * is much faster for deep or frequent stack traces, but names files differently.</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem.</p>
+     *
+     * @param fingerprint how to fingerprint stack traces
+     * @return <code>this</code> for further configuration
+     * @see StackTraceFingerprint
+     */
+    public OpsLoggerFactory setStackTraceFingerprint(StackTraceFingerprint fingerprint) {
+        Objects.requireNonNull(fingerprint, "fingerprint must not be null");
+        clearCachedInstance();
+        stackTraceFingerprint = Optional.of(fingerprint);
+        return this;
+    }
+
+    /**
+     * <p>Choose how stack traces stored in the filesystem are laid out.</p>
+     *
+     * <p>FILE_PER_TRACE (the default) stores each unique stack trace in a file of its own. PACK appends unique stack
+     * traces, compressed, to a few large files with an index, which avoids leaving a very large number of small
+     * files behind on long-running services. Log messages then refer to the index, with the fingerprint as the
+     * fragment of the URI, and the LookupStackTrace tool in opslogger-support prints the stack trace.</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem.</p>
+     *
+     * @param format how to lay out stored stack traces
+     * @return <code>this</code> for further configuration
+     * @see StackTraceStorageFormat
+     */
+    public OpsLoggerFactory setStackTraceStorageFormat(StackTraceStorageFormat format) {
+        Objects.requireNonNull(format, "format must not be null");
+        clearCachedInstance();
+        stackTraceStorageFormat = Optional.of(format);
+        return this;
+    }
+
+    /**
+     * <p>Should new stack trace files be written by a thread of their own?</p>
+     *
+     * <p>When enabled, a log message which refers to a new stack trace includes the URI of its file straight away,
+     * and the file is written shortly afterwards, so that a burst of new exceptions does not hold up other log
+     * messages. Each file is only queued once, however often it is logged while queued. Queued files are written
+     * when the logger is closed. If the queue is full, the file is written before the log message, as it would be
+     * without this setting (see setStackTraceQueueCapacity).</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem. It is disabled by default.</p>
+     *
+     * @param background true to write new stack trace files in the background
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setStoreStackTracesInBackground(boolean background) {
+        clearCachedInstance();
+        storeStackTracesInBackground = Optional.of(background);
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of new stack trace files waiting to be written in the background.</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem in the background
+     * (see setStoreStackTracesInBackground).</p>
+     *
+     * @param capacity the maximum number of queued stack trace files, which must be positive
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setStackTraceQueueCapacity(int capacity) {
+        validateParametersForSetStackTraceQueueCapacity(capacity);
+        clearCachedInstance();
+        stackTraceQueueCapacity = Optional.of(capacity);
+        return this;
+    }
+
+    /**
+     * <p>Limit the total size of stored stack trace files.</p>
+     *
+     * <p>Once a minute, a background thread deletes the stack traces which have gone longest without being logged
+     * until the files are within every limit set (see also setStackTraceMaxFiles and setStackTraceMaxAge). A
+     * stack trace which is logged again after being deleted is stored again. When stack traces are stored in
+     * PACK format, whole files are deleted, oldest first, and the file currently being appended to is kept.</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem. There is no limit by default.</p>
+     *
+     * @param maxTotalBytes the maximum total size of stored stack trace files, which must be positive
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setStackTraceMaxTotalBytes(long maxTotalBytes) {
+        validateParametersForSetStackTraceMaxTotalBytes(maxTotalBytes);
+        clearCachedInstance();
+        stackTraceMaxTotalBytes = Optional.of(maxTotalBytes);
+        return this;
+    }
+
+    /**
+     * <p>Limit the number of stored stack trace files (see setStackTraceMaxTotalBytes).</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem. There is no limit by default.</p>
+     *
+     * @param maxFiles the maximum number of stored stack trace files, which must be positive
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setStackTraceMaxFiles(int maxFiles) {
+        validateParametersForSetStackTraceMaxFiles(maxFiles);
+        clearCachedInstance();
+        stackTraceMaxFiles = Optional.of(maxFiles);
+        return this;
+    }
+
+    /**
+     * <p>Delete stored stack traces which have not been logged for longer than this
+     * (see setStackTraceMaxTotalBytes).</p>
+     *
+     * <p>This setting has no effect unless stack traces are stored in the filesystem. There is no limit by default.</p>
+     *
+     * @param maxAge how long a stack trace is kept without being logged, which must be positive
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setStackTraceMaxAge(Duration maxAge) {
+        validateParametersForSetStackTraceMaxAge(maxAge);
+        clearCachedInstance();
+        stackTraceMaxAge = Optional.of(maxAge);
+        return this;
+    }
+
     /**
      * <p>Handler for when exceptions occur when logging.</p>
      * <p>
@@ -155,7 +392,8 @@ public class OpsLoggerFactory {
      * When enabled, the log(...) method call pushes the log message object to an internal queue, and returns
      * immediately.  The queue is emptied in order by a background thread. This can be very useful for keeping response
      * times low, but risks losing the log message objects still in the queue if the Java Virtual Machine is for any
-     * reason abruptly terminated.
+     * reason abruptly terminated. A shutdown hook can close the logger when the Java Virtual Machine exits normally
+     * (see setAsyncShutdownHook and setAsyncCloseTimeout).
      *
      * If this method is not called, asynchronous logging is disabled.
      *
@@ -168,6 +406,321 @@ public class OpsLoggerFactory {
         return this;
     }
 
+    /**
+     * <p>Enable/disable write combining for synchronous logging.</p>
+     *
+     * <p>When enabled, each log message is formatted by the calling thread before the logger's lock is taken. The
+     * thread which then holds the lock writes the messages of every thread waiting for it in a single batch
+     * (and, when logging to a path, a single file open), while the other threads wait for their message to be
+     * written. The log(...) method call still does not return until the message has been written, but contending
+     * threads no longer write one at a time.</p>
+     *
+     * <p>This setting has no effect when asynchronous logging is enabled. It is disabled by default.</p>
+     *
+     * @param writeCombining true to combine the writes of contending threads
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setSyncWriteCombining(boolean writeCombining) {
+        clearCachedInstance();
+        this.syncWriteCombining = Optional.of(writeCombining);
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of log messages held in memory by an asynchronous logger.</p>
+     *
+     * <p>The buffer is allocated up front (rounded up to the next power of two, and at least two), so memory use does not grow
+     * when the destination is slow. What happens when the buffer is full is decided by the overflow policy
+     * (see setAsyncOverflowPolicy).</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param capacity maximum number of queued log messages. Must be positive.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncBufferCapacity(int capacity) {
+        validateParametersForSetAsyncBufferCapacity(capacity);
+        clearCachedInstance();
+        this.asyncBufferCapacity = Optional.of(capacity);
+        return this;
+    }
+
+    /**
+     * <p>Choose what happens when the buffer of an asynchronous logger is full.</p>
+     *
+     * <p>By default, calls to log(...) wait until the background thread has made space. The other policies
+     * drop log messages instead, and the background thread periodically writes a line to the log
+     * summarising how many messages were dropped, by message code.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param policy the overflow policy
+     * @return <code>this</code> for further configuration
+     * @see AsyncOverflowPolicy
+     */
+    public OpsLoggerFactory setAsyncOverflowPolicy(AsyncOverflowPolicy policy) {
+        Objects.requireNonNull(policy, "policy must not be null");
+        clearCachedInstance();
+        this.asyncOverflowPolicy = Optional.of(policy);
+        return this;
+    }
+
+    /**
+     * <p>How long a call to log(...) waits for space in a full buffer before the message is dropped, when the
+     * overflow policy is {@link AsyncOverflowPolicy#BLOCK_THEN_DROP_NEWEST}. The default is 100 milliseconds.</p>
+     *
+     * @param timeout maximum time to wait. Must not be negative.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncOverflowTimeout(Duration timeout) {
+        validateParametersForSetAsyncOverflowTimeout(timeout);
+        clearCachedInstance();
+        this.asyncOverflowTimeout = Optional.of(timeout);
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of log messages an asynchronous logger writes in a single batch. The default is 100.</p>
+     *
+     * <p>Larger batches mean fewer (and cheaper) writes under load. The background thread starts at this size, and
+     * adapts the actual batch size between a small minimum and this maximum: it shrinks batches when the destination
+     * is slow to finish writing one, and grows them again when it is fast. A batch never holds more log messages
+     * than the buffer (see setAsyncBufferCapacity), so a larger value is treated as the buffer capacity.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param maxBatchSize maximum number of log messages per batch. Must be positive.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncMaxBatchSize(int maxBatchSize) {
+        validateParametersForSetAsyncMaxBatchSize(maxBatchSize);
+        clearCachedInstance();
+        this.asyncMaxBatchSize = Optional.of(maxBatchSize);
+        return this;
+    }
+
+    /**
+     * <p>Set the approximate maximum number of bytes an asynchronous logger writes in a single batch.
+     * The default is 1 MiB.</p>
+     *
+     * <p>The size of each log message is estimated before it is formatted, so this limit is not exact.
+     * A single log message larger than the limit is still written, in a batch of its own.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param maxBatchBytes approximate maximum number of bytes per batch. Must be positive.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncMaxBatchBytes(long maxBatchBytes) {
+        validateParametersForSetAsyncMaxBatchBytes(maxBatchBytes);
+        clearCachedInstance();
+        this.asyncMaxBatchBytes = Optional.of(maxBatchBytes);
+        return this;
+    }
+
+    /**
+     * <p>Set how long the background thread of an asynchronous logger waits for a batch to fill up before
+     * writing it. The default is zero, which writes whatever is available straight away.</p>
+     *
+     * <p>A short linger time (a millisecond or two) can greatly reduce the number of writes when messages arrive
+     * in a steady trickle, at the cost of delaying each message by up to the linger time.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param linger maximum time to wait for a batch to fill up. Must not be negative.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncBatchLinger(Duration linger) {
+        validateParametersForSetAsyncBatchLinger(linger);
+        clearCachedInstance();
+        this.asyncBatchLinger = Optional.of(linger);
+        return this;
+    }
+
+    /**
+     * <p>Hold the log messages of an asynchronous logger in a preallocated off-heap buffer, instead of as objects.</p>
+     *
+     * <p>When enabled, each call to log(...) writes the message, timestamp and details straight into the buffer, and
+     * the background thread decodes them. Together with the logLong(...) methods, and a diagnostic context
+     * which does not change from one message to the next, this lets the calling thread log without allocating any
+     * memory. The default is false.</p>
+     *
+     * <p>When combined with setAsyncStripes, each stripe is an off-heap buffer, and each thread writes straight into
+     * its own stripe.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param offHeapBuffer true to use an off-heap buffer
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncOffHeapBuffer(boolean offHeapBuffer) {
+        clearCachedInstance();
+        this.asyncOffHeapBuffer = Optional.of(offHeapBuffer);
+        return this;
+    }
+
+    /**
+     * <p>Split the buffer of an asynchronous logger into several stripes, so that threads logging at the same
+     * time do not all contend on the same part of the buffer.</p>
+     *
+     * <p>Each logging thread always uses the same stripe, chosen from its thread id, so the messages of one
+     * thread are written in the order they were logged. The background thread merges the stripes by timestamp.
+     * Messages logged by different threads at almost the same moment can be written slightly out of order.</p>
+     *
+     * <p>The buffer capacity (see setAsyncBufferCapacity) is shared between the stripes, and the overflow policy
+     * applies to each stripe. A single stripe is used by default. Striping is worth considering when many
+     * threads log in bursts on a machine with many cores.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param stripes the number of stripes. Must be positive.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncStripes(int stripes) {
+        validateParametersForSetAsyncStripes(stripes);
+        clearCachedInstance();
+        this.asyncStripes = Optional.of(stripes);
+        return this;
+    }
+
+    /**
+     * <p>Set the number of threads which format log messages for an asynchronous logger.</p>
+     *
+     * <p>By default the background thread formats each message (including processing any stack trace) and
+     * then writes it. With formatting threads, batches of messages are formatted and encoded in parallel while the background
+     * thread writes the batches formatted before them. Messages are still written in the order they were logged.
+     * This helps when formatting, rather than writing, limits how fast messages can be logged.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param threads the number of formatting threads, or 0 to format on the background thread. Must not be negative.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncFormattingThreads(int threads) {
+        validateParametersForSetAsyncFormattingThreads(threads);
+        clearCachedInstance();
+        this.asyncFormattingThreads = Optional.of(threads);
+        return this;
+    }
+
+    /**
+     * <p>Format log messages on the thread which logs them, before they are queued for the background thread.</p>
+     *
+     * <p>This spreads the cost of formatting (including processing any stack trace) over the logging threads,
+     * leaving the background thread only to write. Because each message is formatted straight away, later
+     * changes to a mutable detail argument do not affect the message, and the queue only holds formatted text
+     * rather than the details and stack traces themselves. In exchange, every log(...) method call takes longer
+     * to return, and problems formatting a message are reported on the logging thread.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled. It is disabled by default.</p>
+     *
+     * @param formatOnCallingThread true to format messages before they are queued
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncFormatOnCallingThread(boolean formatOnCallingThread) {
+        clearCachedInstance();
+        this.asyncFormatOnCallingThread = Optional.of(formatOnCallingThread);
+        return this;
+    }
+
+    /**
+     * <p>Choose how the background thread of an asynchronous logger waits for log messages.
+     * The default is {@link AsyncWaitStrategy#BLOCKING}.</p>
+     *
+     * <p>Low-latency applications with spare cores may prefer {@link AsyncWaitStrategy#YIELDING} or
+     * {@link AsyncWaitStrategy#BUSY_SPIN}, while {@link AsyncWaitStrategy#PHASED_BACKOFF} suits bursty logging.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param strategy the wait strategy to use. Must not be null.
+     * @return <code>this</code> for further configuration
+     * @see AsyncWaitStrategy
+     */
+    public OpsLoggerFactory setAsyncWaitStrategy(AsyncWaitStrategy strategy) {
+        Objects.requireNonNull(strategy, "strategy must not be null");
+        clearCachedInstance();
+        this.asyncWaitStrategy = Optional.of(strategy);
+        return this;
+    }
+
+    /**
+     * <p>Share a small pool of background threads with every other asynchronous logger built this way,
+     * instead of starting a background thread for this logger.</p>
+     *
+     * <p>An application which builds several asynchronous loggers (for different message enums or destinations)
+     * otherwise has one mostly idle thread per logger. The shared threads take turns writing a batch for each
+     * logger with messages waiting, so a busy logger cannot hold up the others, and the messages of each logger
+     * are still written in order. The shared threads never wait for more messages, so the batch linger and
+     * formatting threads settings are ignored. Closing the logger still waits for its messages to be written.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled. It is disabled by default.</p>
+     *
+     * @param shared true to use the shared background threads
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncSharedWriter(boolean shared) {
+        clearCachedInstance();
+        this.asyncSharedWriter = Optional.of(shared);
+        return this;
+    }
+
+    /**
+     * <p>Limit how long closing an asynchronous logger waits for the messages still in its queue to be written.</p>
+     *
+     * <p>By default, close() waits as long as it takes. With a timeout, the messages which have not been written
+     * when it passes are handled by the shutdown fallback (see setAsyncShutdownFallback), and the number of messages
+     * written and abandoned is reported to the error handler. This keeps shutdown within a container's stop timeout,
+     * even when the destination is slow.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled.</p>
+     *
+     * @param timeout the longest time to wait. Must not be negative.
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncCloseTimeout(Duration timeout) {
+        validateParametersForSetAsyncCloseTimeout(timeout);
+        clearCachedInstance();
+        this.asyncCloseTimeout = Optional.of(timeout);
+        return this;
+    }
+
+    /**
+     * <p>Choose what happens to the messages which an asynchronous logger has not written when the close timeout
+     * passes. The default is {@link AsyncShutdownFallback#DISCARD}.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled and a close timeout is set
+     * (see setAsyncCloseTimeout).</p>
+     *
+     * @param fallback the fallback to use. Must not be null.
+     * @return <code>this</code> for further configuration
+     * @see AsyncShutdownFallback
+     */
+    public OpsLoggerFactory setAsyncShutdownFallback(AsyncShutdownFallback fallback) {
+        Objects.requireNonNull(fallback, "fallback must not be null");
+        clearCachedInstance();
+        this.asyncShutdownFallback = Optional.of(fallback);
+        return this;
+    }
+
+    /**
+     * <p>Close an asynchronous logger from a JVM shutdown hook, so that the messages still in its queue are written
+     * when the Java Virtual Machine exits (for example, when a container is stopped), unless the logger has already
+     * been closed.</p>
+     *
+     * <p>The shutdown hook waits no longer than the close timeout (see setAsyncCloseTimeout), which should be shorter
+     * than the time the Java Virtual Machine is given to exit.</p>
+     *
+     * <p>This setting has no effect unless asynchronous logging is enabled. It is disabled by default.</p>
+     *
+     * @param shutdownHook true to close the logger from a shutdown hook
+     * @return <code>this</code> for further configuration
+     */
+    public OpsLoggerFactory setAsyncShutdownHook(boolean shutdownHook) {
+        clearCachedInstance();
+        this.asyncShutdownHook = Optional.of(shutdownHook);
+        return this;
+    }
+
     /**
      * Build and return the <code>OpsLogger</code> corresponding to the configuration provided.
      *
@@ -188,7 +741,11 @@ public class OpsLoggerFactory {
     }
 
     private <T extends Enum<T> & LogMessage> OpsLogger<T> buildNewInstance() throws UncheckedIOException {
-        InfrastructureFactory infrastructureFactory = new InfrastructureFactory(logfilePath, loggerOutput, storeStackTracesInFilesystem, stackTraceStoragePath, contextSupplier, errorHandler);
+        AsyncSettings asyncSettings = new AsyncSettings(asyncBufferCapacity, asyncOverflowPolicy, asyncOverflowTimeout, asyncMaxBatchSize, asyncMaxBatchBytes, asyncBatchLinger, asyncOffHeapBuffer, asyncStripes, asyncFormattingThreads, asyncFormatOnCallingThread, asyncWaitStrategy, asyncSharedWriter, asyncCloseTimeout, asyncShutdownFallback, asyncShutdownHook);
+        PathSettings pathSettings = new PathSettings(keepFileOpen, fileRotationCheckInterval, watchForFileRotation, fileLockingPolicy);
+        SyncSettings syncSettings = new SyncSettings(syncWriteCombining);
+        StackTraceSettings stackTraceSettings = new StackTraceSettings(stackTraceFingerprint, storeStackTracesInBackground, stackTraceQueueCapacity, stackTraceStorageFormat, stackTraceMaxTotalBytes, stackTraceMaxFiles, stackTraceMaxAge);
+        InfrastructureFactory infrastructureFactory = new InfrastructureFactory(logfilePath, loggerOutput, storeStackTracesInFilesystem, stackTraceStoragePath, contextSupplier, errorHandler, asyncSettings, pathSettings, syncSettings, stackTraceSettings);
         if (async) {
             return asyncOpsLoggerFactory.build(infrastructureFactory);
         }
@@ -210,6 +767,89 @@ public class OpsLoggerFactory {
         }
     }
 
+    private void validateParametersForSetStackTraceQueueCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+    }
+
+    private void validateParametersForSetStackTraceMaxTotalBytes(long maxTotalBytes) {
+        if (maxTotalBytes <= 0) {
+            throw new IllegalArgumentException("maxTotalBytes must be positive");
+        }
+    }
+
+    private void validateParametersForSetStackTraceMaxFiles(int maxFiles) {
+        if (maxFiles <= 0) {
+            throw new IllegalArgumentException("maxFiles must be positive");
+        }
+    }
+
+    private void validateParametersForSetStackTraceMaxAge(Duration maxAge) {
+        Objects.requireNonNull(maxAge, "maxAge must not be null");
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("maxAge must be positive");
+        }
+    }
+
+    private void validateParametersForSetAsyncBufferCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+    }
+
+    private void validateParametersForSetAsyncOverflowTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+    }
+
+    private void validateParametersForSetAsyncMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+    }
+
+    private void validateParametersForSetAsyncMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes must be positive");
+        }
+    }
+
+    private void validateParametersForSetAsyncBatchLinger(Duration linger) {
+        Objects.requireNonNull(linger, "linger must not be null");
+        if (linger.isNegative()) {
+            throw new IllegalArgumentException("linger must not be negative");
+        }
+    }
+
+    private void validateParametersForSetAsyncStripes(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+    }
+
+    private void validateParametersForSetAsyncFormattingThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("threads must not be negative");
+        }
+    }
+
+    private void validateParametersForSetAsyncCloseTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+    }
+
+    private void validateParametersForSetFileRotationCheckInterval(Duration interval) {
+        Objects.requireNonNull(interval, "interval must not be null");
+        if (interval.isNegative()) {
+            throw new IllegalArgumentException("interval must not be negative");
+        }
+    }
+
     private void validateParametersForSetPath(Path path) {
         Objects.requireNonNull(path, "path must not be null");
         if (Files.isDirectory(path)) {
@@ -0,0 +1,23 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>How stack traces stored in the filesystem are fingerprinted. Each unique fingerprint is stored in its own file,
+ * so the fingerprint decides the name of the file.</p>
+ *
+ * @see OpsLoggerFactory#setStackTraceFingerprint(StackTraceFingerprint)
+ */
+public enum StackTraceFingerprint {
+    /**
+     * An MD5 hash of the printed stack trace. Every stack trace has to be printed to calculate its fingerprint,
+     * which is slow for deep stack traces. The names of stack trace files are the same as in earlier versions.
+     */
+    MD5,
+
+    /**
+     * A fast, non-cryptographic 128-bit hash of the type, message and stack frames of the throwable, its causes
+     * and its suppressed exceptions, calculated without printing the stack trace. The hash of each stack frame
+     * is remembered, so repeated stack traces are fingerprinted quickly. The names of stack trace files are
+     * different from those produced by MD5.
+     */
+    STRUCTURAL
+}
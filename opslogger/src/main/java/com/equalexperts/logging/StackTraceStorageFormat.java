@@ -0,0 +1,21 @@
+package com.equalexperts.logging;
+
+/**
+ * <p>How stack traces are laid out when they are stored in the filesystem.</p>
+ *
+ * @see OpsLoggerFactory#setStackTraceStorageFormat(StackTraceStorageFormat)
+ */
+public enum StackTraceStorageFormat {
+    /**
+     * Each unique stack trace is stored in a file of its own, named after its fingerprint. Easy to read, but a
+     * long-running service can leave a very large number of small files.
+     */
+    FILE_PER_TRACE,
+
+    /**
+     * Unique stack traces are compressed and appended to a few large pack files, with an index of where each
+     * fingerprint is stored. Log messages refer to the index, with the fingerprint as the fragment of the URI.
+     * Use the LookupStackTrace tool in opslogger-support to read a stack trace back.
+     */
+    PACK
+}
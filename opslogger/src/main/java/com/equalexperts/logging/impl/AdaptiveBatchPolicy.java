@@ -0,0 +1,65 @@
+package com.equalexperts.logging.impl;
+
+import java.time.Duration;
+
+/**
+ * Decides how the background thread of an AsyncOpsLogger gathers records into batches.
+ *
+ * A batch is limited by a number of records, which adapts to the destination, and by an approximate
+ * number of bytes. The record limit starts at the configured maximum. It is halved when ending a
+ * batch takes longer than the latency target, and doubled (up to the maximum) when a full batch
+ * ends quickly. An optional linger time lets the background thread wait briefly for a batch to fill
+ * up before writing it.
+ *
+ * Instances are not thread-safe, and should only be used by the background thread.
+ */
+public class AdaptiveBatchPolicy {
+    static final int MIN_TARGET_RECORDS = 16;
+    static final long LATENCY_TARGET_NANOS = Duration.ofMillis(10).toNanos();
+
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long lingerNanos;
+    private final int minRecords;
+    private int targetRecords;
+
+    public AdaptiveBatchPolicy(int maxRecords, long maxBytes, Duration linger) {
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.lingerNanos = linger.toNanos();
+        this.minRecords = Math.min(MIN_TARGET_RECORDS, maxRecords);
+        this.targetRecords = maxRecords;
+    }
+
+    /**
+     * @return the number of records to gather into the next batch
+     */
+    public int getTargetRecords() {
+        return targetRecords;
+    }
+
+    /**
+     * Adjust the target batch size based on how long the destination took to end a batch.
+     * @param records the number of records in the batch
+     * @param endBatchNanos how long ending the batch took
+     */
+    public void recordEndBatch(int records, long endBatchNanos) {
+        if (endBatchNanos > LATENCY_TARGET_NANOS) {
+            targetRecords = Math.max(minRecords, targetRecords / 2);
+        } else if (records >= targetRecords) {
+            targetRecords = (int) Math.min((long) maxRecords, targetRecords * 2L);
+        }
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getLingerNanos() {
+        return lingerNanos;
+    }
+}
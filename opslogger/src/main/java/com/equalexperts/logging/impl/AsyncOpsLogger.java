@@ -1,140 +1,674 @@
 package com.equalexperts.logging.impl;
 
+import com.equalexperts.logging.AsyncOverflowPolicy;
+import com.equalexperts.logging.AsyncShutdownFallback;
 import com.equalexperts.logging.DiagnosticContextSupplier;
 import com.equalexperts.logging.LogMessage;
 import com.equalexperts.logging.OpsLogger;
+import com.equalexperts.logging.impl.FormattingPool.FormattedBatch;
+import com.equalexperts.logging.impl.LogicalLogRecord.DetailShape;
 
+import java.io.PrintStream;
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
-import static java.util.stream.Collectors.toList;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
- * Asynchronous OpsLogger which puts the record to be logged in a transferQueue and
+ * Asynchronous OpsLogger which puts the record to be logged in a ring buffer and
  * returns immediately which allows for better performance at the expense of not
  * necessarily having everything logged if the JVM shuts down unexpectedly.
- * A background thread is responsible for emptying the transferQueue.
+ * A background thread is responsible for emptying the ring buffer.
+ *
+ * When the ring buffer is full, the configured AsyncOverflowPolicy decides whether
+ * the caller waits or a record is dropped. Dropped records are counted, and the
+ * background thread periodically writes a summary of them to the destination.
+ *
+ * The background thread writes records in batches, sized by an AdaptiveBatchPolicy.
+ * Given a FormattingPool, batches are formatted by the pool while the background thread
+ * writes the batches formatted before them, in the order they were taken from the ring buffer.
+ * When formatting on the calling thread, each record is formatted before it is added to the
+ * ring buffer, and the background thread only writes the formatted text.
+ *
+ * Given an EncodedRecordRing, records are written straight into the ring without
+ * allocating a LogicalLogRecord, and the diagnostic context is reused while it is unchanged.
+ * Given a StripedRecordRing, each producer thread adds to its own stripe and the stripes are
+ * merged by timestamp as they are drained. When the stripes are EncodedRecordRings, records are
+ * written straight into the stripe of the calling thread.
+ *
+ * Closing waits for the background thread to write the records which are queued, for at most the close
+ * timeout of the ShutdownPolicy. The logger can also be closed by a JVM shutdown hook.
+ *
+ * A flush is answered by the background thread, once it has written every record which was in the
+ * ring buffer when it took the request.
+ *
+ * Given a SharedWriterService, the background work is done by the threads of the service, which
+ * take turns writing the available records of each logger, instead of by a thread of its own.
  */
 
 public class AsyncOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger<T> {
 
-    static final int MAX_BATCH_SIZE = 100;
+    static final Duration DROPPED_RECORD_SUMMARY_INTERVAL = Duration.ofSeconds(10);
     private final Future<?> processingThread;
-    private final LinkedTransferQueue<Optional<LogicalLogRecord<T>>> transferQueue;
+    private final RingBuffer<LogicalLogRecord<T>> ringBuffer;
+    private final boolean encodedRecords;
+    private final AsyncOverflowPolicy overflowPolicy;
+    private final Duration overflowTimeout;
+    private final DroppedRecordTracker<T> droppedRecords;
+    private final AdaptiveBatchPolicy batchPolicy;
+    private final Optional<FormattingPool> formattingPool;
+    private final boolean formatOnCallingThread;
+    private final Optional<SharedWriterService> sharedWriter;
+    private final List<LogicalLogRecord<T>> availableRecords = new ArrayList<>(); //only used by the shared writer
+    private final Queue<FlushRequest> flushRequests;
+    private final AtomicLong problems; //records dropped and errors reported, so logDurable can tell whether its record was written
+    private final ShutdownPolicy shutdownPolicy;
+    private final Optional<Thread> shutdownHook;
     private final Clock clock;
     private final DiagnosticContextSupplier diagnosticContextSupplier;
     private final Destination<T> destination;
     private final Consumer<Throwable> errorHandler;
     private final boolean closeable;
 
-    public AsyncOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Consumer<Throwable> errorHandler, LinkedTransferQueue<Optional<LogicalLogRecord<T>>> transferQueue, AsyncExecutor executor) {
+    /**
+     * The ring buffer, formatting pool and shared writer are passed in rather than configured from the settings,
+     * because they are resources which the caller creates (and may share).
+     */
+    public AsyncOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Consumer<Throwable> errorHandler, RingBuffer<LogicalLogRecord<T>> ringBuffer, AsyncSettings settings, ShutdownPolicy shutdownPolicy, Optional<FormattingPool> formattingPool, Optional<SharedWriterService> sharedWriter, AsyncExecutor executor) {
         this.clock = clock;
         this.diagnosticContextSupplier = diagnosticContextSupplier;
         this.destination = destination;
         this.errorHandler = errorHandler;
-        this.transferQueue = transferQueue;
-        processingThread = executor.execute(this::process);
+        this.ringBuffer = ringBuffer;
+        //records formatted on the calling thread are already objects, so they are added like any other entry
+        this.formatOnCallingThread = settings.isFormatOnCallingThread();
+        this.encodedRecords = holdsEncodedRecords(ringBuffer) && !formatOnCallingThread;
+        this.overflowPolicy = settings.getOverflowPolicy();
+        this.overflowTimeout = settings.getOverflowTimeout();
+        this.batchPolicy = settings.configureBatchPolicy();
+        this.formattingPool = formattingPool;
+        this.droppedRecords = new DroppedRecordTracker<>(clock.instant());
+        this.sharedWriter = sharedWriter;
+        this.flushRequests = new ConcurrentLinkedQueue<>();
+        this.problems = new AtomicLong();
+        if (sharedWriter.isPresent()) {
+            processingThread = sharedWriter.get().register(ringBuffer, this::processAvailableRecords);
+        } else {
+            processingThread = executor.execute(this::process);
+        }
+        this.shutdownPolicy = shutdownPolicy;
         this.closeable = true;
+        if (shutdownPolicy.isShutdownHook()) {
+            Thread hook = new Thread(this::closeFromShutdownHook, "opslogger-shutdown-hook");
+            Runtime.getRuntime().addShutdownHook(hook);
+            this.shutdownHook = Optional.of(hook);
+        } else {
+            this.shutdownHook = Optional.empty();
+        }
     }
 
-    private AsyncOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Consumer<Throwable> errorHandler, LinkedTransferQueue<Optional<LogicalLogRecord<T>>> transferQueue, Future<?> processingThread, boolean closeable) {
-        this.clock = clock;
+    private AsyncOpsLogger(AsyncOpsLogger<T> parent, DiagnosticContextSupplier diagnosticContextSupplier) {
+        this.clock = parent.clock;
         this.diagnosticContextSupplier = diagnosticContextSupplier;
-        this.destination = destination;
-        this.errorHandler = errorHandler;
-        this.transferQueue = transferQueue;
-        this.processingThread = processingThread;
-        this.closeable = closeable;
+        this.destination = parent.destination;
+        this.errorHandler = parent.errorHandler;
+        this.ringBuffer = parent.ringBuffer;
+        this.encodedRecords = parent.encodedRecords;
+        this.overflowPolicy = parent.overflowPolicy;
+        this.overflowTimeout = parent.overflowTimeout;
+        this.batchPolicy = parent.batchPolicy;
+        this.formattingPool = parent.formattingPool;
+        this.formatOnCallingThread = parent.formatOnCallingThread;
+        this.droppedRecords = parent.droppedRecords;
+        this.sharedWriter = parent.sharedWriter;
+        this.flushRequests = parent.flushRequests;
+        this.problems = parent.problems;
+        this.processingThread = parent.processingThread;
+        this.shutdownPolicy = parent.shutdownPolicy;
+        this.shutdownHook = Optional.empty();
+        this.closeable = false;
     }
 
     @Override
     public void log(T message, Object... details) {
         try {
-
+            if (encodedRecords) {
+                enqueueEncoded(message, null, DetailShape.OBJECTS, requireNonNull(details, "parameter details must not be null"), 0L, 0L);
+                return;
+            }
             DiagnosticContext diagnosticContext = new DiagnosticContext(diagnosticContextSupplier);
-            LogicalLogRecord<T> record = new LogicalLogRecord<>(clock.instant(), diagnosticContext, message, Optional.empty(), details);
-            transferQueue.put(Optional.of(record));
+            LogicalLogRecord<T> record = new LogicalLogRecord<>(clock.millis(), diagnosticContext, message, Optional.empty(), details);
+            enqueue(record);
         } catch (Throwable t) {
-            errorHandler.accept(t);
+            reportError(t);
+        }
+    }
+
+    @Override
+    public void logLong(T message, long detail) {
+        try {
+            if (encodedRecords) {
+                enqueueEncoded(message, null, DetailShape.LONG, null, detail, 0L);
+                return;
+            }
+            enqueue(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), detail));
+        } catch (Throwable t) {
+            reportError(t);
+        }
+    }
+
+    @Override
+    public void logLong(T message, long first, long second) {
+        try {
+            if (encodedRecords) {
+                enqueueEncoded(message, null, DetailShape.LONG_LONG, null, first, second);
+                return;
+            }
+            enqueue(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), first, second));
+        } catch (Throwable t) {
+            reportError(t);
+        }
+    }
+
+    @Override
+    public void logLong(T message, String first, long second) {
+        try {
+            if (encodedRecords) {
+                enqueueEncoded(message, null, DetailShape.STRING_LONG, first, second, 0L);
+                return;
+            }
+            enqueue(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), first, second));
+        } catch (Throwable t) {
+            reportError(t);
         }
     }
 
     @Override
     public void logThrowable(T message, Throwable cause, Object... details) {
         try {
+            if (encodedRecords) {
+                enqueueEncoded(message, requireNonNull(cause), DetailShape.OBJECTS, requireNonNull(details, "parameter details must not be null"), 0L, 0L);
+                return;
+            }
             DiagnosticContext diagnosticContext = new DiagnosticContext(diagnosticContextSupplier);
-            LogicalLogRecord<T> record = new LogicalLogRecord<>(clock.instant(), diagnosticContext, message, Optional.of(cause), details);
-            transferQueue.put(Optional.of(record));
+            LogicalLogRecord<T> record = new LogicalLogRecord<>(clock.millis(), diagnosticContext, message, Optional.of(cause), details);
+            enqueue(record);
         } catch (Throwable t) {
-            errorHandler.accept(t);
+            reportError(t);
         }
     }
 
     @Override
     public AsyncOpsLogger<T> with(DiagnosticContextSupplier override) {
-        return new AsyncOpsLogger<>(clock, override, destination, errorHandler, transferQueue, processingThread, false);
+        return new AsyncOpsLogger<>(this, override);
+    }
+
+    /**
+     * The background thread answers the request once it has written everything which was in the ring buffer
+     * when it took the request.
+     */
+    @Override
+    public CompletableFuture<Void> flush(boolean force) {
+        return requestFlush(force, FlushRequest.IGNORE_PROBLEMS);
+    }
+
+    /**
+     * The record is not tracked through the ring buffer, so the future fails if any record was dropped or any error
+     * was reported between logging it and answering the flush. A problem with another message logged at the same
+     * time therefore also fails the future: the record can only be confirmed durable when nothing went wrong.
+     */
+    @Override
+    public CompletableFuture<Void> logDurable(T message, Object... details) {
+        long problemsBefore = problems.get();
+        log(message, details);
+        return requestFlush(true, problemsBefore);
+    }
+
+    private CompletableFuture<Void> requestFlush(boolean force, long problemsBefore) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        flushRequests.add(new FlushRequest(result, force, problemsBefore));
+        if (ringBuffer.isShutdown() && processingThread.isDone()) {
+            failFlushRequests(); //nothing is left to answer it
+        } else {
+            ringBuffer.wake();
+        }
+        return result;
     }
 
+    /**
+     * Given a close timeout, records which have not been written in time are abandoned according to the
+     * shutdown fallback. The destination is then left open, because the background thread may still be using it.
+     */
     @Override
     public void close() throws Exception {
         if (closeable) {
+            removeShutdownHook();
+            boolean abandoned = false;
             try {
-                transferQueue.put(Optional.empty()); //an empty optional is the shutdown signal
-                processingThread.get();
+                ringBuffer.shutdown(); //places the shutdown marker after the last record
+                abandoned = !awaitBackgroundThread();
             } finally {
-                destination.close();
+                failFlushRequests(); //made after the background thread last looked
+                formattingPool.ifPresent(FormattingPool::shutdown);
+                if (!abandoned) {
+                    destination.close();
+                }
+            }
+        }
+    }
+
+    /*
+        Returns false when the close timeout passes first, after abandoning the records which are left.
+     */
+    private boolean awaitBackgroundThread() throws Exception {
+        if (!shutdownPolicy.getCloseTimeout().isPresent()) {
+            processingThread.get();
+            return true;
+        }
+        Duration timeout = shutdownPolicy.getCloseTimeout().get();
+        int queued = ringBuffer.size();
+        try {
+            processingThread.get(timeout.toNanos(), NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            abandonQueuedRecords(timeout, queued);
+            return false;
+        }
+    }
+
+    private void abandonQueuedRecords(Duration timeout, int queued) {
+        boolean dump = shutdownPolicy.getFallback() == AsyncShutdownFallback.RAW_DUMP;
+        PrintStream dumpStream = shutdownPolicy.getRawDumpStream();
+        StringBuilder line = new StringBuilder();
+        int abandoned = ringBuffer.pollAll(record -> {
+            if (dump) {
+                try {
+                    line.setLength(0);
+                    record.formatRawTo(line);
+                    dumpStream.println(line);
+                } catch (Throwable t) {
+                    reportError(t);
+                }
             }
+        });
+        int written = Math.max(0, queued - abandoned); //or still being written by the background thread
+        reportError(new IllegalStateException(String.format(
+                "OpsLogger did not finish writing within %s: %d queued records were written and %d were %s",
+                timeout, written, abandoned, dump ? "dumped without formatting" : "discarded")));
+    }
+
+    private void closeFromShutdownHook() {
+        try {
+            close();
+        } catch (Throwable t) {
+            reportError(t);
         }
     }
 
+    private void removeShutdownHook() {
+        if (shutdownHook.isPresent() && (Thread.currentThread() != shutdownHook.get())) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook.get());
+            } catch (IllegalStateException e) {
+                //the JVM is already shutting down, so the hook is running or about to
+            }
+        }
+    }
+
+    private void enqueue(LogicalLogRecord<T> record) throws Exception {
+        if (formatOnCallingThread) {
+            record = record.preformat(destination.getStackTraceProcessor());
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                if (!ringBuffer.offer(record)) {
+                    recordDrop(record.getMessage());
+                }
+                break;
+            case DROP_OLDEST:
+                while (!ringBuffer.offer(record)) {
+                    LogicalLogRecord<T> evicted = ringBuffer.poll();
+                    if (evicted != null) {
+                        recordDrop(evicted.getMessage());
+                    }
+                }
+                break;
+            case BLOCK_THEN_DROP_NEWEST:
+                if (!ringBuffer.offer(record, overflowTimeout.toNanos(), NANOSECONDS)) {
+                    recordDrop(record.getMessage());
+                }
+                break;
+            default:
+                ringBuffer.put(record);
+        }
+    }
+
+    /*
+        Writes the record straight into the encoded ring without allocating a LogicalLogRecord.
+        Everything which could fail happens before a slot is claimed, because a claimed slot
+        must always be published.
+     */
+    private void enqueueEncoded(T message, Throwable cause, DetailShape shape, Object details, long first, long second) throws InterruptedException {
+        requireNonNull(message, "parameter message must not be null");
+        long timestamp = clock.millis();
+        DiagnosticContext diagnosticContext = DiagnosticContext.reuseOrCreate(diagnosticContextSupplier);
+        EncodedRecordRing<T> encodedRing = callersEncodedRing();
+        long sequence = claimSlot(encodedRing, message);
+        if (sequence >= 0) {
+            encodedRing.publishRecord(sequence, message, timestamp, diagnosticContext, cause, shape, details, first, second);
+        }
+    }
+
+    private long claimSlot(EncodedRecordRing<T> encodedRing, T message) throws InterruptedException {
+        long sequence;
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                sequence = encodedRing.tryClaim();
+                break;
+            case DROP_OLDEST:
+                while ((sequence = encodedRing.tryClaim()) < 0) {
+                    LogicalLogRecord<T> evicted = encodedRing.poll();
+                    if (evicted != null) {
+                        recordDrop(evicted.getMessage());
+                    }
+                }
+                break;
+            case BLOCK_THEN_DROP_NEWEST:
+                sequence = encodedRing.claim(overflowTimeout.toNanos());
+                break;
+            default:
+                sequence = encodedRing.claim(Long.MAX_VALUE);
+        }
+        if (sequence < 0) {
+            recordDrop(message);
+        }
+        return sequence;
+    }
+
+    /*
+        With stripes, the calling thread writes into its own stripe, which is where the striped ring would put it.
+     */
+    @SuppressWarnings("unchecked")
+    private EncodedRecordRing<T> callersEncodedRing() {
+        if (ringBuffer instanceof StripedRecordRing) {
+            return (EncodedRecordRing<T>) ((StripedRecordRing<T>) ringBuffer).currentStripe();
+        }
+        return (EncodedRecordRing<T>) ringBuffer;
+    }
+
+    private static boolean holdsEncodedRecords(RingBuffer<?> ringBuffer) {
+        if (ringBuffer instanceof StripedRecordRing) {
+            return ((StripedRecordRing<?>) ringBuffer).getStripe(0) instanceof EncodedRecordRing;
+        }
+        return ringBuffer instanceof EncodedRecordRing;
+    }
+
     private void process() {
         /*
-            An empty optional on the queue is the shutdown signal
+            The ring buffer reports when it has been shut down and drained
          */
+        List<LogicalLogRecord<T>> batch = new ArrayList<>(Math.min(batchPolicy.getMaxRecords(), ringBuffer.getCapacity()));
+        Deque<Future<FormattedBatch>> inFlight = new ArrayDeque<>();
         boolean run = true;
         do {
             try {
-                List<Optional<LogicalLogRecord<T>>> messages = waitForNextBatch();
-                List<LogicalLogRecord<T>> logRecords = messages.stream()
-                        .filter(Optional::isPresent)
-                        .map(Optional::get)
-                        .collect(toList());
-
-                if (logRecords.size() < messages.size()) {
-                    run = false; //shutdown signal detected
+                if (formattingPool.isPresent()) {
+                    run = pipelineNextBatch(formattingPool.get(), inFlight);
+                } else {
+                    batch.clear();
+                    run = waitForNextBatch(batch);
+                    processBatch(batch);
                 }
-                processBatch(logRecords);
             } catch (Throwable t) {
-                errorHandler.accept(t);
+                reportError(t);
+            }
+            if (!flushRequests.isEmpty()) {
+                answerFlushRequests(batch, inFlight);
             }
+            publishDroppedRecordSummaryIfDue(!run);
         } while (run);
     }
 
+    /*
+        A step of the shared writer, which writes the records already in the ring buffer. It never waits
+        or lingers for more records, because other loggers share the thread.
+     */
+    private boolean processAvailableRecords() {
+        boolean open = !ringBuffer.shutdownComplete();
+        ringBuffer.takeWakeRequest(); //flush requests are answered below
+        try {
+            availableRecords.clear();
+            ringBuffer.drainTo(availableRecords, batchPolicy.getTargetRecords());
+            processBatch(availableRecords);
+        } catch (Throwable t) {
+            reportError(t);
+        }
+        if (!flushRequests.isEmpty()) {
+            answerFlushRequests(availableRecords, new ArrayDeque<>());
+        }
+        publishDroppedRecordSummaryIfDue(!open);
+        return open;
+    }
+
     private void processBatch(List<LogicalLogRecord<T>> batch) throws Exception {
-        if (batch.isEmpty()) {
-            return;
+        /*
+            Records are written to the destination in chunks which respect the byte limit.
+            A chunk always contains at least one record, however large it is.
+         */
+        int start = 0;
+        while (start < batch.size()) {
+            int end = start + 1;
+            long bytes = batch.get(start).estimateFormattedLength();
+            while (end < batch.size()) {
+                bytes += batch.get(end).estimateFormattedLength();
+                if (bytes > batchPolicy.getMaxBytes()) {
+                    break;
+                }
+                end++;
+            }
+            publishChunk(batch, start, end);
+            start = end;
         }
+    }
+
+    private void publishChunk(List<LogicalLogRecord<T>> batch, int start, int end) throws Exception {
         destination.beginBatch();
-        for (LogicalLogRecord<T> record : batch) {
-            try {
-                destination.publish(record);
-            } catch (Throwable t) {
-                errorHandler.accept(t);
+        destination.publishBatch(batch.subList(start, end), this::reportError);
+        long endBatchStarted = System.nanoTime();
+        destination.endBatch();
+        batchPolicy.recordEndBatch(end - start, System.nanoTime() - endBatchStarted);
+    }
+
+    private boolean pipelineNextBatch(FormattingPool pool, Deque<Future<FormattedBatch>> inFlight) throws Exception {
+        /*
+            While batches are formatting, new records are drained without waiting, so the pool
+            stays busy. The oldest batch is written once nothing more can be submitted, which keeps
+            the records in order. Each batch is handed to the pool, so it is not reused.
+         */
+        List<LogicalLogRecord<T>> batch = new ArrayList<>(batchPolicy.getTargetRecords());
+        boolean open = true;
+        if (inFlight.isEmpty()) {
+            open = waitForNextBatch(batch);
+        } else if (inFlight.size() < pool.getMaxBatchesInFlight()) {
+            ringBuffer.drainTo(batch, batchPolicy.getTargetRecords());
+        }
+        if (!batch.isEmpty()) {
+            inFlight.add(pool.submit(batch, destination.getStackTraceProcessor(), batchPolicy.getMaxBytes()));
+        }
+        if (batch.isEmpty() || inFlight.size() >= pool.getMaxBatchesInFlight()) {
+            writeOldestBatch(inFlight);
+        }
+        if (!open) {
+            while (!inFlight.isEmpty()) {
+                writeOldestBatch(inFlight);
             }
         }
+        return open;
+    }
+
+    private void writeOldestBatch(Deque<Future<FormattedBatch>> inFlight) throws Exception {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        FormattedBatch formatted;
+        try {
+            formatted = inFlight.remove().get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to format a batch of log records", e.getCause());
+        }
+        formatted.getFailures().forEach(this::reportError);
+        try {
+            for (BatchEncoder chunk : formatted.getChunks()) {
+                if (chunk.getLineCount() > 0) {
+                    publishEncodedChunk(chunk);
+                }
+            }
+        } finally {
+            formattingPool.get().recycle(formatted);
+        }
+    }
+
+    private void publishEncodedChunk(BatchEncoder chunk) throws Exception {
+        int lines = chunk.getLineCount(); //publishing may clear the chunk
+        destination.beginBatch();
+        try {
+            destination.publishEncoded(chunk);
+        } catch (Throwable t) {
+            reportError(t);
+        }
+        long endBatchStarted = System.nanoTime();
         destination.endBatch();
+        batchPolicy.recordEndBatch(lines, System.nanoTime() - endBatchStarted);
     }
 
-    private List<Optional<LogicalLogRecord<T>>> waitForNextBatch() throws InterruptedException {
-        List<Optional<LogicalLogRecord<T>>> result = new ArrayList<>();
-        result.add(transferQueue.take()); //a blocking operation
-        transferQueue.drainTo(result, MAX_BATCH_SIZE - 1);
-        return result;
+    private boolean waitForNextBatch(List<LogicalLogRecord<T>> batch) throws InterruptedException {
+        boolean open;
+        if (droppedRecords.hasDrops()) {
+            open = ringBuffer.awaitEntries(nanosUntilNextSummary(), NANOSECONDS); //wake up in time to report drops
+        } else {
+            open = ringBuffer.awaitEntries(); //a blocking operation
+        }
+        if (open) {
+            int target = batchPolicy.getTargetRecords();
+            ringBuffer.drainTo(batch, target);
+            if (!batch.isEmpty() && batch.size() < target && batchPolicy.getLingerNanos() > 0) {
+                lingerForMoreRecords(batch, target);
+            }
+        }
+        return open;
+    }
+
+    private void lingerForMoreRecords(List<LogicalLogRecord<T>> batch, int target) throws InterruptedException {
+        long deadline = System.nanoTime() + batchPolicy.getLingerNanos();
+        long remaining = batchPolicy.getLingerNanos();
+        while (batch.size() < target && remaining > 0) {
+            if (!ringBuffer.awaitEntries(remaining, NANOSECONDS)) {
+                return; //shut down and drained: the next wait will report it
+            }
+            ringBuffer.drainTo(batch, target - batch.size());
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /*
+        A record logged before a request was made has been added to the ring buffer by the time the request
+        is taken, so the requests are answered once the batches already formatting and the records in the ring
+        buffer have been written. Only the records in the ring buffer now are written, so that a flush is not
+        held up by records logged after it.
+     */
+    private void answerFlushRequests(List<LogicalLogRecord<T>> batch, Deque<Future<FormattedBatch>> inFlight) {
+        List<FlushRequest> requests = new ArrayList<>();
+        boolean force = false;
+        FlushRequest request;
+        while ((request = flushRequests.poll()) != null) {
+            requests.add(request);
+            force |= request.force;
+        }
+        try {
+            while (!inFlight.isEmpty()) {
+                writeOldestBatch(inFlight);
+            }
+            int remaining = ringBuffer.size();
+            while (remaining > 0) {
+                batch.clear();
+                ringBuffer.drainTo(batch, Math.min(remaining, batchPolicy.getTargetRecords()));
+                if (batch.isEmpty()) {
+                    break; //evicted by a producer
+                }
+                remaining -= batch.size();
+                processBatch(batch);
+            }
+            if (force) {
+                destination.force();
+            }
+            long problemsNow = problems.get();
+            for (FlushRequest r : requests) {
+                if (r.problemsBefore == FlushRequest.IGNORE_PROBLEMS || r.problemsBefore == problemsNow) {
+                    r.future.complete(null);
+                } else {
+                    r.future.completeExceptionally(new IllegalStateException("A message was dropped or could not be written"));
+                }
+            }
+        } catch (Throwable t) {
+            reportError(t);
+            requests.forEach(r -> r.future.completeExceptionally(t));
+        }
+    }
+
+    private void reportError(Throwable t) {
+        problems.incrementAndGet();
+        errorHandler.accept(t);
+    }
+
+    private void recordDrop(T message) {
+        problems.incrementAndGet();
+        droppedRecords.recordDrop(message);
+    }
+
+    private void failFlushRequests() {
+        FlushRequest request;
+        while ((request = flushRequests.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("OpsLogger has been closed"));
+        }
+    }
+
+    private void publishDroppedRecordSummaryIfDue(boolean finalSummary) {
+        if (!droppedRecords.hasDrops() || (!finalSummary && nanosUntilNextSummary() > 0)) {
+            return;
+        }
+        try {
+            Optional<String> summary = droppedRecords.takeSummary(clock.instant());
+            if (summary.isPresent()) {
+                destination.beginBatch();
+                try {
+                    destination.publishSyntheticLine(summary.get());
+                } finally {
+                    destination.endBatch();
+                }
+            }
+        } catch (Throwable t) {
+            reportError(t);
+        }
+    }
+
+    private long nanosUntilNextSummary() {
+        Instant due = droppedRecords.getSince().plus(DROPPED_RECORD_SUMMARY_INTERVAL);
+        return Math.max(0L, Duration.between(clock.instant(), due).toNanos());
     }
 
     public Clock getClock() {
@@ -153,7 +687,56 @@ public class AsyncOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger
         return errorHandler;
     }
 
-    public LinkedTransferQueue<Optional<LogicalLogRecord<T>>> getTransferQueue() {
-        return transferQueue;
+    public RingBuffer<LogicalLogRecord<T>> getRingBuffer() {
+        return ringBuffer;
+    }
+
+    public AsyncOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public Duration getOverflowTimeout() {
+        return overflowTimeout;
+    }
+
+    public AdaptiveBatchPolicy getBatchPolicy() {
+        return batchPolicy;
+    }
+
+    public Optional<FormattingPool> getFormattingPool() {
+        return formattingPool;
+    }
+
+    public boolean isFormatOnCallingThread() {
+        return formatOnCallingThread;
+    }
+
+    public Optional<SharedWriterService> getSharedWriter() {
+        return sharedWriter;
+    }
+
+    public ShutdownPolicy getShutdownPolicy() {
+        return shutdownPolicy;
+    }
+
+    Optional<Thread> getShutdownHook() {
+        return shutdownHook;
+    }
+
+    DroppedRecordTracker<T> getDroppedRecordTracker() {
+        return droppedRecords;
+    }
+
+    private static class FlushRequest {
+        static final long IGNORE_PROBLEMS = -1L;
+        final CompletableFuture<Void> future;
+        final boolean force;
+        final long problemsBefore;
+
+        FlushRequest(CompletableFuture<Void> future, boolean force, long problemsBefore) {
+            this.future = future;
+            this.force = force;
+            this.problemsBefore = problemsBefore;
+        }
     }
 }
@@ -6,7 +6,6 @@ import com.equalexperts.logging.LogMessage;
 import java.io.IOException;
 import java.time.Clock;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedTransferQueue;
 import java.util.function.Consumer;
 
 public class AsyncOpsLoggerFactory {
@@ -17,7 +16,8 @@ public class AsyncOpsLoggerFactory {
         DiagnosticContextSupplier diagnosticContextSupplier = infrastructureFactory.configureContextSupplier();
         Consumer<Throwable> errorHandler = infrastructureFactory.configureErrorHandler();
         Destination<T> destination = infrastructureFactory.configureDestination();
-        return new AsyncOpsLogger<>(Clock.systemUTC(), diagnosticContextSupplier, destination, errorHandler, new LinkedTransferQueue<>(), asyncExecutor);
+        AsyncSettings asyncSettings = infrastructureFactory.configureAsyncSettings();
+        return new AsyncOpsLogger<>(Clock.systemUTC(), diagnosticContextSupplier, destination, errorHandler, asyncSettings.configureRecordRing(), asyncSettings, asyncSettings.configureShutdownPolicy(), asyncSettings.configureFormattingPool(), asyncSettings.configureSharedWriter(), asyncExecutor);
     }
 
     void setAsyncExecutor(AsyncExecutor asyncExecutor) {
@@ -0,0 +1,184 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncOverflowPolicy;
+import com.equalexperts.logging.AsyncShutdownFallback;
+import com.equalexperts.logging.AsyncWaitStrategy;
+import com.equalexperts.logging.LogMessage;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+
+/**
+ * Tuning options for asynchronous OpsLogger instances.
+ * Empty optionals select a sensible default.
+ */
+public class AsyncSettings {
+    public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+    public static final AsyncOverflowPolicy DEFAULT_OVERFLOW_POLICY = AsyncOverflowPolicy.BLOCK;
+    public static final Duration DEFAULT_OVERFLOW_TIMEOUT = Duration.ofMillis(100);
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+    public static final Duration DEFAULT_BATCH_LINGER = Duration.ZERO;
+    public static final boolean DEFAULT_OFF_HEAP_BUFFER = false;
+    public static final int DEFAULT_STRIPES = 1;
+    public static final int DEFAULT_FORMATTING_THREADS = 0;
+    public static final boolean DEFAULT_FORMAT_ON_CALLING_THREAD = false;
+    public static final AsyncWaitStrategy DEFAULT_WAIT_STRATEGY = AsyncWaitStrategy.BLOCKING;
+    public static final boolean DEFAULT_SHARED_WRITER = false;
+    public static final AsyncShutdownFallback DEFAULT_SHUTDOWN_FALLBACK = AsyncShutdownFallback.DISCARD;
+    public static final boolean DEFAULT_SHUTDOWN_HOOK = false;
+    public static final AsyncSettings DEFAULTS = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    private final Optional<Integer> bufferCapacity;
+    private final Optional<AsyncOverflowPolicy> overflowPolicy;
+    private final Optional<Duration> overflowTimeout;
+    private final Optional<Integer> maxBatchSize;
+    private final Optional<Long> maxBatchBytes;
+    private final Optional<Duration> batchLinger;
+    private final Optional<Boolean> offHeapBuffer;
+    private final Optional<Integer> stripes;
+    private final Optional<Integer> formattingThreads;
+    private final Optional<Boolean> formatOnCallingThread;
+    private final Optional<AsyncWaitStrategy> waitStrategy;
+    private final Optional<Boolean> sharedWriter;
+    private final Optional<Duration> closeTimeout;
+    private final Optional<AsyncShutdownFallback> shutdownFallback;
+    private final Optional<Boolean> shutdownHook;
+
+    public AsyncSettings(Optional<Integer> bufferCapacity, Optional<AsyncOverflowPolicy> overflowPolicy, Optional<Duration> overflowTimeout,
+                         Optional<Integer> maxBatchSize, Optional<Long> maxBatchBytes, Optional<Duration> batchLinger, Optional<Boolean> offHeapBuffer,
+                         Optional<Integer> stripes, Optional<Integer> formattingThreads, Optional<Boolean> formatOnCallingThread,
+                         Optional<AsyncWaitStrategy> waitStrategy, Optional<Boolean> sharedWriter,
+                         Optional<Duration> closeTimeout, Optional<AsyncShutdownFallback> shutdownFallback, Optional<Boolean> shutdownHook) {
+        this.bufferCapacity = bufferCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowTimeout = overflowTimeout;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.batchLinger = batchLinger;
+        this.offHeapBuffer = offHeapBuffer;
+        this.stripes = stripes;
+        this.formattingThreads = formattingThreads;
+        this.formatOnCallingThread = formatOnCallingThread;
+        this.waitStrategy = waitStrategy;
+        this.sharedWriter = sharedWriter;
+        this.closeTimeout = closeTimeout;
+        this.shutdownFallback = shutdownFallback;
+        this.shutdownHook = shutdownHook;
+    }
+
+    public <T> RingBuffer<T> configureRingBuffer() {
+        return new RingBuffer<>(getBufferCapacity(), getWaitStrategy());
+    }
+
+    /**
+     * With several stripes, the buffer capacity is shared between them.
+     */
+    public <T extends Enum<T> & LogMessage> RingBuffer<LogicalLogRecord<T>> configureRecordRing() {
+        if (getStripes() > 1) {
+            int stripeCapacity = Math.max(1, getBufferCapacity() / getStripes());
+            return new StripedRecordRing<T>(getStripes(), getWaitStrategy(), () -> this.<T>configureRecordRing(stripeCapacity));
+        }
+        return configureRecordRing(getBufferCapacity());
+    }
+
+    private <T extends Enum<T> & LogMessage> RingBuffer<LogicalLogRecord<T>> configureRecordRing(int capacity) {
+        if (isOffHeapBuffer()) {
+            return new EncodedRecordRing<>(capacity, getWaitStrategy());
+        }
+        return new RingBuffer<>(capacity, getWaitStrategy());
+    }
+
+    /**
+     * Without formatting threads, or with a shared writer, the background thread formats records itself.
+     */
+    public Optional<FormattingPool> configureFormattingPool() {
+        if (getFormattingThreads() == 0 || isSharedWriter()) {
+            return Optional.empty();
+        }
+        return Optional.of(new FormattingPool(getFormattingThreads(), Executors.defaultThreadFactory()));
+    }
+
+    public Optional<SharedWriterService> configureSharedWriter() {
+        if (isSharedWriter()) {
+            return Optional.of(SharedWriterService.getShared());
+        }
+        return Optional.empty();
+    }
+
+    public ShutdownPolicy configureShutdownPolicy() {
+        return new ShutdownPolicy(getCloseTimeout(), getShutdownFallback(), isShutdownHook(), System.err);
+    }
+
+    /**
+     * A batch never holds more records than the buffer, so the batch size is capped at the buffer capacity.
+     */
+    public AdaptiveBatchPolicy configureBatchPolicy() {
+        return new AdaptiveBatchPolicy(Math.min(getMaxBatchSize(), getBufferCapacity()), getMaxBatchBytes(), getBatchLinger());
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity.orElse(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public AsyncOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy.orElse(DEFAULT_OVERFLOW_POLICY);
+    }
+
+    public Duration getOverflowTimeout() {
+        return overflowTimeout.orElse(DEFAULT_OVERFLOW_TIMEOUT);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize.orElse(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes.orElse(DEFAULT_MAX_BATCH_BYTES);
+    }
+
+    public Duration getBatchLinger() {
+        return batchLinger.orElse(DEFAULT_BATCH_LINGER);
+    }
+
+    public boolean isOffHeapBuffer() {
+        return offHeapBuffer.orElse(DEFAULT_OFF_HEAP_BUFFER);
+    }
+
+    public int getStripes() {
+        return stripes.orElse(DEFAULT_STRIPES);
+    }
+
+    public int getFormattingThreads() {
+        return formattingThreads.orElse(DEFAULT_FORMATTING_THREADS);
+    }
+
+    public boolean isFormatOnCallingThread() {
+        return formatOnCallingThread.orElse(DEFAULT_FORMAT_ON_CALLING_THREAD);
+    }
+
+    public AsyncWaitStrategy getWaitStrategy() {
+        return waitStrategy.orElse(DEFAULT_WAIT_STRATEGY);
+    }
+
+    public boolean isSharedWriter() {
+        return sharedWriter.orElse(DEFAULT_SHARED_WRITER);
+    }
+
+    /**
+     * @return how long closing waits for queued records to be written, or empty (the default) to wait as long as it takes
+     */
+    public Optional<Duration> getCloseTimeout() {
+        return closeTimeout;
+    }
+
+    public AsyncShutdownFallback getShutdownFallback() {
+        return shutdownFallback.orElse(DEFAULT_SHUTDOWN_FALLBACK);
+    }
+
+    public boolean isShutdownHook() {
+        return shutdownHook.orElse(DEFAULT_SHUTDOWN_HOOK);
+    }
+}
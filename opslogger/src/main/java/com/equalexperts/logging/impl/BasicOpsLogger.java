@@ -6,10 +6,14 @@ import com.equalexperts.logging.OpsLogger;
 
 import java.time.Clock;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 
-/** OpsLogger which writes each entry directly to the Destination */
+/**
+ * OpsLogger which writes each entry directly to the Destination.
+ * With write combining enabled, entries logged by contending threads are written in a shared batch.
+ */
 
 public class BasicOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger<T> {
 
@@ -18,18 +22,24 @@ public class BasicOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger
     private final Destination<T> destination;
     private final Lock lock;
     private final DiagnosticContextSupplier diagnosticContextSupplier;
+    private final CombiningPublisher<T> combiningPublisher; //null unless write combining is enabled
     private final boolean closeable;
 
     public BasicOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Lock lock, Consumer<Throwable> errorHandler) {
-        this(clock, diagnosticContextSupplier, destination, lock, errorHandler, true);
+        this(clock, diagnosticContextSupplier, destination, lock, errorHandler, false);
     }
 
-    private BasicOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Lock lock, Consumer<Throwable> errorHandler, boolean closeable) {
+    public BasicOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Lock lock, Consumer<Throwable> errorHandler, boolean writeCombining) {
+        this(clock, diagnosticContextSupplier, destination, lock, errorHandler, writeCombining ? new CombiningPublisher<>(destination, lock) : null, true);
+    }
+
+    private BasicOpsLogger(Clock clock, DiagnosticContextSupplier diagnosticContextSupplier, Destination<T> destination, Lock lock, Consumer<Throwable> errorHandler, CombiningPublisher<T> combiningPublisher, boolean closeable) {
         this.clock = clock;
         this.diagnosticContextSupplier = diagnosticContextSupplier;
         this.destination = destination;
         this.lock = lock;
         this.errorHandler = errorHandler;
+        this.combiningPublisher = combiningPublisher;
         this.closeable = closeable;
     }
 
@@ -50,6 +60,33 @@ public class BasicOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger
         }
     }
 
+    @Override
+    public void logLong(T message, long detail) {
+        try {
+            publish(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), detail));
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+        }
+    }
+
+    @Override
+    public void logLong(T message, long first, long second) {
+        try {
+            publish(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), first, second));
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+        }
+    }
+
+    @Override
+    public void logLong(T message, String first, long second) {
+        try {
+            publish(new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, Optional.empty(), first, second));
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+        }
+    }
+
     @Override
     public void logThrowable(T message, Throwable cause, Object... details) {
         try {
@@ -62,14 +99,57 @@ public class BasicOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger
 
     @Override
     public BasicOpsLogger<T> with(DiagnosticContextSupplier override) {
-        return new BasicOpsLogger<>(clock, override, destination, lock, errorHandler, false);
+        return new BasicOpsLogger<>(clock, override, destination, lock, errorHandler, combiningPublisher, false);
+    }
+
+    /**
+     * The message is written before this returns, so a message which cannot be written fails the future
+     * straight away (as well as being passed to the error handler).
+     */
+    @Override
+    public CompletableFuture<Void> logDurable(T message, Object... details) {
+        try {
+            publish(constructLogRecord(message, Optional.empty(), details));
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(t);
+            return result;
+        }
+        return flush(true);
+    }
+
+    /**
+     * Each message has already been written, so only forcing has to wait. Forcing holds the lock, so that no
+     * other thread is part way through writing a message.
+     */
+    @Override
+    public CompletableFuture<Void> flush(boolean force) {
+        if (!force) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        lock.lock();
+        try {
+            destination.force();
+            result.complete(null);
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            lock.unlock();
+        }
+        return result;
     }
 
     private LogicalLogRecord<T> constructLogRecord(T message, Optional<Throwable> o, Object... details) {
-        return new LogicalLogRecord<>(clock.instant(), new DiagnosticContext(diagnosticContextSupplier), message, o, details);
+        return new LogicalLogRecord<>(clock.millis(), new DiagnosticContext(diagnosticContextSupplier), message, o, details);
     }
 
     private void publish(LogicalLogRecord<T> record) throws Exception {
+        if (combiningPublisher != null) {
+            combiningPublisher.publish(record);
+            return;
+        }
         lock.lock();
         try {
             destination.beginBatch();
@@ -100,4 +180,8 @@ public class BasicOpsLogger<T extends Enum<T> & LogMessage> implements OpsLogger
     }
 
     public Consumer<Throwable> getErrorHandler() { return errorHandler; }
+
+    public boolean isWriteCombining() {
+        return combiningPublisher != null;
+    }
 }
@@ -14,6 +14,7 @@ public class BasicOpsLoggerFactory {
         DiagnosticContextSupplier correlationIdSupplier = infrastructureFactory.configureContextSupplier();
         Consumer<Throwable> errorHandler = infrastructureFactory.configureErrorHandler();
         Destination<T> destination = infrastructureFactory.configureDestination();
-        return new BasicOpsLogger<>(Clock.systemUTC(), correlationIdSupplier, destination, new ReentrantLock(), errorHandler);
+        boolean writeCombining = infrastructureFactory.configureSyncSettings().isWriteCombining();
+        return new BasicOpsLogger<>(Clock.systemUTC(), correlationIdSupplier, destination, new ReentrantLock(), errorHandler, writeCombining);
     }
 }
@@ -0,0 +1,172 @@
+package com.equalexperts.logging.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes the lines of a batch as UTF-8 into a pool of direct buffers, so that the whole batch can be
+ * written to a channel with a single write (or a single gathering write, when it spans several buffers).
+ *
+ * The buffers, and the StringBuilder each record is formatted into, are reused from batch to batch.
+ * Instances are not thread-safe.
+ */
+public class BatchEncoder {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    static final int MAX_RETAINED_BUFFERS = 16;
+    static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final int bufferSize;
+    private final CharsetEncoder encoder = UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder();
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private char[] chars = new char[1024];
+    private ByteBuffer[] gatheringArray = new ByteBuffer[0];
+    private int currentBuffer = 0;
+    private int lineCount = 0;
+
+    public BatchEncoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    BatchEncoder(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void append(LogicalLogRecord<?> record, StackTraceProcessor processor) throws Exception {
+        line.setLength(0);
+        record.formatTo(processor, line);
+        line.append(LINE_SEPARATOR);
+        encode(line);
+        lineCount++;
+    }
+
+    public void appendLine(String text) {
+        line.setLength(0);
+        line.append(text);
+        line.append(LINE_SEPARATOR);
+        encode(line);
+        lineCount++;
+    }
+
+    /**
+     * @return the number of bytes encoded since the last write
+     */
+    public long size() {
+        long result = 0;
+        for (int i = 0; i <= currentBuffer && i < buffers.size(); i++) {
+            result += buffers.get(i).position();
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of lines encoded since the last write
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Decode everything encoded since the last write onto the end of the target, without starting again.
+     * For destinations which cannot take the bytes as they are.
+     */
+    public void decodeTo(StringBuilder target) {
+        for (int i = 0; i < usedBufferCount(); i++) {
+            ByteBuffer encoded = buffers.get(i).duplicate();
+            encoded.flip();
+            target.append(UTF_8.decode(encoded)); //the encoder never splits a character across buffers
+        }
+    }
+
+    /**
+     * Write everything encoded since the last write to the channel, and start again.
+     */
+    public void writeTo(GatheringByteChannel channel) throws IOException {
+        try {
+            int count = usedBufferCount();
+            if (count == 1) {
+                ByteBuffer buffer = buffers.get(0);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } else if (count > 1) {
+                if (gatheringArray.length < count) {
+                    gatheringArray = new ByteBuffer[count];
+                }
+                long remaining = 0;
+                for (int i = 0; i < count; i++) {
+                    gatheringArray[i] = buffers.get(i);
+                    gatheringArray[i].flip();
+                    remaining += gatheringArray[i].remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(gatheringArray, 0, count);
+                }
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Discard everything encoded since the last write.
+     */
+    public void clear() {
+        for (ByteBuffer buffer : buffers) {
+            buffer.clear();
+        }
+        while (buffers.size() > MAX_RETAINED_BUFFERS) {
+            buffers.remove(buffers.size() - 1); //don't hold on to the memory used by an unusually large batch
+        }
+        currentBuffer = 0;
+        lineCount = 0;
+    }
+
+    private int usedBufferCount() {
+        if (buffers.isEmpty()) {
+            return 0;
+        }
+        return buffers.get(currentBuffer).position() > 0 ? currentBuffer + 1 : currentBuffer;
+    }
+
+    private void encode(StringBuilder text) {
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        text.getChars(0, length, chars, 0);
+        CharBuffer in = CharBuffer.wrap(chars, 0, length);
+        encoder.reset();
+        while (encoder.encode(in, buffer(), true).isOverflow()) {
+            nextBuffer();
+        }
+        while (encoder.flush(buffer()).isOverflow()) {
+            nextBuffer();
+        }
+    }
+
+    private ByteBuffer buffer() {
+        if (buffers.isEmpty()) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        return buffers.get(currentBuffer);
+    }
+
+    private void nextBuffer() {
+        currentBuffer++;
+        if (currentBuffer == buffers.size()) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes records to a Destination synchronously, combining the records of contending threads into one batch.
+ *
+ * Each record is formatted by the calling thread before it is queued, so no formatting happens while the lock
+ * is held. Whichever thread obtains the lock writes every queued record in a single destination batch, while
+ * the other callers park until their own record has been written. A call to publish therefore still does not
+ * return until its record has been written, but N contending threads no longer need N batches (and, for a
+ * PathDestination, N file opens).
+ */
+class CombiningPublisher<T extends Enum<T> & LogMessage> {
+    static final int MAX_COMBINED_RECORDS = 1024;
+
+    private final Destination<T> destination;
+    private final Lock lock;
+    private final Queue<PendingLine> pending = new ConcurrentLinkedQueue<>();
+    private final List<PendingLine> batch = new ArrayList<>(); //only used while holding the lock
+
+    CombiningPublisher(Destination<T> destination, Lock lock) {
+        this.destination = destination;
+        this.lock = lock;
+    }
+
+    void publish(LogicalLogRecord<T> record) throws Exception {
+        PendingLine line = new PendingLine(record.format(destination.getStackTraceProcessor()), Thread.currentThread());
+        pending.add(line);
+        while (!line.complete) {
+            if (lock.tryLock()) {
+                combineAndUnlock();
+            } else if (Thread.currentThread().isInterrupted()) {
+                //parking would return immediately, so wait for the lock instead of spinning
+                lock.lock();
+                combineAndUnlock();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        if (line.failure != null) {
+            rethrow(line.failure);
+        }
+    }
+
+    private void combineAndUnlock() {
+        try {
+            PendingLine next;
+            while (batch.size() < MAX_COMBINED_RECORDS && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                writeBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        //hand over to a waiting thread, which will write anything queued while this batch was being written
+        PendingLine waiting = pending.peek();
+        if (waiting != null) {
+            LockSupport.unpark(waiting.thread);
+        }
+    }
+
+    private void writeBatch() {
+        try {
+            destination.beginBatch();
+            try {
+                for (PendingLine line : batch) {
+                    try {
+                        destination.publishSyntheticLine(line.text);
+                    } catch (Throwable t) {
+                        line.failure = t;
+                    }
+                }
+            } finally {
+                destination.endBatch();
+            }
+        } catch (Throwable t) {
+            for (PendingLine line : batch) {
+                if (line.failure == null) {
+                    line.failure = t;
+                }
+            }
+        } finally {
+            for (PendingLine line : batch) {
+                line.complete = true;
+                LockSupport.unpark(line.thread);
+            }
+            batch.clear();
+        }
+    }
+
+    private static void rethrow(Throwable t) throws Exception {
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        throw (Error) t;
+    }
+
+    private static final class PendingLine {
+        final String text;
+        final Thread thread;
+        Throwable failure; //published by the volatile write to complete
+        volatile boolean complete;
+
+        PendingLine(String text, Thread thread) {
+            this.text = text;
+            this.thread = thread;
+        }
+    }
+}
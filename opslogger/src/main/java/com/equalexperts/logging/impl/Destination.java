@@ -2,12 +2,56 @@ package com.equalexperts.logging.impl;
 
 import com.equalexperts.logging.LogMessage;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface Destination<T extends Enum<T> & LogMessage> extends AutoCloseable {
     void beginBatch() throws Exception;
 
     void publish(LogicalLogRecord<T> record) throws Exception;
 
+    /**
+     * Publish several records at once. Like publish, this must be called between beginBatch and endBatch.
+     * A record which cannot be published is passed to the error handler, and does not stop the rest of the
+     * records from being published. Implementations can override this to handle the records as a whole.
+     */
+    default void publishBatch(List<LogicalLogRecord<T>> records, Consumer<Throwable> errorHandler) throws Exception {
+        for (LogicalLogRecord<T> record : records) {
+            try {
+                publish(record);
+            } catch (Throwable t) {
+                errorHandler.accept(t);
+            }
+        }
+    }
+
+    /**
+     * Write a line which has already been formatted, such as one produced by the logger itself
+     * rather than by application code. Like publish, this must be called between beginBatch and endBatch.
+     */
+    void publishSyntheticLine(String line) throws Exception;
+
+    /**
+     * Write lines which have already been formatted and encoded as UTF-8 elsewhere, such as by a FormattingPool.
+     * Like publish, this must be called between beginBatch and endBatch. The lines may be cleared once this returns.
+     * Implementations which write bytes should override this to write the encoded lines as they are.
+     */
+    default void publishEncoded(BatchEncoder lines) throws Exception {
+        if (lines.getLineCount() > 0) {
+            StringBuilder text = new StringBuilder();
+            lines.decodeTo(text);
+            text.setLength(text.length() - BatchEncoder.LINE_SEPARATOR.length()); //publishSyntheticLine adds the last one back
+            publishSyntheticLine(text.toString());
+        }
+    }
+
     void endBatch() throws Exception;
 
+    /**
+     * Make sure that everything written so far has reached the storage device. This must not be called during a batch.
+     */
+    default void force() throws Exception {
+    }
+
     StackTraceProcessor getStackTraceProcessor();
 }
@@ -3,6 +3,7 @@ package com.equalexperts.logging.impl;
 import com.equalexperts.logging.DiagnosticContextSupplier;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -11,19 +12,56 @@ import static java.util.stream.Collectors.joining;
 
 public class DiagnosticContext {
 
+    private static final ThreadLocal<DiagnosticContext> LAST_CONTEXT = new ThreadLocal<>();
+
     private final Map<String, String> context;
+    private final Map<String, String> contents; //the modifiable copy behind context, iterated without wrapping each entry
 
     public DiagnosticContext(DiagnosticContextSupplier supplier) {
-        if (supplier == null) {
-            context = Collections.emptyMap();
+        this((supplier == null) ? null : supplier.getMessageContext());
+    }
+
+    private DiagnosticContext(Map<String, String> rawContext) {
+        if (rawContext == null) {
+            contents = Collections.emptyMap();
+            context = contents;
         } else {
-            Map<String, String> rawContext = supplier.getMessageContext();
-            if (rawContext == null) {
-                context = Collections.emptyMap();
-            } else {
-                context = Collections.unmodifiableMap(new LinkedHashMap<>(rawContext));
+            contents = new LinkedHashMap<>(rawContext);
+            context = Collections.unmodifiableMap(contents);
+        }
+    }
+
+    /**
+     * Obtain the current diagnostic context from the supplier, reusing the context most recently
+     * obtained by this thread when it has the same contents. Instances are immutable, so sharing
+     * them is safe, and a thread whose context rarely changes does not allocate a new one for each record.
+     */
+    static DiagnosticContext reuseOrCreate(DiagnosticContextSupplier supplier) {
+        Map<String, String> rawContext = (supplier == null) ? null : supplier.getMessageContext();
+        DiagnosticContext last = LAST_CONTEXT.get();
+        if ((last != null) && last.hasContents(rawContext)) {
+            return last;
+        }
+        DiagnosticContext result = new DiagnosticContext(rawContext);
+        LAST_CONTEXT.set(result);
+        return result;
+    }
+
+    private boolean hasContents(Map<String, String> rawContext) {
+        if ((rawContext == null) || rawContext.isEmpty()) {
+            return contents.isEmpty();
+        }
+        if (rawContext.size() != contents.size()) {
+            return false;
+        }
+        Iterator<Map.Entry<String, String>> existing = contents.entrySet().iterator();
+        for (Map.Entry<String, String> entry : rawContext.entrySet()) {
+            Map.Entry<String, String> existingEntry = existing.next();
+            if (!Objects.equals(entry.getKey(), existingEntry.getKey()) || !Objects.equals(entry.getValue(), existingEntry.getValue())) {
+                return false; //the order matters too, because it is the printed order
             }
         }
+        return true;
     }
 
     public Map<String, String> getContext() {
@@ -41,4 +79,17 @@ public class DiagnosticContext {
             result.append(",");
         }
     }
+
+    /**
+     * @return roughly how many characters printContextInformation will produce, without producing them
+     */
+    int estimateLength() {
+        int result = 0;
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            if (entry.getValue() != null) {
+                result += entry.getKey().length() + entry.getValue().length() + 2;
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,86 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.equalexperts.logging.impl.LogicalLogRecord.ISO_ALWAYS_WITH_MILLISECONDS;
+
+/**
+ * Counts log records dropped by an asynchronous logger, by message code, and produces
+ * a summary line describing what was lost since the previous summary.
+ *
+ * Drops may be recorded from any thread. Summaries should only be taken by the background thread.
+ */
+public class DroppedRecordTracker<T extends Enum<T> & LogMessage> {
+    static final String SUMMARY_MESSAGE_CODE = "OPSLOGGER-DROPPED";
+
+    private final ConcurrentMap<T, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+    private volatile Instant since;
+
+    public DroppedRecordTracker(Instant since) {
+        this.since = since;
+    }
+
+    public void recordDrop(T message) {
+        counts.computeIfAbsent(message, k -> new AtomicLong()).incrementAndGet();
+        pending.incrementAndGet();
+    }
+
+    public boolean hasDrops() {
+        return pending.get() > 0;
+    }
+
+    public Instant getSince() {
+        return since;
+    }
+
+    /**
+     * Produce a summary of the records dropped since the previous summary, and start counting again.
+     * @param now the timestamp of the summary, and the start of the next counting period
+     * @return the summary line, or an empty optional when nothing was dropped
+     */
+    public Optional<String> takeSummary(Instant now) {
+        Map<T, Long> snapshot = new TreeMap<>(); //sorted by declaration order
+        long total = 0;
+        for (Map.Entry<T, AtomicLong> entry : counts.entrySet()) {
+            long count = entry.getValue().getAndSet(0);
+            if (count > 0) {
+                snapshot.put(entry.getKey(), count);
+                total += count;
+            }
+        }
+        pending.addAndGet(-total);
+        Instant previous = since;
+        since = now;
+        if (total == 0) {
+            return Optional.empty();
+        }
+
+        StringBuilder result = new StringBuilder();
+        ISO_ALWAYS_WITH_MILLISECONDS.formatTo(now, result);
+        result.append(",");
+        result.append(SUMMARY_MESSAGE_CODE);
+        result.append(",");
+        result.append(total);
+        result.append(" records dropped since ");
+        ISO_ALWAYS_WITH_MILLISECONDS.formatTo(previous, result);
+        String separator = " (";
+        for (Map.Entry<T, Long> entry : snapshot.entrySet()) {
+            result.append(separator);
+            result.append(entry.getKey().getMessageCode());
+            result.append("=");
+            result.append(entry.getValue());
+            separator = ";";
+        }
+        result.append(")");
+        return Optional.of(result.toString());
+    }
+}
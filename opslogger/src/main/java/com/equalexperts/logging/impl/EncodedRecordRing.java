@@ -0,0 +1,110 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncWaitStrategy;
+import com.equalexperts.logging.LogMessage;
+import com.equalexperts.logging.impl.LogicalLogRecord.DetailShape;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * A RingBuffer of log records which are encoded into preallocated slots instead of being held as objects.
+ *
+ * The message ordinal, timestamp, detail shape and any primitive details are written into an off-heap
+ * (direct) buffer. The diagnostic context, cause, and any string or object details are already objects,
+ * so references to them are kept in a preallocated on-heap side slot. Records are decoded when the
+ * consumer removes them.
+ *
+ * Producers which use the publishRecord methods do not allocate a LogicalLogRecord at all. Records
+ * added through the usual RingBuffer methods are encoded in the same way.
+ */
+public class EncodedRecordRing<T extends Enum<T> & LogMessage> extends RingBuffer<LogicalLogRecord<T>> {
+    private static final int TIMESTAMP_OFFSET = 0;
+    private static final int FIRST_LONG_OFFSET = 8;
+    private static final int SECOND_LONG_OFFSET = 16;
+    private static final int ORDINAL_OFFSET = 24;
+    private static final int SHAPE_OFFSET = 28;
+    static final int SLOT_SIZE = 32;
+
+    private static final int CONTEXT_REFERENCE = 0;
+    private static final int CAUSE_REFERENCE = 1;
+    private static final int DETAILS_REFERENCE = 2;
+    private static final int REFERENCES_PER_SLOT = 3;
+
+    private static final DetailShape[] SHAPES = DetailShape.values();
+
+    private final ByteBuffer slots;
+    private final Object[] references;
+    private volatile T[] messages;
+
+    public EncodedRecordRing(int requestedCapacity) {
+        this(requestedCapacity, AsyncWaitStrategy.BLOCKING);
+    }
+
+    public EncodedRecordRing(int requestedCapacity, AsyncWaitStrategy waitStrategy) {
+        super(requestedCapacity, waitStrategy);
+        slots = ByteBuffer.allocateDirect(getCapacity() * SLOT_SIZE);
+        references = new Object[getCapacity() * REFERENCES_PER_SLOT];
+    }
+
+    /**
+     * Write a record into the slot claimed for sequence, and commit it.
+     * The message and details must already have been checked, because this must not fail.
+     * @param details the details array for OBJECTS, the string detail for STRING_LONG or FORMATTED, otherwise ignored
+     */
+    void publishRecord(long sequence, T message, long timestamp, DiagnosticContext context, Throwable cause, DetailShape shape, Object details, long first, long second) {
+        write(sequence, message, timestamp, context, cause, shape, details, first, second);
+        commit(sequence);
+    }
+
+    @Override
+    protected void store(long sequence, LogicalLogRecord<T> record) {
+        DetailShape shape = record.getDetailShape();
+        Object details = null;
+        if (shape == DetailShape.OBJECTS) {
+            details = record.getDetails();
+        } else if (shape == DetailShape.STRING_LONG || shape == DetailShape.FORMATTED) {
+            details = record.getTextDetail();
+        }
+        write(sequence, record.getMessage(), record.getEpochMillis(), record.getDiagnosticContext(), record.getCause().orElse(null),
+                shape, details, record.getFirstLongDetail(), record.getSecondLongDetail());
+    }
+
+    @Override
+    protected LogicalLogRecord<T> load(long sequence) {
+        int offset = indexOf(sequence) * SLOT_SIZE;
+        int reference = indexOf(sequence) * REFERENCES_PER_SLOT;
+        DetailShape shape = SHAPES[slots.getInt(offset + SHAPE_OFFSET)];
+        Object details = references[reference + DETAILS_REFERENCE];
+        LogicalLogRecord<T> result = new LogicalLogRecord<>(
+                slots.getLong(offset + TIMESTAMP_OFFSET),
+                (DiagnosticContext) references[reference + CONTEXT_REFERENCE],
+                messages[slots.getInt(offset + ORDINAL_OFFSET)],
+                Optional.ofNullable((Throwable) references[reference + CAUSE_REFERENCE]),
+                shape,
+                (shape == DetailShape.OBJECTS) ? (Object[]) details : LogicalLogRecord.NO_DETAILS,
+                (shape == DetailShape.STRING_LONG || shape == DetailShape.FORMATTED) ? (String) details : null,
+                slots.getLong(offset + FIRST_LONG_OFFSET),
+                slots.getLong(offset + SECOND_LONG_OFFSET));
+        references[reference + CONTEXT_REFERENCE] = null;
+        references[reference + CAUSE_REFERENCE] = null;
+        references[reference + DETAILS_REFERENCE] = null;
+        return result;
+    }
+
+    private void write(long sequence, T message, long timestamp, DiagnosticContext context, Throwable cause, DetailShape shape, Object details, long first, long second) {
+        if (messages == null) {
+            messages = message.getDeclaringClass().getEnumConstants(); //once per ring, so that ordinals can be decoded
+        }
+        int offset = indexOf(sequence) * SLOT_SIZE;
+        slots.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+        slots.putLong(offset + FIRST_LONG_OFFSET, first);
+        slots.putLong(offset + SECOND_LONG_OFFSET, second);
+        slots.putInt(offset + ORDINAL_OFFSET, message.ordinal());
+        slots.putInt(offset + SHAPE_OFFSET, shape.ordinal());
+        int reference = indexOf(sequence) * REFERENCES_PER_SLOT;
+        references[reference + CONTEXT_REFERENCE] = context;
+        references[reference + CAUSE_REFERENCE] = cause;
+        references[reference + DETAILS_REFERENCE] = details;
+    }
+}
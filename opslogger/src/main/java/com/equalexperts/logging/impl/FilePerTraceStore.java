@@ -0,0 +1,90 @@
+package com.equalexperts.logging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores each stack trace in a file of its own, named after its fingerprint.
+ */
+public class FilePerTraceStore implements StackTraceStore {
+    private static final String PREFIX = "stacktrace_";
+    private static final String SUFFIX = ".txt";
+
+    private final Path directory;
+
+    public FilePerTraceStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String store(String fingerprint, Throwable throwable) throws IOException {
+        Path stackTraceFile = calculateFilenameForFingerprint(fingerprint);
+        writeStacktraceToPathIfNecessary(throwable, stackTraceFile);
+        return stackTraceFile.toUri().toString();
+    }
+
+    @Override
+    public String uriFor(String fingerprint) {
+        return calculateFilenameForFingerprint(fingerprint).toUri().toString();
+    }
+
+    @Override
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public List<StoredStackTraces> listStored() throws IOException {
+        List<StoredStackTraces> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    String fingerprint = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+                    result.add(new StoredStackTraces(file, attributes.size(), attributes.lastModifiedTime().toMillis(), Collections.singleton(fingerprint)));
+                } catch (NoSuchFileException ignore) {
+                    //deleted since it was listed
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(StoredStackTraces stored) throws IOException {
+        Files.deleteIfExists(stored.getFile());
+    }
+
+    private void writeStacktraceToPathIfNecessary(Throwable throwable, Path stackTraceFile) throws IOException {
+        if (Files.notExists(stackTraceFile)) {
+            ByteArrayOutputStream stackTrace = new ByteArrayOutputStream();
+            try (PrintStream out = new PrintStream(stackTrace)) {
+                throwable.printStackTrace(out);
+            }
+            try {
+                Files.write(stackTraceFile, stackTrace.toByteArray(), CREATE_NEW, WRITE); //in one write, instead of one per line
+            } catch (FileAlreadyExistsException ignore) {
+                //the exception is being written to (probably right now)
+            }
+        }
+    }
+
+    private Path calculateFilenameForFingerprint(String fingerprint) {
+        String filePath = PREFIX + fingerprint + SUFFIX;
+        return directory.resolve(filePath);
+    }
+}
@@ -1,58 +1,239 @@
 package com.equalexperts.logging.impl;
 
-import java.io.IOException;
-import java.io.PrintStream;
-import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.file.Path;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
-import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
- * A stack trace processor that stores the stack trace in a uniquely fingerprinted file in a given destination.
- * The URI of the file (whether new or existing) is included in the log message.
+ * A stack trace processor that stores the stack trace in a StackTraceStore (by default, a uniquely fingerprinted
+ * file in a given destination). The URI of the stored stack trace (whether new or existing) is included in the
+ * log message.
+ *
+ * The URIs of stack traces which are known to be stored are remembered by fingerprint, in a bounded cache which
+ * evicts the least recently used fingerprint, so a repeated stack trace does not touch the filesystem again. The
+ * fingerprint of each throwable instance is also remembered (without keeping the throwable reachable), so
+ * logging the same instance again does not print its stack trace again. A stack trace file which is deleted
+ * while its fingerprint is cached is not written again until the fingerprint is evicted.
+ *
+ * When a StackTracePersistenceWorker is provided, new stack traces are stored by the worker, and the URI
+ * is included in the log message straight away. The URI is cached from then on, unless the worker cannot store
+ * the stack trace.
+ *
+ * When a StackTraceRetention is provided, every fingerprint processed is recorded as seen, and a fingerprint
+ * whose stack trace has been deleted by the retention is forgotten, so that it is stored again.
  */
 public class FilesystemStackTraceProcessor implements StackTraceProcessor {
-    private final Path destination;
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final StackTraceStore store;
     private final ThrowableFingerprintCalculator fingerprintCalculator;
+    private final int cacheSize;
+    private final Optional<StackTracePersistenceWorker> persistenceWorker;
+    private final Optional<StackTraceRetention> retention;
+    private final Map<String, String> urisByFingerprint;
+    private final Consumer<String> evictionListener;
+    private final FingerprintsByThrowable fingerprintsByThrowable = new FingerprintsByThrowable();
 
     public FilesystemStackTraceProcessor(Path destination, ThrowableFingerprintCalculator fingerprintCalculator) {
-        this.destination = destination;
+        this(destination, fingerprintCalculator, DEFAULT_CACHE_SIZE);
+    }
+
+    public FilesystemStackTraceProcessor(Path destination, ThrowableFingerprintCalculator fingerprintCalculator, int cacheSize) {
+        this(new FilePerTraceStore(destination), fingerprintCalculator, cacheSize, Optional.empty());
+    }
+
+    public FilesystemStackTraceProcessor(StackTraceStore store, ThrowableFingerprintCalculator fingerprintCalculator, int cacheSize, Optional<StackTracePersistenceWorker> persistenceWorker) {
+        this(store, fingerprintCalculator, cacheSize, persistenceWorker, Optional.empty());
+    }
+
+    /**
+     * @param cacheSize the number of fingerprints whose stack trace URI is remembered
+     * @param persistenceWorker stores new stack traces, instead of the logging thread. It must store them in the same store.
+     * @param retention limits the size of the same store
+     */
+    public FilesystemStackTraceProcessor(StackTraceStore store, ThrowableFingerprintCalculator fingerprintCalculator, int cacheSize, Optional<StackTracePersistenceWorker> persistenceWorker, Optional<StackTraceRetention> retention) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("cache size must be positive");
+        }
+        this.store = store;
         this.fingerprintCalculator = fingerprintCalculator;
+        this.cacheSize = cacheSize;
+        this.persistenceWorker = persistenceWorker;
+        this.retention = retention;
+        this.urisByFingerprint = Collections.synchronizedMap(new RecentlyUsedUris(cacheSize));
+        this.evictionListener = urisByFingerprint::remove;
+        retention.ifPresent(r -> r.addEvictionListener(evictionListener));
     }
 
     @Override
     public void process(Throwable throwable, StringBuilder output) throws Exception {
-        Path stackTraceFile = calculateFilenameForException(throwable);
-        writeStacktraceToPathIfNecessary(throwable, stackTraceFile);
-        printSubstituteMessage(output, throwable, stackTraceFile);
+        String fingerprint = calculateFingerprint(throwable);
+        if (retention.isPresent()) {
+            retention.get().touch(fingerprint);
+        }
+        String stackTraceUri = urisByFingerprint.get(fingerprint);
+        if (stackTraceUri == null) {
+            stackTraceUri = persistInBackground(fingerprint, throwable);
+            if (stackTraceUri == null) {
+                stackTraceUri = store.store(fingerprint, throwable);
+                urisByFingerprint.put(fingerprint, stackTraceUri);
+            }
+        }
+        printSubstituteMessage(output, throwable, stackTraceUri);
+    }
+
+    /**
+     * Stop listening to the retention and close it, store any stack traces which are still queued for the persistence worker, stop it,
+     * and close the store.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            if (retention.isPresent()) {
+                retention.get().removeEvictionListener(evictionListener);
+                retention.get().close();
+            }
+            if (persistenceWorker.isPresent()) {
+                persistenceWorker.get().close();
+            }
+        } finally {
+            store.close();
+        }
     }
 
     public Path getDestination() {
-        return destination;
+        return store.getDirectory();
     }
 
-    private void writeStacktraceToPathIfNecessary(Throwable throwable, Path stackTraceFile) throws IOException {
-        if (Files.notExists(stackTraceFile)) {
-            try(PrintStream out = new PrintStream(Files.newOutputStream(stackTraceFile, CREATE_NEW, WRITE))) {
-                throwable.printStackTrace(out);
-            } catch (FileAlreadyExistsException ignore) {
-                //the exception is being written to (probably right now)
-            }
+    public StackTraceStore getStore() {
+        return store;
+    }
+
+    public ThrowableFingerprintCalculator getFingerprintCalculator() {
+        return fingerprintCalculator;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public Optional<StackTracePersistenceWorker> getPersistenceWorker() {
+        return persistenceWorker;
+    }
+
+    public Optional<StackTraceRetention> getRetention() {
+        return retention;
+    }
+
+    private String calculateFingerprint(Throwable throwable) {
+        String fingerprint = fingerprintsByThrowable.get(throwable);
+        if (fingerprint == null) {
+            fingerprint = fingerprintCalculator.calculateFingerprint(throwable);
+            fingerprintsByThrowable.put(throwable, fingerprint);
         }
+        return fingerprint;
     }
 
-    private void printSubstituteMessage(StringBuilder output, Throwable throwable, Path stackTraceFile) {
+    /*
+        Returns the URI of the stack trace once it is queued, or null when the caller must store it.
+     */
+    private String persistInBackground(String fingerprint, Throwable throwable) {
+        if (!persistenceWorker.isPresent()) {
+            return null;
+        }
+        String stackTraceUri = store.uriFor(fingerprint);
+        urisByFingerprint.put(fingerprint, stackTraceUri); //before submitting, so that a failed write can remove it
+        if (persistenceWorker.get().submit(fingerprint, throwable, () -> urisByFingerprint.remove(fingerprint, stackTraceUri))) {
+            return stackTraceUri;
+        }
+        urisByFingerprint.remove(fingerprint, stackTraceUri); //the queue is full
+        return null;
+    }
+
+    private void printSubstituteMessage(StringBuilder output, Throwable throwable, String stackTraceUri) {
         output.append(throwable.toString());
         output.append(" (");
-        output.append(stackTraceFile.toUri().toString());
+        output.append(stackTraceUri);
         output.append(")");
     }
 
-    private Path calculateFilenameForException(Throwable throwable) {
-        String fingerprint = fingerprintCalculator.calculateFingerprint(throwable);
-        String filePath = "stacktrace_" + fingerprint + ".txt";
-        return destination.resolve(filePath);
+    /**
+     * Evicts the least recently used fingerprint once there are more than the maximum size.
+     */
+    private static class RecentlyUsedUris extends LinkedHashMap<String, String> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        RecentlyUsedUris(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * Fingerprints by throwable instance. A Throwable subclass may override equals and hashCode, so the throwables
+     * are compared by identity, and they are weakly referenced so that an entry goes once its throwable is collected.
+     */
+    private static class FingerprintsByThrowable {
+        private final Map<IdentityWeakReference, String> fingerprints = new HashMap<>();
+        private final ReferenceQueue<Throwable> collected = new ReferenceQueue<>();
+
+        synchronized String get(Throwable throwable) {
+            removeCollectedEntries();
+            return fingerprints.get(new IdentityWeakReference(throwable, null));
+        }
+
+        synchronized void put(Throwable throwable, String fingerprint) {
+            removeCollectedEntries();
+            fingerprints.put(new IdentityWeakReference(throwable, collected), fingerprint);
+        }
+
+        private void removeCollectedEntries() {
+            Reference<? extends Throwable> reference;
+            while ((reference = collected.poll()) != null) {
+                fingerprints.remove(reference);
+            }
+        }
+    }
+
+    private static class IdentityWeakReference extends WeakReference<Throwable> {
+        private final int hashCode;
+
+        IdentityWeakReference(Throwable throwable, ReferenceQueue<Throwable> queue) {
+            super(throwable, queue);
+            this.hashCode = System.identityHashCode(throwable);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * A collected reference is only equal to itself, so that it can still be removed.
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof IdentityWeakReference)) {
+                return false;
+            }
+            Throwable throwable = get();
+            return (throwable != null) && (throwable == ((IdentityWeakReference) other).get());
+        }
     }
 }
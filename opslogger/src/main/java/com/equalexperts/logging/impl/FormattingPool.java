@@ -0,0 +1,121 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * A pool of threads which format batches of log records for the background thread of an AsyncOpsLogger.
+ *
+ * Formatting (including stack trace processing) is usually the most expensive part of writing a record,
+ * so batches are formatted in parallel while the background thread writes earlier batches. The background
+ * thread writes the formatted batches in the order it submitted them, so record order is preserved.
+ *
+ * The threads also encode the lines as UTF-8, into BatchEncoders which the background thread hands back
+ * once it has written them, so the background thread only has to write the bytes.
+ */
+public class FormattingPool {
+    private final ExecutorService executor;
+    private final int threads;
+    private final BlockingQueue<BatchEncoder> idleEncoders;
+
+    public FormattingPool(int threads, ThreadFactory threadFactory) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+        this.idleEncoders = new ArrayBlockingQueue<>(getMaxBatchesInFlight());
+    }
+
+    /**
+     * @param maxChunkBytes the approximate number of encoded bytes after which the lines are split into another chunk
+     */
+    <T extends Enum<T> & LogMessage> Future<FormattedBatch> submit(List<LogicalLogRecord<T>> records, StackTraceProcessor processor, long maxChunkBytes) {
+        return executor.submit(() -> FormattedBatch.format(records, processor, maxChunkBytes, this::takeEncoder));
+    }
+
+    /**
+     * Hand back the chunks of a batch once they have been written, so that their buffers can be reused.
+     */
+    void recycle(FormattedBatch batch) {
+        for (BatchEncoder chunk : batch.getChunks()) {
+            chunk.clear();
+            idleEncoders.offer(chunk); //any beyond the limit are left for the garbage collector
+        }
+    }
+
+    private BatchEncoder takeEncoder() {
+        BatchEncoder result = idleEncoders.poll();
+        return (result == null) ? new BatchEncoder() : result;
+    }
+
+    /**
+     * @return the number of batches which may be formatting or waiting to be written at once,
+     * enough for every thread to format one batch while the previous one is written
+     */
+    public int getMaxBatchesInFlight() {
+        return threads * 2;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Stop the threads once they have formatted every batch already submitted.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * The encoded lines of a batch, split into chunks of roughly the maximum size of a written batch,
+     * and the problems formatting any records which could not be included.
+     */
+    static class FormattedBatch {
+        private final List<BatchEncoder> chunks;
+        private final List<Throwable> failures;
+
+        private FormattedBatch(List<BatchEncoder> chunks, List<Throwable> failures) {
+            this.chunks = chunks;
+            this.failures = failures;
+        }
+
+        static <T extends Enum<T> & LogMessage> FormattedBatch format(List<LogicalLogRecord<T>> records, StackTraceProcessor processor,
+                                                                     long maxChunkBytes, Supplier<BatchEncoder> encoders) {
+            List<BatchEncoder> chunks = new ArrayList<>(1);
+            List<Throwable> failures = new ArrayList<>(0);
+            BatchEncoder chunk = encoders.get();
+            chunks.add(chunk);
+            for (LogicalLogRecord<T> record : records) {
+                if (chunk.getLineCount() > 0 && chunk.size() >= maxChunkBytes) {
+                    chunk = encoders.get();
+                    chunks.add(chunk);
+                }
+                try {
+                    chunk.append(record, processor); //nothing is encoded unless the record formats successfully
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }
+            return new FormattedBatch(chunks, failures);
+        }
+
+        List<BatchEncoder> getChunks() {
+            return chunks;
+        }
+
+        List<Throwable> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -25,14 +25,26 @@ public class InfrastructureFactory {
     private final Optional<Path> stackTraceStoragePath;
     private final Optional<DiagnosticContextSupplier> correlationIdSupplier;
     private final Optional<Consumer<Throwable>> errorHandler;
+    private final AsyncSettings asyncSettings;
+    private final PathSettings pathSettings;
+    private final SyncSettings syncSettings;
+    private final StackTraceSettings stackTraceSettings;
 
     public InfrastructureFactory(Optional<Path> logfilePath, Optional<PrintStream> loggerOutput, Optional<Boolean> storeStackTracesInFilesystem, Optional<Path> stackTraceStoragePath, Optional<DiagnosticContextSupplier> correlationIdSupplier, Optional<Consumer<Throwable>> errorHandler) {
+        this(logfilePath, loggerOutput, storeStackTracesInFilesystem, stackTraceStoragePath, correlationIdSupplier, errorHandler, AsyncSettings.DEFAULTS, PathSettings.DEFAULTS, SyncSettings.DEFAULTS, StackTraceSettings.DEFAULTS);
+    }
+
+    public InfrastructureFactory(Optional<Path> logfilePath, Optional<PrintStream> loggerOutput, Optional<Boolean> storeStackTracesInFilesystem, Optional<Path> stackTraceStoragePath, Optional<DiagnosticContextSupplier> correlationIdSupplier, Optional<Consumer<Throwable>> errorHandler, AsyncSettings asyncSettings, PathSettings pathSettings, SyncSettings syncSettings, StackTraceSettings stackTraceSettings) {
         this.logfilePath = logfilePath;
         this.loggerOutput = loggerOutput;
         this.storeStackTracesInFilesystem = storeStackTracesInFilesystem;
         this.stackTraceStoragePath = stackTraceStoragePath;
         this.correlationIdSupplier = correlationIdSupplier;
         this.errorHandler = errorHandler;
+        this.asyncSettings = asyncSettings;
+        this.pathSettings = pathSettings;
+        this.syncSettings = syncSettings;
+        this.stackTraceSettings = stackTraceSettings;
     }
 
     public <T extends Enum<T> & LogMessage> Destination<T> configureDestination() throws UncheckedIOException {
@@ -44,7 +56,7 @@ public class InfrastructureFactory {
                 }
                 FileChannelProvider provider = new FileChannelProvider(logfilePath.get());
                 ActiveRotationRegistry registry = ActiveRotationRegistry.getSingletonInstance();
-                return registry.add(new PathDestination<>(provider, stackTraceProcessor, registry));
+                return registry.add(new PathDestination<>(provider, stackTraceProcessor, registry, pathSettings.getKeepFileOpen(), pathSettings.configureRotationDetector(logfilePath.get()), pathSettings.getFileLockingPolicy()));
             }
             return new OutputStreamDestination<>(loggerOutput.orElse(System.out), stackTraceProcessor);
         } catch (IOException e) {
@@ -60,13 +72,26 @@ public class InfrastructureFactory {
         return correlationIdSupplier.orElse(EMPTY_CONTEXT_SUPPLIER);
     }
 
+    public AsyncSettings configureAsyncSettings() {
+        return asyncSettings;
+    }
+
+    public SyncSettings configureSyncSettings() {
+        return syncSettings;
+    }
+
+    public StackTraceSettings configureStackTraceSettings() {
+        return stackTraceSettings;
+    }
+
     private StackTraceProcessor configureStackTraceProcessor() throws IOException {
         Optional<Path> storagePath = this.determineStackTraceProcessorPath();
         if (storagePath.isPresent()) {
             if (!Files.isSymbolicLink(storagePath.get())) {
                 Files.createDirectories(storagePath.get());
             }
-            return new FilesystemStackTraceProcessor(storagePath.get(), new ThrowableFingerprintCalculator());
+            StackTraceStore store = stackTraceSettings.configureStore(storagePath.get());
+            return new FilesystemStackTraceProcessor(store, stackTraceSettings.configureFingerprintCalculator(), FilesystemStackTraceProcessor.DEFAULT_CACHE_SIZE, stackTraceSettings.configurePersistenceWorker(store, configureErrorHandler()), stackTraceSettings.configureRetention(store, configureErrorHandler()));
         }
         return new SimpleStackTraceProcessor();
     }
@@ -117,5 +142,9 @@ public class InfrastructureFactory {
     public Optional<Consumer<Throwable>> getErrorHandler() {
         return errorHandler;
     }
+
+    public PathSettings getPathSettings() {
+        return pathSettings;
+    }
     //endregion
 }
@@ -11,42 +11,171 @@ import static java.util.Objects.requireNonNull;
 
 public class LogicalLogRecord<T extends Enum<T> & LogMessage> {
 
-    private static final DateTimeFormatter ISO_ALWAYS_WITH_MILLISECONDS = new DateTimeFormatterBuilder()
+    static final DateTimeFormatter ISO_ALWAYS_WITH_MILLISECONDS = new DateTimeFormatterBuilder()
             .parseStrict()
             .parseCaseInsensitive()
             .appendInstant(3)
             .toFormatter();
+    private static final TimestampRenderer TIMESTAMP_RENDERER = new TimestampRenderer(ISO_ALWAYS_WITH_MILLISECONDS);
+    private static final int TIMESTAMP_LENGTH = "2014-02-01T14:57:12.500Z".length();
+    private static final int NOMINAL_DETAIL_LENGTH = 16;
+    private static final int NOMINAL_STACK_TRACE_LENGTH = 128;
+    static final Object[] NO_DETAILS = new Object[0];
 
-    private final Instant timestamp;
+    private final long timestamp;
     private final T message;
     private final Optional<Throwable> cause;
     private final Object[] details;
+    private final DetailShape shape;
+    private final String textDetail;
+    private final long firstLongDetail;
+    private final long secondLongDetail;
     private final DiagnosticContext diagnosticContext;
 
     public LogicalLogRecord(Instant timestamp, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, Object... details) {
-        this.timestamp = requireNonNull(timestamp, "parameter timestamp must not be null");
+        this(requireNonNull(timestamp, "parameter timestamp must not be null").toEpochMilli(), diagnosticContext, message, cause, details);
+    }
+
+    /**
+     * Create a record with a timestamp in milliseconds since the epoch, which saves allocating an Instant.
+     */
+    public LogicalLogRecord(long epochMillis, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, Object... details) {
+        this(epochMillis, diagnosticContext, message, cause, DetailShape.OBJECTS, requireNonNull(details, "parameter details must not be null"), null, 0L, 0L);
+    }
+
+    /*
+        Records with primitive details keep them unboxed until they are formatted,
+        which saves allocating a details array and boxing each value.
+     */
+    LogicalLogRecord(long epochMillis, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, long detail) {
+        this(epochMillis, diagnosticContext, message, cause, DetailShape.LONG, NO_DETAILS, null, detail, 0L);
+    }
+
+    LogicalLogRecord(long epochMillis, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, long first, long second) {
+        this(epochMillis, diagnosticContext, message, cause, DetailShape.LONG_LONG, NO_DETAILS, null, first, second);
+    }
+
+    LogicalLogRecord(long epochMillis, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, String first, long second) {
+        this(epochMillis, diagnosticContext, message, cause, DetailShape.STRING_LONG, NO_DETAILS, first, second, 0L);
+    }
+
+    LogicalLogRecord(long epochMillis, DiagnosticContext diagnosticContext, T message, Optional<Throwable> cause, DetailShape shape, Object[] details, String textDetail, long firstLongDetail, long secondLongDetail) {
+        this.timestamp = epochMillis;
         this.diagnosticContext = requireNonNull(diagnosticContext, "parameter diagnosticContext must not be null");
         this.message = requireNonNull(message, "parameter message must not be null");
         this.cause = requireNonNull(cause, "parameter cause must not be null");
-        this.details = requireNonNull(details, "parameter details must not be null");
+        this.shape = shape;
+        this.details = details;
+        this.textDetail = textDetail;
+        this.firstLongDetail = firstLongDetail;
+        this.secondLongDetail = secondLongDetail;
+    }
+
+    /**
+     * Format the record now, and return a record which only holds the formatted text, along with
+     * the timestamp and message. Details which are changed later do not affect the formatted text,
+     * and the details and cause are no longer referenced.
+     */
+    LogicalLogRecord<T> preformat(StackTraceProcessor processor) throws Exception {
+        return new LogicalLogRecord<>(timestamp, diagnosticContext, message, Optional.empty(), DetailShape.FORMATTED, NO_DETAILS, format(processor), 0L, 0L);
     }
 
     public String format(StackTraceProcessor processor) throws Exception {
         StringBuilder result = new StringBuilder();
-        ISO_ALWAYS_WITH_MILLISECONDS.formatTo(timestamp, result);
+        formatTo(processor, result);
+        return result.toString();
+    }
+
+    /**
+     * Append the formatted record to the provided StringBuilder, which allows the caller to reuse it.
+     */
+    public void formatTo(StackTraceProcessor processor, StringBuilder result) throws Exception {
+        if (shape == DetailShape.FORMATTED) {
+            result.append(textDetail);
+            return;
+        }
+        TIMESTAMP_RENDERER.renderTo(timestamp, result);
         result.append(",");
         diagnosticContext.printContextInformation(result);
         result.append(message.getMessageCode());
         result.append(",");
-        new Formatter(result).format(message.getMessagePattern(), details);
+        formatDetailsTo(MessageTemplate.forMessage(message), result);
         if (cause.isPresent()) {
             result.append(" "); //the gap between the basic message and the stack trace
             processor.process(cause.get(), result);
         }
-        return result.toString();
+    }
+
+    private void formatDetailsTo(MessageTemplate template, StringBuilder result) {
+        switch (shape) {
+            case LONG:
+                template.formatTo(result, firstLongDetail);
+                break;
+            case LONG_LONG:
+                template.formatTo(result, firstLongDetail, secondLongDetail);
+                break;
+            case STRING_LONG:
+                template.formatTo(result, textDetail, firstLongDetail);
+                break;
+            default:
+                template.formatTo(result, details);
+        }
+    }
+
+    /**
+     * Append the record without formatting it: the timestamp in milliseconds, the message code, the details
+     * and the cause (without its stack trace), separated by commas. Used when there is no time to format records.
+     */
+    void formatRawTo(StringBuilder result) {
+        if (shape == DetailShape.FORMATTED) {
+            result.append(textDetail);
+            return;
+        }
+        result.append(timestamp).append(',').append(message.getMessageCode());
+        for (Object detail : getDetails()) {
+            result.append(',').append(detail);
+        }
+        if (cause.isPresent()) {
+            result.append(',').append(cause.get());
+        }
+    }
+
+    /**
+     * Roughly how many characters format will produce, without formatting the record.
+     * Used to bound the size of a batch; details which are not character sequences and
+     * stack traces are counted at a nominal size.
+     */
+    int estimateFormattedLength() {
+        if (shape == DetailShape.FORMATTED) {
+            return textDetail.length();
+        }
+        int result = TIMESTAMP_LENGTH + diagnosticContext.estimateLength() + message.getMessageCode().length() + message.getMessagePattern().length() + 2;
+        switch (shape) {
+            case LONG:
+                result += NOMINAL_DETAIL_LENGTH;
+                break;
+            case LONG_LONG:
+                result += 2 * NOMINAL_DETAIL_LENGTH;
+                break;
+            case STRING_LONG:
+                result += ((textDetail == null) ? NOMINAL_DETAIL_LENGTH : textDetail.length()) + NOMINAL_DETAIL_LENGTH;
+                break;
+            default:
+                for (Object detail : details) {
+                    result += (detail instanceof CharSequence) ? ((CharSequence) detail).length() : NOMINAL_DETAIL_LENGTH;
+                }
+        }
+        if (cause.isPresent()) {
+            result += NOMINAL_STACK_TRACE_LENGTH;
+        }
+        return result;
     }
 
     Instant getTimestamp() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+    long getEpochMillis() {
         return timestamp;
     }
 
@@ -60,7 +189,41 @@ public class LogicalLogRecord<T extends Enum<T> & LogMessage> {
         return cause;
     }
 
+    /**
+     * @return the details, with any primitive details boxed, or no details once the record has been preformatted
+     */
     Object[] getDetails() {
-        return details;
+        switch (shape) {
+            case LONG:
+                return new Object[] {firstLongDetail};
+            case LONG_LONG:
+                return new Object[] {firstLongDetail, secondLongDetail};
+            case STRING_LONG:
+                return new Object[] {textDetail, firstLongDetail};
+            default:
+                return details;
+        }
+    }
+
+    DetailShape getDetailShape() {
+        return shape;
+    }
+
+    String getTextDetail() {
+        return textDetail;
     }
+
+    long getFirstLongDetail() {
+        return firstLongDetail;
+    }
+
+    long getSecondLongDetail() {
+        return secondLongDetail;
+    }
+
+    /**
+     * How the details of a record are held: as an array of objects, as unboxed primitives,
+     * or already formatted (with the whole formatted record as the text detail).
+     */
+    enum DetailShape { OBJECTS, LONG, LONG_LONG, STRING_LONG, FORMATTED }
 }
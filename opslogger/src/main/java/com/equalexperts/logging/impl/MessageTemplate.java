@@ -0,0 +1,199 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * A message pattern compiled once, so that records can be formatted without re-parsing it.
+ *
+ * The simple conversions %s, %d and %x (without flags, widths or argument indexes), %n and %%
+ * are rendered directly, without regard to the locale. A pattern using anything else is formatted
+ * with java.util.Formatter, as is any record whose details do not suit the fast conversions,
+ * so that the output and exceptions match Formatter. A pattern without conversions is copied as-is.
+ *
+ * Templates are compiled for every constant of a LogMessage enum the first time one is formatted,
+ * and are cached for the lifetime of the enum class. Message patterns are expected not to change.
+ */
+class MessageTemplate {
+
+    private static final ClassValue<EnumMap<?, MessageTemplate>> TEMPLATES = new ClassValue<EnumMap<?, MessageTemplate>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected EnumMap<?, MessageTemplate> computeValue(Class<?> type) {
+            return compileAll(type.asSubclass(Enum.class));
+        }
+    };
+
+    private final String pattern;
+    private final String[] literals;
+    private final char[] conversions;
+
+    private MessageTemplate(String pattern, String[] literals, char[] conversions) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.conversions = conversions;
+    }
+
+    static <T extends Enum<T> & LogMessage> MessageTemplate forMessage(T message) {
+        return TEMPLATES.get(message.getDeclaringClass()).get(message);
+    }
+
+    static MessageTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder conversions = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            char conversion = (i < pattern.length()) ? pattern.charAt(i++) : 0;
+            switch (conversion) {
+                case '%':
+                    literal.append('%');
+                    break;
+                case 'n':
+                    literal.append(System.lineSeparator());
+                    break;
+                case 's':
+                case 'd':
+                case 'x':
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    conversions.append(conversion);
+                    break;
+                default:
+                    return new MessageTemplate(pattern, null, null); //flags, widths, indexes and other conversions
+            }
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(pattern, literals.toArray(new String[literals.size()]), conversions.toString().toCharArray());
+    }
+
+    void formatTo(StringBuilder result, Object... details) {
+        if ((conversions == null) || (details.length < conversions.length)) {
+            formatWithFormatter(result, details);
+            return;
+        }
+        int start = result.length();
+        result.append(literals[0]);
+        for (int i = 0; i < conversions.length; i++) {
+            if (!render(conversions[i], details[i], result)) {
+                result.setLength(start);
+                formatWithFormatter(result, details);
+                return;
+            }
+            result.append(literals[i + 1]);
+        }
+    }
+
+    /*
+        Primitive details can always be rendered directly by the simple conversions, so these
+        only box them when the pattern needs a Formatter or more details than were provided.
+     */
+    void formatTo(StringBuilder result, long detail) {
+        if (!canRenderDirectly(1)) {
+            formatWithFormatter(result, new Object[] {detail});
+            return;
+        }
+        result.append(literals[0]);
+        if (conversions.length == 1) {
+            renderLong(conversions[0], detail, result);
+            result.append(literals[1]);
+        }
+    }
+
+    void formatTo(StringBuilder result, long first, long second) {
+        if (!canRenderDirectly(2)) {
+            formatWithFormatter(result, new Object[] {first, second});
+            return;
+        }
+        result.append(literals[0]);
+        for (int i = 0; i < conversions.length; i++) {
+            renderLong(conversions[i], (i == 0) ? first : second, result);
+            result.append(literals[i + 1]);
+        }
+    }
+
+    void formatTo(StringBuilder result, String first, long second) {
+        if (!canRenderDirectly(2) || ((conversions.length > 0) && (first != null) && (conversions[0] != 's'))) {
+            formatWithFormatter(result, new Object[] {first, second}); //a string only suits %s
+            return;
+        }
+        result.append(literals[0]);
+        for (int i = 0; i < conversions.length; i++) {
+            if (i == 0) {
+                result.append(first);
+            } else {
+                renderLong(conversions[i], second, result);
+            }
+            result.append(literals[i + 1]);
+        }
+    }
+
+    boolean isCompiled() {
+        return conversions != null;
+    }
+
+    private void formatWithFormatter(StringBuilder result, Object[] details) {
+        new Formatter(result).format(pattern, details);
+    }
+
+    private boolean canRenderDirectly(int detailCount) {
+        return (conversions != null) && (conversions.length <= detailCount);
+    }
+
+    private static void renderLong(char conversion, long detail, StringBuilder result) {
+        if (conversion == 'x') {
+            result.append(Long.toHexString(detail));
+        } else {
+            result.append(detail);
+        }
+    }
+
+    private static boolean render(char conversion, Object detail, StringBuilder result) {
+        if (detail == null) {
+            result.append("null");
+            return true;
+        }
+        switch (conversion) {
+            case 's':
+                if (detail instanceof Formattable) {
+                    return false;
+                }
+                result.append(detail.toString());
+                return true;
+            case 'd':
+                if ((detail instanceof Integer) || (detail instanceof Long) || (detail instanceof Short) || (detail instanceof Byte)) {
+                    result.append(((Number) detail).longValue());
+                    return true;
+                }
+                return false;
+            default: //x
+                if (detail instanceof Integer) {
+                    result.append(Integer.toHexString((Integer) detail));
+                    return true;
+                }
+                if (detail instanceof Long) {
+                    result.append(Long.toHexString((Long) detail));
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    private static <E extends Enum<E>> EnumMap<E, MessageTemplate> compileAll(Class<E> type) {
+        EnumMap<E, MessageTemplate> result = new EnumMap<>(type);
+        for (E constant : type.getEnumConstants()) {
+            result.put(constant, compile(((LogMessage) constant).getMessagePattern()));
+        }
+        return result;
+    }
+}
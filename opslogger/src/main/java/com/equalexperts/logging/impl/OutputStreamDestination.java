@@ -3,15 +3,21 @@ package com.equalexperts.logging.impl;
 import com.equalexperts.logging.LogMessage;
 
 import java.io.PrintStream;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A Destination which formats LogicalLogRecords with the provided stackTraceProcessor and prints it to <code>output</code>.
  * Also knows that if output is System.out or System.err, it should not be closed when done.
+ *
+ * A batch of records is printed with a single call, so its lines are not interleaved with other output.
  */
 
 public class OutputStreamDestination<T extends Enum<T> & LogMessage> implements Destination<T> {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
     private final PrintStream output;
     private final StackTraceProcessor stackTraceProcessor;
+    private final StringBuilder batchBuffer = new StringBuilder();
 
     public OutputStreamDestination(PrintStream output, StackTraceProcessor stackTraceProcessor) {
         this.output = output;
@@ -28,13 +34,52 @@ public class OutputStreamDestination<T extends Enum<T> & LogMessage> implements
         output.println(record.format(stackTraceProcessor));
     }
 
+    @Override
+    public void publishBatch(List<LogicalLogRecord<T>> records, Consumer<Throwable> errorHandler) throws Exception {
+        batchBuffer.setLength(0);
+        for (LogicalLogRecord<T> record : records) {
+            int start = batchBuffer.length();
+            try {
+                record.formatTo(stackTraceProcessor, batchBuffer);
+                batchBuffer.append(LINE_SEPARATOR);
+            } catch (Throwable t) {
+                batchBuffer.setLength(start); //discard anything formatted before the problem
+                errorHandler.accept(t);
+            }
+        }
+        output.print(batchBuffer);
+        batchBuffer.setLength(0);
+    }
+
+    @Override
+    public void publishSyntheticLine(String line) throws Exception {
+        output.println(line);
+    }
+
+    /**
+     * The stream applies its own character encoding, so the lines are decoded and printed all at once.
+     */
+    @Override
+    public void publishEncoded(BatchEncoder lines) throws Exception {
+        batchBuffer.setLength(0);
+        lines.decodeTo(batchBuffer);
+        output.print(batchBuffer);
+        batchBuffer.setLength(0);
+    }
+
     @Override
     public void endBatch() throws Exception {
 
     }
 
+    @Override
+    public void force() throws Exception {
+        output.flush();
+    }
+
     @Override
     public void close() throws Exception {
+        stackTraceProcessor.close();
         if (!streamIsSpecial()) {
             output.close();
         }
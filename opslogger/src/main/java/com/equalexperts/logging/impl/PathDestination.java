@@ -1,46 +1,138 @@
 package com.equalexperts.logging.impl;
 
+import com.equalexperts.logging.FileLockingPolicy;
 import com.equalexperts.logging.LogMessage;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * Writes batches of log records to a path.
  *
  * A file lock is acquired and held during the batch and released afterwards.
- * This allows external log rotation to work.
+ * This allows external log rotation to work. The FileLockingPolicy can instead try to
+ * acquire the lock with a bounded backoff, or skip locking entirely.
+ *
+ * Records are encoded into memory as they are published, and the whole batch is appended
+ * to the file with a single write when the batch ends.
+ *
+ * By default, the file is opened at the start of each batch and closed at the end.
+ * When keepFileOpen is set, the file stays open between batches, and is only reopened
+ * at the start of the first batch after refreshFileHandles has been called, or after
+ * the rotation detector notices that the file has been moved or truncated.
  * @param <T>
  */
 public class PathDestination<T extends Enum<T> & LogMessage> implements Destination<T>, ActiveRotationSupport {
-    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    static final int MAX_TRY_LOCK_ATTEMPTS = 8;
+    static final long INITIAL_TRY_LOCK_BACKOFF_NANOS = 50_000L;
 
     private final FileChannelProvider provider;
     private final StackTraceProcessor processor;
     private final ActiveRotationRegistry registry;
+    private final boolean keepFileOpen;
+    private final Optional<RotationDetector> rotationDetector;
+    private final FileLockingPolicy lockingPolicy;
+    private final BatchEncoder encoder = new BatchEncoder();
+    private final AtomicLong lockContentionCount = new AtomicLong();
     private FileChannelProvider.Result currentChannel;
     private FileLock currentLock;
+    private boolean batchOpen = false;
     private volatile CountDownLatch latch = new CountDownLatch(0);
+    private volatile boolean reopenRequested = false;
 
     public PathDestination(FileChannelProvider provider, StackTraceProcessor processor, ActiveRotationRegistry registry) {
+        this(provider, processor, registry, PathSettings.DEFAULT_KEEP_FILE_OPEN, Optional.empty(), PathSettings.DEFAULT_FILE_LOCKING_POLICY);
+    }
+
+    public PathDestination(FileChannelProvider provider, StackTraceProcessor processor, ActiveRotationRegistry registry, boolean keepFileOpen, Optional<RotationDetector> rotationDetector, FileLockingPolicy lockingPolicy) {
         this.provider = provider;
         this.processor = processor;
         this.registry = registry;
+        this.keepFileOpen = keepFileOpen;
+        this.rotationDetector = rotationDetector;
+        this.lockingPolicy = lockingPolicy;
     }
 
     @Override
     public void beginBatch() throws Exception {
         closeAnyOpenBatch();
         latch = new CountDownLatch(1);
-        currentChannel = provider.getChannel();
-        currentLock = currentChannel.channel.lock();
+        if (reopenRequested || rotationDetected()) {
+            reopenRequested = false;
+            closeChannel();
+        }
+        if (currentChannel == null) {
+            currentChannel = provider.getChannel();
+            if (rotationDetector.isPresent()) {
+                rotationDetector.get().fileOpened();
+            }
+        }
+        currentLock = lock(currentChannel.channel);
+        batchOpen = true;
     }
 
     @Override
     public void publish(LogicalLogRecord<T> record) throws Exception {
-        String physicalRecord = record.format(processor);
-        currentChannel.writer.write(physicalRecord + LINE_SEPARATOR); //one call avoids a partial flush
+        encoder.append(record, processor);
+    }
+
+    /**
+     * The batch is encoded straight into the buffers which are written (with a gathering write) when the batch ends.
+     */
+    @Override
+    public void publishBatch(List<LogicalLogRecord<T>> records, Consumer<Throwable> errorHandler) throws Exception {
+        for (LogicalLogRecord<T> record : records) {
+            try {
+                encoder.append(record, processor);
+            } catch (Throwable t) {
+                errorHandler.accept(t); //a record which can't be formatted is skipped
+            }
+        }
+    }
+
+    @Override
+    public void publishSyntheticLine(String line) throws Exception {
+        encoder.appendLine(line);
+    }
+
+    /**
+     * Lines encoded elsewhere are written straight away (with a single gathering write) while the batch holds the
+     * file, after anything already published in the batch.
+     */
+    @Override
+    public void publishEncoded(BatchEncoder lines) throws Exception {
+        encoder.writeTo(currentChannel.channel);
+        lines.writeTo(currentChannel.channel);
+    }
+
+    private FileLock lock(FileChannel channel) throws IOException {
+        switch (lockingPolicy) {
+            case NONE:
+                return null;
+            case TRY_LOCK_WITH_BACKOFF:
+                long backoff = INITIAL_TRY_LOCK_BACKOFF_NANOS;
+                for (int attempt = 0; attempt < MAX_TRY_LOCK_ATTEMPTS; attempt++) {
+                    FileLock lock = channel.tryLock();
+                    if (lock != null) {
+                        return lock;
+                    }
+                    if (attempt == 0) {
+                        lockContentionCount.incrementAndGet();
+                    }
+                    LockSupport.parkNanos(backoff);
+                    backoff *= 2;
+                }
+                return channel.lock(); //backing off has not helped, so wait for the lock
+            default:
+                return channel.lock();
+        }
     }
 
     @Override
@@ -50,23 +142,63 @@ public class PathDestination<T extends Enum<T> & LogMessage> implements Destinat
 
     private void closeAnyOpenBatch() throws IOException {
         latch.countDown();
+        if (batchOpen) {
+            encoder.writeTo(currentChannel.channel);
+            if (currentLock != null) {
+                currentLock.release();
+                currentLock = null;
+            }
+            batchOpen = false;
+            if (!keepFileOpen) {
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Forces the file which is kept open, or otherwise opens the file to force it. Data written through
+     * any channel of a file is forced, so the channel which wrote it does not have to be open.
+     */
+    @Override
+    public void force() throws Exception {
+        if (currentChannel != null) {
+            currentChannel.channel.force(false);
+            return;
+        }
+        try (FileChannelProvider.Result channel = provider.getChannel()) {
+            channel.channel.force(false);
+        }
+    }
+
+    private boolean rotationDetected() throws IOException {
+        return (currentChannel != null) && rotationDetector.isPresent() && rotationDetector.get().rotationDetected();
+    }
+
+    private void closeChannel() throws IOException {
         if (currentChannel != null) {
-            currentChannel.writer.flush();
-            currentLock.release();
-            currentChannel.writer.close();
-            currentLock = null;
+            FileChannelProvider.Result channel = currentChannel;
             currentChannel = null;
+            channel.close();
         }
     }
 
     @Override
     public void close() throws Exception {
         closeAnyOpenBatch();
+        closeChannel();
+        if (rotationDetector.isPresent()) {
+            rotationDetector.get().close();
+        }
         registry.remove(this);
+        processor.close();
     }
 
+    /**
+     * Wait until any open batch has ended. The next batch writes to a newly opened file.
+     */
     @Override
     public void refreshFileHandles() throws InterruptedException {
+        reopenRequested = true;
         latch.await();
     }
 
@@ -79,6 +211,25 @@ public class PathDestination<T extends Enum<T> & LogMessage> implements Destinat
         return processor;
     }
 
+    public boolean isKeepFileOpen() {
+        return keepFileOpen;
+    }
+
+    public Optional<RotationDetector> getRotationDetector() {
+        return rotationDetector;
+    }
+
+    public FileLockingPolicy getLockingPolicy() {
+        return lockingPolicy;
+    }
+
+    /**
+     * @return how many batches found the file locked by another process, when trying to lock it with backoff
+     */
+    public long getLockContentionCount() {
+        return lockContentionCount.get();
+    }
+
     public ActiveRotationRegistry getActiveRotationRegistry() {
         return registry;
     }
@@ -0,0 +1,59 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.FileLockingPolicy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Tuning options for OpsLogger instances which write to a path.
+ * Empty optionals select a sensible default.
+ */
+public class PathSettings {
+    public static final boolean DEFAULT_KEEP_FILE_OPEN = false;
+    public static final Duration DEFAULT_ROTATION_CHECK_INTERVAL = Duration.ofSeconds(1);
+    public static final boolean DEFAULT_WATCH_FOR_ROTATION = false;
+    public static final FileLockingPolicy DEFAULT_FILE_LOCKING_POLICY = FileLockingPolicy.EXCLUSIVE_LOCK;
+    public static final PathSettings DEFAULTS = new PathSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    private final Optional<Boolean> keepFileOpen;
+    private final Optional<Duration> rotationCheckInterval;
+    private final Optional<Boolean> watchForRotation;
+    private final Optional<FileLockingPolicy> fileLockingPolicy;
+
+    public PathSettings(Optional<Boolean> keepFileOpen, Optional<Duration> rotationCheckInterval, Optional<Boolean> watchForRotation, Optional<FileLockingPolicy> fileLockingPolicy) {
+        this.keepFileOpen = keepFileOpen;
+        this.rotationCheckInterval = rotationCheckInterval;
+        this.watchForRotation = watchForRotation;
+        this.fileLockingPolicy = fileLockingPolicy;
+    }
+
+    /**
+     * Files which are reopened for every batch never need rotation detection.
+     */
+    public Optional<RotationDetector> configureRotationDetector(Path path) throws IOException {
+        if (!getKeepFileOpen()) {
+            return Optional.empty();
+        }
+        return Optional.of(new RotationDetector(path, getRotationCheckInterval(), getWatchForRotation(), Clock.systemUTC()));
+    }
+
+    public boolean getKeepFileOpen() {
+        return keepFileOpen.orElse(DEFAULT_KEEP_FILE_OPEN);
+    }
+
+    public Duration getRotationCheckInterval() {
+        return rotationCheckInterval.orElse(DEFAULT_ROTATION_CHECK_INTERVAL);
+    }
+
+    public boolean getWatchForRotation() {
+        return watchForRotation.orElse(DEFAULT_WATCH_FOR_ROTATION);
+    }
+
+    public FileLockingPolicy getFileLockingPolicy() {
+        return fileLockingPolicy.orElse(DEFAULT_FILE_LOCKING_POLICY);
+    }
+}
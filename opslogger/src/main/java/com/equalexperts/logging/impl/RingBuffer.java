@@ -0,0 +1,403 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncWaitStrategy;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A fixed-capacity, multi-producer queue with a single waiting consumer, backed by a preallocated array.
+ *
+ * Producers claim a sequence number, write into the corresponding slot and then publish the slot.
+ * No per-entry objects are allocated, and memory use is capped by the capacity.
+ *
+ * Entries are normally removed by the consumer, but any thread may {@link #poll() poll} the oldest entry,
+ * which allows producers to evict entries when the buffer is full.
+ *
+ * While no entries are available, the consumer waits according to an AsyncWaitStrategy. Producers only
+ * unpark the consumer once it has registered to be woken, which it does just before parking, so they do
+ * not pay for a wake-up while the consumer is busy, spinning, yielding or sleeping.
+ *
+ * Shutdown is signalled by marking the producer sequence as closed. Entries claimed before the marker
+ * are still delivered to the consumer, entries offered afterwards are rejected.
+ *
+ * @param <E> the type of entry held in the buffer
+ */
+public class RingBuffer<E> {
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final long FULL_BUFFER_BACKOFF_NANOS = 50_000L;
+    static final long SLEEP_NANOS = 100_000L;
+    static final int BACKOFF_SPINS = 100;
+    static final int BACKOFF_YIELDS = 100;
+
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong producerSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+    private final AsyncWaitStrategy waitStrategy;
+    private volatile Thread waitingConsumer;
+    private volatile boolean wakeRequested;
+
+    public RingBuffer(int requestedCapacity) {
+        this(requestedCapacity, AsyncWaitStrategy.BLOCKING);
+    }
+
+    public RingBuffer(int requestedCapacity, AsyncWaitStrategy waitStrategy) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int capacity = Math.max(2, roundUpToPowerOfTwo(requestedCapacity)); //with one slot, "published" and "free" look the same
+        entries = new Object[capacity];
+        published = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, i); //slot i is free for sequence i
+        }
+    }
+
+    /**
+     * Add an entry, waiting for space if the buffer is full.
+     * @throws IllegalStateException if the buffer has been shut down
+     */
+    public void put(E entry) throws InterruptedException {
+        long sequence = claim(Long.MAX_VALUE);
+        store(sequence, entry);
+        commit(sequence);
+    }
+
+    /**
+     * Add an entry, waiting up to the given timeout for space if the buffer is full.
+     * @return true if the entry was added, false if no space became available in time
+     * @throws IllegalStateException if the buffer has been shut down
+     */
+    public boolean offer(E entry, long timeout, TimeUnit unit) throws InterruptedException {
+        long sequence = claim(unit.toNanos(timeout));
+        if (sequence < 0) {
+            return false;
+        }
+        store(sequence, entry);
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * Add an entry if there is space for it.
+     * @return true if the entry was added, false if the buffer is full
+     * @throws IllegalStateException if the buffer has been shut down
+     */
+    public boolean offer(E entry) {
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        store(sequence, entry);
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * Remove the oldest published entry, without blocking.
+     * @return the oldest entry, or null if no entry is available
+     */
+    public E poll() {
+        while (true) {
+            long sequence = consumerSequence.get();
+            int index = (int) sequence & mask;
+            long difference = published.get(index) - (sequence + 1);
+            if (difference < 0) {
+                return null; //not yet published
+            }
+            if (difference == 0 && consumerSequence.compareAndSet(sequence, sequence + 1)) {
+                E entry = load(sequence);
+                published.set(index, sequence + published.length()); //free the slot for the next lap
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Move up to maxEntries published entries into target, without blocking.
+     * @return the number of entries moved
+     */
+    public int drainTo(Collection<? super E> target, int maxEntries) {
+        int count = 0;
+        while (count < maxEntries) {
+            E entry = poll();
+            if (entry == null) {
+                break;
+            }
+            target.add(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Remove every published entry and pass it to the action. Unlike drainTo, this may be called by any
+     * thread, so entries can be abandoned while the consumer is busy.
+     * @return the number of entries removed
+     */
+    public int pollAll(Consumer<? super E> action) {
+        int count = 0;
+        E entry;
+        while ((entry = poll()) != null) {
+            action.accept(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Wait until at least one entry can be drained. Must only be called by the consumer.
+     * @return true when entries are available, false once the buffer has been shut down and completely drained
+     */
+    public boolean awaitEntries() throws InterruptedException {
+        return awaitEntries(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wait until at least one entry can be drained, or the timeout elapses. Must only be called by the consumer.
+     * @return true when entries are available, the timeout elapsed or the consumer was woken,
+     * false once the buffer has been shut down and completely drained
+     */
+    public boolean awaitEntries(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        boolean registered = false; //producers only unpark a registered consumer
+        try {
+            for (int idleCount = 0; ; idleCount++) {
+                if (entryAvailable()) {
+                    return true;
+                }
+                if (shutdownComplete()) {
+                    return false;
+                }
+                if (takeWakeRequest()) {
+                    return true;
+                }
+                if (remaining <= 0) {
+                    return true;
+                }
+                if (idle(idleCount, remaining)) {
+                    if (!registered) {
+                        setWaitingConsumer(Thread.currentThread());
+                        registered = true;
+                        continue; //check again before parking, in case an entry was committed before registering
+                    }
+                    if (remaining == Long.MAX_VALUE) {
+                        LockSupport.park(this);
+                    } else {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                }
+                if (remaining != Long.MAX_VALUE) {
+                    remaining = deadline - System.nanoTime();
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            if (registered) {
+                setWaitingConsumer(null);
+            }
+        }
+    }
+
+    /**
+     * Make the consumer return from awaitEntries even though no entry has been added, so that it can
+     * do other work, such as answering a flush. If the consumer is busy, its next wait returns straight away.
+     */
+    public void wake() {
+        wakeRequested = true;
+        wakeConsumer();
+    }
+
+    /**
+     * @return true if wake has been called since the last call to this method. Must only be called by the consumer.
+     */
+    boolean takeWakeRequest() {
+        if (!wakeRequested) {
+            return false;
+        }
+        wakeRequested = false;
+        return true;
+    }
+
+    boolean isWakeRequested() {
+        return wakeRequested;
+    }
+
+    public AsyncWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Place the shutdown marker. Entries already added will still be delivered, but subsequent offers will fail.
+     */
+    public void shutdown() {
+        long sequence;
+        do {
+            sequence = producerSequence.get();
+        } while (sequence >= 0 && !producerSequence.compareAndSet(sequence, sequence | CLOSED));
+        wakeConsumer();
+    }
+
+    public boolean isShutdown() {
+        return producerSequence.get() < 0;
+    }
+
+    public int getCapacity() {
+        return published.length();
+    }
+
+    public int size() {
+        return (int) ((producerSequence.get() & ~CLOSED) - consumerSequence.get());
+    }
+
+    /*
+        Subclasses may store entries differently by overriding store and load. A slot is claimed
+        for a sequence, the entry is stored, and the slot must then be committed or the consumer
+        will wait for it forever, so store must not throw.
+     */
+
+    /**
+     * Claim the slot for the next sequence if there is space.
+     * @return the claimed sequence, or -1 if the buffer is full
+     * @throws IllegalStateException if the buffer has been shut down
+     */
+    protected final long tryClaim() {
+        while (true) {
+            long sequence = producerSequence.get();
+            if (sequence < 0) {
+                throw new IllegalStateException("RingBuffer has been shut down");
+            }
+            long difference = published.get((int) sequence & mask) - sequence;
+            if (difference < 0) {
+                return -1L; //the consumer has not freed this slot yet
+            }
+            if (difference == 0 && producerSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Claim the slot for the next sequence, waiting up to timeoutNanos (or forever, given Long.MAX_VALUE) for space.
+     * @return the claimed sequence, or -1 if no space became available in time
+     * @throws IllegalStateException if the buffer has been shut down
+     */
+    protected final long claim(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            long remaining = (timeoutNanos == Long.MAX_VALUE) ? FULL_BUFFER_BACKOFF_NANOS : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return -1L;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, FULL_BUFFER_BACKOFF_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Make the entry stored for a claimed sequence available to the consumer.
+     */
+    protected final void commit(long sequence) {
+        published.set(indexOf(sequence), sequence + 1);
+        wakeConsumer();
+    }
+
+    protected void store(long sequence, E entry) {
+        entries[indexOf(sequence)] = entry;
+    }
+
+    protected E load(long sequence) {
+        int index = indexOf(sequence);
+        @SuppressWarnings("unchecked")
+        E entry = (E) entries[index];
+        entries[index] = null;
+        return entry;
+    }
+
+    protected final int indexOf(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /*
+        awaitEntries is built on the following three methods, so that a subclass which spreads its
+        entries over several buffers can wait on all of them at once.
+     */
+
+    protected boolean entryAvailable() {
+        long sequence = consumerSequence.get();
+        return published.get((int) sequence & mask) == sequence + 1;
+    }
+
+    protected boolean shutdownComplete() {
+        long sequence = producerSequence.get();
+        return (sequence < 0) && ((sequence & ~CLOSED) == consumerSequence.get());
+    }
+
+    /**
+     * Register the thread to unpark when an entry is committed, or null when no thread is waiting.
+     */
+    protected void setWaitingConsumer(Thread consumer) {
+        waitingConsumer = consumer;
+    }
+
+    /*
+        What the consumer does while no entry is available. Returns true when it should park until a
+        producer wakes it, otherwise spins, yields or sleeps briefly and returns false.
+     */
+    private boolean idle(int idleCount, long remaining) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return false;
+            case YIELDING:
+                Thread.yield();
+                return false;
+            case SLEEPING:
+                LockSupport.parkNanos(this, Math.min(remaining, SLEEP_NANOS));
+                return false;
+            case PHASED_BACKOFF:
+                if (idleCount < BACKOFF_SPINS) {
+                    return false;
+                }
+                if (idleCount < BACKOFF_SPINS + BACKOFF_YIELDS) {
+                    Thread.yield();
+                    return false;
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void wakeConsumer() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int result = Integer.highestOneBit(value);
+        if (result != value) {
+            result <<= 1;
+        }
+        if (result <= 0) {
+            throw new IllegalArgumentException("capacity is too large");
+        }
+        return result;
+    }
+}
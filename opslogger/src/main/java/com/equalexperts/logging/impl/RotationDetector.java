@@ -0,0 +1,114 @@
+package com.equalexperts.logging.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Detects when the log file at a path has been moved, replaced or truncated by an external tool
+ * such as logrotate, so that a PathDestination which keeps its file open knows to reopen it.
+ *
+ * The file key (device and inode on unix-like systems) of the file at the path is compared with the
+ * key of the file that was opened, at most once per check interval. When watching is enabled, a
+ * WatchService event for the file triggers a check straight away. On platforms without file keys,
+ * only removal and truncation of the file can be detected.
+ *
+ * Instances are not thread-safe, and should only be used by the thread that writes to the file.
+ */
+public class RotationDetector implements Closeable {
+    private final Path path;
+    private final Duration checkInterval;
+    private final Clock clock;
+    private final Optional<WatchService> watchService;
+    private Object openedFileKey;
+    private long lastSeenSize;
+    private Instant nextCheck;
+
+    public RotationDetector(Path path, Duration checkInterval, boolean watch, Clock clock) throws IOException {
+        this.path = path;
+        this.checkInterval = checkInterval;
+        this.clock = clock;
+        this.watchService = watch ? Optional.of(watchParentDirectory(path)) : Optional.empty();
+        this.nextCheck = clock.instant();
+    }
+
+    /**
+     * Remember the identity of the file at the path. Call this straight after opening it.
+     */
+    public void fileOpened() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        openedFileKey = attributes.fileKey();
+        lastSeenSize = attributes.size();
+        nextCheck = clock.instant().plus(checkInterval);
+    }
+
+    /**
+     * @return true if the file at the path is no longer the file that was opened, or has been truncated
+     */
+    public boolean rotationDetected() throws IOException {
+        Instant now = clock.instant();
+        if (!watchEventReceived() && now.isBefore(nextCheck)) {
+            return false;
+        }
+        nextCheck = now.plus(checkInterval);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return true; //moved away, and not replaced yet
+        }
+        if (!Objects.equals(openedFileKey, attributes.fileKey()) || attributes.size() < lastSeenSize) {
+            return true;
+        }
+        lastSeenSize = attributes.size();
+        return false;
+    }
+
+    private boolean watchEventReceived() {
+        if (!watchService.isPresent()) {
+            return false;
+        }
+        boolean result = false;
+        WatchKey key;
+        while ((key = watchService.get().poll()) != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                result |= (event.kind() == OVERFLOW) || path.getFileName().equals(event.context());
+            }
+            key.reset();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService.isPresent()) {
+            watchService.get().close();
+        }
+    }
+
+    private static WatchService watchParentDirectory(Path path) throws IOException {
+        WatchService result = path.getFileSystem().newWatchService();
+        path.getParent().register(result, ENTRY_CREATE, ENTRY_DELETE);
+        return result;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Duration getCheckInterval() {
+        return checkInterval;
+    }
+
+    public boolean isWatching() {
+        return watchService.isPresent();
+    }
+}
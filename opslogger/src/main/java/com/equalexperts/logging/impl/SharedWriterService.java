@@ -0,0 +1,236 @@
+package com.equalexperts.logging.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A small fixed pool of threads which does the background work of many asynchronous loggers,
+ * instead of each logger having a thread of its own.
+ *
+ * Each logger registers its ring buffer and a step, which writes one batch without waiting for more
+ * records. A logger with records to write (or which has been woken) is queued, and the threads take
+ * turns running one step of each queued logger, so a busy logger cannot starve the others. A logger is
+ * never run by two threads at once, so its records are still written in order. A step must take any
+ * wake request from its ring buffer, otherwise it is queued again straight away.
+ *
+ * While no logger has records, one of the threads watches every ring buffer and parks until a producer
+ * wakes it, just like the background thread of a single logger. The watcher also wakes periodically and
+ * runs a step of every idle logger, so that they can report dropped records.
+ *
+ * The threads are started by the first registration.
+ */
+public class SharedWriterService {
+    static final long IDLE_STEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final int DEFAULT_THREADS = 2;
+
+    /*
+        Daemon threads, because the shared service is never shut down. Closing a logger still waits
+        for its records to be written.
+     */
+    private static final SharedWriterService SHARED = new SharedWriterService(DEFAULT_THREADS, runnable -> {
+        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setName("opslogger-shared-writer-" + thread.getName());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int threads;
+    private final ThreadFactory threadFactory;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Registration> ready = new LinkedBlockingQueue<>();
+    private final ReentrantLock watching = new ReentrantLock();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile Thread watcher;
+    private volatile boolean shutdown;
+
+    public SharedWriterService(int threads, ThreadFactory threadFactory) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Run steps for the ring buffer until a step returns false, which it should do once the
+     * ring buffer has been shut down and drained.
+     * @return a Future which completes after the last step
+     */
+    Future<?> register(RingBuffer<?> ringBuffer, BooleanSupplier step) {
+        if (shutdown) {
+            throw new IllegalStateException("SharedWriterService has been shut down");
+        }
+        startWorkers();
+        Registration registration = new Registration(ringBuffer, step);
+        registrations.add(registration);
+        schedule(registration);
+        return registration.completion;
+    }
+
+    /**
+     * @return the service shared by every asynchronous logger which is built to use a shared writer
+     */
+    public static SharedWriterService getShared() {
+        return SHARED;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    int getRegistrationCount() {
+        return registrations.size();
+    }
+
+    /**
+     * Stop the threads. Loggers which are still registered will not be written any more.
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (workers) {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+
+    private void startWorkers() {
+        synchronized (workers) {
+            while (workers.size() < threads) {
+                Thread worker = threadFactory.newThread(this::work);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    private void work() {
+        while (!shutdown) {
+            try {
+                Registration registration = ready.poll();
+                if (registration == null) {
+                    registration = awaitReady();
+                }
+                if (registration != null) {
+                    runStep(registration);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /*
+        Only one thread watches the idle ring buffers at a time. The others wait for the watcher to queue
+        something, and one of them becomes the watcher when the current one leaves to run a step.
+     */
+    private Registration awaitReady() throws InterruptedException {
+        if (!watching.tryLock()) {
+            return ready.take();
+        }
+        try {
+            watcher = Thread.currentThread();
+            watchIdleRingBuffers();
+        } finally {
+            watcher = null;
+            watching.unlock();
+        }
+        return ready.poll();
+    }
+
+    private void watchIdleRingBuffers() throws InterruptedException {
+        Thread current = Thread.currentThread();
+        long nextIdleStep = System.nanoTime() + IDLE_STEP_INTERVAL_NANOS;
+        try {
+            while (ready.isEmpty()) {
+                for (Registration registration : registrations) {
+                    if (!registration.scheduled.get()) {
+                        registration.ringBuffer.setWaitingConsumer(current); //registered before checking, so no wake up is missed
+                        if (registration.hasWork()) {
+                            schedule(registration);
+                        }
+                    }
+                }
+                long remaining = nextIdleStep - System.nanoTime();
+                if (remaining <= 0) {
+                    registrations.forEach(this::schedule);
+                    nextIdleStep = System.nanoTime() + IDLE_STEP_INTERVAL_NANOS;
+                } else if (ready.isEmpty()) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            for (Registration registration : registrations) {
+                registration.ringBuffer.setWaitingConsumer(null);
+            }
+        }
+    }
+
+    private void runStep(Registration registration) {
+        boolean more;
+        try {
+            more = registration.step.getAsBoolean();
+        } catch (Throwable t) {
+            registrations.remove(registration);
+            registration.completion.completeExceptionally(t);
+            return;
+        }
+        if (!more) {
+            registrations.remove(registration);
+            registration.completion.complete(null);
+            return;
+        }
+        if (registration.hasWork()) {
+            ready.add(registration); //to the back of the queue, behind the other busy loggers
+            return;
+        }
+        registration.scheduled.set(false);
+        wakeWatcher(); //so that it starts watching this ring buffer
+        if (registration.hasWork()) {
+            schedule(registration); //a record arrived before the watcher could see it
+        }
+    }
+
+    private void schedule(Registration registration) {
+        if (registration.scheduled.compareAndSet(false, true)) {
+            ready.add(registration);
+            wakeWatcher(); //with a single thread, nobody else would take it
+        }
+    }
+
+    private void wakeWatcher() {
+        Thread currentWatcher = watcher;
+        if (currentWatcher != null) {
+            LockSupport.unpark(currentWatcher);
+        }
+    }
+
+    private static class Registration {
+        final RingBuffer<?> ringBuffer;
+        final BooleanSupplier step;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final CompletableFuture<Object> completion = new CompletableFuture<>();
+
+        Registration(RingBuffer<?> ringBuffer, BooleanSupplier step) {
+            this.ringBuffer = ringBuffer;
+            this.step = step;
+        }
+
+        boolean hasWork() {
+            return ringBuffer.entryAvailable() || ringBuffer.shutdownComplete() || ringBuffer.isWakeRequested();
+        }
+    }
+}
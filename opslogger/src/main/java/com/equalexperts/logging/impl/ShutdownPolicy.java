@@ -0,0 +1,50 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncShutdownFallback;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Decides how an AsyncOpsLogger closes: how long closing may wait for the background thread to write
+ * the records which are still queued, what happens to the records left when that time runs out, and
+ * whether the logger is closed by a JVM shutdown hook.
+ */
+public class ShutdownPolicy {
+    public static final ShutdownPolicy WAIT_FOREVER = new ShutdownPolicy(Optional.empty(), AsyncShutdownFallback.DISCARD, false, System.err);
+
+    private final Optional<Duration> closeTimeout;
+    private final AsyncShutdownFallback fallback;
+    private final boolean shutdownHook;
+    private final PrintStream rawDumpStream;
+
+    public ShutdownPolicy(Optional<Duration> closeTimeout, AsyncShutdownFallback fallback, boolean shutdownHook, PrintStream rawDumpStream) {
+        this.closeTimeout = closeTimeout;
+        this.fallback = fallback;
+        this.shutdownHook = shutdownHook;
+        this.rawDumpStream = rawDumpStream;
+    }
+
+    /**
+     * @return how long closing waits for the queued records to be written, or empty to wait as long as it takes
+     */
+    public Optional<Duration> getCloseTimeout() {
+        return closeTimeout;
+    }
+
+    public AsyncShutdownFallback getFallback() {
+        return fallback;
+    }
+
+    public boolean isShutdownHook() {
+        return shutdownHook;
+    }
+
+    /**
+     * @return where records are printed by the RAW_DUMP fallback
+     */
+    public PrintStream getRawDumpStream() {
+        return rawDumpStream;
+    }
+}
@@ -0,0 +1,385 @@
+package com.equalexperts.logging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores stack traces in a few large append-only pack files instead of one file per fingerprint.
+ *
+ * Each stack trace is compressed and appended to the current segment (stacktraces_N.pack) as a single record,
+ * which starts with its fingerprint. When a segment passes the maximum segment size, the next record starts a new
+ * segment. The location of each record is appended to an index (stacktraces.idx), one line per fingerprint:
+ * <pre>fingerprint	segment	offset</pre>
+ * The index is loaded into memory when the pack is opened, so a stack trace which is already stored costs no
+ * filesystem access. A line which was not completely written is ignored, and the stack trace is stored again.
+ *
+ * Log messages refer to the URI of the index, with the fingerprint as the fragment (stacktraces.idx#fingerprint),
+ * which can be resolved before the stack trace has been written. See {@link #read(Path, String)} and
+ * {@link #readRecord(Path, long)}.
+ *
+ * Every logger in the JVM which stores stack traces in the same directory shares one open pack
+ * (see {@link #open(Path, long)}). Appends are made while holding a file lock on the segment, so several
+ * processes can append to the same pack; each process only knows the fingerprints in the index when it opened
+ * the pack and the ones it stores itself, so a stack trace may be stored more than once.
+ *
+ * StackTraceRetention deletes whole segments, never the current one (see {@link #listStored()}).
+ */
+public class StackTracePack implements StackTraceStore {
+    public static final String INDEX_FILE_NAME = "stacktraces.idx";
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final int RECORD_MAGIC = 0x4f505354; //"OPST"
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile("stacktraces_(\\d+)\\.pack");
+    private static final Map<Path, StackTracePack> OPEN_PACKS = new HashMap<>(); //guarded by itself
+
+    private final Path directory;
+    private final Path indexFile;
+    private final long maxSegmentBytes;
+    private final Map<String, Location> index;
+    private FileChannel indexChannel; //guarded by this
+    private FileChannel segmentChannel; //guarded by this
+    private int segment; //guarded by this
+    private int references = 1; //guarded by OPEN_PACKS
+
+    StackTracePack(Path directory, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes <= 0) {
+            throw new IllegalArgumentException("max segment bytes must be positive");
+        }
+        this.directory = directory;
+        this.indexFile = directory.resolve(INDEX_FILE_NAME);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.index = readIndex(indexFile);
+        this.segment = findLastSegment(directory);
+        this.indexChannel = FileChannel.open(indexFile, CREATE, WRITE, APPEND);
+        this.segmentChannel = openSegment(segment);
+    }
+
+    /**
+     * Open the pack in the directory, or share the pack already opened by another logger in this JVM.
+     * Each call must be matched by a call to close.
+     */
+    public static StackTracePack open(Path directory, long maxSegmentBytes) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        synchronized (OPEN_PACKS) {
+            StackTracePack pack = OPEN_PACKS.get(key);
+            if (pack != null) {
+                pack.references++;
+                return pack;
+            }
+            pack = new StackTracePack(directory, maxSegmentBytes);
+            OPEN_PACKS.put(key, pack);
+            return pack;
+        }
+    }
+
+    @Override
+    public synchronized String store(String fingerprint, Throwable throwable) throws IOException {
+        if (!index.containsKey(fingerprint)) {
+            ByteBuffer record = encodeRecord(fingerprint, throwable);
+            while (!append(fingerprint, record)) {
+                segmentChannel.close();
+                segment = Math.max(segment + 1, findLastSegment(directory)); //another process may have moved on already
+                segmentChannel = openSegment(segment);
+            }
+        }
+        return uriFor(fingerprint);
+    }
+
+    @Override
+    public String uriFor(String fingerprint) {
+        return indexFile.toUri().toString() + "#" + fingerprint;
+    }
+
+    @Override
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSegmentBytes() {
+        return maxSegmentBytes;
+    }
+
+    synchronized int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Lists every segment except the one being appended to, with the fingerprints this pack knows are stored in it.
+     */
+    @Override
+    public synchronized List<StoredStackTraces> listStored() throws IOException {
+        Map<Integer, Set<String>> fingerprintsBySegment = new HashMap<>();
+        index.forEach((fingerprint, location) -> fingerprintsBySegment.computeIfAbsent(location.segment, k -> new HashSet<>()).add(fingerprint));
+        List<StoredStackTraces> result = new ArrayList<>();
+        for (int older = 0; older < segment; older++) {
+            Path file = directory.resolve(segmentFileName(older));
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                result.add(new StoredStackTraces(file, attributes.size(), attributes.lastModifiedTime().toMillis(), fingerprintsBySegment.getOrDefault(older, Collections.emptySet())));
+            } catch (NoSuchFileException ignore) {
+                //already deleted
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes a whole segment, and rewrites the index without it. Only one process should delete segments
+     * from a pack, as index lines appended by other processes while the index is rewritten are lost.
+     */
+    @Override
+    public synchronized void delete(StoredStackTraces stored) throws IOException {
+        index.keySet().removeAll(stored.getFingerprints());
+        Files.deleteIfExists(stored.getFile());
+        Path newIndex = directory.resolve(INDEX_FILE_NAME + ".tmp");
+        StringBuilder lines = new StringBuilder();
+        index.forEach((fingerprint, location) -> lines.append(fingerprint).append('\t').append(location.segment).append('\t').append(location.offset).append('\n'));
+        Files.write(newIndex, lines.toString().getBytes(UTF_8));
+        indexChannel.close();
+        Files.move(newIndex, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = FileChannel.open(indexFile, CREATE, WRITE, APPEND);
+    }
+
+    /**
+     * Close the pack once every logger which opened it has closed it.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN_PACKS) {
+            if (--references > 0) {
+                return;
+            }
+            OPEN_PACKS.remove(directory.toAbsolutePath().normalize(), this);
+        }
+        synchronized (this) {
+            try {
+                segmentChannel.close();
+            } finally {
+                indexChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Find a stack trace by fingerprint in the pack in a directory.
+     * @return the printed stack trace, or empty if the index has no record of the fingerprint
+     */
+    public static Optional<String> read(Path directory, String fingerprint) throws IOException {
+        Location location = readIndex(directory.resolve(INDEX_FILE_NAME)).get(fingerprint);
+        if (location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(readRecord(directory.resolve(segmentFileName(location.segment)), location.offset).getStackTrace());
+    }
+
+    /**
+     * Read the record at an offset in a segment file.
+     */
+    public static Record readRecord(Path segmentFile, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile)) {
+            channel.position(offset);
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            if (in.readInt() != RECORD_MAGIC) {
+                throw new IOException("No stack trace record at offset " + offset + " of " + segmentFile);
+            }
+            byte[] fingerprint = new byte[in.readUnsignedShort()];
+            in.readFully(fingerprint);
+            byte[] stackTrace = new byte[in.readInt()];
+            byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            inflate(compressed, stackTrace);
+            return new Record(new String(fingerprint, UTF_8), new String(stackTrace, UTF_8));
+        }
+    }
+
+    public static String segmentFileName(int segment) {
+        return "stacktraces_" + segment + ".pack";
+    }
+
+    /*
+        Record layout: magic, fingerprint length (unsigned short), fingerprint (UTF-8),
+        stack trace length, compressed length, stack trace (UTF-8, deflated).
+     */
+    private static ByteBuffer encodeRecord(String fingerprint, Throwable throwable) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(printed, false, UTF_8.name())) {
+            throwable.printStackTrace(out);
+        }
+        byte[] stackTrace = printed.toByteArray();
+        byte[] compressed = deflate(stackTrace);
+        byte[] fingerprintBytes = fingerprint.getBytes(UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(4 + 2 + fingerprintBytes.length + 4 + 4 + compressed.length);
+        record.putInt(RECORD_MAGIC);
+        record.putShort((short) fingerprintBytes.length);
+        record.put(fingerprintBytes);
+        record.putInt(stackTrace.length);
+        record.putInt(compressed.length);
+        record.put(compressed);
+        record.flip();
+        return record;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4 + 64);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void inflate(byte[] input, byte[] output) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < output.length && !inflater.finished()) {
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != output.length) {
+                throw new IOException("Stack trace record is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Stack trace record is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /*
+        Returns false, without appending, when the current segment is full.
+     */
+    private boolean append(String fingerprint, ByteBuffer record) throws IOException {
+        FileLock lock = segmentChannel.lock();
+        try {
+            long offset = segmentChannel.size();
+            if (offset >= maxSegmentBytes) {
+                return false;
+            }
+            writeFully(segmentChannel, record);
+            writeFully(indexChannel, UTF_8.encode(fingerprint + "\t" + segment + "\t" + offset + "\n")); //one write, so lines from several processes do not interleave
+            index.put(fingerprint, new Location(segment, offset));
+            return true;
+        } finally {
+            lock.release();
+        }
+    }
+
+    private FileChannel openSegment(int segment) throws IOException {
+        return FileChannel.open(directory.resolve(segmentFileName(segment)), CREATE, WRITE, APPEND);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int findLastSegment(Path directory) throws IOException {
+        int last = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return last;
+    }
+
+    private static Map<String, Location> readIndex(Path indexFile) throws IOException {
+        Map<String, Location> result = new HashMap<>();
+        String contents;
+        try {
+            contents = new String(Files.readAllBytes(indexFile), UTF_8);
+        } catch (NoSuchFileException e) {
+            return result;
+        }
+        int start = 0;
+        int end;
+        while ((end = contents.indexOf('\n', start)) >= 0) { //a last line without a newline was not completely written
+            String[] fields = contents.substring(start, end).split("\t");
+            start = end + 1;
+            if (fields.length == 3) {
+                try {
+                    result.putIfAbsent(fields[0], new Location(Integer.parseInt(fields[1]), Long.parseLong(fields[2])));
+                } catch (NumberFormatException ignore) {
+                    //a damaged line; the stack trace will be stored again
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class Location {
+        final int segment;
+        final long offset;
+
+        Location(int segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A stack trace read from a pack.
+     */
+    public static class Record {
+        private final String fingerprint;
+        private final String stackTrace;
+
+        Record(String fingerprint, String stackTrace) {
+            this.fingerprint = fingerprint;
+            this.stackTrace = stackTrace;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getStackTrace() {
+            return stackTrace;
+        }
+    }
+}
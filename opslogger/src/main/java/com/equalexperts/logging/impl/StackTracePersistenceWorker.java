@@ -0,0 +1,123 @@
+package com.equalexperts.logging.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * Stores new stack traces on a thread of its own, so that a log line which refers to a new stack trace
+ * does not wait for it to be written.
+ *
+ * Stack traces are queued in a bounded queue. A fingerprint which is already queued is not queued again, so a
+ * burst of the same new exception stores it once. When the queue is full, submit refuses the stack trace and the
+ * caller should store it itself, which slows the caller down instead of losing the stack trace.
+ *
+ * The stack trace is printed when it is written, so a throwable which is changed after being logged (by adding
+ * a suppressed exception, for example) is stored as it is at that time.
+ */
+public class StackTracePersistenceWorker {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final PendingStackTrace STOP = new PendingStackTrace(null, null, null);
+
+    private final BlockingQueue<PendingStackTrace> queue;
+    private final Set<String> queuedFingerprints = ConcurrentHashMap.newKeySet();
+    private final StackTraceStore store;
+    private final Consumer<Throwable> errorHandler;
+    private final int queueCapacity;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public StackTracePersistenceWorker(int queueCapacity, StackTraceStore store, Consumer<Throwable> errorHandler, ThreadFactory threadFactory) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queue capacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity + 1); //room for STOP
+        this.store = store;
+        this.errorHandler = errorHandler;
+        this.thread = threadFactory.newThread(this::work);
+        thread.start();
+    }
+
+    /**
+     * Queue a stack trace to be stored, unless its fingerprint is already queued.
+     * @param onFailure run on the worker thread if the stack trace could not be stored
+     * @return true if the stack trace is queued, false if the caller must store it
+     */
+    public boolean submit(String fingerprint, Throwable throwable, Runnable onFailure) {
+        if (closed) {
+            return false;
+        }
+        if (!queuedFingerprints.add(fingerprint)) {
+            return true;
+        }
+        if (queue.size() >= queueCapacity || !queue.offer(new PendingStackTrace(fingerprint, throwable, onFailure))) {
+            queuedFingerprints.remove(fingerprint);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Store every queued stack trace and stop the thread. Does not close the store.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        queue.put(STOP);
+        thread.join();
+        List<PendingStackTrace> remaining = new ArrayList<>();
+        queue.drainTo(remaining); //submitted while closing
+        remaining.stream().filter(pending -> pending != STOP).forEach(this::write);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    int getQueuedCount() {
+        return queuedFingerprints.size();
+    }
+
+    private void work() {
+        while (true) {
+            PendingStackTrace pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending == STOP) {
+                return;
+            }
+            write(pending);
+        }
+    }
+
+    private void write(PendingStackTrace pending) {
+        try {
+            store.store(pending.fingerprint, pending.throwable);
+        } catch (Throwable t) {
+            pending.onFailure.run();
+            errorHandler.accept(t);
+        } finally {
+            queuedFingerprints.remove(pending.fingerprint);
+        }
+    }
+
+    private static class PendingStackTrace {
+        final String fingerprint;
+        final Throwable throwable;
+        final Runnable onFailure;
+
+        PendingStackTrace(String fingerprint, Throwable throwable, Runnable onFailure) {
+            this.fingerprint = fingerprint;
+            this.throwable = throwable;
+            this.onFailure = onFailure;
+        }
+    }
+}
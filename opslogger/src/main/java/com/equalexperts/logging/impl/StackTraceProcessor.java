@@ -6,4 +6,9 @@ package com.equalexperts.logging.impl;
  */
 public interface StackTraceProcessor {
     void process(Throwable throwable, StringBuilder output) throws Exception;
-}
\ No newline at end of file
+
+    /**
+     * Release anything held by the processor. Called when the destination which uses it is closed.
+     */
+    default void close() throws Exception {}
+}
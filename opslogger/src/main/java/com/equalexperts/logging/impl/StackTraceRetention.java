@@ -0,0 +1,204 @@
+package com.equalexperts.logging.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a StackTraceStore within a maximum total size, number of files and age, by deleting the files
+ * which hold the least recently seen stack traces.
+ *
+ * The processor records each fingerprint as it is logged, which only updates a map. Everything else happens
+ * on a background thread, which periodically lists the store, works out when each file was last used (the
+ * later of its modification time and when any of its stack traces was last seen), and deletes the least
+ * recently used files until every limit is met. At most MAX_DELETIONS_PER_RUN files are deleted per run, so
+ * a large backlog is trimmed over several runs. Every eviction listener is told about every deleted fingerprint,
+ * so that the stack trace is stored again the next time it is logged.
+ *
+ * Loggers in the same JVM which store stack traces in the same directory share one retention (see open),
+ * so each sees the stack traces the others log, and each hears when they are deleted.
+ */
+public class StackTraceRetention {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+    static final int MAX_DELETIONS_PER_RUN = 1000;
+    private static final Map<Path, StackTraceRetention> OPEN_RETENTIONS = new HashMap<>(); //guarded by itself
+
+    private final StackTraceStore store;
+    private final Optional<Long> maxTotalBytes;
+    private final Optional<Integer> maxFiles;
+    private final Optional<Duration> maxAge;
+    private final Clock clock;
+    private final Consumer<Throwable> errorHandler;
+    private final ConcurrentMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler; //guarded by this
+    private Optional<Path> openedFor = Optional.empty(); //guarded by OPEN_RETENTIONS
+    private int references = 1; //guarded by OPEN_RETENTIONS
+
+    public StackTraceRetention(StackTraceStore store, Optional<Long> maxTotalBytes, Optional<Integer> maxFiles, Optional<Duration> maxAge, Clock clock, Consumer<Throwable> errorHandler) {
+        this.store = store;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxFiles = maxFiles;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Open a retention for the directory of the store, or share the retention already opened for it by another
+     * logger in this JVM, in which case the limits it was opened with apply.
+     * Each call must be matched by a call to close.
+     */
+    public static StackTraceRetention open(StackTraceStore store, Optional<Long> maxTotalBytes, Optional<Integer> maxFiles, Optional<Duration> maxAge, Clock clock, Consumer<Throwable> errorHandler) {
+        Path key = store.getDirectory().toAbsolutePath().normalize();
+        synchronized (OPEN_RETENTIONS) {
+            StackTraceRetention retention = OPEN_RETENTIONS.get(key);
+            if (retention != null) {
+                retention.references++;
+                return retention;
+            }
+            retention = new StackTraceRetention(store, maxTotalBytes, maxFiles, maxAge, clock, errorHandler);
+            retention.openedFor = Optional.of(key);
+            OPEN_RETENTIONS.put(key, retention);
+            return retention;
+        }
+    }
+
+    /**
+     * Record that the stack trace with this fingerprint has just been logged.
+     */
+    public void touch(String fingerprint) {
+        lastSeen.put(fingerprint, clock.millis());
+    }
+
+    public void addEvictionListener(Consumer<String> evictionListener) {
+        evictionListeners.add(evictionListener);
+    }
+
+    public void removeEvictionListener(Consumer<String> evictionListener) {
+        evictionListeners.remove(evictionListener);
+    }
+
+    /**
+     * Run periodically on a daemon thread, starting straight away.
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("opslogger-stack-trace-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop running once every logger which opened this retention has closed it.
+     */
+    public void close() throws InterruptedException {
+        synchronized (OPEN_RETENTIONS) {
+            if (--references > 0) {
+                return;
+            }
+            openedFor.ifPresent(key -> OPEN_RETENTIONS.remove(key, this));
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+                scheduler = null;
+            }
+        }
+    }
+
+    /**
+     * Delete files until every limit is met, or MAX_DELETIONS_PER_RUN files have been deleted.
+     * @return the number of files deleted
+     */
+    int run() throws IOException {
+        long listedAt = clock.millis();
+        List<StoredStackTraces> stored = new ArrayList<>(store.listStored());
+        forgetFingerprintsNoLongerStored(stored, listedAt);
+        stored.sort(Comparator.comparingLong(this::lastUsed)); //least recently used first
+
+        long totalBytes = stored.stream().mapToLong(StoredStackTraces::getBytes).sum();
+        int files = stored.size();
+        long oldestAllowed = maxAge.map(age -> clock.millis() - age.toMillis()).orElse(Long.MIN_VALUE);
+        int deleted = 0;
+        for (StoredStackTraces candidate : stored) {
+            boolean overLimit = (totalBytes > maxTotalBytes.orElse(Long.MAX_VALUE)) || (files > maxFiles.orElse(Integer.MAX_VALUE));
+            if (!overLimit && lastUsed(candidate) >= oldestAllowed) {
+                break; //everything after this was used more recently
+            }
+            if (deleted == MAX_DELETIONS_PER_RUN) {
+                break;
+            }
+            store.delete(candidate);
+            candidate.getFingerprints().forEach(fingerprint -> {
+                lastSeen.remove(fingerprint);
+                evictionListeners.forEach(listener -> listener.accept(fingerprint));
+            });
+            totalBytes -= candidate.getBytes();
+            files--;
+            deleted++;
+        }
+        return deleted;
+    }
+
+    public Optional<Long> getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public Optional<Integer> getMaxFiles() {
+        return maxFiles;
+    }
+
+    public Optional<Duration> getMaxAge() {
+        return maxAge;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (Throwable t) {
+            errorHandler.accept(t);
+        }
+    }
+
+    private long lastUsed(StoredStackTraces stored) {
+        long result = stored.getLastModifiedMillis();
+        for (String fingerprint : stored.getFingerprints()) {
+            result = Math.max(result, lastSeen.getOrDefault(fingerprint, Long.MIN_VALUE));
+        }
+        return result;
+    }
+
+    /*
+        Keeps the last-seen map from growing with fingerprints whose files were deleted by someone else.
+        Fingerprints seen since the store was listed are kept, as they may not have been stored yet.
+     */
+    private void forgetFingerprintsNoLongerStored(List<StoredStackTraces> stored, long listedAt) {
+        Set<String> fingerprints = new HashSet<>();
+        stored.forEach(s -> fingerprints.addAll(s.getFingerprints()));
+        lastSeen.entrySet().removeIf(entry -> !fingerprints.contains(entry.getKey()) && entry.getValue() < listedAt);
+    }
+}
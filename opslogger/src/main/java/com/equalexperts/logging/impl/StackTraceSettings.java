@@ -0,0 +1,112 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.StackTraceFingerprint;
+import com.equalexperts.logging.StackTraceStorageFormat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Tuning options for storing stack traces in the filesystem.
+ * Empty optionals select a sensible default.
+ */
+public class StackTraceSettings {
+    public static final StackTraceFingerprint DEFAULT_FINGERPRINT = StackTraceFingerprint.MD5;
+    public static final boolean DEFAULT_STORE_IN_BACKGROUND = false;
+    public static final int DEFAULT_QUEUE_CAPACITY = StackTracePersistenceWorker.DEFAULT_QUEUE_CAPACITY;
+    public static final StackTraceStorageFormat DEFAULT_STORAGE_FORMAT = StackTraceStorageFormat.FILE_PER_TRACE;
+    public static final StackTraceSettings DEFAULTS = new StackTraceSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    private final Optional<StackTraceFingerprint> fingerprint;
+    private final Optional<Boolean> storeInBackground;
+    private final Optional<Integer> queueCapacity;
+    private final Optional<StackTraceStorageFormat> storageFormat;
+    private final Optional<Long> maxTotalBytes;
+    private final Optional<Integer> maxFiles;
+    private final Optional<Duration> maxAge;
+
+    public StackTraceSettings(Optional<StackTraceFingerprint> fingerprint, Optional<Boolean> storeInBackground, Optional<Integer> queueCapacity, Optional<StackTraceStorageFormat> storageFormat, Optional<Long> maxTotalBytes, Optional<Integer> maxFiles, Optional<Duration> maxAge) {
+        this.fingerprint = fingerprint;
+        this.storeInBackground = storeInBackground;
+        this.queueCapacity = queueCapacity;
+        this.storageFormat = storageFormat;
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxFiles = maxFiles;
+        this.maxAge = maxAge;
+    }
+
+    public StackTraceStore configureStore(Path directory) throws IOException {
+        if (getStorageFormat() == StackTraceStorageFormat.PACK) {
+            return StackTracePack.open(directory, StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        }
+        return new FilePerTraceStore(directory);
+    }
+
+    public ThrowableFingerprintCalculator configureFingerprintCalculator() {
+        if (getFingerprint() == StackTraceFingerprint.STRUCTURAL) {
+            return new StructuralThrowableFingerprintCalculator();
+        }
+        return new ThrowableFingerprintCalculator();
+    }
+
+    /**
+     * The worker's thread is a daemon, so a logger which is never closed does not keep the JVM running.
+     */
+    public Optional<StackTracePersistenceWorker> configurePersistenceWorker(StackTraceStore store, Consumer<Throwable> errorHandler) {
+        if (!isStoreInBackground()) {
+            return Optional.empty();
+        }
+        return Optional.of(new StackTracePersistenceWorker(getQueueCapacity(), store, errorHandler, runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("opslogger-stack-trace-writer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Stored stack traces are only deleted when at least one limit has been set.
+     */
+    public Optional<StackTraceRetention> configureRetention(StackTraceStore store, Consumer<Throwable> errorHandler) {
+        if (!maxTotalBytes.isPresent() && !maxFiles.isPresent() && !maxAge.isPresent()) {
+            return Optional.empty();
+        }
+        StackTraceRetention retention = StackTraceRetention.open(store, maxTotalBytes, maxFiles, maxAge, Clock.systemUTC(), errorHandler);
+        retention.start(StackTraceRetention.DEFAULT_INTERVAL);
+        return Optional.of(retention);
+    }
+
+    public StackTraceFingerprint getFingerprint() {
+        return fingerprint.orElse(DEFAULT_FINGERPRINT);
+    }
+
+    public boolean isStoreInBackground() {
+        return storeInBackground.orElse(DEFAULT_STORE_IN_BACKGROUND);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity.orElse(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public StackTraceStorageFormat getStorageFormat() {
+        return storageFormat.orElse(DEFAULT_STORAGE_FORMAT);
+    }
+
+    public Optional<Long> getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public Optional<Integer> getMaxFiles() {
+        return maxFiles;
+    }
+
+    public Optional<Duration> getMaxAge() {
+        return maxAge;
+    }
+}
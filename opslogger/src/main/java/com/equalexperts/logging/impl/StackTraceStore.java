@@ -0,0 +1,39 @@
+package com.equalexperts.logging.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where a FilesystemStackTraceProcessor keeps the stack traces it has fingerprinted.
+ * Implementations must allow store to be called by several threads at once.
+ */
+public interface StackTraceStore {
+    /**
+     * Store the stack trace of the throwable under its fingerprint, unless it is already stored.
+     * @return the URI to include in the log message
+     */
+    String store(String fingerprint, Throwable throwable) throws IOException;
+
+    /**
+     * @return the URI that store returns for the fingerprint, without storing anything
+     */
+    String uriFor(String fingerprint);
+
+    Path getDirectory();
+
+    /**
+     * List the files holding stack traces, for retention. Called by the retention thread, never while logging.
+     */
+    default List<StoredStackTraces> listStored() throws IOException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Delete a file listed by listStored. The stack traces it held are stored again the next time they are stored.
+     */
+    default void delete(StoredStackTraces stored) throws IOException {}
+
+    default void close() throws IOException {}
+}
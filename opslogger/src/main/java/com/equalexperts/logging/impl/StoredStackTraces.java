@@ -0,0 +1,38 @@
+package com.equalexperts.logging.impl;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * A file in a StackTraceStore, and the fingerprints of the stack traces it holds.
+ * This is the unit which StackTraceRetention deletes.
+ */
+public class StoredStackTraces {
+    private final Path file;
+    private final long bytes;
+    private final long lastModifiedMillis;
+    private final Set<String> fingerprints;
+
+    public StoredStackTraces(Path file, long bytes, long lastModifiedMillis, Set<String> fingerprints) {
+        this.file = file;
+        this.bytes = bytes;
+        this.lastModifiedMillis = lastModifiedMillis;
+        this.fingerprints = fingerprints;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    public Set<String> getFingerprints() {
+        return fingerprints;
+    }
+}
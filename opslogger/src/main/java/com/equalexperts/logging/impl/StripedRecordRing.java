@@ -0,0 +1,182 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncWaitStrategy;
+import com.equalexperts.logging.LogMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A RingBuffer of log records which is split into several independent stripes, so that producer threads
+ * do not all contend on the same sequence counter.
+ *
+ * Each producer thread always adds to the same stripe (chosen from its thread id), so the records of
+ * one thread stay in order. The consumer drains every stripe and merges the drained records by timestamp,
+ * keeping the order within each stripe. Records drained at different times are not reordered, so a record
+ * which is added late to one stripe can be written after a later record from another stripe.
+ *
+ * Every stripe is created by the same factory, so they are all of the same kind.
+ *
+ * Eviction with {@link #poll()} removes the oldest record from the calling thread's stripe, which is the
+ * stripe that is full when a producer needs to make space.
+ *
+ * The slots of the RingBuffer superclass are never used.
+ */
+public class StripedRecordRing<T extends Enum<T> & LogMessage> extends RingBuffer<LogicalLogRecord<T>> {
+    private final List<RingBuffer<LogicalLogRecord<T>>> stripes;
+    private final List<List<LogicalLogRecord<T>>> drainedStripes; //only used by the consumer
+    private final int[] mergePositions; //only used by the consumer
+    private int firstStripeToDrain; //only used by the consumer
+
+    public StripedRecordRing(int stripeCount, Supplier<RingBuffer<LogicalLogRecord<T>>> stripeFactory) {
+        this(stripeCount, AsyncWaitStrategy.BLOCKING, stripeFactory);
+    }
+
+    /**
+     * @param waitStrategy how the consumer waits for an entry in any stripe
+     */
+    public StripedRecordRing(int stripeCount, AsyncWaitStrategy waitStrategy, Supplier<RingBuffer<LogicalLogRecord<T>>> stripeFactory) {
+        super(2, waitStrategy);
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripe count must be positive");
+        }
+        stripes = new ArrayList<>(stripeCount);
+        drainedStripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(stripeFactory.get());
+            drainedStripes.add(new ArrayList<>());
+        }
+        mergePositions = new int[stripeCount];
+    }
+
+    @Override
+    public void put(LogicalLogRecord<T> entry) throws InterruptedException {
+        currentStripe().put(entry);
+    }
+
+    @Override
+    public boolean offer(LogicalLogRecord<T> entry, long timeout, TimeUnit unit) throws InterruptedException {
+        return currentStripe().offer(entry, timeout, unit);
+    }
+
+    @Override
+    public boolean offer(LogicalLogRecord<T> entry) {
+        return currentStripe().offer(entry);
+    }
+
+    @Override
+    public LogicalLogRecord<T> poll() {
+        return currentStripe().poll();
+    }
+
+    @Override
+    public int drainTo(Collection<? super LogicalLogRecord<T>> target, int maxEntries) {
+        int drained = 0;
+        for (int i = 0; i < stripes.size() && drained < maxEntries; i++) {
+            int stripe = (firstStripeToDrain + i) % stripes.size();
+            drained += stripes.get(stripe).drainTo(drainedStripes.get(stripe), maxEntries - drained);
+        }
+        firstStripeToDrain = (firstStripeToDrain + 1) % stripes.size(); //so that no stripe is always drained last
+        mergeInto(target, drained);
+        return drained;
+    }
+
+    @Override
+    public int pollAll(Consumer<? super LogicalLogRecord<T>> action) {
+        int count = 0;
+        for (RingBuffer<LogicalLogRecord<T>> stripe : stripes) {
+            count += stripe.pollAll(action);
+        }
+        return count;
+    }
+
+    @Override
+    public void shutdown() {
+        stripes.forEach(RingBuffer::shutdown);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return stripes.get(0).isShutdown();
+    }
+
+    @Override
+    public int getCapacity() {
+        return stripes.stream().mapToInt(RingBuffer::getCapacity).sum();
+    }
+
+    @Override
+    public int size() {
+        return stripes.stream().mapToInt(RingBuffer::size).sum();
+    }
+
+    public int getStripeCount() {
+        return stripes.size();
+    }
+
+    RingBuffer<LogicalLogRecord<T>> getStripe(int index) {
+        return stripes.get(index);
+    }
+
+    @Override
+    protected boolean entryAvailable() {
+        for (RingBuffer<LogicalLogRecord<T>> stripe : stripes) {
+            if (stripe.entryAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean shutdownComplete() {
+        for (RingBuffer<LogicalLogRecord<T>> stripe : stripes) {
+            if (!stripe.shutdownComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void setWaitingConsumer(Thread consumer) {
+        super.setWaitingConsumer(consumer); //for wake
+        for (RingBuffer<LogicalLogRecord<T>> stripe : stripes) {
+            stripe.setWaitingConsumer(consumer);
+        }
+    }
+
+    RingBuffer<LogicalLogRecord<T>> currentStripe() {
+        return stripes.get((int) (Thread.currentThread().getId() % stripes.size()));
+    }
+
+    /*
+        Repeatedly takes the earliest of the records at the head of each drained stripe. Only the heads are
+        compared, so the order within a stripe is kept even if the clock has gone backwards.
+     */
+    private void mergeInto(Collection<? super LogicalLogRecord<T>> target, int count) {
+        for (int i = 0; i < count; i++) {
+            int earliest = -1;
+            long earliestTimestamp = 0L;
+            for (int stripe = 0; stripe < drainedStripes.size(); stripe++) {
+                List<LogicalLogRecord<T>> drained = drainedStripes.get(stripe);
+                if (mergePositions[stripe] < drained.size()) {
+                    long timestamp = drained.get(mergePositions[stripe]).getEpochMillis();
+                    if (earliest < 0 || timestamp < earliestTimestamp) {
+                        earliest = stripe;
+                        earliestTimestamp = timestamp;
+                    }
+                }
+            }
+            target.add(drainedStripes.get(earliest).get(mergePositions[earliest]++));
+        }
+        for (int stripe = 0; stripe < drainedStripes.size(); stripe++) {
+            drainedStripes.get(stripe).clear();
+            mergePositions[stripe] = 0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.equalexperts.logging.impl;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fingerprints a throwable by walking its structure instead of printing its stack trace.
+ *
+ * The class name and message of the throwable, each of its stack frames, its suppressed exceptions and its
+ * cause (recursively) are fed into a 128-bit hash based on MurmurHash3. This is the same information that
+ * printStackTrace prints, so throwables which print differently get different fingerprints.
+ *
+ * The hash of each stack frame is remembered, as the same frames appear in stack trace after stack trace.
+ * When the number of remembered frames passes the limit, they are all forgotten and remembered again as
+ * they are seen.
+ */
+public class StructuralThrowableFingerprintCalculator extends ThrowableFingerprintCalculator {
+    public static final int DEFAULT_MAX_CACHED_FRAMES = 8192;
+
+    private static final long THROWABLE = 1L;
+    private static final long CAUSE = 2L;
+    private static final long SUPPRESSED = 3L;
+    private static final long CIRCULAR_REFERENCE = 4L;
+    private static final long END = 5L;
+    private static final long NULL = 6L;
+
+    private final Base64.Encoder base64Encoder = Base64.getUrlEncoder().withoutPadding();
+    private final ConcurrentMap<StackTraceElement, long[]> frameHashes = new ConcurrentHashMap<>();
+    private final int maxCachedFrames;
+
+    public StructuralThrowableFingerprintCalculator() {
+        this(DEFAULT_MAX_CACHED_FRAMES);
+    }
+
+    public StructuralThrowableFingerprintCalculator(int maxCachedFrames) {
+        if (maxCachedFrames <= 0) {
+            throw new IllegalArgumentException("max cached frames must be positive");
+        }
+        this.maxCachedFrames = maxCachedFrames;
+    }
+
+    @Override
+    public String calculateFingerprint(Throwable t) {
+        Hash128 hash = new Hash128();
+        addThrowable(hash, t, Collections.newSetFromMap(new IdentityHashMap<>()));
+        long[] result = hash.finish();
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (result[0] >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (result[1] >>> (56 - 8 * i));
+        }
+        return base64Encoder.encodeToString(bytes);
+    }
+
+    int getCachedFrameCount() {
+        return frameHashes.size();
+    }
+
+    /*
+        Markers separate the parts of the structure, so that (for example) a frame moved from a cause
+        to its enclosing throwable changes the fingerprint.
+     */
+    private void addThrowable(Hash128 hash, Throwable t, Set<Throwable> seen) {
+        if (!seen.add(t)) {
+            hash.add(CIRCULAR_REFERENCE); //printStackTrace stops at circular references too
+            return;
+        }
+        hash.add(THROWABLE);
+        hash.add(t.getClass().getName());
+        hash.add(t.getLocalizedMessage());
+        StackTraceElement[] frames = t.getStackTrace();
+        hash.add(frames.length);
+        for (StackTraceElement frame : frames) {
+            long[] frameHash = hashOf(frame);
+            hash.add(frameHash[0]);
+            hash.add(frameHash[1]);
+        }
+        for (Throwable suppressed : t.getSuppressed()) {
+            hash.add(SUPPRESSED);
+            addThrowable(hash, suppressed, seen);
+        }
+        Throwable cause = t.getCause();
+        if (cause != null) {
+            hash.add(CAUSE);
+            addThrowable(hash, cause, seen);
+        }
+        hash.add(END);
+    }
+
+    private long[] hashOf(StackTraceElement frame) {
+        long[] result = frameHashes.get(frame);
+        if (result == null) {
+            Hash128 hash = new Hash128();
+            hash.add(frame.getClassName());
+            hash.add(frame.getMethodName());
+            hash.add(frame.getFileName());
+            hash.add(frame.getLineNumber());
+            result = hash.finish();
+            if (frameHashes.size() >= maxCachedFrames) {
+                frameHashes.clear();
+            }
+            frameHashes.put(frame, result);
+        }
+        return result;
+    }
+
+    /*
+        MurmurHash3 (x64, 128-bit), fed with whole 64-bit blocks instead of bytes. Strings are
+        fed four characters per block, followed by their length.
+     */
+    static class Hash128 {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1;
+        private long h2;
+        private long length;
+
+        void add(String value) {
+            if (value == null) {
+                add(NULL);
+                return;
+            }
+            int length = value.length();
+            for (int i = 0; i < length; i += 4) {
+                long block = 0;
+                for (int j = i; j < Math.min(i + 4, length); j++) {
+                    block = (block << 16) | value.charAt(j);
+                }
+                add(block);
+            }
+            add(length);
+        }
+
+        void add(long block) {
+            long k1 = block * C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            long k2 = block * C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+
+            length++;
+        }
+
+        long[] finish() {
+            long r1 = h1 ^ length;
+            long r2 = h2 ^ length;
+            r1 += r2;
+            r2 += r1;
+            r1 = mix(r1);
+            r2 = mix(r2);
+            r1 += r2;
+            r2 += r1;
+            return new long[] { r1, r2 };
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
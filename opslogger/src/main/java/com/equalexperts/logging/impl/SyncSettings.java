@@ -0,0 +1,22 @@
+package com.equalexperts.logging.impl;
+
+import java.util.Optional;
+
+/**
+ * Tuning options for synchronous OpsLogger instances.
+ * Empty optionals select a sensible default.
+ */
+public class SyncSettings {
+    public static final boolean DEFAULT_WRITE_COMBINING = false;
+    public static final SyncSettings DEFAULTS = new SyncSettings(Optional.empty());
+
+    private final Optional<Boolean> writeCombining;
+
+    public SyncSettings(Optional<Boolean> writeCombining) {
+        this.writeCombining = writeCombining;
+    }
+
+    public boolean isWriteCombining() {
+        return writeCombining.orElse(DEFAULT_WRITE_COMBINING);
+    }
+}
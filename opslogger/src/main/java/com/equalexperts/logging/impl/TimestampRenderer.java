@@ -0,0 +1,53 @@
+package com.equalexperts.logging.impl;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Renders epoch-millisecond timestamps in the ISO-8601 form used by log records,
+ * for example 2014-02-01T14:57:12.500Z.
+ *
+ * The date and time up to the second is rendered once by the DateTimeFormatter and
+ * cached, so records logged within the same second only need their milliseconds rendered.
+ * Instances are thread-safe: the cached prefix is immutable and replaced as a whole.
+ */
+class TimestampRenderer {
+
+    private final DateTimeFormatter formatter;
+    private volatile CachedSecond cachedSecond;
+
+    TimestampRenderer(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+        this.cachedSecond = render(0L);
+    }
+
+    void renderTo(long epochMillis, StringBuilder result) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        CachedSecond second = cachedSecond;
+        if (second.epochSecond != epochSecond) {
+            second = render(epochSecond);
+            cachedSecond = second;
+        }
+        result.append(second.prefix)
+                .append((char) ('0' + millis / 100))
+                .append((char) ('0' + (millis / 10) % 10))
+                .append((char) ('0' + millis % 10))
+                .append('Z');
+    }
+
+    private CachedSecond render(long epochSecond) {
+        String rendered = formatter.format(Instant.ofEpochSecond(epochSecond));
+        return new CachedSecond(epochSecond, rendered.substring(0, rendered.length() - "000Z".length()));
+    }
+
+    private static final class CachedSecond {
+        final long epochSecond;
+        final String prefix;
+
+        CachedSecond(long epochSecond, String prefix) {
+            this.epochSecond = epochSecond;
+            this.prefix = prefix;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -215,6 +216,237 @@ public class OpsLoggerFactoryTest {
         assertSame(expectedSupplier, capturedFactory.getContextSupplier().get());
     }
 
+    @Test
+    public void build_shouldPassTheProvidedKeepFileOpenSettingToTheInternalFactory() throws Exception {
+        factory
+            .setPath(tempFiles.createTempFileThatDoesNotExist(".log"))
+            .setKeepFileOpen(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.getPathSettings().getKeepFileOpen());
+    }
+
+    @Test
+    public void build_shouldPassTheProvidedFileRotationSettingsToTheInternalFactory() throws Exception {
+        factory
+            .setPath(tempFiles.createTempFileThatDoesNotExist(".log"))
+            .setKeepFileOpen(true)
+            .setFileRotationCheckInterval(Duration.ofMillis(250))
+            .setWatchForFileRotation(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(Duration.ofMillis(250), capturedFactory.getPathSettings().getRotationCheckInterval());
+        assertTrue(capturedFactory.getPathSettings().getWatchForRotation());
+    }
+
+    @Test
+    public void build_shouldPassTheProvidedFileLockingPolicyToTheInternalFactory() throws Exception {
+        factory
+            .setPath(tempFiles.createTempFileThatDoesNotExist(".log"))
+            .setFileLockingPolicy(FileLockingPolicy.TRY_LOCK_WITH_BACKOFF)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(FileLockingPolicy.TRY_LOCK_WITH_BACKOFF, capturedFactory.getPathSettings().getFileLockingPolicy());
+    }
+
+    @Test
+    public void build_shouldPassTheProvidedAsyncBufferCapacityToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncBufferCapacity(1024)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(1024, capturedFactory.configureAsyncSettings().getBufferCapacity());
+    }
+
+    @Test
+    public void build_shouldPassTheProvidedAsyncOverflowPolicyAndTimeoutToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncOverflowPolicy(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST)
+            .setAsyncOverflowTimeout(Duration.ofMillis(5))
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST, capturedFactory.configureAsyncSettings().getOverflowPolicy());
+        assertEquals(Duration.ofMillis(5), capturedFactory.configureAsyncSettings().getOverflowTimeout());
+    }
+
+    @Test
+    public void build_shouldPassTheProvidedAsyncBatchSettingsToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncMaxBatchSize(500)
+            .setAsyncMaxBatchBytes(4096L)
+            .setAsyncBatchLinger(Duration.ofMillis(2))
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(500, capturedFactory.configureAsyncSettings().getMaxBatchSize());
+        assertEquals(4096L, capturedFactory.configureAsyncSettings().getMaxBatchBytes());
+        assertEquals(Duration.ofMillis(2), capturedFactory.configureAsyncSettings().getBatchLinger());
+    }
+
+    @Test
+    public void build_shouldPassTheOffHeapBufferSettingToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncOffHeapBuffer(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.configureAsyncSettings().isOffHeapBuffer());
+    }
+
+    @Test
+    public void build_shouldPassTheStripesSettingToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncStripes(8)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(8, capturedFactory.configureAsyncSettings().getStripes());
+    }
+
+    @Test
+    public void build_shouldPassTheFormattingThreadsSettingToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncFormattingThreads(4)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(4, capturedFactory.configureAsyncSettings().getFormattingThreads());
+    }
+
+    @Test
+    public void build_shouldPassTheFormatOnCallingThreadSettingToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncFormatOnCallingThread(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.configureAsyncSettings().isFormatOnCallingThread());
+    }
+
+    @Test
+    public void build_shouldPassTheSharedWriterSettingToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncSharedWriter(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.configureAsyncSettings().isSharedWriter());
+    }
+
+    @Test
+    public void build_shouldPassTheShutdownSettingsToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncCloseTimeout(Duration.ofSeconds(5))
+            .setAsyncShutdownFallback(AsyncShutdownFallback.RAW_DUMP)
+            .setAsyncShutdownHook(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        AsyncSettings settings = capturedFactory.configureAsyncSettings();
+        assertEquals(Optional.of(Duration.ofSeconds(5)), settings.getCloseTimeout());
+        assertEquals(AsyncShutdownFallback.RAW_DUMP, settings.getShutdownFallback());
+        assertTrue(settings.isShutdownHook());
+    }
+
+    @Test
+    public void build_shouldPassTheWaitStrategyToTheInternalFactory() throws Exception {
+        factory
+            .setAsync(true)
+            .setAsyncWaitStrategy(AsyncWaitStrategy.YIELDING)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(AsyncWaitStrategy.YIELDING, capturedFactory.configureAsyncSettings().getWaitStrategy());
+    }
+
+    @Test
+    public void build_shouldPassTheSyncWriteCombiningSettingToTheInternalFactory() throws Exception {
+        factory
+            .setSyncWriteCombining(true)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.configureSyncSettings().isWriteCombining());
+    }
+
+    @Test
+    public void build_shouldPassTheStackTraceFingerprintToTheInternalFactory() throws Exception {
+        factory
+            .setStackTraceFingerprint(StackTraceFingerprint.STRUCTURAL)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(StackTraceFingerprint.STRUCTURAL, capturedFactory.configureStackTraceSettings().getFingerprint());
+    }
+
+    @Test
+    public void build_shouldPassTheBackgroundStackTraceSettingsToTheInternalFactory() throws Exception {
+        factory
+            .setStoreStackTracesInBackground(true)
+            .setStackTraceQueueCapacity(32)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertTrue(capturedFactory.configureStackTraceSettings().isStoreInBackground());
+        assertEquals(32, capturedFactory.configureStackTraceSettings().getQueueCapacity());
+    }
+
+    @Test
+    public void build_shouldPassTheStackTraceStorageFormatToTheInternalFactory() throws Exception {
+        factory
+            .setStackTraceStorageFormat(StackTraceStorageFormat.PACK)
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(StackTraceStorageFormat.PACK, capturedFactory.configureStackTraceSettings().getStorageFormat());
+    }
+
+    @Test
+    public void build_shouldPassTheStackTraceRetentionLimitsToTheInternalFactory() throws Exception {
+        factory
+            .setStackTraceMaxTotalBytes(1024L)
+            .setStackTraceMaxFiles(10)
+            .setStackTraceMaxAge(Duration.ofDays(7))
+            .build();
+
+        InfrastructureFactory capturedFactory = captureProvidedInfrastructureFactory();
+
+        assertEquals(Optional.of(1024L), capturedFactory.configureStackTraceSettings().getMaxTotalBytes());
+        assertEquals(Optional.of(10), capturedFactory.configureStackTraceSettings().getMaxFiles());
+        assertEquals(Optional.of(Duration.ofDays(7)), capturedFactory.configureStackTraceSettings().getMaxAge());
+    }
+
     @SuppressWarnings("AssertEqualsBetweenInconvertibleTypes") //empty optional isn't typed
     @Test
     public void build_shouldPassSensibleDefaultsToTheFactory_givenNothingChosen() throws Exception {
@@ -229,6 +461,27 @@ public class OpsLoggerFactoryTest {
         assertEquals(Optional.empty(), capturedFactory.getStackTraceStoragePath());
         assertEquals(Optional.empty(), capturedFactory.getErrorHandler());
         assertEquals(Optional.empty(), capturedFactory.getContextSupplier());
+        assertEquals(AsyncSettings.DEFAULT_BUFFER_CAPACITY, capturedFactory.configureAsyncSettings().getBufferCapacity());
+        assertEquals(AsyncOverflowPolicy.BLOCK, capturedFactory.configureAsyncSettings().getOverflowPolicy());
+        assertEquals(AsyncSettings.DEFAULT_MAX_BATCH_SIZE, capturedFactory.configureAsyncSettings().getMaxBatchSize());
+        assertEquals(Duration.ZERO, capturedFactory.configureAsyncSettings().getBatchLinger());
+        assertFalse(capturedFactory.configureAsyncSettings().isOffHeapBuffer());
+        assertFalse(capturedFactory.configureSyncSettings().isWriteCombining());
+        assertEquals(AsyncSettings.DEFAULT_STRIPES, capturedFactory.configureAsyncSettings().getStripes());
+        assertEquals(0, capturedFactory.configureAsyncSettings().getFormattingThreads());
+        assertFalse(capturedFactory.configureAsyncSettings().isFormatOnCallingThread());
+        assertEquals(AsyncWaitStrategy.BLOCKING, capturedFactory.configureAsyncSettings().getWaitStrategy());
+        assertFalse(capturedFactory.configureAsyncSettings().isSharedWriter());
+        assertEquals(Optional.empty(), capturedFactory.configureAsyncSettings().getCloseTimeout());
+        assertEquals(AsyncSettings.DEFAULT_SHUTDOWN_FALLBACK, capturedFactory.configureAsyncSettings().getShutdownFallback());
+        assertFalse(capturedFactory.configureAsyncSettings().isShutdownHook());
+        assertEquals(StackTraceFingerprint.MD5, capturedFactory.configureStackTraceSettings().getFingerprint());
+        assertFalse(capturedFactory.configureStackTraceSettings().isStoreInBackground());
+        assertEquals(StackTraceSettings.DEFAULT_QUEUE_CAPACITY, capturedFactory.configureStackTraceSettings().getQueueCapacity());
+        assertEquals(StackTraceStorageFormat.FILE_PER_TRACE, capturedFactory.configureStackTraceSettings().getStorageFormat());
+        assertEquals(Optional.empty(), capturedFactory.configureStackTraceSettings().getMaxTotalBytes());
+        assertEquals(Optional.empty(), capturedFactory.configureStackTraceSettings().getMaxFiles());
+        assertEquals(Optional.empty(), capturedFactory.configureStackTraceSettings().getMaxAge());
     }
 
     @Test
@@ -352,6 +605,556 @@ public class OpsLoggerFactoryTest {
         assertNotSame(first, third);
     }
 
+    @Test
+    public void setKeepFileOpen_shouldClearTheCachedInstance() throws Exception {
+        factory.setKeepFileOpen(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setKeepFileOpen(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setFileRotationCheckInterval_shouldClearTheCachedInstance() throws Exception {
+        factory.setFileRotationCheckInterval(Duration.ofSeconds(5));
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setFileRotationCheckInterval(Duration.ofSeconds(5)).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setFileRotationCheckInterval_shouldThrowAnException_givenANegativeDuration() throws Exception {
+
+        try {
+            factory.setFileRotationCheckInterval(Duration.ofMillis(-1));
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must not be negative"));
+        }
+    }
+
+    @Test
+    public void setWatchForFileRotation_shouldClearTheCachedInstance() throws Exception {
+        factory.setWatchForFileRotation(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setWatchForFileRotation(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceFingerprint_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceFingerprint(StackTraceFingerprint.STRUCTURAL);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceFingerprint(StackTraceFingerprint.STRUCTURAL).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceFingerprint_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setStackTraceFingerprint(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setStoreStackTracesInBackground_shouldClearTheCachedInstance() throws Exception {
+        factory.setStoreStackTracesInBackground(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStoreStackTracesInBackground(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceQueueCapacity_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceQueueCapacity(32);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceQueueCapacity(32).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceQueueCapacity_shouldThrowAnException_givenANonPositiveCapacity() throws Exception {
+        try {
+            factory.setStackTraceQueueCapacity(0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setStackTraceMaxTotalBytes_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceMaxTotalBytes(1024L);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceMaxTotalBytes(1024L).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceMaxTotalBytes_shouldThrowAnException_givenANonPositiveValue() throws Exception {
+        try {
+            factory.setStackTraceMaxTotalBytes(0L);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setStackTraceMaxFiles_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceMaxFiles(10);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceMaxFiles(10).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceMaxFiles_shouldThrowAnException_givenANonPositiveValue() throws Exception {
+        try {
+            factory.setStackTraceMaxFiles(0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setStackTraceMaxAge_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceMaxAge(Duration.ofDays(7));
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceMaxAge(Duration.ofDays(7)).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceMaxAge_shouldThrowAnException_givenANonPositiveDuration() throws Exception {
+        try {
+            factory.setStackTraceMaxAge(Duration.ZERO);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setStackTraceMaxAge_shouldThrowAnException_givenNull() throws Exception {
+        try {
+            factory.setStackTraceMaxAge(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setStackTraceStorageFormat_shouldClearTheCachedInstance() throws Exception {
+        factory.setStackTraceStorageFormat(StackTraceStorageFormat.FILE_PER_TRACE);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setStackTraceStorageFormat(StackTraceStorageFormat.FILE_PER_TRACE).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setStackTraceStorageFormat_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setStackTraceStorageFormat(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setFileLockingPolicy_shouldClearTheCachedInstance() throws Exception {
+        factory.setFileLockingPolicy(FileLockingPolicy.NONE);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setFileLockingPolicy(FileLockingPolicy.NONE).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setFileLockingPolicy_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setFileLockingPolicy(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setAsyncBufferCapacity_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncBufferCapacity(16);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncBufferCapacity(16).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncBufferCapacity_shouldThrowAnException_givenANonPositiveCapacity() throws Exception {
+
+        try {
+            factory.setAsyncBufferCapacity(0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setAsyncOverflowPolicy_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncOverflowPolicy(AsyncOverflowPolicy.DROP_OLDEST);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncOverflowPolicy(AsyncOverflowPolicy.DROP_OLDEST).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncOverflowPolicy_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setAsyncOverflowPolicy(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setAsyncOverflowTimeout_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncOverflowTimeout(Duration.ofMillis(5));
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncOverflowTimeout(Duration.ofMillis(5)).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncOverflowTimeout_shouldThrowAnException_givenANegativeDuration() throws Exception {
+
+        try {
+            factory.setAsyncOverflowTimeout(Duration.ofMillis(-1));
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must not be negative"));
+        }
+    }
+
+    @Test
+    public void setAsyncMaxBatchSize_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncMaxBatchSize(10);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncMaxBatchSize(10).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncMaxBatchSize_shouldThrowAnException_givenANonPositiveSize() throws Exception {
+
+        try {
+            factory.setAsyncMaxBatchSize(0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setAsyncStripes_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncStripes(4);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncStripes(4).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncStripes_shouldThrowAnException_givenANonPositiveCount() throws Exception {
+
+        try {
+            factory.setAsyncStripes(0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setAsyncFormattingThreads_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncFormattingThreads(0);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncFormattingThreads(0).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncFormattingThreads_shouldThrowAnException_givenANegativeCount() throws Exception {
+
+        try {
+            factory.setAsyncFormattingThreads(-1);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must not be negative"));
+        }
+    }
+
+    @Test
+    public void setAsyncFormatOnCallingThread_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncFormatOnCallingThread(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncFormatOnCallingThread(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncSharedWriter_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncSharedWriter(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncSharedWriter(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncWaitStrategy_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncWaitStrategy(AsyncWaitStrategy.SLEEPING);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncWaitStrategy(AsyncWaitStrategy.SLEEPING).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncWaitStrategy_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setAsyncWaitStrategy(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setAsyncCloseTimeout_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncCloseTimeout(Duration.ofSeconds(5));
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncCloseTimeout(Duration.ofSeconds(5)).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncCloseTimeout_shouldThrowAnException_givenANegativeDuration() throws Exception {
+
+        try {
+            factory.setAsyncCloseTimeout(Duration.ofMillis(-1));
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must not be negative"));
+        }
+    }
+
+    @Test
+    public void setAsyncCloseTimeout_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setAsyncCloseTimeout(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setAsyncShutdownFallback_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncShutdownFallback(AsyncShutdownFallback.RAW_DUMP);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncShutdownFallback(AsyncShutdownFallback.RAW_DUMP).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncShutdownFallback_shouldThrowAnException_givenNull() throws Exception {
+
+        try {
+            factory.setAsyncShutdownFallback(null);
+            fail("Expected an exception");
+        } catch (NullPointerException expected) {
+            assertThat(expected.getMessage(), containsString("must not be null"));
+        }
+    }
+
+    @Test
+    public void setAsyncShutdownHook_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncShutdownHook(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncShutdownHook(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncMaxBatchBytes_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncMaxBatchBytes(4096L);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncMaxBatchBytes(4096L).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncMaxBatchBytes_shouldThrowAnException_givenANonPositiveSize() throws Exception {
+
+        try {
+            factory.setAsyncMaxBatchBytes(-1L);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void setAsyncBatchLinger_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncBatchLinger(Duration.ofMillis(1));
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncBatchLinger(Duration.ofMillis(1)).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncOffHeapBuffer_shouldClearTheCachedInstance() throws Exception {
+        factory.setAsyncOffHeapBuffer(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setAsyncOffHeapBuffer(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setSyncWriteCombining_shouldClearTheCachedInstance() throws Exception {
+        factory.setSyncWriteCombining(true);
+
+        OpsLogger<TestMessages> first = factory.build();
+        OpsLogger<TestMessages> second = factory.build();
+        OpsLogger<TestMessages> third = factory.setSyncWriteCombining(true).build(); //even with the same argument
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void setAsyncBatchLinger_shouldThrowAnException_givenANegativeDuration() throws Exception {
+
+        try {
+            factory.setAsyncBatchLinger(Duration.ofMillis(-1));
+            fail("Expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must not be negative"));
+        }
+    }
+
     @Test
     public void setStoreStackTracesInFilesystem_shouldClearTheStackTraceStoragePath_givenFalse() throws Exception {
         Path originalStackTraceDestination = tempFiles.createTempDirectoryThatDoesNotExist();
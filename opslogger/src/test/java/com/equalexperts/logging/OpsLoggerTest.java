@@ -4,6 +4,10 @@ import com.equalexperts.logging.impl.ActiveRotationRegistry;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
@@ -12,6 +16,19 @@ public class OpsLoggerTest {
     @Rule
     public RestoreActiveRotationRegistryFixture registryFixture = new RestoreActiveRotationRegistryFixture();
 
+    @Test
+    public void logLong_shouldBoxTheDetailsAndCallTheVarargsMethod_givenPrimitiveDetailsAndNoSpecialisedImplementation() throws Exception {
+        RecordingOpsLogger logger = new RecordingOpsLogger();
+
+        logger.logLong(TestMessages.Foo, 1L);
+        logger.logLong(TestMessages.Foo, 2L, 3L);
+        logger.logLong(TestMessages.Foo, "four", 5L);
+
+        assertArrayEquals(new Object[] {1L}, logger.details.get(0));
+        assertArrayEquals(new Object[] {2L, 3L}, logger.details.get(1));
+        assertArrayEquals(new Object[] {"four", 5L}, logger.details.get(2));
+    }
+
     @Test
     public void refreshFileHandles_shouldRefreshFileHandlesOnAllRegisteredDestinationsThatSupportActiveRotation() throws Exception {
         ActiveRotationRegistry registry = spy(new ActiveRotationRegistry());
@@ -21,4 +38,51 @@ public class OpsLoggerTest {
 
         verify(registry).refreshFileHandles();
     }
+
+    private static class RecordingOpsLogger implements OpsLogger<TestMessages> {
+        final List<Object[]> details = new ArrayList<>();
+
+        @Override
+        public void log(TestMessages message, Object... details) {
+            this.details.add(details);
+        }
+
+        @Override
+        public void logThrowable(TestMessages message, Throwable cause, Object... details) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OpsLogger<TestMessages> with(DiagnosticContextSupplier override) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event with %s and %s");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
 }
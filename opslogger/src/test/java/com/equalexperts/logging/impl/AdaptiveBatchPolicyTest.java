@@ -0,0 +1,73 @@
+package com.equalexperts.logging.impl;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchPolicyTest {
+
+    private static final long FAST = AdaptiveBatchPolicy.LATENCY_TARGET_NANOS / 10;
+    private static final long SLOW = AdaptiveBatchPolicy.LATENCY_TARGET_NANOS * 2;
+
+    private final AdaptiveBatchPolicy policy = new AdaptiveBatchPolicy(256, 4096L, Duration.ofMillis(2));
+
+    @Test
+    public void constructor_shouldStartAtTheMaximumBatchSize() throws Exception {
+        assertEquals(256, policy.getTargetRecords());
+        assertEquals(4096L, policy.getMaxBytes());
+        assertEquals(Duration.ofMillis(2).toNanos(), policy.getLingerNanos());
+    }
+
+    @Test
+    public void recordEndBatch_shouldHalveTheTarget_whenEndingABatchIsSlow() throws Exception {
+        policy.recordEndBatch(256, SLOW);
+
+        assertEquals(128, policy.getTargetRecords());
+    }
+
+    @Test
+    public void recordEndBatch_shouldNotShrinkBelowTheMinimum() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            policy.recordEndBatch(1, SLOW);
+        }
+
+        assertEquals(AdaptiveBatchPolicy.MIN_TARGET_RECORDS, policy.getTargetRecords());
+    }
+
+    @Test
+    public void recordEndBatch_shouldNotShrinkBelowTheMaximum_givenAMaximumSmallerThanTheMinimum() throws Exception {
+        AdaptiveBatchPolicy smallPolicy = new AdaptiveBatchPolicy(4, 4096L, Duration.ZERO);
+
+        smallPolicy.recordEndBatch(4, SLOW);
+
+        assertEquals(4, smallPolicy.getTargetRecords());
+    }
+
+    @Test
+    public void recordEndBatch_shouldDoubleTheTarget_whenAFullBatchEndsQuickly() throws Exception {
+        policy.recordEndBatch(256, SLOW);
+        policy.recordEndBatch(128, SLOW);
+
+        policy.recordEndBatch(64, FAST);
+
+        assertEquals(128, policy.getTargetRecords());
+    }
+
+    @Test
+    public void recordEndBatch_shouldNotGrowTheTarget_whenAPartialBatchEndsQuickly() throws Exception {
+        policy.recordEndBatch(256, SLOW);
+
+        policy.recordEndBatch(10, FAST);
+
+        assertEquals(128, policy.getTargetRecords());
+    }
+
+    @Test
+    public void recordEndBatch_shouldNotGrowBeyondTheMaximum() throws Exception {
+        policy.recordEndBatch(256, FAST);
+
+        assertEquals(256, policy.getTargetRecords());
+    }
+}
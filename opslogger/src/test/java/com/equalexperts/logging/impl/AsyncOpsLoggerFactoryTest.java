@@ -1,16 +1,23 @@
 package com.equalexperts.logging.impl;
 
 
+import com.equalexperts.logging.AsyncOverflowPolicy;
+import com.equalexperts.logging.AsyncShutdownFallback;
 import com.equalexperts.logging.DiagnosticContextSupplier;
+import com.equalexperts.logging.AsyncWaitStrategy;
 import com.equalexperts.logging.LogMessage;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Optional;
 import java.util.function.Consumer;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -31,6 +38,7 @@ public class AsyncOpsLoggerFactoryTest {
         when(infrastructure.<TestMessages>configureDestination()).thenReturn(expectedDestination);
         when(infrastructure.configureContextSupplier()).thenReturn(expectedDiagnosticContextSupplier);
         when(infrastructure.configureErrorHandler()).thenReturn(expectedErrorHandler);
+        when(infrastructure.configureAsyncSettings()).thenReturn(AsyncSettings.DEFAULTS);
     }
 
     @Test
@@ -42,18 +50,178 @@ public class AsyncOpsLoggerFactoryTest {
         assertSame(expectedDiagnosticContextSupplier, result.getDiagnosticContextSupplier());
         assertSame(expectedDestination, result.getDestination());
         assertSame(expectedErrorHandler, result.getErrorHandler());
-        assertNotNull(result.getTransferQueue());
+        assertNotNull(result.getRingBuffer());
+        assertEquals(AsyncSettings.DEFAULT_BUFFER_CAPACITY, result.getRingBuffer().getCapacity());
+        assertEquals(AsyncSettings.DEFAULT_OVERFLOW_POLICY, result.getOverflowPolicy());
+        assertEquals(AsyncSettings.DEFAULT_OVERFLOW_TIMEOUT, result.getOverflowTimeout());
         verify(mockAsyncExecutor).execute(any(Runnable.class));
     }
 
     @Test
-    public void build_shouldUseANewLinkedTransferQueueForEachConstructedOpsLogger() throws Exception {
+    public void build_shouldUseANewRingBufferForEachConstructedOpsLogger() throws Exception {
         AsyncOpsLogger<TestMessages> firstResult = factory.build(infrastructure);
         AsyncOpsLogger<TestMessages> secondResult = factory.build(infrastructure);
 
-        assertNotNull(firstResult.getTransferQueue());
-        assertNotNull(secondResult.getTransferQueue());
-        assertNotSame(firstResult, secondResult);
+        assertNotNull(firstResult.getRingBuffer());
+        assertNotNull(secondResult.getRingBuffer());
+        assertNotSame(firstResult.getRingBuffer(), secondResult.getRingBuffer());
+    }
+
+    @Test
+    public void build_shouldSizeTheRingBufferFromTheAsyncSettings() throws Exception {
+        when(infrastructure.configureAsyncSettings()).thenReturn(new AsyncSettings(Optional.of(1024), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(1024, result.getRingBuffer().getCapacity());
+    }
+
+    @Test
+    public void build_shouldUseTheOverflowPolicyFromTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.of(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST), Optional.of(Duration.ofMillis(5)), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST, result.getOverflowPolicy());
+        assertEquals(Duration.ofMillis(5), result.getOverflowTimeout());
+    }
+
+    @Test
+    public void build_shouldConfigureTheBatchPolicyFromTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(500), Optional.of(4096L), Optional.of(Duration.ofMillis(2)), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(500, result.getBatchPolicy().getMaxRecords());
+        assertEquals(4096L, result.getBatchPolicy().getMaxBytes());
+        assertEquals(Duration.ofMillis(2).toNanos(), result.getBatchPolicy().getLingerNanos());
+    }
+
+    @Test
+    public void build_shouldCapTheBatchSizeAtTheBufferCapacity() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.of(64), Optional.empty(), Optional.empty(), Optional.of(Integer.MAX_VALUE), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(64, result.getBatchPolicy().getMaxRecords());
+    }
+
+    @Test
+    public void build_shouldUseAnEncodedRecordRing_givenAnOffHeapBufferInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.of(64), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertThat(result.getRingBuffer(), instanceOf(EncodedRecordRing.class));
+        assertEquals(64, result.getRingBuffer().getCapacity());
+    }
+
+    @Test
+    public void build_shouldShareTheBufferCapacityBetweenStripes_givenSeveralStripesInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.of(64), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true), Optional.of(4), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertThat(result.getRingBuffer(), instanceOf(StripedRecordRing.class));
+        StripedRecordRing<TestMessages> ring = (StripedRecordRing<TestMessages>) result.getRingBuffer();
+        assertEquals(4, ring.getStripeCount());
+        assertThat(ring.getStripe(0), instanceOf(EncodedRecordRing.class));
+        assertEquals(16, ring.getStripe(0).getCapacity());
+        assertEquals(64, ring.getCapacity());
+    }
+
+    @Test
+    public void build_shouldUseAFormattingPool_givenFormattingThreadsInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(3), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertTrue(result.getFormattingPool().isPresent());
+        assertEquals(3, result.getFormattingPool().get().getThreads());
+        result.getFormattingPool().get().shutdown();
+    }
+
+    @Test
+    public void build_shouldNotUseAFormattingPool_byDefault() throws Exception {
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertFalse(result.getFormattingPool().isPresent());
+        assertFalse(result.isFormatOnCallingThread());
+    }
+
+    @Test
+    public void build_shouldFormatOnTheCallingThread_givenThatSettingInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertTrue(result.isFormatOnCallingThread());
+    }
+
+    @Test
+    public void build_shouldUseTheSharedWriterInsteadOfAFormattingPool_givenASharedWriter() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(2), Optional.empty(), Optional.empty(), Optional.of(true), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(Optional.of(SharedWriterService.getShared()), result.getSharedWriter());
+        assertEquals(Optional.empty(), result.getFormattingPool());
+        verify(mockAsyncExecutor, never()).execute(any());
+        result.getRingBuffer().shutdown(); //so that the shared writer lets go of the logger
+    }
+
+    @Test
+    public void build_shouldNotUseTheSharedWriter_byDefault() throws Exception {
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(Optional.empty(), result.getSharedWriter());
+    }
+
+    @Test
+    public void build_shouldUseTheShutdownSettingsInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.of(Duration.ofSeconds(3)), Optional.of(AsyncShutdownFallback.RAW_DUMP), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(Optional.of(Duration.ofSeconds(3)), result.getShutdownPolicy().getCloseTimeout());
+        assertEquals(AsyncShutdownFallback.RAW_DUMP, result.getShutdownPolicy().getFallback());
+        assertSame(System.err, result.getShutdownPolicy().getRawDumpStream());
+    }
+
+    @Test
+    public void build_shouldWaitForeverToCloseWithoutAShutdownHook_byDefault() throws Exception {
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(Optional.empty(), result.getShutdownPolicy().getCloseTimeout());
+        assertFalse(result.getShutdownPolicy().isShutdownHook());
+        assertEquals(Optional.empty(), result.getShutdownHook());
+    }
+
+    @Test
+    public void build_shouldUseTheWaitStrategyInTheAsyncSettings() throws Exception {
+        AsyncSettings settings = new AsyncSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(AsyncWaitStrategy.PHASED_BACKOFF), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        when(infrastructure.configureAsyncSettings()).thenReturn(settings);
+
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertEquals(AsyncWaitStrategy.PHASED_BACKOFF, result.getRingBuffer().getWaitStrategy());
+    }
+
+    @Test
+    public void build_shouldNotUseAnEncodedRecordRing_byDefault() throws Exception {
+        AsyncOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertThat(result.getRingBuffer(), not(instanceOf(EncodedRecordRing.class)));
     }
 
     private enum TestMessages implements LogMessage {
@@ -1,58 +1,73 @@
 package com.equalexperts.logging.impl;
 
+import com.equalexperts.logging.AsyncOverflowPolicy;
+import com.equalexperts.logging.AsyncShutdownFallback;
 import com.equalexperts.logging.DiagnosticContextSupplier;
 import com.equalexperts.logging.LogMessage;
 import com.equalexperts.logging.OpsLogger;
-import org.hamcrest.BaseMatcher;
-import org.hamcrest.CoreMatchers;
-import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.*;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.mockito.stubbing.OngoingStubbing;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.*;
 
 public class AsyncOpsLoggerTest {
 
-    public static final int EXPECTED_MAX_BATCH_SIZE = AsyncOpsLogger.MAX_BATCH_SIZE;
+    public static final int EXPECTED_MAX_BATCH_SIZE = AsyncSettings.DEFAULT_MAX_BATCH_SIZE;
+    private static final AsyncSettings DEFAULT_SETTINGS = settings(AsyncOverflowPolicy.BLOCK, false);
     private Clock fixedClock = Clock.fixed(Instant.parse("2014-02-01T14:57:12.500Z"), ZoneOffset.UTC);
     @Mock private Destination<TestMessages> destination;
     @Mock private DiagnosticContextSupplier diagnosticContextSupplier;
     @Mock private Consumer<Throwable> exceptionConsumer;
-    @Mock private LinkedTransferQueue<Optional<LogicalLogRecord<TestMessages>>> transferQueue;
+    @Mock private RingBuffer<LogicalLogRecord<TestMessages>> ringBuffer;
     @Mock private AsyncExecutor executor;
     @Mock private Future<?> processingThread;
 
-    @Captor private ArgumentCaptor<Optional<LogicalLogRecord<TestMessages>>> captor;
+    @Captor private ArgumentCaptor<LogicalLogRecord<TestMessages>> captor;
+    @Captor private ArgumentCaptor<String> lineCaptor;
     @Captor private ArgumentCaptor<Runnable> runnableCaptor;
 
     private OpsLogger<TestMessages> logger;
 
     @Before
-    public void setup() {
+    public void setup() throws Exception {
         MockitoAnnotations.initMocks(this);
 
         when(executor.execute(runnableCaptor.capture())).thenAnswer((i) -> processingThread);
+        doAnswer(this::publishEachRecord).when(destination).publishBatch(any(), any());
 
-        logger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, transferQueue, executor);
+        logger = createLogger(AsyncOverflowPolicy.BLOCK);
     }
 
     @Test
@@ -64,16 +79,15 @@ public class AsyncOpsLoggerTest {
     //region tests for log
 
     @Test
-    public void log_shouldAddALogicalLogRecordToTheQueue_givenALogMessageInstance() throws Exception {
+    public void log_shouldAddALogicalLogRecordToTheRingBuffer_givenALogMessageInstance() throws Exception {
         Map<String,String> expectedCorrelationIds = generateCorrelationIds();
         when(diagnosticContextSupplier.getMessageContext()).thenReturn(expectedCorrelationIds);
-        doNothing().when(transferQueue).put(captor.capture());
 
         logger.log(TestMessages.Bar, 64, "Hello, World");
 
-        verify(transferQueue).put(captor.capture());
+        verify(ringBuffer).put(captor.capture());
 
-        LogicalLogRecord<TestMessages> record = captor.getValue().get();
+        LogicalLogRecord<TestMessages> record = captor.getValue();
         assertEquals(fixedClock.instant(), record.getTimestamp());
         assertEquals(expectedCorrelationIds, record.getDiagnosticContext().getContext());
         assertEquals(TestMessages.Bar, record.getMessage());
@@ -82,6 +96,66 @@ public class AsyncOpsLoggerTest {
         assertArrayEquals(new Object[] {64, "Hello, World"}, record.getDetails());
     }
 
+    @Test
+    public void log_shouldKeepTheTypeOfASingleCharOrIntDetail() throws Exception {
+        logger.log(TestMessages.CharacterConversion, 'q');
+        logger.log(TestMessages.StringConversion, 'q');
+        logger.log(TestMessages.HexConversion, -1);
+
+        verify(ringBuffer, times(3)).put(captor.capture());
+        assertCharAndIntDetailsKeptTheirType(captor.getAllValues());
+    }
+
+    @Test
+    public void log_shouldKeepTheTypeOfASingleCharOrIntDetail_givenAnEncodedRing() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+
+        encodedLogger.log(TestMessages.CharacterConversion, 'q');
+        encodedLogger.log(TestMessages.StringConversion, 'q');
+        encodedLogger.log(TestMessages.HexConversion, -1);
+
+        assertCharAndIntDetailsKeptTheirType(Arrays.asList(ring.poll(), ring.poll(), ring.poll()));
+    }
+
+    @Test
+    public void logLong_shouldAddALogicalLogRecordToTheRingBuffer_givenALongDetail() throws Exception {
+        logger.logLong(TestMessages.Bar, 64L);
+
+        verify(ringBuffer).put(captor.capture());
+        LogicalLogRecord<TestMessages> record = captor.getValue();
+        assertEquals(fixedClock.instant(), record.getTimestamp());
+        assertEquals(TestMessages.Bar, record.getMessage());
+        assertFalse(record.getCause().isPresent());
+        assertArrayEquals(new Object[] {64L}, record.getDetails());
+    }
+
+    @Test
+    public void logLong_shouldAddALogicalLogRecordToTheRingBuffer_givenTwoLongDetails() throws Exception {
+        logger.logLong(TestMessages.Bar, 64L, 42L);
+
+        verify(ringBuffer).put(captor.capture());
+        assertArrayEquals(new Object[] {64L, 42L}, captor.getValue().getDetails());
+    }
+
+    @Test
+    public void logLong_shouldAddALogicalLogRecordToTheRingBuffer_givenAStringAndALongDetail() throws Exception {
+        logger.logLong(TestMessages.Bar, "Hello, World", 42L);
+
+        verify(ringBuffer).put(captor.capture());
+        assertArrayEquals(new Object[] {"Hello, World", 42L}, captor.getValue().getDetails());
+    }
+
+    @Test
+    public void logLong_shouldExposeAnExceptionToTheHandler_givenAProblemAddingARecordWithALongDetailToTheRingBuffer() throws Exception {
+        RuntimeException expectedThrowable = new RuntimeException("blah");
+        doThrow(expectedThrowable).when(ringBuffer).put(any());
+
+        logger.logLong(TestMessages.Bar, 64L);
+
+        verify(exceptionConsumer).accept(Mockito.same(expectedThrowable));
+    }
+
     @Test
     public void log_shouldExposeAnExceptionToTheHandler_givenAProblemCreatingTheLogRecord() throws Exception {
         logger.log(null);
@@ -100,9 +174,9 @@ public class AsyncOpsLoggerTest {
     }
 
     @Test
-    public void log_shouldExposeAnExceptionToTheHandler_givenAProblemAddingAMessageToTheQueue() throws Exception {
+    public void log_shouldExposeAnExceptionToTheHandler_givenAProblemAddingAMessageToTheRingBuffer() throws Exception {
         RuntimeException expectedThrowable = new RuntimeException("blah");
-        doThrow(expectedThrowable).when(transferQueue).put(any());
+        doThrow(expectedThrowable).when(ringBuffer).put(any());
 
         logger.log(TestMessages.Foo);
 
@@ -114,19 +188,17 @@ public class AsyncOpsLoggerTest {
     //region tests for logThrowable
 
     @Test
-    public void logThrowable_shouldAddALogicalLogRecordToTheQueue_givenALogMessageInstanceAndAThrowable() throws Exception {
+    public void logThrowable_shouldAddALogicalLogRecordToTheRingBuffer_givenALogMessageInstanceAndAThrowable() throws Exception {
         Map<String, String> expectedCorrelationIds = generateCorrelationIds();
         when(diagnosticContextSupplier.getMessageContext()).thenReturn(expectedCorrelationIds);
 
         Throwable expectedCause = new RuntimeException();
 
-        doNothing().when(transferQueue).put(captor.capture());
-
         logger.logThrowable(TestMessages.Bar, expectedCause, 64, "Hello, World");
 
-        verify(transferQueue).put(captor.capture());
+        verify(ringBuffer).put(captor.capture());
 
-        LogicalLogRecord<TestMessages> record = captor.getValue().get();
+        LogicalLogRecord<TestMessages> record = captor.getValue();
         assertEquals(fixedClock.instant(), record.getTimestamp());
         assertEquals(expectedCorrelationIds, record.getDiagnosticContext().getContext());
         assertEquals(TestMessages.Bar, record.getMessage());
@@ -154,9 +226,9 @@ public class AsyncOpsLoggerTest {
     }
 
     @Test
-    public void logThrowable_shouldExposeAnExceptionToTheHandler_givenAProblemAddingAMessageToTheQueueAndAThrowable() throws Exception {
+    public void logThrowable_shouldExposeAnExceptionToTheHandler_givenAProblemAddingAMessageToTheRingBufferAndAThrowable() throws Exception {
         RuntimeException expectedThrowable = new RuntimeException("blah");
-        doThrow(expectedThrowable).when(transferQueue).put(any());
+        doThrow(expectedThrowable).when(ringBuffer).put(any());
 
         logger.logThrowable(TestMessages.Foo, new Exception());
 
@@ -165,6 +237,623 @@ public class AsyncOpsLoggerTest {
 
     //endregion
 
+    //region tests for the encoded ring
+
+    @Test
+    public void log_shouldWriteTheRecordIntoTheRing_givenAnEncodedRing() throws Exception {
+        Map<String,String> expectedCorrelationIds = generateCorrelationIds();
+        when(diagnosticContextSupplier.getMessageContext()).thenReturn(expectedCorrelationIds);
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+
+        encodedLogger.logLong(TestMessages.Bar, 64L, 42L);
+        encodedLogger.logLong(TestMessages.Bar, "Hello, World", 42L);
+        encodedLogger.log(TestMessages.Bar, 64, "Hello, World");
+
+        LogicalLogRecord<TestMessages> record = ring.poll();
+        assertEquals(fixedClock.instant(), record.getTimestamp());
+        assertEquals(expectedCorrelationIds, record.getDiagnosticContext().getContext());
+        assertEquals(TestMessages.Bar, record.getMessage());
+        assertFalse(record.getCause().isPresent());
+        assertArrayEquals(new Object[] {64L, 42L}, record.getDetails());
+        assertArrayEquals(new Object[] {"Hello, World", 42L}, ring.poll().getDetails());
+        assertArrayEquals(new Object[] {64, "Hello, World"}, ring.poll().getDetails());
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    @Test
+    public void logThrowable_shouldWriteTheRecordAndCauseIntoTheRing_givenAnEncodedRing() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        RuntimeException expectedCause = new RuntimeException();
+
+        encodedLogger.logThrowable(TestMessages.Bar, expectedCause, 64, "Hello, World");
+
+        LogicalLogRecord<TestMessages> record = ring.poll();
+        assertSame(expectedCause, record.getCause().get());
+        assertArrayEquals(new Object[] {64, "Hello, World"}, record.getDetails());
+    }
+
+    @Test
+    public void log_shouldExposeAnExceptionToTheHandlerWithoutClaimingASlot_givenAnEncodedRingAndAProblemCreatingTheRecord() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        Error expectedThrowable = new Error();
+        when(diagnosticContextSupplier.getMessageContext()).thenThrow(expectedThrowable).thenReturn(Collections.emptyMap());
+
+        encodedLogger.logLong(null, 1L);
+        encodedLogger.logLong(TestMessages.Foo, 2L);
+        encodedLogger.logLong(TestMessages.Foo, 3L);
+
+        verify(exceptionConsumer).accept(Mockito.isA(NullPointerException.class));
+        verify(exceptionConsumer).accept(Mockito.same(expectedThrowable));
+        assertArrayEquals(new Object[] {3L}, ring.poll().getDetails()); //no slot was left unpublished
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void log_shouldDropTheNewRecord_givenAnEncodedRingTheDropNewestPolicyAndAFullRing() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(2);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST, ring);
+
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+        encodedLogger.logLong(TestMessages.Foo, 2L);
+        encodedLogger.logLong(TestMessages.Bar, 3L);
+
+        assertArrayEquals(new Object[] {1L}, ring.poll().getDetails());
+        assertArrayEquals(new Object[] {2L}, ring.poll().getDetails());
+        assertNull(ring.poll());
+        String summary = encodedLogger.getDroppedRecordTracker().takeSummary(fixedClock.instant()).get();
+        assertThat(summary, containsString("CODE-Bar=1"));
+    }
+
+    @Test
+    public void log_shouldEvictTheOldestRecord_givenAnEncodedRingTheDropOldestPolicyAndAFullRing() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(2);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.DROP_OLDEST, ring);
+
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+        encodedLogger.logLong(TestMessages.Bar, 2L);
+        encodedLogger.logLong(TestMessages.Bar, 3L);
+
+        assertArrayEquals(new Object[] {2L}, ring.poll().getDetails());
+        assertArrayEquals(new Object[] {3L}, ring.poll().getDetails());
+        String summary = encodedLogger.getDroppedRecordTracker().takeSummary(fixedClock.instant()).get();
+        assertThat(summary, containsString("CODE-Foo=1"));
+        assertThat(summary, not(containsString("CODE-Bar")));
+    }
+
+    @Test
+    public void log_shouldWaitUpToTheTimeoutAndThenDropTheRecord_givenAnEncodedRingAndTheBlockThenDropNewestPolicy() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(2);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST, ring);
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+
+        long start = System.nanoTime();
+        encodedLogger.logLong(TestMessages.Bar, 2L);
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        assertTrue(encodedLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    @Test
+    public void processingThread_shouldPublishRecordsFromAnEncodedRing() throws Exception {
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(16);
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        List<LogicalLogRecord<TestMessages>> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<LogicalLogRecord<TestMessages>> records = (List<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+            published.addAll(records);
+            return null;
+        }).when(destination).publishBatch(any(), any());
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+        encodedLogger.logLong(TestMessages.Bar, "id", 2L);
+        ring.shutdown();
+
+        runnableCaptor.getValue().run();
+
+        assertEquals(2, published.size());
+        assertArrayEquals(new Object[] {1L}, published.get(0).getDetails());
+        assertArrayEquals(new Object[] {"id", 2L}, published.get(1).getDetails());
+    }
+
+    @Test
+    public void log_shouldWriteTheRecordIntoTheStripeOfTheCallingThreadWithoutAddingARecordObject_givenAStripedRingOfEncodedRings() throws Exception {
+        List<EncodedRecordRing<TestMessages>> stripes = new ArrayList<>();
+        StripedRecordRing<TestMessages> ring = new StripedRecordRing<>(2, () -> {
+            EncodedRecordRing<TestMessages> stripe = spy(new EncodedRecordRing<>(4));
+            stripes.add(stripe);
+            return stripe;
+        });
+        AsyncOpsLogger<TestMessages> encodedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+
+        encodedLogger.logLong(TestMessages.Foo, 1L);
+        encodedLogger.log(TestMessages.Bar, 64, "Hello, World");
+
+        RingBuffer<LogicalLogRecord<TestMessages>> callersStripe = ring.currentStripe();
+        assertEquals(2, callersStripe.size());
+        for (EncodedRecordRing<TestMessages> stripe : stripes) {
+            verify(stripe, never()).put(any());
+            verify(stripe, never()).offer(any());
+        }
+        assertArrayEquals(new Object[] {1L}, callersStripe.poll().getDetails());
+        assertArrayEquals(new Object[] {64, "Hello, World"}, callersStripe.poll().getDetails());
+    }
+
+    @Test
+    public void processingThread_shouldPublishTheRecordsOfEveryStripe_givenAStripedRing() throws Exception {
+        StripedRecordRing<TestMessages> ring = new StripedRecordRing<>(2, () -> new RingBuffer<>(4));
+        AsyncOpsLogger<TestMessages> stripedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        List<LogicalLogRecord<TestMessages>> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<LogicalLogRecord<TestMessages>> records = (List<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+            published.addAll(records);
+            return null;
+        }).when(destination).publishBatch(any(), any());
+        stripedLogger.logLong(TestMessages.Foo, 1L);
+        Thread otherThread = new Thread(() -> stripedLogger.logLong(TestMessages.Bar, 2L));
+        otherThread.start();
+        otherThread.join();
+        ring.shutdown();
+
+        runnableCaptor.getValue().run();
+
+        assertEquals(2, published.size());
+        assertEquals(2, published.stream().map(LogicalLogRecord::getMessage).distinct().count());
+    }
+
+    @Test
+    public void processingThread_shouldWriteFormattedLinesInOrder_givenAFormattingPool() throws Exception {
+        FormattingPool pool = new FormattingPool(2, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(64);
+        AsyncSettings smallBatches = batchSettings(3, AsyncSettings.DEFAULT_MAX_BATCH_BYTES, Duration.ZERO);
+        AsyncOpsLogger<TestMessages> pipelinedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, smallBatches, ShutdownPolicy.WAIT_FOREVER, Optional.of(pool), Optional.empty(), executor);
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        List<String> written = new ArrayList<>();
+        doAnswer(invocation -> written.addAll(decodeLines((BatchEncoder) invocation.getArguments()[0]))).when(destination).publishEncoded(any());
+        IntStream.range(0, 20).forEach(i -> pipelinedLogger.log(TestMessages.Bar, i, "x"));
+        ring.shutdown();
+
+        runnableCaptor.getValue().run();
+        pool.shutdown();
+
+        List<String> expected = IntStream.range(0, 20)
+                .mapToObj(i -> "2014-02-01T14:57:12.500Z,CODE-Bar,An event with " + i + " x messages")
+                .collect(toList());
+        assertEquals(expected, written);
+        verify(destination, never()).publishBatch(any(), any());
+        verify(destination, never()).publishSyntheticLine(any());
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    @Test
+    public void processingThread_shouldSplitTheFormattedLinesIntoBatchesByEncodedSize_givenAFormattingPool() throws Exception {
+        FormattingPool pool = new FormattingPool(1, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        String wide = "\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9\u00e9"; //10 chars, 20 bytes
+        String line = "2014-02-01T14:57:12.500Z,CODE-Bar,An event with 1 " + wide + " messages";
+        long lineBytes = (line + System.getProperty("line.separator")).getBytes(UTF_8).length;
+        AsyncSettings byteLimited = batchSettings(8, lineBytes, Duration.ZERO);
+        AsyncOpsLogger<TestMessages> pipelinedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, byteLimited, ShutdownPolicy.WAIT_FOREVER, Optional.of(pool), Optional.empty(), executor);
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        List<Long> chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> chunkSizes.add(((BatchEncoder) invocation.getArguments()[0]).size())).when(destination).publishEncoded(any());
+        pipelinedLogger.log(TestMessages.Bar, 1, wide);
+        pipelinedLogger.log(TestMessages.Bar, 1, wide);
+        ring.shutdown();
+
+        runnableCaptor.getValue().run();
+        pool.shutdown();
+
+        assertEquals(Arrays.asList(lineBytes, lineBytes), chunkSizes);
+        verify(destination, times(2)).beginBatch();
+        verify(destination, times(2)).endBatch();
+    }
+
+    @Test
+    public void processingThread_shouldExposeAnExceptionToTheHandlerAndWriteTheOtherRecords_givenAFormattingPoolAndARecordWhichCannotBeFormatted() throws Exception {
+        FormattingPool pool = new FormattingPool(1, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> pipelinedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.of(pool), Optional.empty(), executor);
+        StackTraceProcessor processor = mock(StackTraceProcessor.class);
+        RuntimeException expectedException = new RuntimeException();
+        doThrow(expectedException).when(processor).process(any(), any());
+        when(destination.getStackTraceProcessor()).thenReturn(processor);
+        List<String> written = new ArrayList<>();
+        doAnswer(invocation -> written.addAll(decodeLines((BatchEncoder) invocation.getArguments()[0]))).when(destination).publishEncoded(any());
+        pipelinedLogger.logThrowable(TestMessages.Foo, new Exception());
+        pipelinedLogger.log(TestMessages.Foo);
+        ring.shutdown();
+
+        runnableCaptor.getValue().run();
+        pool.shutdown();
+
+        verify(exceptionConsumer).accept(same(expectedException));
+        assertEquals(Collections.singletonList("2014-02-01T14:57:12.500Z,CODE-Foo,An event occurred"), written);
+    }
+
+    @Test
+    public void log_shouldAddAFormattedRecord_givenFormattingOnTheCallingThread() throws Exception {
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        AsyncOpsLogger<TestMessages> callerFormattingLogger = createCallerFormattingLogger(ringBuffer);
+        StringBuilder mutableDetail = new StringBuilder("before");
+
+        callerFormattingLogger.log(TestMessages.Bar, 64, mutableDetail);
+        mutableDetail.replace(0, mutableDetail.length(), "after");
+
+        verify(ringBuffer).put(captor.capture());
+        LogicalLogRecord<TestMessages> record = captor.getValue();
+        assertEquals(LogicalLogRecord.DetailShape.FORMATTED, record.getDetailShape());
+        assertEquals("2014-02-01T14:57:12.500Z,CODE-Bar,An event with 64 before messages", record.format(new SimpleStackTraceProcessor()));
+    }
+
+    @Test
+    public void logThrowable_shouldProcessTheStackTraceOnTheCallingThread_givenFormattingOnTheCallingThread() throws Exception {
+        StackTraceProcessor processor = mock(StackTraceProcessor.class);
+        when(destination.getStackTraceProcessor()).thenReturn(processor);
+        AsyncOpsLogger<TestMessages> callerFormattingLogger = createCallerFormattingLogger(ringBuffer);
+        RuntimeException cause = new RuntimeException();
+
+        callerFormattingLogger.logThrowable(TestMessages.Foo, cause);
+
+        verify(processor).process(same(cause), any());
+        verify(ringBuffer).put(captor.capture());
+        assertFalse(captor.getValue().getCause().isPresent());
+    }
+
+    @Test
+    public void log_shouldExposeAnExceptionToTheHandlerAndNotAddTheRecord_givenFormattingOnTheCallingThreadAndAProblemFormattingTheRecord() throws Exception {
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        AsyncOpsLogger<TestMessages> callerFormattingLogger = createCallerFormattingLogger(ringBuffer);
+
+        callerFormattingLogger.log(TestMessages.Bar, "not a number", "x");
+
+        verify(exceptionConsumer).accept(isA(IllegalFormatConversionException.class));
+        verifyZeroInteractions(ringBuffer);
+    }
+
+    @Test
+    public void log_shouldAddAFormattedRecord_givenFormattingOnTheCallingThreadAndAnEncodedRing() throws Exception {
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+        AsyncOpsLogger<TestMessages> callerFormattingLogger = createCallerFormattingLogger(ring);
+
+        callerFormattingLogger.logLong(TestMessages.Foo, 7L);
+
+        LogicalLogRecord<TestMessages> record = ring.poll();
+        assertEquals(LogicalLogRecord.DetailShape.FORMATTED, record.getDetailShape());
+        assertEquals("2014-02-01T14:57:12.500Z,CODE-Foo,An event occurred", record.format(new SimpleStackTraceProcessor()));
+    }
+
+    @Test
+    public void close_shouldShutDownTheFormattingPool() throws Exception {
+        FormattingPool pool = mock(FormattingPool.class);
+        AsyncOpsLogger<TestMessages> pipelinedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ringBuffer, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.of(pool), Optional.empty(), executor);
+
+        pipelinedLogger.close();
+
+        InOrder order = inOrder(processingThread, pool, destination);
+        order.verify(processingThread).get();
+        order.verify(pool).shutdown();
+        order.verify(destination).close();
+    }
+
+    @Test
+    public void constructor_shouldRegisterWithTheSharedWriterInsteadOfStartingAThread_givenASharedWriter() throws Exception {
+        SharedWriterService sharedWriter = mock(SharedWriterService.class);
+        doReturn(processingThread).when(sharedWriter).register(any(), any());
+
+        AsyncOpsLogger<TestMessages> sharedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ringBuffer, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.of(sharedWriter), executor);
+        sharedLogger.close();
+
+        assertEquals(Optional.of(sharedWriter), sharedLogger.getSharedWriter());
+        verify(sharedWriter).register(same(ringBuffer), any());
+        verify(executor, times(1)).execute(any()); //only for the logger created by the test setup
+        InOrder order = inOrder(ringBuffer, processingThread, destination);
+        order.verify(ringBuffer).shutdown();
+        order.verify(processingThread).get();
+        order.verify(destination).close();
+    }
+
+    @Test
+    public void close_shouldWaitForTheSharedWriterToWriteEveryRecord_givenASharedWriter() throws Exception {
+        SharedWriterService sharedWriter = new SharedWriterService(1, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> sharedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.of(sharedWriter), executor);
+        List<String> written = new ArrayList<>();
+        doAnswer(invocation -> written.add(((LogicalLogRecord<?>) invocation.getArguments()[0]).format(new SimpleStackTraceProcessor()))).when(destination).publish(any());
+        IntStream.range(0, 20).forEach(i -> sharedLogger.log(TestMessages.Bar, i, "x"));
+
+        sharedLogger.close();
+        sharedWriter.shutdown();
+
+        List<String> expected = IntStream.range(0, 20)
+                .mapToObj(i -> "2014-02-01T14:57:12.500Z,CODE-Bar,An event with " + i + " x messages")
+                .collect(toList());
+        assertEquals(expected, written);
+        assertEquals(0, sharedWriter.getRegistrationCount());
+        verify(destination).close();
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    //endregion
+
+    //region tests for flush
+
+    @Test
+    public void flush_shouldCompleteOnceTheRecordsLoggedBeforeItHaveBeenWrittenAndForced() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> flushingLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        flushingLogger.log(TestMessages.Foo);
+
+        CompletableFuture<Void> result = flushingLogger.flush(true);
+        assertFalse(result.isDone());
+        ring.shutdown();
+        runnableCaptor.getValue().run();
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+        InOrder order = inOrder(destination);
+        order.verify(destination).publish(any());
+        order.verify(destination).force();
+    }
+
+    @Test
+    public void flush_shouldNotForceTheDestination_givenForceIsNotRequested() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> flushingLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        flushingLogger.log(TestMessages.Foo);
+
+        CompletableFuture<Void> result = flushingLogger.flush();
+        ring.shutdown();
+        runnableCaptor.getValue().run();
+
+        assertTrue(result.isDone());
+        verify(destination).publish(any());
+        verify(destination, never()).force();
+    }
+
+    @Test
+    public void flush_shouldWakeTheBackgroundThread() throws Exception {
+        logger.flush();
+
+        verify(ringBuffer).wake();
+    }
+
+    @Test
+    public void flush_shouldCompleteTheFutureExceptionallyAndExposeTheException_givenAProblemForcingTheDestination() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> flushingLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        IOException expectedException = new IOException("Couldn't force the file");
+        doThrow(expectedException).when(destination).force();
+
+        CompletableFuture<Void> result = flushingLogger.flush(true);
+        ring.shutdown();
+        runnableCaptor.getValue().run();
+
+        try {
+            result.get();
+            fail("expected an exception");
+        } catch (ExecutionException expected) {
+            assertSame(expectedException, expected.getCause());
+        }
+        verify(exceptionConsumer).accept(expectedException);
+    }
+
+    @Test
+    public void flush_shouldCompleteTheFutureExceptionally_whenTheLoggerIsClosedFirst() throws Exception {
+        CompletableFuture<Void> result = logger.flush();
+
+        logger.close();
+
+        try {
+            result.get();
+            fail("expected an exception");
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause(), instanceOf(IllegalStateException.class));
+            assertEquals("OpsLogger has been closed", expected.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void flush_shouldCompleteTheFutureExceptionally_givenAClosedLogger() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> closedLogger = createLogger(AsyncOverflowPolicy.BLOCK, ring);
+        ring.shutdown();
+        when(processingThread.isDone()).thenReturn(true);
+
+        CompletableFuture<Void> result = closedLogger.flush();
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void flush_shouldWaitForEveryRecordLoggedBeforeIt_givenARunningBackgroundThread() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(16);
+        AsyncOpsLogger<TestMessages> runningLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), new AsyncExecutor(Executors.defaultThreadFactory()));
+        List<LogicalLogRecord<?>> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> written.add((LogicalLogRecord<?>) invocation.getArguments()[0])).when(destination).publish(any());
+
+        runningLogger.flush().get(10, TimeUnit.SECONDS); //nothing to write
+        IntStream.range(0, 100).forEach(i -> runningLogger.log(TestMessages.Bar, i, "x"));
+        runningLogger.logDurable(TestMessages.Foo).get(10, TimeUnit.SECONDS);
+
+        assertEquals(101, written.size());
+        verify(destination).force();
+        runningLogger.close();
+    }
+
+    @Test
+    public void logDurable_shouldCompleteTheFutureExceptionally_givenTheRecordIsDroppedBecauseTheRingBufferIsFull() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(2);
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST, ring);
+        dropNewestLogger.log(TestMessages.Foo);
+        dropNewestLogger.log(TestMessages.Foo);
+
+        CompletableFuture<Void> result = dropNewestLogger.logDurable(TestMessages.Bar, 1, "x");
+        ring.shutdown();
+        runnableCaptor.getValue().run();
+
+        assertTrue(result.isCompletedExceptionally());
+        verify(destination, times(2)).publish(any());
+        verify(destination).force();
+    }
+
+    @Test
+    public void logDurable_shouldCompleteTheFutureExceptionally_givenTheRecordCannotBeFormatted() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        TestPrintStream output = new TestPrintStream();
+        Destination<TestMessages> formattingDestination = new OutputStreamDestination<>(output, new SimpleStackTraceProcessor());
+        AsyncOpsLogger<TestMessages> formattingLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, formattingDestination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), executor);
+
+        CompletableFuture<Void> result = formattingLogger.logDurable(TestMessages.Bar, "not a number", "x");
+        ring.shutdown();
+        runnableCaptor.getValue().run();
+
+        assertTrue(result.isCompletedExceptionally());
+        verify(exceptionConsumer).accept(isA(IllegalFormatConversionException.class));
+        assertEquals("", output.toString());
+    }
+
+    @Test
+    public void logDurable_shouldCompleteTheFutureNormally_givenAProblemWrittenBeforeTheRecordWasLogged() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        TestPrintStream output = new TestPrintStream();
+        Destination<TestMessages> formattingDestination = new OutputStreamDestination<>(output, new SimpleStackTraceProcessor());
+        AsyncOpsLogger<TestMessages> runningLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, formattingDestination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), new AsyncExecutor(Executors.defaultThreadFactory()));
+        runningLogger.log(TestMessages.Bar, "not a number", "x");
+        runningLogger.flush().get(10, TimeUnit.SECONDS); //a flush does not track individual records
+
+        runningLogger.logDurable(TestMessages.Foo).get(10, TimeUnit.SECONDS);
+
+        verify(exceptionConsumer).accept(isA(IllegalFormatConversionException.class));
+        assertEquals("2014-02-01T14:57:12.500Z,CODE-Foo,An event occurred" + System.getProperty("line.separator"), output.toString());
+        runningLogger.close();
+    }
+
+    @Test
+    public void flush_shouldWaitForEveryRecordLoggedBeforeIt_givenASharedWriter() throws Exception {
+        SharedWriterService sharedWriter = new SharedWriterService(1, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(16);
+        AsyncOpsLogger<TestMessages> sharedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, DEFAULT_SETTINGS, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.of(sharedWriter), executor);
+        List<LogicalLogRecord<?>> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> written.add((LogicalLogRecord<?>) invocation.getArguments()[0])).when(destination).publish(any());
+
+        sharedLogger.flush().get(10, TimeUnit.SECONDS); //nothing to write
+        IntStream.range(0, 100).forEach(i -> sharedLogger.log(TestMessages.Bar, i, "x"));
+        sharedLogger.flush(true).get(10, TimeUnit.SECONDS);
+
+        assertEquals(100, written.size());
+        verify(destination).force();
+        sharedLogger.close();
+        sharedWriter.shutdown();
+    }
+
+    @Test
+    public void flush_shouldWriteTheBatchesAlreadyFormatting_givenAFormattingPool() throws Exception {
+        FormattingPool pool = new FormattingPool(2, Executors.defaultThreadFactory());
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(64);
+        AsyncSettings smallBatches = batchSettings(3, AsyncSettings.DEFAULT_MAX_BATCH_BYTES, Duration.ZERO);
+        AsyncOpsLogger<TestMessages> pipelinedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, smallBatches, ShutdownPolicy.WAIT_FOREVER, Optional.of(pool), Optional.empty(), new AsyncExecutor(Executors.defaultThreadFactory()));
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> written.addAll(decodeLines((BatchEncoder) invocation.getArguments()[0]))).when(destination).publishEncoded(any());
+        doAnswer(invocation -> written.add(((LogicalLogRecord<?>) invocation.getArguments()[0]).format(new SimpleStackTraceProcessor()))).when(destination).publish(any());
+
+        IntStream.range(0, 20).forEach(i -> pipelinedLogger.log(TestMessages.Bar, i, "x"));
+        pipelinedLogger.flush().get(10, TimeUnit.SECONDS);
+
+        List<String> expected = IntStream.range(0, 20)
+                .mapToObj(i -> "2014-02-01T14:57:12.500Z,CODE-Bar,An event with " + i + " x messages")
+                .collect(toList());
+        assertEquals(expected, written);
+        pipelinedLogger.close();
+    }
+
+    //region tests for overflow policies
+
+    @Test
+    public void log_shouldWaitForSpaceInTheRingBuffer_givenTheBlockPolicy() throws Exception {
+        logger.log(TestMessages.Foo);
+
+        verify(ringBuffer).put(any());
+        verify(ringBuffer, never()).offer(any());
+    }
+
+    @Test
+    public void log_shouldDropTheNewRecord_givenTheDropNewestPolicyAndAFullRingBuffer() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(false);
+
+        dropNewestLogger.log(TestMessages.Bar, 1, "a");
+
+        verify(ringBuffer, never()).put(any());
+        String summary = dropNewestLogger.getDroppedRecordTracker().takeSummary(fixedClock.instant()).get();
+        assertThat(summary, containsString("1 records dropped"));
+        assertThat(summary, containsString("CODE-Bar=1"));
+    }
+
+    @Test
+    public void log_shouldNotCountADrop_givenTheDropNewestPolicyAndSpaceInTheRingBuffer() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(true);
+
+        dropNewestLogger.log(TestMessages.Bar, 1, "a");
+
+        assertFalse(dropNewestLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    @Test
+    public void log_shouldEvictTheOldestRecord_givenTheDropOldestPolicyAndAFullRingBuffer() throws Exception {
+        AsyncOpsLogger<TestMessages> dropOldestLogger = createLogger(AsyncOverflowPolicy.DROP_OLDEST);
+        when(ringBuffer.offer(any())).thenReturn(false, true);
+        when(ringBuffer.poll()).thenReturn(constructLogicalLogMessage(TestMessages.Foo));
+
+        dropOldestLogger.log(TestMessages.Bar, 1, "a");
+
+        verify(ringBuffer).poll();
+        verify(ringBuffer, times(2)).offer(any());
+        String summary = dropOldestLogger.getDroppedRecordTracker().takeSummary(fixedClock.instant()).get();
+        assertThat(summary, containsString("CODE-Foo=1"));
+        assertThat(summary, not(containsString("CODE-Bar")));
+    }
+
+    @Test
+    public void log_shouldWaitUpToTheTimeoutAndThenDropTheRecord_givenTheBlockThenDropNewestPolicy() throws Exception {
+        AsyncOpsLogger<TestMessages> timeoutLogger = createLogger(AsyncOverflowPolicy.BLOCK_THEN_DROP_NEWEST);
+        when(ringBuffer.offer(any(), anyLong(), any())).thenReturn(false);
+
+        timeoutLogger.log(TestMessages.Foo);
+
+        verify(ringBuffer).offer(any(), eq(Duration.ofMillis(50).toNanos()), eq(NANOSECONDS));
+        assertTrue(timeoutLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    @Test
+    public void logThrowable_shouldDropTheNewRecord_givenTheDropNewestPolicyAndAFullRingBuffer() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(false);
+
+        dropNewestLogger.logThrowable(TestMessages.Foo, new RuntimeException());
+
+        assertTrue(dropNewestLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    @Test
+    public void with_shouldShareDroppedRecordAccountingWithTheParentLogger() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(false);
+
+        dropNewestLogger.with(Collections::emptyMap).log(TestMessages.Foo);
+
+        assertTrue(dropNewestLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    //endregion
+
     @Test
     public void with_shouldReturnANewAsyncOpsLoggerWithAnOverriddenDiagnosticContextSupplier_givenADiagnosticContextSupplier() throws Exception {
         DiagnosticContextSupplier localSupplier = Collections::emptyMap;
@@ -176,7 +865,8 @@ public class AsyncOpsLoggerTest {
         assertSame(asyncLogger.getClock(), result.getClock());
         assertSame(asyncLogger.getErrorHandler(), result.getErrorHandler());
         assertSame(asyncLogger.getDestination(), result.getDestination());
-        assertSame(asyncLogger.getTransferQueue(), result.getTransferQueue());
+        assertSame(asyncLogger.getRingBuffer(), result.getRingBuffer());
+        assertSame(asyncLogger.getOverflowPolicy(), result.getOverflowPolicy());
         assertSame(localSupplier, result.getDiagnosticContextSupplier());
         assertNotSame(asyncLogger.getDiagnosticContextSupplier(), result.getDiagnosticContextSupplier());
     }
@@ -185,8 +875,8 @@ public class AsyncOpsLoggerTest {
     public void close_shouldSendAStopSignalToTheProcessingThreadWaitForItToFinishAndCloseTheDestination() throws Exception {
         logger.close();
 
-        InOrder order = inOrder(transferQueue, processingThread, destination);
-        order.verify(transferQueue).put(argThat(isEmpty()));
+        InOrder order = inOrder(ringBuffer, processingThread, destination);
+        order.verify(ringBuffer).shutdown();
         order.verify(processingThread).get();
         order.verify(destination).close();
     }
@@ -202,6 +892,79 @@ public class AsyncOpsLoggerTest {
         verify(destination).close();
     }
 
+    @Test
+    public void close_shouldCloseTheDestination_whenTheProcessingThreadFinishesWithinTheCloseTimeout() throws Exception {
+        AsyncOpsLogger<TestMessages> timedLogger = createTimedLogger(ringBuffer, AsyncShutdownFallback.DISCARD, System.err);
+
+        timedLogger.close();
+
+        InOrder order = inOrder(ringBuffer, processingThread, destination);
+        order.verify(ringBuffer).shutdown();
+        order.verify(processingThread).get(Duration.ofMillis(100).toNanos(), NANOSECONDS);
+        order.verify(destination).close();
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    @Test
+    public void close_shouldDiscardTheQueuedRecordsAndReportThem_whenTheCloseTimeoutPasses_givenTheDiscardFallback() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        AsyncOpsLogger<TestMessages> timedLogger = createTimedLogger(ring, AsyncShutdownFallback.DISCARD, System.err);
+        timedLogger.log(TestMessages.Foo);
+        timedLogger.log(TestMessages.Foo);
+        when(processingThread.get(anyLong(), any())).thenThrow(new TimeoutException());
+
+        timedLogger.close();
+
+        assertEquals(0, ring.size());
+        ArgumentCaptor<Throwable> captor = ArgumentCaptor.forClass(Throwable.class);
+        verify(exceptionConsumer).accept(captor.capture());
+        assertThat(captor.getValue().getMessage(), containsString("did not finish writing within PT0.1S: 0 queued records were written and 2 were discarded"));
+        verify(destination, never()).close(); //the background thread may still be using it
+        verify(destination, never()).publish(any());
+    }
+
+    @Test
+    public void close_shouldDumpTheQueuedRecordsWithoutFormattingThem_whenTheCloseTimeoutPasses_givenTheRawDumpFallback() throws Exception {
+        RingBuffer<LogicalLogRecord<TestMessages>> ring = new RingBuffer<>(8);
+        TestPrintStream dump = new TestPrintStream();
+        AsyncOpsLogger<TestMessages> timedLogger = createTimedLogger(ring, AsyncShutdownFallback.RAW_DUMP, dump);
+        timedLogger.log(TestMessages.Foo);
+        timedLogger.log(TestMessages.Bar, 7, "x");
+        when(processingThread.get(anyLong(), any())).thenThrow(new TimeoutException());
+
+        timedLogger.close();
+
+        String separator = System.getProperty("line.separator");
+        long millis = fixedClock.millis();
+        assertEquals(millis + ",CODE-Foo" + separator + millis + ",CODE-Bar,7,x" + separator, dump.toString());
+        verify(exceptionConsumer).accept(argThat(hasMessage("2 were dumped without formatting")));
+    }
+
+    @Test
+    public void constructor_shouldAddAShutdownHookWhichClosesTheLogger_givenAShutdownPolicyWithAHook() throws Exception {
+        ShutdownPolicy policy = new ShutdownPolicy(Optional.empty(), AsyncShutdownFallback.DISCARD, true, System.err);
+        AsyncOpsLogger<TestMessages> hookedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ringBuffer, DEFAULT_SETTINGS, policy, Optional.empty(), Optional.empty(), executor);
+        Thread hook = hookedLogger.getShutdownHook().get();
+
+        hook.run(); //as the JVM would when shutting down
+
+        verify(ringBuffer).shutdown();
+        verify(destination).close();
+        assertFalse("the hook should have been removed", Runtime.getRuntime().removeShutdownHook(hook));
+    }
+
+    @Test
+    public void close_shouldRemoveTheShutdownHook() throws Exception {
+        ShutdownPolicy policy = new ShutdownPolicy(Optional.empty(), AsyncShutdownFallback.DISCARD, true, System.err);
+        AsyncOpsLogger<TestMessages> hookedLogger = new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ringBuffer, DEFAULT_SETTINGS, policy, Optional.empty(), Optional.empty(), executor);
+        Thread hook = hookedLogger.getShutdownHook().get();
+
+        hookedLogger.close();
+
+        assertFalse("the hook should have been removed", Runtime.getRuntime().removeShutdownHook(hook));
+        assertEquals(Optional.empty(), hookedLogger.with(Collections::emptyMap).getShutdownHook());
+    }
+
     @Test
     public void close_shouldIgnoreCalls_givenANestedLoggerCreatedByWith() throws Exception {
         AsyncOpsLogger<TestMessages> asyncLogger = (AsyncOpsLogger<TestMessages>) logger;
@@ -210,69 +973,66 @@ public class AsyncOpsLoggerTest {
 
         nested.close();
 
-        verifyZeroInteractions(destination, transferQueue, processingThread);
+        verifyZeroInteractions(destination, ringBuffer, processingThread);
     }
 
     @Test
-    public void processingThread_shouldTakeBatchesOfUpTo100InALoopUntilItReceivesAnEmptyOptional() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(141).stream().map(Optional::of).collect(toList());
-        messages.add(130, Optional.empty()); //add in the middle of the last block — loop should process all messages in the last batch, regardless of where the signal is
-        setupTransferQueueExpectations(messages, 60, 40, 42);
+    public void processingThread_shouldDrainBatchesOfUpTo100InALoopUntilTheRingBufferIsShutDownAndEmpty() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(141);
+        setupRingBufferExpectations(messages, 60, 40, 41);
 
         runnableCaptor.getValue().run();
 
-        InOrder order = inOrder(transferQueue);
-        //expect three take/drainTo combination calls (take blocks, drainTo does not)
-        order.verify(transferQueue).take();
-        order.verify(transferQueue).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE - 1));
-        order.verify(transferQueue).take();
-        order.verify(transferQueue).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE - 1));
-        order.verify(transferQueue).take();
-        order.verify(transferQueue).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE - 1));
+        InOrder order = inOrder(ringBuffer);
+        //expect three awaitEntries/drainTo combination calls (awaitEntries blocks, drainTo does not)
+        order.verify(ringBuffer).awaitEntries();
+        order.verify(ringBuffer).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE));
+        order.verify(ringBuffer).awaitEntries();
+        order.verify(ringBuffer).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE));
+        order.verify(ringBuffer).awaitEntries();
+        order.verify(ringBuffer).drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE));
+        order.verify(ringBuffer).awaitEntries(); //shut down and drained
         order.verifyNoMoreInteractions();
     }
 
     @Test
     public void processingThread_shouldSubmitReceivedMessagesToTheDestinationInBatches() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(5).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 4, 2);
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(5);
+        setupRingBufferExpectations(messages, 4, 1);
 
         runnableCaptor.getValue().run();
 
         InOrder order = inOrder(destination);
         order.verify(destination).beginBatch();
-        order.verify(destination).publish(messages.get(0).get());
-        order.verify(destination).publish(messages.get(1).get());
-        order.verify(destination).publish(messages.get(2).get());
-        order.verify(destination).publish(messages.get(3).get());
+        order.verify(destination).publish(messages.get(0));
+        order.verify(destination).publish(messages.get(1));
+        order.verify(destination).publish(messages.get(2));
+        order.verify(destination).publish(messages.get(3));
         order.verify(destination).endBatch();
         order.verify(destination).beginBatch();
-        order.verify(destination).publish(messages.get(4).get());
+        order.verify(destination).publish(messages.get(4));
         order.verify(destination).endBatch();
         order.verifyNoMoreInteractions();
     }
 
     @Test
     public void processingThread_shouldExposeAnExceptionToTheHandlerAndContinueProcessing_givenAnException() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(2).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 1, 1, 1);
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(2);
+        setupRingBufferExpectations(messages, 1, 1);
 
         Exception expectedException = new Exception("something went wrong");
-        doThrow(expectedException).when(destination).publish(messages.get(0).get());
+        doThrow(expectedException).when(destination).publish(messages.get(0));
 
         runnableCaptor.getValue().run();
 
         verify(exceptionConsumer).accept(expectedException);
-        verify(destination).publish(messages.get(1).get());
+        verify(destination).publish(messages.get(1));
     }
 
     @Test
     public void processingThread_shouldSkipTheEntireBatch_whenAnExceptionIsThrownByBeginBatch() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(2).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 1, 2);
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(2);
+        setupRingBufferExpectations(messages, 1, 1);
 
         Exception expectedException = new Exception("error starting batch");
         doThrow(expectedException).doNothing().when(destination).beginBatch();
@@ -283,16 +1043,15 @@ public class AsyncOpsLoggerTest {
         order.verify(destination).beginBatch();
         order.verify(exceptionConsumer).accept(expectedException);
         order.verify(destination).beginBatch();
-        order.verify(destination).publish(messages.get(1).get());
+        order.verify(destination).publish(messages.get(1));
     }
 
     @Test
     public void processingThread_shouldCloseTheBatch_whenAnExceptionIsThrownPublishingABatchMember() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(1).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 1, 1);
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(1);
+        setupRingBufferExpectations(messages, 1);
 
-        doThrow(new Exception("error starting batch")).when(destination).publish(messages.get(0).get());
+        doThrow(new Exception("error starting batch")).when(destination).publish(messages.get(0));
 
         runnableCaptor.getValue().run();
 
@@ -303,12 +1062,11 @@ public class AsyncOpsLoggerTest {
 
     @Test
     public void processingThread_shouldContinueProcessingTheBatch_whenAnExceptionIsThrownPublishingABatchMember() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(4).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 4, 1); //send close in a separate batch to stop an infinite loop when the test fails
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(4);
+        setupRingBufferExpectations(messages, 4);
 
         Exception expectedException = new Exception("error starting batch");
-        doThrow(expectedException).when(destination).publish(messages.get(1).get());
+        doThrow(expectedException).when(destination).publish(messages.get(1));
 
         runnableCaptor.getValue().run();
 
@@ -318,9 +1076,8 @@ public class AsyncOpsLoggerTest {
 
     @Test
     public void processingThread_shouldEndEvenIfABatchErrorOccursInTheLastBatch() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = buildMessages(1).stream().map(Optional::of).collect(toList());
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 2);
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(1);
+        setupRingBufferExpectations(messages, 1);
 
         doThrow(new Exception()).when(destination).beginBatch();
 
@@ -329,68 +1086,278 @@ public class AsyncOpsLoggerTest {
 
     @Test
     public void processingThread_shouldNotBeginOrEndAnEmptyBatch() throws Exception {
-        List<Optional<LogicalLogRecord<TestMessages>>> messages = new ArrayList<>();
-        messages.add(Optional.empty());
-        setupTransferQueueExpectations(messages, 1);
+        setupRingBufferExpectations(new ArrayList<>());
 
         runnableCaptor.getValue().run();
 
         verifyZeroInteractions(destination);
     }
 
-    private void setupTransferQueueExpectations(List<Optional<LogicalLogRecord<TestMessages>>> messages, int... batchSizes) throws Exception {
+    @Test
+    public void processingThread_shouldExposeAnExceptionToTheHandlerAndKeepWaiting_whenWaitingForEntriesIsInterrupted() throws Exception {
+        InterruptedException expectedException = new InterruptedException();
+        when(ringBuffer.awaitEntries()).thenThrow(expectedException).thenReturn(false);
+
+        runnableCaptor.getValue().run();
+
+        verify(exceptionConsumer).accept(expectedException);
+        verify(ringBuffer, times(2)).awaitEntries();
+    }
+
+    @Test
+    public void processingThread_shouldWriteASummaryOfDroppedRecords_whenShuttingDown() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(false);
+        dropNewestLogger.log(TestMessages.Foo);
+        dropNewestLogger.log(TestMessages.Foo);
+        dropNewestLogger.log(TestMessages.Bar, 1, "a");
+        when(ringBuffer.awaitEntries(anyLong(), any())).thenReturn(false); //shut down and drained
+
+        runnableCaptor.getValue().run();
+
+        InOrder order = inOrder(destination);
+        order.verify(destination).beginBatch();
+        order.verify(destination).publishSyntheticLine(lineCaptor.capture());
+        order.verify(destination).endBatch();
+        assertEquals("2014-02-01T14:57:12.500Z,OPSLOGGER-DROPPED,3 records dropped since 2014-02-01T14:57:12.500Z (CODE-Foo=2;CODE-Bar=1)", lineCaptor.getValue());
+        assertFalse(dropNewestLogger.getDroppedRecordTracker().hasDrops());
+    }
+
+    @Test
+    public void processingThread_shouldWaitNoLongerThanTheSummaryInterval_whenRecordsHaveBeenDropped() throws Exception {
+        AsyncOpsLogger<TestMessages> dropNewestLogger = createLogger(AsyncOverflowPolicy.DROP_NEWEST);
+        when(ringBuffer.offer(any())).thenReturn(false);
+        dropNewestLogger.log(TestMessages.Foo);
+        when(ringBuffer.awaitEntries(anyLong(), any())).thenReturn(false);
+
+        runnableCaptor.getValue().run();
+
+        verify(ringBuffer).awaitEntries(AsyncOpsLogger.DROPPED_RECORD_SUMMARY_INTERVAL.toNanos(), NANOSECONDS);
+        verify(ringBuffer, never()).awaitEntries();
+    }
+
+    @Test
+    public void processingThread_shouldNotWriteASummary_whenNoRecordsHaveBeenDropped() throws Exception {
+        setupRingBufferExpectations(buildMessages(1), 1);
+
+        runnableCaptor.getValue().run();
+
+        verify(destination, never()).publishSyntheticLine(any());
+    }
+
+    @Test
+    public void processingThread_shouldSplitABatchIntoSeveralDestinationBatches_whenItExceedsTheByteLimit() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(5);
+        int recordSize = messages.get(0).estimateFormattedLength();
+        createLogger(batchSettings(EXPECTED_MAX_BATCH_SIZE, recordSize * 2, Duration.ZERO));
+        setupRingBufferExpectations(messages, 5);
+
+        runnableCaptor.getValue().run();
+
+        InOrder order = inOrder(destination);
+        for (int i = 0; i < 5; i += 2) {
+            order.verify(destination).beginBatch();
+            order.verify(destination).publish(messages.get(i));
+            if (i + 1 < 5) {
+                order.verify(destination).publish(messages.get(i + 1));
+            }
+            order.verify(destination).endBatch();
+        }
+        order.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void processingThread_shouldPublishARecordLargerThanTheByteLimitOnItsOwn() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(2);
+        createLogger(batchSettings(EXPECTED_MAX_BATCH_SIZE, 1L, Duration.ZERO));
+        setupRingBufferExpectations(messages, 2);
+
+        runnableCaptor.getValue().run();
+
+        verify(destination, times(2)).beginBatch();
+        verify(destination).publish(messages.get(0));
+        verify(destination).publish(messages.get(1));
+        verify(destination, times(2)).endBatch();
+    }
+
+    @Test
+    public void processingThread_shouldWaitForMoreRecordsUntilTheBatchIsFull_givenALingerTime() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(EXPECTED_MAX_BATCH_SIZE);
+        createLogger(batchSettings(EXPECTED_MAX_BATCH_SIZE, Long.MAX_VALUE, Duration.ofSeconds(10)));
+        when(ringBuffer.awaitEntries()).thenReturn(true, false);
+        when(ringBuffer.awaitEntries(anyLong(), eq(NANOSECONDS))).thenReturn(true);
+        when(ringBuffer.drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE))).thenAnswer(addAll(messages.subList(0, 3)));
+        when(ringBuffer.drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE - 3))).thenAnswer(addAll(messages.subList(3, EXPECTED_MAX_BATCH_SIZE)));
+
+        runnableCaptor.getValue().run();
+
+        verify(destination, times(1)).beginBatch();
+        verify(destination, times(EXPECTED_MAX_BATCH_SIZE)).publish(any());
+        verify(destination, times(1)).endBatch();
+        verify(ringBuffer, times(1)).awaitEntries(anyLong(), eq(NANOSECONDS));
+    }
+
+    @Test
+    public void processingThread_shouldStopLingering_whenTheRingBufferIsShutDownAndEmpty() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(3);
+        createLogger(batchSettings(EXPECTED_MAX_BATCH_SIZE, Long.MAX_VALUE, Duration.ofSeconds(10)));
+        when(ringBuffer.awaitEntries()).thenReturn(true, false);
+        when(ringBuffer.awaitEntries(anyLong(), eq(NANOSECONDS))).thenReturn(false);
+        when(ringBuffer.drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE))).thenAnswer(addAll(messages));
+
+        runnableCaptor.getValue().run();
+
+        verify(destination).beginBatch();
+        verify(destination, times(3)).publish(any());
+        verify(destination).endBatch();
+        verify(ringBuffer).drainTo(any(), anyInt());
+    }
+
+    @Test
+    public void processingThread_shouldNotLinger_givenNoLingerTime() throws Exception {
+        setupRingBufferExpectations(buildMessages(3), 3);
+
+        runnableCaptor.getValue().run();
+
+        verify(ringBuffer, never()).awaitEntries(anyLong(), any());
+    }
+
+    @Test
+    public void processingThread_shouldPublishEachBatchToTheDestinationAsAWhole() throws Exception {
+        List<LogicalLogRecord<TestMessages>> messages = buildMessages(5);
+        setupRingBufferExpectations(messages, 5);
+        List<List<LogicalLogRecord<TestMessages>>> published = new ArrayList<>();
+        RuntimeException expectedException = new RuntimeException();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<LogicalLogRecord<TestMessages>> records = (List<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+            published.add(new ArrayList<>(records)); //the batch list is reused once the batch has been written
+            @SuppressWarnings("unchecked")
+            Consumer<Throwable> errorHandler = (Consumer<Throwable>) invocation.getArguments()[1];
+            errorHandler.accept(expectedException);
+            return null;
+        }).when(destination).publishBatch(any(), any());
+
+        runnableCaptor.getValue().run();
+
+        assertEquals(Collections.singletonList(messages), published);
+        verify(destination, never()).publish(any());
+        verify(exceptionConsumer).accept(same(expectedException)); //problems with a record reach the error handler
+    }
+
+    private AsyncOpsLogger<TestMessages> createLogger(AsyncOverflowPolicy overflowPolicy) {
+        return createLogger(settings(overflowPolicy, false));
+    }
+
+    private AsyncOpsLogger<TestMessages> createLogger(AsyncOverflowPolicy overflowPolicy, RingBuffer<LogicalLogRecord<TestMessages>> ring) {
+        return new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, settings(overflowPolicy, false), ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), executor);
+    }
+
+    private AsyncOpsLogger<TestMessages> createTimedLogger(RingBuffer<LogicalLogRecord<TestMessages>> ring, AsyncShutdownFallback fallback, PrintStream dumpStream) {
+        ShutdownPolicy policy = new ShutdownPolicy(Optional.of(Duration.ofMillis(100)), fallback, false, dumpStream);
+        return new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, DEFAULT_SETTINGS, policy, Optional.empty(), Optional.empty(), executor);
+    }
+
+    private static List<String> decodeLines(BatchEncoder lines) {
+        StringBuilder text = new StringBuilder();
+        lines.decodeTo(text);
+        return Arrays.asList(text.toString().split(BatchEncoder.LINE_SEPARATOR));
+    }
+
+    private static Matcher<Throwable> hasMessage(String text) {
+        return new ArgumentMatcher<Throwable>() {
+            @Override
+            public boolean matches(Object argument) {
+                return (argument instanceof Throwable) && ((Throwable) argument).getMessage().contains(text);
+            }
+        };
+    }
+
+    private AsyncOpsLogger<TestMessages> createCallerFormattingLogger(RingBuffer<LogicalLogRecord<TestMessages>> ring) {
+        return new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ring, settings(AsyncOverflowPolicy.BLOCK, true), ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), executor);
+    }
+
+    private AsyncOpsLogger<TestMessages> createLogger(AsyncSettings settings) {
+        return new AsyncOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, exceptionConsumer, ringBuffer, settings, ShutdownPolicy.WAIT_FOREVER, Optional.empty(), Optional.empty(), executor);
+    }
+
+    private static AsyncSettings settings(AsyncOverflowPolicy overflowPolicy, boolean formatOnCallingThread) {
+        return settings(overflowPolicy, AsyncSettings.DEFAULT_MAX_BATCH_SIZE, AsyncSettings.DEFAULT_MAX_BATCH_BYTES, AsyncSettings.DEFAULT_BATCH_LINGER, formatOnCallingThread);
+    }
+
+    private static AsyncSettings batchSettings(int maxBatchSize, long maxBatchBytes, Duration batchLinger) {
+        return settings(AsyncOverflowPolicy.BLOCK, maxBatchSize, maxBatchBytes, batchLinger, false);
+    }
+
+    private static AsyncSettings settings(AsyncOverflowPolicy overflowPolicy, int maxBatchSize, long maxBatchBytes, Duration batchLinger, boolean formatOnCallingThread) {
+        return new AsyncSettings(Optional.empty(), Optional.of(overflowPolicy), Optional.of(Duration.ofMillis(50)), Optional.of(maxBatchSize), Optional.of(maxBatchBytes), Optional.of(batchLinger), Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.of(formatOnCallingThread), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    /*
+        Mockito cannot call the default publishBatch implementation on a mock, so do the same thing here
+     */
+    private Object publishEachRecord(InvocationOnMock invocation) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<LogicalLogRecord<TestMessages>> records = (List<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+        @SuppressWarnings("unchecked")
+        Consumer<Throwable> handler = (Consumer<Throwable>) invocation.getArguments()[1];
+        for (LogicalLogRecord<TestMessages> record : records) {
+            try {
+                destination.publish(record);
+            } catch (Throwable t) {
+                handler.accept(t);
+            }
+        }
+        return null;
+    }
+
+    private Answer<Object> addAll(List<LogicalLogRecord<TestMessages>> records) {
+        return invocation -> {
+            @SuppressWarnings("unchecked")
+            Collection<LogicalLogRecord<TestMessages>> collection = (Collection<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+            collection.addAll(records);
+            return records.size();
+        };
+    }
+
+    private void setupRingBufferExpectations(List<LogicalLogRecord<TestMessages>> messages, int... batchSizes) throws Exception {
         int totalSize = IntStream.of(batchSizes)
-                .peek((i) -> assertTrue("A TransferQueue will never return more than asked for", i <= EXPECTED_MAX_BATCH_SIZE))
+                .peek((i) -> assertTrue("A RingBuffer will never return more than asked for", i <= EXPECTED_MAX_BATCH_SIZE))
                 .sum();
         assertEquals("precondition: message size must equal total size of all batches", messages.size(), totalSize);
 
-        final List<Integer> batchSizeList = IntStream.of(batchSizes).mapToObj((i) -> i).collect(toList());
-
         /*
-            batches are retrieved in a sequence of take(), drainTo() calls,
-            but we can't interleave when calls to the two mocks.
-            solution: mock the takes calls first, and then the drainTo calls.
+            batches are retrieved in a sequence of awaitEntries(), drainTo() calls.
+            awaitEntries returns true once per batch, and then false to signal that the buffer has been shut down.
         */
 
-        List<Optional<LogicalLogRecord<TestMessages>>> takeCallResults = new ArrayList<>();
-        List<List<Optional<LogicalLogRecord<TestMessages>>>> drainCallResults = new ArrayList<>();
+        List<List<LogicalLogRecord<TestMessages>>> drainCallResults = new ArrayList<>();
         int positionSoFar = 0;
-        for (int i : batchSizeList) {
-            takeCallResults.add(messages.get(positionSoFar));
-            drainCallResults.add(messages.subList(positionSoFar + 1, positionSoFar + i));
+        for (int i : batchSizes) {
+            drainCallResults.add(messages.subList(positionSoFar, positionSoFar + i));
             positionSoFar += i;
         }
 
-        OngoingStubbing<Optional<LogicalLogRecord<TestMessages>>> takeCall = when(transferQueue.take()).thenReturn(takeCallResults.get(0));
-        for (Optional<LogicalLogRecord<TestMessages>> takeResult : takeCallResults.subList(1, takeCallResults.size())) {
-            takeCall = takeCall.thenReturn(takeResult);
+        OngoingStubbing<Boolean> awaitCall = when(ringBuffer.awaitEntries());
+        for (int i = 0; i < batchSizes.length; i++) {
+            awaitCall = awaitCall.thenReturn(true);
         }
+        awaitCall.thenReturn(false);
 
         Answer<Object> drainAnswer = invocation -> {
-
-            assertThat("too many calls to drainTo", takeCallResults.size(), not(is(0)));
-            assertThat("some sort of error in mock setup", drainCallResults.size(), is(takeCallResults.size()));
+            assertThat("too many calls to drainTo", drainCallResults.size(), not(is(0)));
 
             @SuppressWarnings("unchecked")
-            List<Optional<LogicalLogRecord<TestMessages>>> collection = (List<Optional<LogicalLogRecord<TestMessages>>>) invocation.getArguments()[0];
-            int batchSize = batchSizeList.get(0);
+            List<LogicalLogRecord<TestMessages>> collection = (List<LogicalLogRecord<TestMessages>>) invocation.getArguments()[0];
+            assertEquals(0, collection.size());
 
-
-            assertEquals(1, collection.size());
-            assertThat(collection, CoreMatchers.hasItem(takeCallResults.get(0)));
-            drainCallResults.get(0).stream().forEach(collection::add);
-
-
-            takeCallResults.remove(0);
-            drainCallResults.remove(0);
-            return batchSize;
+            List<LogicalLogRecord<TestMessages>> batch = drainCallResults.remove(0);
+            collection.addAll(batch);
+            return batch.size();
         };
 
-        OngoingStubbing<Integer> drainCall = when(transferQueue.drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE - 1))).thenAnswer(drainAnswer);
-
-        for (int i = 1; i < drainCallResults.size(); i++) {
-            drainCall = drainCall.thenAnswer(drainAnswer);
-        }
+        when(ringBuffer.drainTo(any(), eq(EXPECTED_MAX_BATCH_SIZE))).thenAnswer(drainAnswer);
     }
 
     private List<LogicalLogRecord<TestMessages>> buildMessages(int count) {
@@ -412,27 +1379,19 @@ public class AsyncOpsLoggerTest {
         return result;
     }
 
-    private static <T> Matcher<Optional<T>> isEmpty() {
-        return new BaseMatcher<Optional<T>>() {
-            @Override
-            public boolean matches(Object item) {
-                if (!(item instanceof Optional)) {
-                    return false;
-                }
-                Optional<?> optional = (Optional<?>) item;
-                return !optional.isPresent();
-            }
-
-            @Override
-            public void describeTo(Description description) {
-                description.appendText("an empty optional");
-            }
-        };
+    private void assertCharAndIntDetailsKeptTheirType(List<LogicalLogRecord<TestMessages>> records) throws Exception {
+        assertThat(records.get(0).format(new SimpleStackTraceProcessor()), containsString("Character q"));
+        assertThat(records.get(1).format(new SimpleStackTraceProcessor()), containsString("String q"));
+        assertThat(records.get(2).format(new SimpleStackTraceProcessor()), containsString("Hex ffffffff"));
+        verifyZeroInteractions(exceptionConsumer);
     }
 
     private enum TestMessages implements LogMessage {
         Foo("CODE-Foo", "An event occurred"),
-        Bar("CODE-Bar", "An event with %d %s messages");
+        Bar("CODE-Bar", "An event with %d %s messages"),
+        CharacterConversion("CODE-CharacterConversion", "Character %c"),
+        StringConversion("CODE-StringConversion", "String %s"),
+        HexConversion("CODE-HexConversion", "Hex %x");
 
         //region LogMessage implementation guts
         private final String messageCode;
@@ -8,6 +8,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.time.Clock;
 import java.util.HashMap;
+import java.util.Optional;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
@@ -31,6 +32,7 @@ public class BasicOpsLoggerFactoryTest {
         when(infrastructure.<TestMessages>configureDestination()).thenReturn(expectedDestination);
         when(infrastructure.configureContextSupplier()).thenReturn(expectedDiagnosticContextSupplier);
         when(infrastructure.configureErrorHandler()).thenReturn(expectedErrorHandler);
+        when(infrastructure.configureSyncSettings()).thenReturn(SyncSettings.DEFAULTS);
     }
 
     @Test
@@ -45,6 +47,16 @@ public class BasicOpsLoggerFactoryTest {
         assertNotNull(result.getLock());
         assertThat(result.getLock(), instanceOf(ReentrantLock.class));
         assertSame(expectedErrorHandler, result.getErrorHandler());
+        assertFalse(result.isWriteCombining());
+    }
+
+    @Test
+    public void build_shouldCombineWrites_givenWriteCombiningIsEnabled() throws Exception {
+        when(infrastructure.configureSyncSettings()).thenReturn(new SyncSettings(Optional.of(true)));
+
+        BasicOpsLogger<TestMessages> result = factory.build(infrastructure);
+
+        assertTrue(result.isWriteCombining());
     }
 
     @Test
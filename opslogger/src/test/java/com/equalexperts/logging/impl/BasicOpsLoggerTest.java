@@ -13,11 +13,16 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IllegalFormatConversionException;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -61,6 +66,62 @@ public class BasicOpsLoggerTest {
         assertArrayEquals(new Object[] {64, "Hello, World"}, record.getDetails());
     }
 
+    @Test
+    public void log_shouldKeepTheTypeOfASingleCharOrIntDetail() throws Exception {
+        doNothing().when(destination).publish(captor.capture());
+
+        logger.log(TestMessages.CharacterConversion, 'q');
+        logger.log(TestMessages.StringConversion, 'q');
+        logger.log(TestMessages.HexConversion, -1);
+
+        List<LogicalLogRecord<TestMessages>> records = captor.getAllValues();
+        assertThat(records.get(0).format(new SimpleStackTraceProcessor()), containsString("Character q"));
+        assertThat(records.get(1).format(new SimpleStackTraceProcessor()), containsString("String q"));
+        assertThat(records.get(2).format(new SimpleStackTraceProcessor()), containsString("Hex ffffffff"));
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    @Test
+    public void logLong_shouldWriteALogicalLogRecordToTheDestination_givenALongDetail() throws Exception {
+        doNothing().when(destination).publish(captor.capture());
+
+        logger.logLong(TestMessages.Bar, 64L);
+
+        LogicalLogRecord<TestMessages> record = captor.getValue();
+        assertEquals(fixedClock.instant(), record.getTimestamp());
+        assertEquals(TestMessages.Bar, record.getMessage());
+        assertFalse(record.getCause().isPresent());
+        assertArrayEquals(new Object[] {64L}, record.getDetails());
+    }
+
+    @Test
+    public void logLong_shouldWriteALogicalLogRecordToTheDestination_givenTwoLongDetails() throws Exception {
+        doNothing().when(destination).publish(captor.capture());
+
+        logger.logLong(TestMessages.Bar, 64L, 42L);
+
+        assertArrayEquals(new Object[] {64L, 42L}, captor.getValue().getDetails());
+    }
+
+    @Test
+    public void logLong_shouldWriteALogicalLogRecordToTheDestination_givenAStringAndALongDetail() throws Exception {
+        doNothing().when(destination).publish(captor.capture());
+
+        logger.logLong(TestMessages.Bar, "Hello, World", 42L);
+
+        assertArrayEquals(new Object[] {"Hello, World", 42L}, captor.getValue().getDetails());
+    }
+
+    @Test
+    public void logLong_shouldExposeAnExceptionToTheHandler_givenAProblemPublishingALogRecordWithALongDetail() throws Exception {
+        RuntimeException expectedException = new RuntimeException("blah");
+        doThrow(expectedException).when(destination).publish(any());
+
+        logger.logLong(TestMessages.Bar, 64L);
+
+        verify(exceptionConsumer).accept(Mockito.same(expectedException));
+    }
+
     @Test
     public void log_shouldObtainAndReleaseALockAndBeginAndEndADestinationBatch_givenALogMessageInstance() throws Exception {
         logger.log(TestMessages.Foo);
@@ -130,6 +191,38 @@ public class BasicOpsLoggerTest {
         inOrder.verify(lock).unlock();
     }
 
+    @Test
+    public void log_shouldWriteAFormattedLineInABatch_givenWriteCombiningIsEnabled() throws Exception {
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        when(diagnosticContextSupplier.getMessageContext()).thenReturn(Collections.emptyMap());
+        OpsLogger<TestMessages> combiningLogger = new BasicOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, lock, exceptionConsumer, true);
+        when(lock.tryLock()).thenReturn(true);
+
+        combiningLogger.log(TestMessages.Bar, 64, "Hello, World");
+
+        InOrder inOrder = inOrder(lock, destination);
+        inOrder.verify(lock).tryLock();
+        inOrder.verify(destination).beginBatch();
+        inOrder.verify(destination).publishSyntheticLine("2014-02-01T14:57:12.500Z,CODE-Bar,An event with 64 Hello, World messages");
+        inOrder.verify(destination).endBatch();
+        inOrder.verify(lock).unlock();
+        verifyZeroInteractions(exceptionConsumer);
+    }
+
+    @Test
+    public void log_shouldExposeAnExceptionToTheHandler_givenWriteCombiningIsEnabledAndAProblemPublishingALogRecord() throws Exception {
+        RuntimeException expectedException = new RuntimeException();
+        when(destination.getStackTraceProcessor()).thenReturn(new SimpleStackTraceProcessor());
+        doThrow(expectedException).when(destination).publishSyntheticLine(any());
+        OpsLogger<TestMessages> combiningLogger = new BasicOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, lock, exceptionConsumer, true);
+        when(lock.tryLock()).thenReturn(true);
+
+        combiningLogger.log(TestMessages.Foo);
+
+        verify(exceptionConsumer).accept(Mockito.same(expectedException));
+        verify(lock).unlock();
+    }
+
     //endregion
 
     //region tests for logThrowable
@@ -241,6 +334,75 @@ public class BasicOpsLoggerTest {
         assertSame(basicLogger.getLock(), result.getLock());
         assertSame(localSupplier, result.getDiagnosticContextSupplier());
         assertNotSame(basicLogger.getDiagnosticContextSupplier(), result.getDiagnosticContextSupplier());
+        assertFalse(result.isWriteCombining());
+    }
+
+    @Test
+    public void with_shouldReturnANewBasicOpsLoggerWhichCombinesWrites_givenWriteCombiningIsEnabled() throws Exception {
+        BasicOpsLogger<TestMessages> basicLogger = new BasicOpsLogger<>(fixedClock, diagnosticContextSupplier, destination, lock, exceptionConsumer, true);
+
+        BasicOpsLogger<TestMessages> result = basicLogger.with(Collections::emptyMap);
+
+        assertTrue(basicLogger.isWriteCombining());
+        assertTrue(result.isWriteCombining());
+    }
+
+    @Test
+    public void flush_shouldReturnACompletedFutureWithoutForcing_givenForceIsNotRequested() throws Exception {
+        CompletableFuture<Void> result = logger.flush();
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+        verifyZeroInteractions(destination, lock);
+    }
+
+    @Test
+    public void flush_shouldForceTheDestinationWhileHoldingTheLock_givenForceIsRequested() throws Exception {
+        CompletableFuture<Void> result = logger.flush(true);
+
+        assertTrue(result.isDone());
+        assertFalse(result.isCompletedExceptionally());
+        InOrder order = inOrder(lock, destination);
+        order.verify(lock).lock();
+        order.verify(destination).force();
+        order.verify(lock).unlock();
+    }
+
+    @Test
+    public void flush_shouldCompleteTheFutureExceptionally_givenAProblemForcingTheDestination() throws Exception {
+        IOException expectedException = new IOException("Couldn't force the file");
+        doThrow(expectedException).when(destination).force();
+
+        CompletableFuture<Void> result = logger.flush(true);
+
+        try {
+            result.get();
+            fail("expected an exception");
+        } catch (ExecutionException expected) {
+            assertSame(expectedException, expected.getCause());
+        }
+        verify(lock).unlock();
+    }
+
+    @Test
+    public void logDurable_shouldWriteTheMessageAndThenForceTheDestination() throws Exception {
+        CompletableFuture<Void> result = logger.logDurable(TestMessages.Foo);
+
+        assertTrue(result.isDone());
+        InOrder order = inOrder(destination);
+        order.verify(destination).publish(any());
+        order.verify(destination).force();
+    }
+
+    @Test
+    public void logDurable_shouldCompleteTheFutureExceptionallyAndExposeTheException_givenTheMessageCannotBeFormatted() throws Exception {
+        doAnswer(invocation -> ((LogicalLogRecord<?>) invocation.getArguments()[0]).format(new SimpleStackTraceProcessor())).when(destination).publish(any());
+
+        CompletableFuture<Void> result = logger.logDurable(TestMessages.Bar, "not a number", "x");
+
+        assertTrue(result.isCompletedExceptionally());
+        verify(exceptionConsumer).accept(Mockito.isA(IllegalFormatConversionException.class));
+        verify(destination, never()).force();
     }
 
     @Test
@@ -270,7 +432,10 @@ public class BasicOpsLoggerTest {
 
     private enum TestMessages implements LogMessage {
         Foo("CODE-Foo", "An event of some kind occurred"),
-        Bar("CODE-Bar", "An event with %d %s messages");
+        Bar("CODE-Bar", "An event with %d %s messages"),
+        CharacterConversion("CODE-CharacterConversion", "Character %c"),
+        StringConversion("CODE-StringConversion", "String %s"),
+        HexConversion("CODE-HexConversion", "Hex %x");
 
         //region LogMessage implementation guts
         private final String messageCode;
@@ -0,0 +1,209 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class BatchEncoderTest {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private final RecordingChannel channel = new RecordingChannel();
+
+    @Test
+    public void writeTo_shouldWriteTheFormattedRecordsFollowedByLineSeparators() throws Exception {
+        BatchEncoder encoder = new BatchEncoder();
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty(), 42);
+        StackTraceProcessor processor = new SimpleStackTraceProcessor();
+
+        encoder.append(record, processor);
+        encoder.appendLine("a synthetic line");
+        encoder.writeTo(channel);
+
+        assertEquals(record.format(processor) + LINE_SEPARATOR + "a synthetic line" + LINE_SEPARATOR, channel.getContent());
+    }
+
+    @Test
+    public void writeTo_shouldWriteASingleBuffer_whenTheBatchFitsInOneBuffer() throws Exception {
+        BatchEncoder encoder = new BatchEncoder();
+        encoder.appendLine("one");
+        encoder.appendLine("two");
+
+        encoder.writeTo(channel);
+
+        assertEquals(1, channel.writeCalls);
+        assertEquals(0, channel.gatheringWriteCalls);
+    }
+
+    @Test
+    public void writeTo_shouldUseASingleGatheringWrite_whenTheBatchSpansSeveralBuffers() throws Exception {
+        BatchEncoder encoder = new BatchEncoder(16);
+        encoder.appendLine("a line which is longer than one buffer");
+        encoder.appendLine("and another");
+
+        encoder.writeTo(channel);
+
+        assertEquals(0, channel.writeCalls);
+        assertEquals(1, channel.gatheringWriteCalls);
+        assertEquals("a line which is longer than one buffer" + LINE_SEPARATOR + "and another" + LINE_SEPARATOR, channel.getContent());
+    }
+
+    @Test
+    public void decodeTo_shouldAppendTheLinesAndKeepThemForWriting_givenMultiByteCharactersAcrossSeveralBuffers() throws Exception {
+        BatchEncoder encoder = new BatchEncoder(4);
+        encoder.appendLine("h\u00e9llo \u20ac");
+        StringBuilder target = new StringBuilder("> ");
+
+        encoder.decodeTo(target);
+
+        assertEquals("> h\u00e9llo \u20ac" + LINE_SEPARATOR, target.toString());
+        assertEquals(1, encoder.getLineCount());
+        encoder.writeTo(channel);
+        assertEquals("h\u00e9llo \u20ac" + LINE_SEPARATOR, channel.getContent());
+        assertEquals(0, encoder.getLineCount());
+    }
+
+    @Test
+    public void writeTo_shouldEncodeMultiByteCharactersSplitAcrossBuffers() throws Exception {
+        BatchEncoder encoder = new BatchEncoder(4);
+        String text = "héllo wörld € 😀";
+
+        encoder.appendLine(text);
+        encoder.writeTo(channel);
+
+        assertEquals(text + LINE_SEPARATOR, channel.getContent());
+    }
+
+    @Test
+    public void writeTo_shouldNotWriteAnything_givenNothingToWrite() throws Exception {
+        BatchEncoder encoder = new BatchEncoder();
+
+        encoder.writeTo(channel);
+
+        assertEquals(0, channel.writeCalls);
+        assertEquals(0, channel.gatheringWriteCalls);
+    }
+
+    @Test
+    public void writeTo_shouldStartAgainAfterWriting() throws Exception {
+        BatchEncoder encoder = new BatchEncoder(16);
+        encoder.appendLine("a line which is longer than one buffer");
+        encoder.writeTo(channel);
+        RecordingChannel secondChannel = new RecordingChannel();
+
+        encoder.appendLine("second");
+        assertEquals(("second" + LINE_SEPARATOR).length(), encoder.size());
+        encoder.writeTo(secondChannel);
+
+        assertEquals("second" + LINE_SEPARATOR, secondChannel.getContent());
+        assertEquals(0, encoder.size());
+    }
+
+    @Test
+    public void writeTo_shouldKeepWritingUntilEverythingHasBeenWritten_givenPartialWrites() throws Exception {
+        BatchEncoder encoder = new BatchEncoder(16);
+        channel.maxBytesPerCall = 5;
+        encoder.appendLine("a line which is longer than one buffer");
+
+        encoder.writeTo(channel);
+
+        assertEquals("a line which is longer than one buffer" + LINE_SEPARATOR, channel.getContent());
+    }
+
+    @Test
+    public void clear_shouldDiscardEverythingEncodedSinceTheLastWrite() throws Exception {
+        BatchEncoder encoder = new BatchEncoder();
+        encoder.appendLine("discarded");
+
+        encoder.clear();
+        encoder.appendLine("kept");
+        encoder.writeTo(channel);
+
+        assertEquals("kept" + LINE_SEPARATOR, channel.getContent());
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final WritableByteChannel target = Channels.newChannel(content);
+        int writeCalls = 0;
+        int gatheringWriteCalls = 0;
+        int maxBytesPerCall = Integer.MAX_VALUE;
+
+        String getContent() {
+            return new String(content.toByteArray(), UTF_8);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            writeCalls++;
+            return writeUpToLimit(src, maxBytesPerCall);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            gatheringWriteCalls++;
+            long result = 0;
+            for (int i = offset; i < offset + length && result < maxBytesPerCall; i++) {
+                result += writeUpToLimit(srcs[i], (int) (maxBytesPerCall - result));
+            }
+            return result;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        private int writeUpToLimit(ByteBuffer src, int limit) throws IOException {
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + Math.min(limit, slice.remaining()));
+            int written = target.write(slice);
+            src.position(src.position() + written);
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event with %d things");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
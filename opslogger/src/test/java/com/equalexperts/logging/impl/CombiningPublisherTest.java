@@ -0,0 +1,219 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CombiningPublisherTest {
+
+    private final StackTraceProcessor processor = new SimpleStackTraceProcessor();
+
+    @Test
+    public void publish_shouldWriteTheFormattedRecordInABatch() throws Exception {
+        @SuppressWarnings("unchecked") Destination<TestMessages> destination = mock(Destination.class);
+        when(destination.getStackTraceProcessor()).thenReturn(processor);
+        LogicalLogRecord<TestMessages> record = createRecord(TestMessages.Foo);
+
+        new CombiningPublisher<>(destination, new ReentrantLock()).publish(record);
+
+        InOrder inOrder = inOrder(destination);
+        inOrder.verify(destination).beginBatch();
+        inOrder.verify(destination).publishSyntheticLine(record.format(processor));
+        inOrder.verify(destination).endBatch();
+        verify(destination, never()).publish(any());
+    }
+
+    @Test
+    public void publish_shouldFormatTheRecordBeforeTakingTheLock() throws Exception {
+        @SuppressWarnings("unchecked") Destination<TestMessages> destination = mock(Destination.class);
+        StackTraceProcessor mockProcessor = mock(StackTraceProcessor.class);
+        when(destination.getStackTraceProcessor()).thenReturn(mockProcessor);
+        Lock lock = mock(Lock.class);
+        when(lock.tryLock()).thenReturn(true);
+        RuntimeException cause = new RuntimeException();
+
+        new CombiningPublisher<>(destination, lock).publish(createRecord(TestMessages.Foo, cause));
+
+        InOrder inOrder = inOrder(mockProcessor, lock, destination);
+        inOrder.verify(mockProcessor).process(same(cause), any());
+        inOrder.verify(lock).tryLock();
+        inOrder.verify(destination).beginBatch();
+        inOrder.verify(destination).endBatch();
+        inOrder.verify(lock).unlock();
+    }
+
+    @Test
+    public void publish_shouldThrowTheExceptionAndEndTheBatch_givenAProblemWritingTheRecord() throws Exception {
+        @SuppressWarnings("unchecked") Destination<TestMessages> destination = mock(Destination.class);
+        when(destination.getStackTraceProcessor()).thenReturn(processor);
+        RuntimeException expectedException = new RuntimeException();
+        doThrow(expectedException).when(destination).publishSyntheticLine(anyString());
+        ReentrantLock lock = new ReentrantLock();
+
+        try {
+            new CombiningPublisher<>(destination, lock).publish(createRecord(TestMessages.Foo));
+            fail("expected an exception");
+        } catch (RuntimeException actual) {
+            assertSame(expectedException, actual);
+        }
+
+        verify(destination).endBatch();
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void publish_shouldThrowTheException_givenAProblemBeginningTheBatch() throws Exception {
+        @SuppressWarnings("unchecked") Destination<TestMessages> destination = mock(Destination.class);
+        when(destination.getStackTraceProcessor()).thenReturn(processor);
+        RuntimeException expectedException = new RuntimeException();
+        doThrow(expectedException).when(destination).beginBatch();
+
+        try {
+            new CombiningPublisher<>(destination, new ReentrantLock()).publish(createRecord(TestMessages.Foo));
+            fail("expected an exception");
+        } catch (RuntimeException actual) {
+            assertSame(expectedException, actual);
+        }
+
+        verify(destination, never()).publishSyntheticLine(anyString());
+    }
+
+    @Test
+    public void publish_shouldCombineTheRecordsOfWaitingThreadsIntoOneBatch() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        RecordingDestination destination = new RecordingDestination(firstBatchStarted, releaseFirstBatch);
+        CombiningPublisher<TestMessages> publisher = new CombiningPublisher<>(destination, new ReentrantLock());
+
+        Thread first = startPublishing(publisher, TestMessages.Foo);
+        assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+        List<Thread> waiting = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiting.add(startPublishing(publisher, TestMessages.Bar));
+        }
+        for (Thread thread : waiting) {
+            awaitParked(thread);
+        }
+        releaseFirstBatch.countDown();
+
+        first.join(10000);
+        for (Thread thread : waiting) {
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+        }
+        assertEquals(2, destination.batches.size());
+        assertEquals(1, destination.batches.get(0).size());
+        assertEquals(4, destination.batches.get(1).size());
+    }
+
+    private Thread startPublishing(CombiningPublisher<TestMessages> publisher, TestMessages message) {
+        Thread thread = new Thread(() -> {
+            try {
+                publisher.publish(createRecord(message));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue("thread did not park", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static LogicalLogRecord<TestMessages> createRecord(TestMessages message) {
+        return new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), new DiagnosticContext(Collections::emptyMap), message, Optional.empty());
+    }
+
+    private static LogicalLogRecord<TestMessages> createRecord(TestMessages message, Throwable cause) {
+        return new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), new DiagnosticContext(Collections::emptyMap), message, Optional.of(cause));
+    }
+
+    private class RecordingDestination implements Destination<TestMessages> {
+        private final CountDownLatch firstBatchStarted;
+        private final CountDownLatch releaseFirstBatch;
+        final List<List<String>> batches = new ArrayList<>();
+
+        RecordingDestination(CountDownLatch firstBatchStarted, CountDownLatch releaseFirstBatch) {
+            this.firstBatchStarted = firstBatchStarted;
+            this.releaseFirstBatch = releaseFirstBatch;
+        }
+
+        @Override
+        public void beginBatch() throws Exception {
+            batches.add(new ArrayList<>());
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                releaseFirstBatch.await();
+            }
+        }
+
+        @Override
+        public void publish(LogicalLogRecord<TestMessages> record) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void publishSyntheticLine(String line) throws Exception {
+            batches.get(batches.size() - 1).add(line);
+        }
+
+        @Override
+        public void endBatch() throws Exception {
+        }
+
+        @Override
+        public StackTraceProcessor getStackTraceProcessor() {
+            return processor;
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "Another event occurred");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
@@ -0,0 +1,101 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DestinationTest {
+
+    private final RecordingDestination destination = new RecordingDestination();
+
+    @Test
+    public void publishBatch_shouldPublishEachRecordInOrder_byDefault() throws Exception {
+        List<LogicalLogRecord<TestMessages>> records = Arrays.asList(createRecord(), createRecord(), createRecord());
+
+        destination.publishBatch(records, t -> { throw new AssertionError("unexpected error", t); });
+
+        assertEquals(records, destination.published);
+    }
+
+    @Test
+    public void publishBatch_shouldReportAProblemPublishingARecordAndPublishTheRest_byDefault() throws Exception {
+        LogicalLogRecord<TestMessages> broken = createRecord();
+        LogicalLogRecord<TestMessages> fine = createRecord();
+        RuntimeException expectedException = new RuntimeException("broken record");
+        destination.failures.put(broken, expectedException);
+        List<Throwable> errors = new ArrayList<>();
+
+        destination.publishBatch(Arrays.asList(broken, fine), errors::add);
+
+        assertEquals(Collections.singletonList(fine), destination.published);
+        assertEquals(1, errors.size());
+        assertSame(expectedException, errors.get(0));
+    }
+
+    private LogicalLogRecord<TestMessages> createRecord() {
+        return new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+    }
+
+    private static class RecordingDestination implements Destination<TestMessages> {
+        final List<LogicalLogRecord<TestMessages>> published = new ArrayList<>();
+        final Map<LogicalLogRecord<TestMessages>, RuntimeException> failures = new IdentityHashMap<>();
+
+        @Override
+        public void beginBatch() throws Exception {
+        }
+
+        @Override
+        public void publish(LogicalLogRecord<TestMessages> record) throws Exception {
+            if (failures.containsKey(record)) {
+                throw failures.get(record);
+            }
+            published.add(record);
+        }
+
+        @Override
+        public void publishSyntheticLine(String line) throws Exception {
+        }
+
+        @Override
+        public void endBatch() throws Exception {
+        }
+
+        @Override
+        public StackTraceProcessor getStackTraceProcessor() {
+            return new SimpleStackTraceProcessor();
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
@@ -125,4 +125,57 @@ public class DiagnosticContextTest {
     private void ensureUnmodifiableMap(Map<String, String> mergedContext) {
         assertSame("map should be unmodifiable", mergedContext.getClass(), unmodifiableMap(new HashMap<>()).getClass());
     }
+
+    @Test
+    public void reuseOrCreate_shouldReturnTheSameInstance_givenAnUnchangedContext() throws Exception {
+        Map<String, String> context = new LinkedHashMap<>();
+        context.put("user", "joeUser");
+
+        DiagnosticContext first = DiagnosticContext.reuseOrCreate(() -> context);
+        DiagnosticContext second = DiagnosticContext.reuseOrCreate(() -> new LinkedHashMap<>(context));
+
+        assertSame(first, second);
+        assertEquals(context, second.getContext());
+    }
+
+    @Test
+    public void reuseOrCreate_shouldCreateANewInstance_whenTheContextChanges() throws Exception {
+        Map<String, String> context = new LinkedHashMap<>();
+        context.put("user", "joeUser");
+        DiagnosticContext first = DiagnosticContext.reuseOrCreate(() -> context);
+
+        context.put("user", "janeUser");
+        DiagnosticContext second = DiagnosticContext.reuseOrCreate(() -> context);
+
+        assertNotSame(first, second);
+        assertEquals(context, second.getContext());
+        assertEquals("joeUser", first.getContext().get("user"));
+    }
+
+    @Test
+    public void reuseOrCreate_shouldCreateANewInstance_whenTheOrderOfTheContextChanges() throws Exception {
+        Map<String, String> context = new LinkedHashMap<>();
+        context.put("able", "a");
+        context.put("baker", "b");
+        DiagnosticContext first = DiagnosticContext.reuseOrCreate(() -> context);
+
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("baker", "b");
+        reordered.put("able", "a");
+        DiagnosticContext second = DiagnosticContext.reuseOrCreate(() -> reordered);
+
+        assertNotSame(first, second);
+        StringBuilder sb = new StringBuilder();
+        second.printContextInformation(sb);
+        assertEquals("baker=b;able=a,", sb.toString());
+    }
+
+    @Test
+    public void reuseOrCreate_shouldReuseAnEmptyContext_givenANullOrEmptyContext() throws Exception {
+        DiagnosticContext first = DiagnosticContext.reuseOrCreate(null);
+
+        assertSame(first, DiagnosticContext.reuseOrCreate(() -> null));
+        assertSame(first, DiagnosticContext.reuseOrCreate(HashMap::new));
+        assertEquals(emptyMap(), first.getContext());
+    }
 }
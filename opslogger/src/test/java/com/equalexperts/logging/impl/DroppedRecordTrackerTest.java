@@ -0,0 +1,83 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class DroppedRecordTrackerTest {
+
+    private static final Instant START = Instant.parse("2014-04-01T13:37:00.000Z");
+    private static final Instant LATER = Instant.parse("2014-04-01T13:37:10.123Z");
+
+    private final DroppedRecordTracker<TestMessages> tracker = new DroppedRecordTracker<>(START);
+
+    @Test
+    public void hasDrops_shouldReturnFalse_givenANewTracker() throws Exception {
+        assertFalse(tracker.hasDrops());
+    }
+
+    @Test
+    public void hasDrops_shouldReturnTrue_whenADropHasBeenRecorded() throws Exception {
+        tracker.recordDrop(TestMessages.Foo);
+
+        assertTrue(tracker.hasDrops());
+    }
+
+    @Test
+    public void takeSummary_shouldDescribeDroppedRecordsByMessageCodeInDeclarationOrder() throws Exception {
+        tracker.recordDrop(TestMessages.Bar);
+        tracker.recordDrop(TestMessages.Foo);
+        tracker.recordDrop(TestMessages.Bar);
+
+        Optional<String> result = tracker.takeSummary(LATER);
+
+        assertEquals("2014-04-01T13:37:10.123Z,OPSLOGGER-DROPPED,3 records dropped since 2014-04-01T13:37:00.000Z (CODE-Foo=1;CODE-Bar=2)", result.get());
+    }
+
+    @Test
+    public void takeSummary_shouldReturnAnEmptyOptional_whenNothingHasBeenDropped() throws Exception {
+        assertFalse(tracker.takeSummary(LATER).isPresent());
+    }
+
+    @Test
+    public void takeSummary_shouldResetTheCountsAndStartANewPeriod() throws Exception {
+        tracker.recordDrop(TestMessages.Foo);
+
+        tracker.takeSummary(LATER);
+
+        assertFalse(tracker.hasDrops());
+        assertEquals(LATER, tracker.getSince());
+        tracker.recordDrop(TestMessages.Bar);
+        assertEquals("2014-04-01T13:37:20.000Z,OPSLOGGER-DROPPED,1 records dropped since 2014-04-01T13:37:10.123Z (CODE-Bar=1)",
+                tracker.takeSummary(Instant.parse("2014-04-01T13:37:20.000Z")).get());
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "A Bar event occurred, with argument %d");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
@@ -0,0 +1,114 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import com.equalexperts.logging.impl.LogicalLogRecord.DetailShape;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class EncodedRecordRingTest {
+
+    private static final long TIMESTAMP = Instant.parse("2014-02-01T14:57:12.500Z").toEpochMilli();
+    private static final DiagnosticContext CONTEXT = new DiagnosticContext(() -> Collections.singletonMap("user", "joeUser"));
+
+    private final EncodedRecordRing<TestMessages> ring = new EncodedRecordRing<>(4);
+
+    @Test
+    public void publishRecord_shouldEncodeARecordWithObjectDetails() throws Exception {
+        Object[] details = {"a", 42};
+        RuntimeException cause = new RuntimeException();
+
+        ring.publishRecord(ring.tryClaim(), TestMessages.Bar, TIMESTAMP, CONTEXT, cause, DetailShape.OBJECTS, details, 0L, 0L);
+        LogicalLogRecord<TestMessages> result = ring.poll();
+
+        assertEquals(TestMessages.Bar, result.getMessage());
+        assertEquals(TIMESTAMP, result.getEpochMillis());
+        assertSame(CONTEXT, result.getDiagnosticContext());
+        assertSame(cause, result.getCause().get());
+        assertSame(details, result.getDetails());
+    }
+
+    @Test
+    public void publishRecord_shouldEncodePrimitiveDetails() throws Exception {
+        ring.publishRecord(ring.tryClaim(), TestMessages.Foo, TIMESTAMP, CONTEXT, null, DetailShape.LONG, null, 7L, 0L);
+        ring.publishRecord(ring.tryClaim(), TestMessages.Bar, TIMESTAMP, CONTEXT, null, DetailShape.LONG_LONG, null, Long.MIN_VALUE, Long.MAX_VALUE);
+        ring.publishRecord(ring.tryClaim(), TestMessages.Bar, TIMESTAMP, CONTEXT, null, DetailShape.STRING_LONG, "id", 42L, 0L);
+
+        assertArrayEquals(new Object[] {7L}, ring.poll().getDetails());
+        assertArrayEquals(new Object[] {Long.MIN_VALUE, Long.MAX_VALUE}, ring.poll().getDetails());
+        LogicalLogRecord<TestMessages> last = ring.poll();
+        assertArrayEquals(new Object[] {"id", 42L}, last.getDetails());
+        assertFalse(last.getCause().isPresent());
+    }
+
+    @Test
+    public void offer_shouldEncodeAndDecodeAPreformattedRecord() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(TIMESTAMP, CONTEXT, TestMessages.Bar, Optional.empty(), "id", 42L)
+                .preformat(new SimpleStackTraceProcessor());
+
+        assertTrue(ring.offer(record));
+        LogicalLogRecord<TestMessages> result = ring.poll();
+
+        assertEquals(DetailShape.FORMATTED, result.getDetailShape());
+        assertEquals(record.getTextDetail(), result.format(new SimpleStackTraceProcessor()));
+    }
+
+    @Test
+    public void offer_shouldEncodeAndDecodeAnExistingRecord() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(TIMESTAMP, CONTEXT, TestMessages.Bar, Optional.empty(), "id", 42L);
+
+        assertTrue(ring.offer(record));
+        LogicalLogRecord<TestMessages> result = ring.poll();
+
+        assertNotSame(record, result);
+        assertEquals(record.format(new SimpleStackTraceProcessor()), result.format(new SimpleStackTraceProcessor()));
+    }
+
+    @Test
+    public void drainTo_shouldDecodeRecordsInOrder_acrossSeveralLapsOfTheRing() throws Exception {
+        List<LogicalLogRecord<TestMessages>> result = new ArrayList<>();
+        for (long lap = 0; lap < 3; lap++) {
+            for (long i = 0; i < ring.getCapacity(); i++) {
+                ring.publishRecord(ring.tryClaim(), TestMessages.Foo, TIMESTAMP, CONTEXT, null, DetailShape.LONG, null, lap * 10 + i, 0L);
+            }
+            assertEquals(-1L, ring.tryClaim());
+            ring.drainTo(result, ring.getCapacity());
+        }
+
+        assertEquals(12, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertArrayEquals(new Object[] {(long) (i / 4 * 10 + i % 4)}, result.get(i).getDetails());
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event with %d"),
+        Bar("CODE-Bar", "An event with %s and %d");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
@@ -22,20 +22,18 @@ public class FileChannelProviderTest extends AbstractFileChannelProviderTest {
     private final FileChannelProvider provider = new FileChannelProvider(mockPath);
 
     @Test
-    public void getChannel_shouldReturnAResultWithAChannelAndAssociatedWriter() throws Exception {
+    public void getChannel_shouldReturnAResultWithAnOpenChannel() throws Exception {
         FileChannel testFileChannel = FileChannel.open(tempFiles.createTempFile(null), CREATE);
         when(mockPath.getFileSystem().provider().newFileChannel(same(mockPath), eq(CREATE_AND_APPEND))).thenReturn(testFileChannel);
 
         FileChannelProvider.Result result = provider.getChannel();
 
         assertSame(testFileChannel, result.channel);
-        ensureAssociated(result.writer, result.channel);
-        ensureUtf8Charset(result.writer);
         assertTrue(testFileChannel.isOpen());
     }
 
     @Test
-    public void close_shouldCloseTheFileChannelAndAssociatedWriter_givenAResultReturnedByGetChannel() throws Exception {
+    public void close_shouldCloseTheFileChannel_givenAResultReturnedByGetChannel() throws Exception {
         FileChannel testFileChannel = FileChannel.open(tempFiles.createTempFile(null), CREATE);
         when(mockPath.getFileSystem().provider().newFileChannel(same(mockPath), eq(CREATE_AND_APPEND))).thenReturn(testFileChannel);
 
@@ -43,11 +41,9 @@ public class FileChannelProviderTest extends AbstractFileChannelProviderTest {
         assertThat(result, instanceOf(Closeable.class));
 
         assertTrue("precondition: FileChannel should be open", result.channel.isOpen());
-        assertTrue("precondition: Writer should be open", isOpen(result.writer));
 
         result.close();
 
         assertFalse(result.channel.isOpen());
-        assertFalse(isOpen(result.writer));
     }
 }
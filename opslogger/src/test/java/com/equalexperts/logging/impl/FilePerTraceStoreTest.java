@@ -0,0 +1,47 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.TempFileFixture;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FilePerTraceStoreTest {
+
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
+    private final Path directory = tempFiles.createTempDirectory();
+    private final FilePerTraceStore store = new FilePerTraceStore(directory);
+
+    @Test
+    public void listStored_shouldListEachStackTraceFile_withItsFingerprint() throws Exception {
+        store.store("abc", new RuntimeException("blah!"));
+        Path stackTraceFile = tempFiles.register(directory.resolve("stacktrace_abc.txt"));
+        tempFiles.register(Files.createFile(directory.resolve("unrelated.log")));
+
+        List<StoredStackTraces> stored = store.listStored();
+
+        assertEquals(1, stored.size());
+        assertEquals(stackTraceFile, stored.get(0).getFile());
+        assertEquals(Files.size(stackTraceFile), stored.get(0).getBytes());
+        assertEquals(Files.getLastModifiedTime(stackTraceFile).toMillis(), stored.get(0).getLastModifiedMillis());
+        assertEquals(Collections.singleton("abc"), stored.get(0).getFingerprints());
+    }
+
+    @Test
+    public void delete_shouldDeleteTheStackTraceFile() throws Exception {
+        store.store("abc", new RuntimeException("blah!"));
+        Path stackTraceFile = tempFiles.register(directory.resolve("stacktrace_abc.txt"));
+
+        store.delete(store.listStored().get(0));
+
+        assertFalse(Files.exists(stackTraceFile));
+        assertEquals(Collections.emptyList(), store.listStored());
+    }
+}
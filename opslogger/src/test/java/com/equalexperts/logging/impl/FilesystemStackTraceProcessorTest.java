@@ -1,6 +1,9 @@
 package com.equalexperts.logging.impl;
 
+import com.equalexperts.logging.TempFileFixture;
+import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -8,14 +11,25 @@ import java.net.URI;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.spi.FileSystemProvider;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.*;
 
 import static java.nio.file.StandardOpenOption.*;
 
 public class FilesystemStackTraceProcessorTest {
 
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
     private final Path mockDestinationDirectory = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
     private final ThrowableFingerprintCalculator fingerprintCalculator = mock(ThrowableFingerprintCalculator.class);
     private final StackTraceProcessor processor = new FilesystemStackTraceProcessor(mockDestinationDirectory, fingerprintCalculator);
@@ -113,6 +127,279 @@ public class FilesystemStackTraceProcessorTest {
         assertEquals(expectedMessage, output.toString());
     }
 
+    @Test
+    public void process_shouldNotCalculateTheFingerprintAgainOrTouchTheFilesystem_givenTheSameThrowableAgain() throws Exception {
+        Throwable expectedException = new RuntimeException("blah!");
+        String expectedStacktraceUri = "file:///tmp/log/stacktrace_12345.txt";
+        String expectedMessage = expectedException.toString() + " (" + expectedStacktraceUri + ")";
+
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI(expectedStacktraceUri));
+
+        processor.process(expectedException, new StringBuilder());
+        StringBuilder output = new StringBuilder();
+        processor.process(expectedException, output);
+
+        assertEquals(expectedMessage, output.toString());
+        verify(fingerprintCalculator, times(1)).calculateFingerprint(expectedException);
+        verify(expectedPath.getFileSystem().provider(), times(1)).checkAccess(expectedPath);
+        verify(expectedPath, times(1)).toUri();
+    }
+
+    @Test
+    public void process_shouldCalculateTheFingerprintOfEachInstance_givenAThrowableWhichOverridesEquals() throws Exception {
+        Throwable firstException = new EqualToEveryOtherException("first");
+        Throwable secondException = new EqualToEveryOtherException("second");
+        assertEquals(firstException, secondException);
+
+        when(fingerprintCalculator.calculateFingerprint(same(firstException))).thenReturn("1");
+        when(fingerprintCalculator.calculateFingerprint(same(secondException))).thenReturn("2");
+        Path firstPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        Path secondPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_1.txt")).thenReturn(firstPath);
+        when(mockDestinationDirectory.resolve("stacktrace_2.txt")).thenReturn(secondPath);
+        when(firstPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_1.txt"));
+        when(secondPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_2.txt"));
+
+        processor.process(firstException, new StringBuilder());
+        StringBuilder output = new StringBuilder();
+        processor.process(secondException, output);
+
+        assertEquals(secondException.toString() + " (file:///tmp/log/stacktrace_2.txt)", output.toString());
+        verify(fingerprintCalculator).calculateFingerprint(same(secondException));
+    }
+
+    @Test
+    public void process_shouldReuseTheCachedURIWithoutTouchingTheFilesystem_givenADifferentThrowableWithTheSameFingerprint() throws Exception {
+        Throwable firstException = new RuntimeException("blah!");
+        Throwable secondException = new IllegalStateException("blah again!");
+        String expectedStacktraceUri = "file:///tmp/log/stacktrace_12345.txt";
+
+        when(fingerprintCalculator.calculateFingerprint(any())).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI(expectedStacktraceUri));
+
+        processor.process(firstException, new StringBuilder());
+        StringBuilder output = new StringBuilder();
+        processor.process(secondException, output);
+
+        assertEquals(secondException.toString() + " (" + expectedStacktraceUri + ")", output.toString());
+        verify(fingerprintCalculator).calculateFingerprint(secondException);
+        verify(expectedPath.getFileSystem().provider(), times(1)).checkAccess(expectedPath);
+        verify(mockDestinationDirectory, times(1)).resolve("stacktrace_12345.txt");
+    }
+
+    @Test
+    public void process_shouldCheckTheFilesystemAgain_whenTheFingerprintHasBeenEvictedFromTheCache() throws Exception {
+        StackTraceProcessor smallProcessor = new FilesystemStackTraceProcessor(mockDestinationDirectory, fingerprintCalculator, 1);
+        Path firstPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        Path secondPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(fingerprintCalculator.calculateFingerprint(any())).thenReturn("1", "2", "1");
+        when(mockDestinationDirectory.resolve("stacktrace_1.txt")).thenReturn(firstPath);
+        when(mockDestinationDirectory.resolve("stacktrace_2.txt")).thenReturn(secondPath);
+        when(firstPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_1.txt"));
+        when(secondPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_2.txt"));
+
+        smallProcessor.process(new RuntimeException(), new StringBuilder());
+        smallProcessor.process(new RuntimeException(), new StringBuilder());
+        smallProcessor.process(new RuntimeException(), new StringBuilder());
+
+        verify(firstPath.getFileSystem().provider(), times(2)).checkAccess(firstPath);
+        verify(secondPath.getFileSystem().provider(), times(1)).checkAccess(secondPath);
+    }
+
+    @Test
+    public void process_shouldNotCacheTheURI_whenTheStackTraceCouldNotBeWritten() throws Exception {
+        Throwable expectedException = new RuntimeException("blah!");
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_12345.txt"));
+        pretendMockPathDoesNotExist(expectedPath);
+        IOException expectedIOException = new IOException("disk full");
+        when(Files.newOutputStream(expectedPath, CREATE_NEW, WRITE)).thenThrow(expectedIOException);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                processor.process(expectedException, new StringBuilder());
+                fail("expected an exception");
+            } catch (IOException e) {
+                assertSame(expectedIOException, e);
+            }
+        }
+
+        verify(expectedPath.getFileSystem().provider(), times(2)).newOutputStream(expectedPath, CREATE_NEW, WRITE);
+    }
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveCacheSize() throws Exception {
+        try {
+            new FilesystemStackTraceProcessor(mockDestinationDirectory, fingerprintCalculator, 0);
+            fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("cache size must be positive", e.getMessage());
+        }
+    }
+
+    @Test
+    public void process_shouldQueueTheStackTraceAndIncludeTheURIStraightAway_givenAPersistenceWorker() throws Exception {
+        StackTracePersistenceWorker worker = mock(StackTracePersistenceWorker.class);
+        StackTraceProcessor backgroundProcessor = new FilesystemStackTraceProcessor(new FilePerTraceStore(mockDestinationDirectory), fingerprintCalculator, 16, Optional.of(worker));
+        Throwable expectedException = new RuntimeException("blah!");
+        String expectedStacktraceUri = "file:///tmp/log/stacktrace_12345.txt";
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI(expectedStacktraceUri));
+        when(worker.submit(eq("12345"), same(expectedException), any())).thenReturn(true);
+
+        StringBuilder output = new StringBuilder();
+        backgroundProcessor.process(expectedException, output);
+        backgroundProcessor.process(expectedException, new StringBuilder());
+
+        assertEquals(expectedException.toString() + " (" + expectedStacktraceUri + ")", output.toString());
+        verify(worker, times(1)).submit(eq("12345"), same(expectedException), any());
+        verifyZeroInteractions(expectedPath.getFileSystem().provider()); //no filesystem access on the logging thread
+    }
+
+    @Test
+    public void process_shouldWriteTheStackTraceItself_whenThePersistenceWorkerRefusesIt() throws Exception {
+        StackTracePersistenceWorker worker = mock(StackTracePersistenceWorker.class);
+        StackTraceProcessor backgroundProcessor = new FilesystemStackTraceProcessor(new FilePerTraceStore(mockDestinationDirectory), fingerprintCalculator, 16, Optional.of(worker));
+        Throwable expectedException = new RuntimeException("blah!");
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_12345.txt"));
+        pretendMockPathDoesNotExist(expectedPath);
+        ByteArrayOutputStream simulatedFileOutputStream = new ByteArrayOutputStream();
+        when(Files.newOutputStream(expectedPath, CREATE_NEW, WRITE)).thenReturn(simulatedFileOutputStream);
+        when(worker.submit(any(), any(), any())).thenReturn(false);
+
+        backgroundProcessor.process(expectedException, new StringBuilder());
+
+        TestPrintStream expectedFileContents = new TestPrintStream();
+        expectedException.printStackTrace(expectedFileContents);
+        assertEquals(expectedFileContents.toString(), new String(simulatedFileOutputStream.toByteArray()));
+    }
+
+    @Test
+    public void process_shouldQueueTheStackTraceAgain_whenThePersistenceWorkerCouldNotWriteIt() throws Exception {
+        StackTracePersistenceWorker worker = mock(StackTracePersistenceWorker.class);
+        StackTraceProcessor backgroundProcessor = new FilesystemStackTraceProcessor(new FilePerTraceStore(mockDestinationDirectory), fingerprintCalculator, 16, Optional.of(worker));
+        Throwable expectedException = new RuntimeException("blah!");
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        Path expectedPath = mock(Path.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(mockDestinationDirectory.resolve("stacktrace_12345.txt")).thenReturn(expectedPath);
+        when(expectedPath.toUri()).thenReturn(new URI("file:///tmp/log/stacktrace_12345.txt"));
+        when(worker.submit(any(), any(), any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[2]).run(); //as the worker does when the write fails
+            return true;
+        });
+
+        backgroundProcessor.process(expectedException, new StringBuilder());
+        backgroundProcessor.process(expectedException, new StringBuilder());
+
+        verify(worker, times(2)).submit(eq("12345"), same(expectedException), any());
+    }
+
+    @Test
+    public void close_shouldCloseThePersistenceWorker() throws Exception {
+        StackTracePersistenceWorker worker = mock(StackTracePersistenceWorker.class);
+
+        new FilesystemStackTraceProcessor(new FilePerTraceStore(mockDestinationDirectory), fingerprintCalculator, 16, Optional.of(worker)).close();
+
+        verify(worker).close();
+    }
+
+    @Test
+    public void process_shouldRecordTheFingerprintAsSeenEveryTime_givenARetention() throws Exception {
+        StackTraceStore store = mock(StackTraceStore.class);
+        StackTraceRetention retention = mock(StackTraceRetention.class);
+        StackTraceProcessor retainingProcessor = new FilesystemStackTraceProcessor(store, fingerprintCalculator, 16, Optional.empty(), Optional.of(retention));
+        Throwable expectedException = new RuntimeException("blah!");
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        when(store.store("12345", expectedException)).thenReturn("file:///tmp/log/stacktrace_12345.txt");
+
+        retainingProcessor.process(expectedException, new StringBuilder());
+        retainingProcessor.process(expectedException, new StringBuilder());
+
+        verify(retention, times(2)).touch("12345");
+        verify(store, times(1)).store("12345", expectedException);
+    }
+
+    @Test
+    public void process_shouldStoreTheStackTraceAgain_whenTheRetentionHasDeletedIt() throws Exception {
+        StackTraceStore store = mock(StackTraceStore.class);
+        StackTraceRetention retention = mock(StackTraceRetention.class);
+        List<Consumer<String>> evictionListeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<String> listener = (Consumer<String>) invocation.getArguments()[0];
+            evictionListeners.add(listener);
+            return null;
+        }).when(retention).addEvictionListener(any());
+        StackTraceProcessor retainingProcessor = new FilesystemStackTraceProcessor(store, fingerprintCalculator, 16, Optional.empty(), Optional.of(retention));
+        Throwable expectedException = new RuntimeException("blah!");
+        when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+        when(store.store("12345", expectedException)).thenReturn("file:///tmp/log/stacktrace_12345.txt");
+
+        retainingProcessor.process(expectedException, new StringBuilder());
+        assertEquals(1, evictionListeners.size());
+        evictionListeners.get(0).accept("12345");
+        retainingProcessor.process(expectedException, new StringBuilder());
+
+        verify(store, times(2)).store("12345", expectedException);
+    }
+
+    @Test
+    public void process_shouldStoreTheStackTraceAgain_whenTheRetentionOfAnotherProcessorOnTheSameDirectoryHasDeletedIt() throws Exception {
+        Path directory = tempFiles.createTempDirectory();
+        StackTraceStore store = new FilePerTraceStore(directory);
+        StackTraceRetention retention = StackTraceRetention.open(store, Optional.empty(), Optional.of(0), Optional.empty(), Clock.systemUTC(), t -> {});
+        StackTraceRetention otherRetention = StackTraceRetention.open(new FilePerTraceStore(directory), Optional.empty(), Optional.of(0), Optional.empty(), Clock.systemUTC(), t -> {});
+        FilesystemStackTraceProcessor processor = new FilesystemStackTraceProcessor(store, fingerprintCalculator, 16, Optional.empty(), Optional.of(retention));
+        FilesystemStackTraceProcessor otherProcessor = new FilesystemStackTraceProcessor(new FilePerTraceStore(directory), fingerprintCalculator, 16, Optional.empty(), Optional.of(otherRetention));
+        try {
+            Throwable expectedException = new RuntimeException("blah!");
+            when(fingerprintCalculator.calculateFingerprint(expectedException)).thenReturn("12345");
+            Path stackTraceFile = tempFiles.register(directory.resolve("stacktrace_12345.txt"));
+
+            otherProcessor.process(expectedException, new StringBuilder());
+            assertTrue(Files.exists(stackTraceFile));
+            assertEquals(1, retention.run());
+            assertFalse(Files.exists(stackTraceFile));
+            otherProcessor.process(expectedException, new StringBuilder());
+
+            assertTrue(Files.exists(stackTraceFile));
+        } finally {
+            otherProcessor.close();
+            processor.close();
+        }
+    }
+
+    @Test
+    public void close_shouldStopListeningToTheRetention_andCloseIt() throws Exception {
+        StackTraceRetention retention = mock(StackTraceRetention.class);
+        List<Consumer<String>> evictionListeners = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<String> listener = (Consumer<String>) invocation.getArguments()[0];
+            evictionListeners.add(listener);
+            return null;
+        }).when(retention).addEvictionListener(any());
+
+        new FilesystemStackTraceProcessor(mock(StackTraceStore.class), fingerprintCalculator, 16, Optional.empty(), Optional.of(retention)).close();
+
+        assertEquals(1, evictionListeners.size());
+        InOrder inOrder = inOrder(retention);
+        inOrder.verify(retention).removeEvictionListener(evictionListeners.get(0));
+        inOrder.verify(retention).close();
+    }
+
     private void pretendMockPathDoesNotExist(Path expectedPath) throws Exception {
         FileSystemProvider mockProvider = expectedPath.getFileSystem().provider();
         doThrow(NoSuchFileException.class).when(mockProvider).checkAccess(expectedPath); //notExists check
@@ -120,4 +407,22 @@ public class FilesystemStackTraceProcessorTest {
         //for exists, simulate a path not existing by failing to read attributes
         when(Files.readAttributes(expectedPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)).thenThrow(new IOException("File does not exist"));
     }
+
+    private static class EqualToEveryOtherException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        EqualToEveryOtherException(String message) {
+            super(message);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof EqualToEveryOtherException;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,136 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import com.equalexperts.logging.impl.FormattingPool.FormattedBatch;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class FormattingPoolTest {
+
+    private static final DiagnosticContext CONTEXT = new DiagnosticContext(Collections::emptyMap);
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveNumberOfThreads() throws Exception {
+        try {
+            new FormattingPool(0, Executors.defaultThreadFactory());
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("threads must be positive", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void getMaxBatchesInFlight_shouldAllowTwoBatchesPerThread() throws Exception {
+        FormattingPool pool = new FormattingPool(3, Executors.defaultThreadFactory());
+
+        assertEquals(6, pool.getMaxBatchesInFlight());
+        pool.shutdown();
+    }
+
+    @Test
+    public void submit_shouldFormatTheRecordsInOrder() throws Exception {
+        FormattingPool pool = new FormattingPool(2, Executors.defaultThreadFactory());
+        StackTraceProcessor processor = new SimpleStackTraceProcessor();
+        List<LogicalLogRecord<TestMessages>> records = Arrays.asList(
+                new LogicalLogRecord<>(1000L, CONTEXT, TestMessages.Foo, Optional.empty()),
+                new LogicalLogRecord<>(2000L, CONTEXT, TestMessages.Bar, Optional.empty(), 42L));
+
+        FormattedBatch result = pool.submit(records, processor, AsyncSettings.DEFAULT_MAX_BATCH_BYTES).get();
+        pool.shutdown();
+
+        assertEquals(1, result.getChunks().size());
+        assertEquals(Arrays.asList(records.get(0).format(processor), records.get(1).format(processor)), decodeLines(result.getChunks().get(0)));
+        assertTrue(result.getFailures().isEmpty());
+    }
+
+    @Test
+    public void recycle_shouldReuseTheEncodersOfAWrittenBatch() throws Exception {
+        FormattingPool pool = new FormattingPool(1, Executors.defaultThreadFactory());
+        List<LogicalLogRecord<TestMessages>> records = Collections.singletonList(new LogicalLogRecord<>(1000L, CONTEXT, TestMessages.Foo, Optional.empty()));
+        FormattedBatch first = pool.submit(records, new SimpleStackTraceProcessor(), AsyncSettings.DEFAULT_MAX_BATCH_BYTES).get();
+        BatchEncoder encoder = first.getChunks().get(0);
+
+        pool.recycle(first);
+        FormattedBatch second = pool.submit(records, new SimpleStackTraceProcessor(), AsyncSettings.DEFAULT_MAX_BATCH_BYTES).get();
+        pool.shutdown();
+
+        assertSame(encoder, second.getChunks().get(0));
+        assertEquals(1, encoder.getLineCount());
+    }
+
+    @Test
+    public void format_shouldStartANewChunk_givenTheEncodedLinesHaveReachedTheMaximumNumberOfBytes() throws Exception {
+        StackTraceProcessor processor = new SimpleStackTraceProcessor();
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(1000L, CONTEXT, TestMessages.Baz, Optional.empty(), "\u00e9\u00e9\u00e9\u00e9");
+        String line = record.format(processor);
+        long lineBytes = (line + System.getProperty("line.separator")).getBytes(UTF_8).length;
+        List<LogicalLogRecord<TestMessages>> records = Arrays.asList(record, record, record);
+
+        FormattedBatch result = FormattedBatch.format(records, processor, 2 * lineBytes, BatchEncoder::new);
+
+        assertEquals(2, result.getChunks().size());
+        assertEquals(2 * lineBytes, result.getChunks().get(0).size());
+        assertEquals(Arrays.asList(line, line), decodeLines(result.getChunks().get(0)));
+        assertEquals(Collections.singletonList(line), decodeLines(result.getChunks().get(1)));
+    }
+
+    @Test
+    public void format_shouldLeaveOutARecordWhichCannotBeFormattedAndKeepTheProblem() throws Exception {
+        StackTraceProcessor processor = mock(StackTraceProcessor.class);
+        RuntimeException expectedException = new RuntimeException();
+        RuntimeException cause = new RuntimeException();
+        doThrow(expectedException).when(processor).process(same(cause), any());
+        List<LogicalLogRecord<TestMessages>> records = Arrays.asList(
+                new LogicalLogRecord<>(1000L, CONTEXT, TestMessages.Foo, Optional.of(cause)),
+                new LogicalLogRecord<>(2000L, CONTEXT, TestMessages.Bar, Optional.empty(), 42L));
+
+        FormattedBatch result = FormattedBatch.format(records, processor, AsyncSettings.DEFAULT_MAX_BATCH_BYTES, BatchEncoder::new);
+
+        assertEquals(Collections.singletonList(records.get(1).format(processor)), decodeLines(result.getChunks().get(0)));
+        assertEquals(Collections.singletonList(expectedException), result.getFailures());
+    }
+
+    private static List<String> decodeLines(BatchEncoder lines) {
+        StringBuilder text = new StringBuilder();
+        lines.decodeTo(text);
+        return Arrays.asList(text.toString().split(BatchEncoder.LINE_SEPARATOR));
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "An event with %d occurred"),
+        Baz("CODE-Baz", "An event with %s occurred");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
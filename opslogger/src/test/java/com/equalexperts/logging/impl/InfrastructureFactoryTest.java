@@ -1,8 +1,11 @@
 package com.equalexperts.logging.impl;
 
 import com.equalexperts.logging.DiagnosticContextSupplier;
+import com.equalexperts.logging.FileLockingPolicy;
 import com.equalexperts.logging.LogMessage;
 import com.equalexperts.logging.RestoreSystemStreamsFixture;
+import com.equalexperts.logging.StackTraceFingerprint;
+import com.equalexperts.logging.StackTraceStorageFormat;
 import com.equalexperts.logging.TempFileFixture;
 import org.junit.Rule;
 import org.junit.Test;
@@ -13,6 +16,7 @@ import java.io.PrintStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -189,6 +193,154 @@ public class InfrastructureFactoryTest {
         assertSame(expectedStackTraceStoragePath, fs.getDestination());
     }
 
+    @Test
+    public void configureDestination_shouldFingerprintStackTracesWithMD5_byDefault() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) factory.<TestMessages>configureDestination().getStackTraceProcessor();
+
+        assertEquals(ThrowableFingerprintCalculator.class, fs.getFingerprintCalculator().getClass());
+    }
+
+    @Test
+    public void configureDestination_shouldFingerprintStackTracesStructurally_givenStackTraceSettingsWhichAskForIt() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                PathSettings.DEFAULTS,
+                SyncSettings.DEFAULTS,
+                new StackTraceSettings(Optional.of(StackTraceFingerprint.STRUCTURAL), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) factory.<TestMessages>configureDestination().getStackTraceProcessor();
+
+        assertThat(fs.getFingerprintCalculator(), instanceOf(StructuralThrowableFingerprintCalculator.class));
+    }
+
+    @Test
+    public void configureDestination_shouldWriteStackTracesInTheBackground_givenStackTraceSettingsWhichAskForIt() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                PathSettings.DEFAULTS,
+                SyncSettings.DEFAULTS,
+                new StackTraceSettings(Optional.empty(), Optional.of(true), Optional.of(32), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+
+        Destination<TestMessages> destination = factory.configureDestination();
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) destination.getStackTraceProcessor();
+        destination.close();
+
+        assertTrue(fs.getPersistenceWorker().isPresent());
+        assertEquals(32, fs.getPersistenceWorker().get().getQueueCapacity());
+    }
+
+    @Test
+    public void configureDestination_shouldStoreStackTracesInAPack_givenStackTraceSettingsWhichAskForIt() throws Exception {
+        Path stackTraceDirectory = tempFiles.createTempDirectory();
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(stackTraceDirectory),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                PathSettings.DEFAULTS,
+                SyncSettings.DEFAULTS,
+                new StackTraceSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(StackTraceStorageFormat.PACK), Optional.empty(), Optional.empty(), Optional.empty()));
+
+        Destination<TestMessages> destination = factory.configureDestination();
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) destination.getStackTraceProcessor();
+        destination.close();
+        tempFiles.register(stackTraceDirectory.resolve(StackTracePack.INDEX_FILE_NAME));
+        tempFiles.register(stackTraceDirectory.resolve(StackTracePack.segmentFileName(0)));
+
+        assertThat(fs.getStore(), instanceOf(StackTracePack.class));
+        assertSame(stackTraceDirectory, fs.getDestination());
+    }
+
+    @Test
+    public void configureDestination_shouldLimitStoredStackTraces_givenStackTraceSettingsWithARetentionLimit() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                PathSettings.DEFAULTS,
+                SyncSettings.DEFAULTS,
+                new StackTraceSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(1024L), Optional.empty(), Optional.empty()));
+
+        Destination<TestMessages> destination = factory.configureDestination();
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) destination.getStackTraceProcessor();
+        destination.close();
+
+        assertTrue(fs.getRetention().isPresent());
+        assertEquals(Optional.of(1024L), fs.getRetention().get().getMaxTotalBytes());
+    }
+
+    @Test
+    public void configureDestination_shouldNotLimitStoredStackTraces_byDefault() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) factory.<TestMessages>configureDestination().getStackTraceProcessor();
+
+        assertFalse(fs.getRetention().isPresent());
+    }
+
+    @Test
+    public void configureDestination_shouldStoreEachStackTraceInAFileOfItsOwn_byDefault() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) factory.<TestMessages>configureDestination().getStackTraceProcessor();
+
+        assertThat(fs.getStore(), instanceOf(FilePerTraceStore.class));
+    }
+
+    @Test
+    public void configureDestination_shouldWriteStackTracesOnTheLoggingThread_byDefault() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.empty(),
+                Optional.of(System.err),
+                Optional.of(true),
+                Optional.of(tempFiles.createTempDirectory()),
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        FilesystemStackTraceProcessor fs = (FilesystemStackTraceProcessor) factory.<TestMessages>configureDestination().getStackTraceProcessor();
+
+        assertFalse(fs.getPersistenceWorker().isPresent());
+    }
+
     @Test
     public void configureDestination_shouldStoreStackTracesInTheSameDirectoryAsTheLogFile_whenLoggingToAPathAndStoringStackTracesHasNotBeenExplicitlyConfigured() throws Exception {
         Path logFile = tempFiles.createTempFile(".log");
@@ -364,6 +516,80 @@ public class InfrastructureFactoryTest {
         assertSame(logFile, provider.getPath());
     }
 
+    @Test
+    public void configureDestination_shouldNotKeepTheFileOpen_whenThePathSettingsAreNotProvided() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.of(tempFiles.createTempFile(".log")),
+                Optional.empty(),
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        PathDestination<TestMessages> psd = (PathDestination<TestMessages>) factory.<TestMessages>configureDestination();
+
+        assertFalse(psd.isKeepFileOpen());
+        assertFalse(psd.getRotationDetector().isPresent());
+        assertEquals(FileLockingPolicy.EXCLUSIVE_LOCK, psd.getLockingPolicy());
+    }
+
+    @Test
+    public void configureDestination_shouldKeepTheFileOpen_whenThePathSettingsAskForIt() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.of(tempFiles.createTempFile(".log")),
+                Optional.empty(),
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                new PathSettings(Optional.of(true), Optional.empty(), Optional.empty(), Optional.empty()), SyncSettings.DEFAULTS, StackTraceSettings.DEFAULTS);
+
+        PathDestination<TestMessages> psd = (PathDestination<TestMessages>) factory.<TestMessages>configureDestination();
+
+        assertTrue(psd.isKeepFileOpen());
+        assertTrue(psd.getRotationDetector().isPresent());
+        assertEquals(PathSettings.DEFAULT_ROTATION_CHECK_INTERVAL, psd.getRotationDetector().get().getCheckInterval());
+        assertFalse(psd.getRotationDetector().get().isWatching());
+    }
+
+    @Test
+    public void configureDestination_shouldConfigureRotationDetectionFromThePathSettings_whenKeepingTheFileOpen() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.of(tempFiles.createTempFile(".log")),
+                Optional.empty(),
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                new PathSettings(Optional.of(true), Optional.of(Duration.ofMillis(250)), Optional.of(true), Optional.empty()), SyncSettings.DEFAULTS, StackTraceSettings.DEFAULTS);
+
+        PathDestination<TestMessages> psd = (PathDestination<TestMessages>) factory.<TestMessages>configureDestination();
+
+        RotationDetector detector = psd.getRotationDetector().get();
+        assertEquals(Duration.ofMillis(250), detector.getCheckInterval());
+        assertTrue(detector.isWatching());
+        detector.close();
+    }
+
+    @Test
+    public void configureDestination_shouldUseTheFileLockingPolicyFromThePathSettings() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                Optional.of(tempFiles.createTempFile(".log")),
+                Optional.empty(),
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                AsyncSettings.DEFAULTS,
+                new PathSettings(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(FileLockingPolicy.NONE)), SyncSettings.DEFAULTS, StackTraceSettings.DEFAULTS);
+
+        PathDestination<TestMessages> psd = (PathDestination<TestMessages>) factory.<TestMessages>configureDestination();
+
+        assertEquals(FileLockingPolicy.NONE, psd.getLockingPolicy());
+    }
+
     @Test
     public void configureDestination_shouldRegisterTheCreatedDestinationWithTheRegistry_whenLoggingToAPath() throws Exception {
         Path logFile = tempFiles.createTempFile(".log");
@@ -418,6 +644,35 @@ public class InfrastructureFactoryTest {
         factory.configureDestination(); //a FileAlreadyExistsException will be thrown if the code doesn't do the right thing
     }
 
+    @Test
+    public void configureAsyncSettings_shouldReturnTheProvidedSettings_whenTheyAreProvided() throws Exception {
+        AsyncSettings expectedSettings = new AsyncSettings(Optional.of(16), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+        InfrastructureFactory factory = new InfrastructureFactory(
+                SAMPLE_LOGFILE_PATH,
+                SAMPLE_LOGGER_OUTPUT,
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER,
+                expectedSettings, PathSettings.DEFAULTS, SyncSettings.DEFAULTS, StackTraceSettings.DEFAULTS);
+
+        assertSame(expectedSettings, factory.configureAsyncSettings());
+    }
+
+    @Test
+    public void configureAsyncSettings_shouldReturnTheDefaultSettings_whenTheyAreNotProvided() throws Exception {
+        InfrastructureFactory factory = new InfrastructureFactory(
+                SAMPLE_LOGFILE_PATH,
+                SAMPLE_LOGGER_OUTPUT,
+                SAMPLE_STORE_STACK_TRACES_IN_FILESYSTEM,
+                SAMPLE_STACK_TRACE_STORAGE_PATH,
+                SAMPLE_CONTEXT_SUPPLIER,
+                SAMPLE_ERROR_HANDLER);
+
+        assertSame(AsyncSettings.DEFAULTS, factory.configureAsyncSettings());
+    }
+
     @Test
     public void configureDestination_shouldThrowAnUncheckedIOException_givenAProblemCreatingDirectories() throws Exception {
         Path invalidParent = tempFiles.createTempFile(".log");
@@ -81,6 +81,46 @@ public class LogicalLogRecordTest {
         assertEquals("2014-04-01T13:37:00.123Z,CODE-Bar,A Bar event occurred, with argument 42", result);
     }
 
+    @Test
+    public void format_shouldProduceTheSameMessage_givenATimestampInEpochMilliseconds() throws Exception {
+        Instant instant = Instant.parse("2014-04-01T13:37:00.123Z");
+        LogicalLogRecord<TestMessages> fromInstant = new LogicalLogRecord<>(instant, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), 42);
+        LogicalLogRecord<TestMessages> fromMillis = new LogicalLogRecord<>(instant.toEpochMilli(), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), 42);
+
+        assertEquals(fromInstant.format(PROCESSOR_SHOULD_NOT_BE_CALLED), fromMillis.format(PROCESSOR_SHOULD_NOT_BE_CALLED));
+        assertEquals(instant, fromMillis.getTimestamp());
+    }
+
+    @Test
+    public void format_shouldProduceTheSameMessage_givenPrimitiveDetails() throws Exception {
+        long timestamp = Instant.parse("2014-04-01T13:37:00.123Z").toEpochMilli();
+
+        assertEquals(
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), new Object[] {42L}).format(PROCESSOR_SHOULD_NOT_BE_CALLED),
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), 42L).format(PROCESSOR_SHOULD_NOT_BE_CALLED));
+        assertEquals(
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), new Object[] {7L, 42L}).format(PROCESSOR_SHOULD_NOT_BE_CALLED),
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), 7L, 42L).format(PROCESSOR_SHOULD_NOT_BE_CALLED));
+        assertEquals(
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), new Object[] {"seven", 42L}).format(PROCESSOR_SHOULD_NOT_BE_CALLED),
+                new LogicalLogRecord<>(timestamp, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), "seven", 42L).format(PROCESSOR_SHOULD_NOT_BE_CALLED));
+    }
+
+    @Test
+    public void getDetails_shouldBoxPrimitiveDetails() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(0L, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), "seven", 42L);
+
+        assertArrayEquals(new Object[] {"seven", 42L}, record.getDetails());
+    }
+
+    @Test
+    public void estimateFormattedLength_shouldCountTheStringDetail_givenAStringAndALongDetail() throws Exception {
+        LogicalLogRecord<TestMessages> shortString = new LogicalLogRecord<>(0L, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), "a", 42L);
+        LogicalLogRecord<TestMessages> longString = new LogicalLogRecord<>(0L, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.empty(), "abcdefghij", 42L);
+
+        assertEquals(9, longString.estimateFormattedLength() - shortString.estimateFormattedLength());
+    }
+
     @Test
     public void format_shouldIncludeMilliseconds_whenTheTimestampIsAnEvenSecond() throws Exception {
         Instant instant = Instant.parse("2014-04-01T13:37:00.000Z");
@@ -123,9 +163,90 @@ public class LogicalLogRecordTest {
         verify(dc).printContextInformation(any());
     }
 
+    @Test
+    public void formatTo_shouldAppendTheFormattedMessageToTheProvidedStringBuilder() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-04-01T13:37:00.123Z"), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), 42);
+        StringBuilder result = new StringBuilder("existing content;");
+
+        record.formatTo(PROCESSOR_SHOULD_NOT_BE_CALLED, result);
+
+        assertEquals("existing content;" + record.format(PROCESSOR_SHOULD_NOT_BE_CALLED), result.toString());
+    }
+
+    @Test
+    public void estimateFormattedLength_shouldMatchTheFormattedLength_givenOnlyStringDetails() throws Exception {
+        Map<String, String> context = new HashMap<>();
+        context.put("user", "joeUser");
+        DiagnosticContext dc = new DiagnosticContext(() -> context);
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-04-01T13:37:00.123Z"), dc, TestMessages.Foo, Optional.empty());
+
+        int result = record.estimateFormattedLength();
+
+        assertEquals(record.format(PROCESSOR_SHOULD_NOT_BE_CALLED).length(), result);
+    }
+
+    @Test
+    public void estimateFormattedLength_shouldIncludeAnAllowanceForTheStackTrace_givenAThrowable() throws Exception {
+        LogicalLogRecord<TestMessages> withoutCause = new LogicalLogRecord<>(Instant.now(), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Foo, Optional.empty());
+        LogicalLogRecord<TestMessages> withCause = new LogicalLogRecord<>(Instant.now(), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Foo, Optional.of(new RuntimeException()));
+
+        assertTrue(withCause.estimateFormattedLength() > withoutCause.estimateFormattedLength());
+    }
+
+    @Test
+    public void preformat_shouldKeepTheTextFormattedAtTheTime_givenAMutableDetail() throws Exception {
+        StringBuilder mutableDetail = new StringBuilder("before");
+        RuntimeException cause = new RuntimeException();
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.of(cause), mutableDetail, 255);
+        String expected = record.format(new SimpleStackTraceProcessor());
+
+        LogicalLogRecord<TestMessages> result = record.preformat(new SimpleStackTraceProcessor());
+        mutableDetail.replace(0, mutableDetail.length(), "after");
+
+        assertEquals(expected, result.format(PROCESSOR_SHOULD_NOT_BE_CALLED));
+        assertEquals(expected.length(), result.estimateFormattedLength());
+        assertEquals(TestMessages.Baz, result.getMessage());
+        assertEquals(record.getEpochMillis(), result.getEpochMillis());
+        assertFalse(result.getCause().isPresent());
+        assertEquals(0, result.getDetails().length);
+    }
+
+    @Test
+    public void formatRawTo_shouldAppendTheTimestampCodeDetailsAndCauseWithoutFormattingThem() throws Exception {
+        RuntimeException cause = new RuntimeException("Something went wrong");
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Baz, Optional.of(cause), "text", 255);
+        StringBuilder result = new StringBuilder();
+
+        record.formatRawTo(result);
+
+        assertEquals(record.getEpochMillis() + ",CODE-Baz,text,255,java.lang.RuntimeException: Something went wrong", result.toString());
+    }
+
+    @Test
+    public void formatRawTo_shouldAppendThePrimitiveDetails_givenARecordWithPrimitiveDetails() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(1000L, SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Bar, Optional.empty(), 42L);
+        StringBuilder result = new StringBuilder();
+
+        record.formatRawTo(result);
+
+        assertEquals("1000,CODE-Bar,42", result.toString());
+    }
+
+    @Test
+    public void formatRawTo_shouldAppendTheFormattedText_givenAPreformattedRecord() throws Exception {
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), SAMPLE_DIAGNOSTIC_CONTEXT, TestMessages.Foo, Optional.empty());
+        LogicalLogRecord<TestMessages> preformatted = record.preformat(new SimpleStackTraceProcessor());
+        StringBuilder result = new StringBuilder();
+
+        preformatted.formatRawTo(result);
+
+        assertEquals(record.format(new SimpleStackTraceProcessor()), result.toString());
+    }
+
     private enum TestMessages implements LogMessage {
         Foo("CODE-Foo", "An event of some kind occurred"),
-        Bar("CODE-Bar", "A Bar event occurred, with argument %d");
+        Bar("CODE-Bar", "A Bar event occurred, with argument %d"),
+        Baz("CODE-Baz", "A Baz event occurred, with arguments %s and %x");
 
         //region LogMessage implementation guts
         private final String messageCode;
@@ -0,0 +1,191 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatConversionException;
+import java.util.MissingFormatArgumentException;
+
+import static org.junit.Assert.*;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void formatTo_shouldMatchStringFormat_givenTheSimpleConversions() throws Exception {
+        String pattern = "s=%s, d=%d, x=%x, literal=%%, newline=%n, end";
+
+        assertFormatsLikeStringFormat(pattern, "text", 42, 255);
+        assertFormatsLikeStringFormat(pattern, null, -7L, -1);
+        assertFormatsLikeStringFormat(pattern, 3.5, (short) 12, Long.MIN_VALUE);
+        assertFormatsLikeStringFormat(pattern, "extra details", (byte) -3, 16, "are ignored");
+        assertTrue(MessageTemplate.compile(pattern).isCompiled());
+    }
+
+    @Test
+    public void formatTo_shouldCopyTheLiteral_givenAPatternWithoutConversions() throws Exception {
+        StringBuilder result = new StringBuilder("existing;");
+
+        MessageTemplate.compile("100%% of the time").formatTo(result);
+
+        assertEquals("existing;100% of the time", result.toString());
+    }
+
+    @Test
+    public void formatTo_shouldUseAFormatter_givenConversionsWhichAreNotRenderedDirectly() throws Exception {
+        String pattern = "%08.3f, %-5s|, %2$s, %,d, %S, %X";
+        MessageTemplate template = MessageTemplate.compile(pattern);
+
+        assertFalse(template.isCompiled());
+        assertFormatsLikeStringFormat(pattern, 3.14159, "ab", 1234567, "upper", 255);
+    }
+
+    @Test
+    public void formatTo_shouldUseAFormatter_givenDetailsWhichDoNotSuitTheSimpleConversions() throws Exception {
+        String pattern = "%s and %d and %x";
+
+        assertFormatsLikeStringFormat(pattern, new FormattableDetail(), 1, 2);
+        assertFormatsLikeStringFormat(pattern, "a", new BigInteger("123456789012345678901234567890"), (byte) -1);
+    }
+
+    @Test
+    public void formatTo_shouldThrowTheSameExceptionAsAFormatter_givenADetailOfTheWrongType() throws Exception {
+        try {
+            MessageTemplate.compile("A number: %d").formatTo(new StringBuilder(), "not a number");
+            fail("expected an exception");
+        } catch (IllegalFormatConversionException expected) {
+            assertEquals('d', expected.getConversion());
+        }
+    }
+
+    @Test
+    public void formatTo_shouldThrowTheSameExceptionAsAFormatter_givenTooFewDetails() throws Exception {
+        try {
+            MessageTemplate.compile("%s and %s").formatTo(new StringBuilder(), "one");
+            fail("expected an exception");
+        } catch (MissingFormatArgumentException expected) {
+            assertEquals("%s", expected.getFormatSpecifier());
+        }
+    }
+
+    @Test
+    public void formatTo_shouldMatchStringFormat_givenLongDetails() throws Exception {
+        assertFormatsLongLikeStringFormat("s=%s", -42L);
+        assertFormatsLongLikeStringFormat("d=%d, extra details are ignored", Long.MAX_VALUE);
+        assertFormatsLongLikeStringFormat("x=%x", -1L);
+        assertFormatsLongLikeStringFormat("with a Formatter: %,d", 1234567L);
+        assertFormatsLongsLikeStringFormat("%d of %x%%", 3L, 255L);
+        assertFormatsLongsLikeStringFormat("%2$d then %1$d", 3L, 4L);
+        assertFormatsStringAndLongLikeStringFormat("%s=%d", "count", 12L);
+        assertFormatsStringAndLongLikeStringFormat("%s=%x", null, 12L);
+        assertFormatsStringAndLongLikeStringFormat("%S=%d", "count", 12L);
+    }
+
+    @Test
+    public void formatTo_shouldThrowTheSameExceptionAsAFormatter_givenAStringDetailForANumericConversion() throws Exception {
+        try {
+            MessageTemplate.compile("%d and %d").formatTo(new StringBuilder(), "not a number", 42L);
+            fail("expected an exception");
+        } catch (IllegalFormatConversionException expected) {
+            assertEquals('d', expected.getConversion());
+        }
+    }
+
+    @Test
+    public void formatTo_shouldThrowTheSameExceptionAsAFormatter_givenTooFewLongDetails() throws Exception {
+        try {
+            MessageTemplate.compile("%d and %d and %d").formatTo(new StringBuilder(), 1L, 2L);
+            fail("expected an exception");
+        } catch (MissingFormatArgumentException expected) {
+            assertEquals("%d", expected.getFormatSpecifier());
+        }
+    }
+
+    @Test
+    public void forMessage_shouldReturnTheSameTemplateEachTime() throws Exception {
+        MessageTemplate first = MessageTemplate.forMessage(TestMessages.Bar);
+
+        assertSame(first, MessageTemplate.forMessage(TestMessages.Bar));
+        assertNotSame(first, MessageTemplate.forMessage(TestMessages.Foo));
+    }
+
+    @Test
+    public void forMessage_shouldCompileTheMessagePattern() throws Exception {
+        StringBuilder result = new StringBuilder();
+
+        MessageTemplate.forMessage(TestMessages.Bar).formatTo(result, 42);
+
+        assertEquals("A Bar event occurred, with argument 42", result.toString());
+    }
+
+    private static void assertFormatsLikeStringFormat(String pattern, Object... details) {
+        StringBuilder result = new StringBuilder();
+
+        MessageTemplate.compile(pattern).formatTo(result, details);
+
+        assertEquals(String.format(pattern, details), result.toString());
+    }
+
+    private static void assertFormatsLongLikeStringFormat(String pattern, long detail) {
+        StringBuilder result = new StringBuilder();
+
+        MessageTemplate.compile(pattern).formatTo(result, detail);
+
+        assertEquals(String.format(pattern, detail), result.toString());
+    }
+
+    private static void assertFormatsLongsLikeStringFormat(String pattern, long first, long second) {
+        StringBuilder result = new StringBuilder();
+
+        MessageTemplate.compile(pattern).formatTo(result, first, second);
+
+        assertEquals(String.format(pattern, first, second), result.toString());
+    }
+
+    private static void assertFormatsStringAndLongLikeStringFormat(String pattern, String first, long second) {
+        StringBuilder result = new StringBuilder();
+
+        MessageTemplate.compile(pattern).formatTo(result, first, second);
+
+        assertEquals(String.format(pattern, first, second), result.toString());
+    }
+
+    private static class FormattableDetail implements Formattable {
+        @Override
+        public void formatTo(Formatter formatter, int flags, int width, int precision) {
+            formatter.format("formatted specially");
+        }
+
+        @Override
+        public String toString() {
+            return "toString should not be used";
+        }
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "A Bar event occurred, with argument %d");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
@@ -5,11 +5,15 @@ import com.equalexperts.logging.RestoreSystemStreamsFixture;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.PrintStream;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Optional;
+import java.util.*;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 public class OutputStreamDestinationTest {
 
@@ -30,6 +34,58 @@ public class OutputStreamDestinationTest {
         assertEquals(expectedMessage, output.toString());
     }
 
+    @Test
+    public void publishBatch_shouldPublishEveryFormattedLogRecordInOrder() throws Exception {
+        LogicalLogRecord<TestMessages> first = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+        LogicalLogRecord<TestMessages> second = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Bar, Optional.empty(), 42);
+        String separator = System.getProperty("line.separator");
+
+        destination.publishBatch(Arrays.asList(first, second), t -> fail("unexpected error: " + t));
+
+        assertEquals(first.format(processor) + separator + second.format(processor) + separator, output.toString());
+    }
+
+    @Test
+    public void publishBatch_shouldReportARecordWhichCannotBeFormattedAndPublishTheRest() throws Exception {
+        LogicalLogRecord<TestMessages> broken = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Bar, Optional.empty(), "not a number");
+        LogicalLogRecord<TestMessages> fine = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+        List<Throwable> errors = new ArrayList<>();
+
+        destination.publishBatch(Arrays.asList(broken, fine), errors::add);
+
+        assertEquals(1, errors.size());
+        assertThat(errors.get(0), instanceOf(IllegalFormatException.class));
+        assertEquals(fine.format(processor) + System.getProperty("line.separator"), output.toString());
+    }
+
+    @Test
+    public void publishSyntheticLine_shouldPrintTheLine() throws Exception {
+        destination.publishSyntheticLine("a synthetic line");
+
+        assertEquals("a synthetic line" + System.getProperty("line.separator"), output.toString());
+    }
+
+    @Test
+    public void publishEncoded_shouldPrintTheDecodedLines() throws Exception {
+        BatchEncoder lines = new BatchEncoder();
+        lines.appendLine("a first line");
+        lines.appendLine("a second line");
+
+        destination.publishEncoded(lines);
+
+        String separator = System.getProperty("line.separator");
+        assertEquals("a first line" + separator + "a second line" + separator, output.toString());
+    }
+
+    @Test
+    public void force_shouldFlushThePrintStream() throws Exception {
+        PrintStream stream = spy(new TestPrintStream());
+
+        new OutputStreamDestination<TestMessages>(stream, processor).force();
+
+        verify(stream).flush();
+    }
+
     @Test
     public void close_shouldCloseThePrintStream() throws Exception {
         destination.close();
@@ -55,6 +111,16 @@ public class OutputStreamDestinationTest {
         assertFalse(output.isClosed());
     }
 
+    @Test
+    public void close_shouldCloseTheStackTraceProcessor_evenWhenThePrintStreamIsSystemOut() throws Exception {
+        System.setOut(output);
+        StackTraceProcessor mockProcessor = mock(StackTraceProcessor.class);
+
+        new OutputStreamDestination<TestMessages>(output, mockProcessor).close();
+
+        verify(mockProcessor).close();
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Test
     public void class_shouldImplementAsyncOpsLoggerDestination() throws Exception {
@@ -76,7 +142,8 @@ public class OutputStreamDestinationTest {
     }
 
     private enum TestMessages implements LogMessage {
-        Foo("CODE-Foo", "An event of some kind occurred");
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "An event with %d things");
 
         //region LogMessage implementation guts
         private final String messageCode;
@@ -1,30 +1,38 @@
 package com.equalexperts.logging.impl;
 
+import com.equalexperts.logging.FileLockingPolicy;
 import com.equalexperts.logging.LogMessage;
+import com.equalexperts.logging.TempFileFixture;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.InOrder;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.equalexperts.logging.impl.FileChannelProvider.Result;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class PathDestinationTest {
 
-    private StringWriter writer = spy(new StringWriter());
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
+    private StringBuilder written = new StringBuilder();
     private FileChannel channel = mock(FileChannel.class);
+    private Result result = resultFor(channel);
     private FileLock lock = mock(FileLock.class);
     private FileChannelProvider provider = mock(FileChannelProvider.class);
     private StackTraceProcessor processor = mock(StackTraceProcessor.class);
@@ -33,8 +41,14 @@ public class PathDestinationTest {
 
     @Before
     public void setup() throws Exception {
-        constructResult(writer, channel);
+        when(provider.getChannel()).thenReturn(result);
         doReturn(lock).when(channel).lock();
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            int count = buffer.remaining();
+            written.append(UTF_8.decode(buffer));
+            return count;
+        });
     }
 
     @Test
@@ -54,63 +68,142 @@ public class PathDestinationTest {
         destination.beginBatch();
 
         destination.publish(record);
+        destination.endBatch();
 
-        verify(record).format(processor);
-        verify(writer, times(1)).write(isA(String.class)); //write in one pass to avoid a partial flush
-        assertEquals(record.format(processor) + System.getProperty("line.separator"), writer.toString());
+        verify(record).formatTo(same(processor), any(StringBuilder.class));
+        assertEquals(record.format(processor) + System.getProperty("line.separator"), written.toString());
     }
 
     @Test
-    public void publish_shouldNotFlushTheWriter() throws Exception {
+    public void publish_shouldNotWriteToTheFileBeforeTheBatchEnds() throws Exception {
         LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
         destination.beginBatch();
 
         destination.publish(record);
 
-        verify(writer, never()).flush();
+        verify(channel, never()).write(any(ByteBuffer.class));
+        verify(result, never()).close();
+    }
+
+    @Test
+    public void publishBatch_shouldWriteEveryFormattedLogRecordWithASingleWrite() throws Exception {
+        LogicalLogRecord<TestMessages> first = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+        LogicalLogRecord<TestMessages> second = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Bar, Optional.empty(), 42);
+        String separator = System.getProperty("line.separator");
+        destination.beginBatch();
+
+        destination.publishBatch(Arrays.asList(first, second), t -> fail("unexpected error: " + t));
+        destination.endBatch();
+
+        verify(channel, times(1)).write(any(ByteBuffer.class));
+        assertEquals(first.format(processor) + separator + second.format(processor) + separator, written.toString());
+    }
+
+    @Test
+    public void publishBatch_shouldReportARecordWhichCannotBeFormattedAndPublishTheRest() throws Exception {
+        LogicalLogRecord<TestMessages> broken = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Bar, Optional.empty(), "not a number");
+        LogicalLogRecord<TestMessages> fine = new LogicalLogRecord<>(Instant.now(), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+        List<Throwable> errors = new ArrayList<>();
+        destination.beginBatch();
+
+        destination.publishBatch(Arrays.asList(broken, fine), errors::add);
+        destination.endBatch();
+
+        assertEquals(1, errors.size());
+        assertEquals(fine.format(processor) + System.getProperty("line.separator"), written.toString());
+    }
+
+    @Test
+    public void publishSyntheticLine_shouldWriteTheLineToTheFile() throws Exception {
+        destination.beginBatch();
+
+        destination.publishSyntheticLine("a synthetic line");
+        destination.endBatch();
+
+        assertEquals("a synthetic line" + System.getProperty("line.separator"), written.toString());
     }
 
     @Test
-    public void endBatch_shouldFlushTheWriterReleaseTheFileLockAndCloseTheFileChannelAndWriter() throws Exception {
+    public void endBatch_shouldWriteTheBatchReleaseTheFileLockAndCloseTheFileChannel() throws Exception {
         destination.beginBatch();
+        destination.publishSyntheticLine("a synthetic line");
 
         destination.endBatch();
 
-        InOrder order = inOrder(writer, lock);
-        order.verify(writer).flush();
+        InOrder order = inOrder(channel, lock, result);
+        order.verify(channel).write(any(ByteBuffer.class));
         order.verify(lock).release();
-        order.verify(writer).close();
+        order.verify(result).close();
+    }
+
+    @Test
+    public void endBatch_shouldNotWriteToTheFile_givenAnEmptyBatch() throws Exception {
+        destination.beginBatch();
+
+        destination.endBatch();
+
+        verify(channel, never()).write(any(ByteBuffer.class));
+        verify(lock).release();
+    }
+
+    @Test
+    public void publishEncoded_shouldWriteTheEncodedLinesAfterTheLinesAlreadyInTheBatchAndClearThem() throws Exception {
+        BatchEncoder lines = new BatchEncoder();
+        lines.appendLine("an encoded line");
+        destination.beginBatch();
+        destination.publishSyntheticLine("first line");
+
+        destination.publishEncoded(lines);
+
+        String separator = System.getProperty("line.separator");
+        assertEquals("first line" + separator + "an encoded line" + separator, written.toString());
+        assertEquals(0L, lines.size());
+        verify(lock, never()).release();
+    }
+
+    @Test
+    public void endBatch_shouldAppendTheWholeBatchWithASingleWrite() throws Exception {
+        destination.beginBatch();
+        destination.publishSyntheticLine("first line");
+        destination.publishSyntheticLine("second line");
+
+        destination.endBatch();
+
+        verify(channel, times(1)).write(any(ByteBuffer.class));
+        String separator = System.getProperty("line.separator");
+        assertEquals("first line" + separator + "second line" + separator, written.toString());
     }
 
     @Test
     public void beginBatch_shouldCloseAndReopenFileChannelsAndLocks_whenThePreviousBatchWasNotEnded() throws Exception {
         reset(provider);
-        Result firstResult = new Result(channel, writer);
-        Result secondResult = new Result(mock(FileChannel.class), spy(new StringWriter()));
+        Result secondResult = resultFor(mock(FileChannel.class));
         FileLock secondLock = mock(FileLock.class);
-        when(provider.getChannel()).thenReturn(firstResult, secondResult);
+        when(provider.getChannel()).thenReturn(result, secondResult);
         doReturn(secondLock).when(secondResult.channel).lock();
         destination.beginBatch();
+        destination.publishSyntheticLine("an unfinished batch");
 
         destination.beginBatch();
-        verify(writer).flush();
+        verify(channel).write(any(ByteBuffer.class));
         verify(lock).release();
-        verify(writer).close();
+        verify(result).close();
         verify(secondResult.channel).lock();
         verifyZeroInteractions(secondLock);
-        verifyZeroInteractions(secondResult.writer);
+        verifyZeroInteractions(secondResult);
     }
 
     @Test
     public void close_shouldReleaseTheFileLockAndCloseTheFileChannel_whenABatchIsOpen() throws Exception {
         destination.beginBatch();
+        destination.publishSyntheticLine("a synthetic line");
 
         destination.close();
 
-        InOrder order = inOrder(writer, lock);
-        order.verify(writer).flush();
+        InOrder order = inOrder(channel, lock, result);
+        order.verify(channel).write(any(ByteBuffer.class));
         order.verify(lock).release();
-        order.verify(writer).close();
+        order.verify(result).close();
     }
 
     @Test
@@ -125,6 +218,13 @@ public class PathDestinationTest {
         verify(registry).remove(destination);
     }
 
+    @Test
+    public void close_shouldCloseTheStackTraceProcessor() throws Exception {
+        destination.close();
+
+        verify(processor).close();
+    }
+
     @Test
     public void class_shouldImplementDestination() throws Exception {
         assertThat(destination, instanceOf(Destination.class));
@@ -191,13 +291,249 @@ public class PathDestinationTest {
         }
     }
 
-    private void constructResult(Writer writer, FileChannel channel) throws IOException {
-        Result expectedResult = new Result(channel, writer);
-        when(provider.getChannel()).thenReturn(expectedResult);
+    @Test
+    public void endBatch_shouldWriteTheBatchAndReleaseTheFileLockButNotCloseTheFile_givenKeepFileOpen() throws Exception {
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.empty());
+        keepOpen.beginBatch();
+        keepOpen.publishSyntheticLine("a synthetic line");
+
+        keepOpen.endBatch();
+
+        InOrder order = inOrder(channel, lock);
+        order.verify(channel).write(any(ByteBuffer.class));
+        order.verify(lock).release();
+        verify(result, never()).close();
+    }
+
+    @Test
+    public void beginBatch_shouldReuseTheOpenFileAndLockItAgain_givenKeepFileOpen() throws Exception {
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.empty());
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+
+        keepOpen.beginBatch();
+
+        verify(provider, times(1)).getChannel();
+        verify(channel, times(2)).lock();
+    }
+
+    @Test
+    public void beginBatch_shouldCloseAndReopenTheFile_afterRefreshFileHandles_givenKeepFileOpen() throws Exception {
+        reset(provider);
+        Result secondResult = resultFor(mock(FileChannel.class));
+        when(provider.getChannel()).thenReturn(result, secondResult);
+        doReturn(mock(FileLock.class)).when(secondResult.channel).lock();
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.empty());
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+
+        keepOpen.refreshFileHandles();
+        verify(result, never()).close(); //the file is reopened by the logging thread, not the rotating thread
+        keepOpen.beginBatch();
+
+        verify(result).close();
+        verify(provider, times(2)).getChannel();
+        verify(secondResult.channel).lock();
+    }
+
+    @Test
+    public void close_shouldCloseTheFile_givenKeepFileOpenAndNoOpenBatch() throws Exception {
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.empty());
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+
+        keepOpen.close();
+
+        verify(result).close();
+        verify(lock, times(1)).release();
+        verify(registry).remove(keepOpen);
+    }
+
+    @Test
+    public void beginBatch_shouldTellTheRotationDetectorAboutTheOpenedFile() throws Exception {
+        RotationDetector detector = mock(RotationDetector.class);
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.of(detector));
+
+        keepOpen.beginBatch();
+
+        InOrder order = inOrder(provider, detector);
+        order.verify(provider).getChannel();
+        order.verify(detector).fileOpened();
+    }
+
+    @Test
+    public void beginBatch_shouldCloseAndReopenTheFile_whenTheRotationDetectorDetectsRotation() throws Exception {
+        reset(provider);
+        Result secondResult = resultFor(mock(FileChannel.class));
+        when(provider.getChannel()).thenReturn(result, secondResult);
+        doReturn(mock(FileLock.class)).when(secondResult.channel).lock();
+        RotationDetector detector = mock(RotationDetector.class);
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.of(detector));
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+        when(detector.rotationDetected()).thenReturn(true);
+
+        keepOpen.beginBatch();
+
+        verify(result).close();
+        verify(secondResult.channel).lock();
+        verify(detector, times(2)).fileOpened();
+    }
+
+    @Test
+    public void beginBatch_shouldKeepTheFileOpen_whenTheRotationDetectorDoesNotDetectRotation() throws Exception {
+        RotationDetector detector = mock(RotationDetector.class);
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.of(detector));
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+
+        keepOpen.beginBatch();
+
+        verify(detector).rotationDetected();
+        verify(provider, times(1)).getChannel();
+        verify(result, never()).close();
+    }
+
+    @Test
+    public void close_shouldCloseTheRotationDetector() throws Exception {
+        RotationDetector detector = mock(RotationDetector.class);
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.of(detector));
+
+        keepOpen.close();
+
+        verify(detector).close();
+    }
+
+    @Test
+    public void beginBatch_shouldNotLockTheFile_givenNoLocking() throws Exception {
+        PathDestination<TestMessages> unlocked = destinationWithLockingPolicy(FileLockingPolicy.NONE);
+
+        unlocked.beginBatch();
+        unlocked.endBatch();
+
+        verify(channel, never()).lock();
+        verify(channel, never()).tryLock();
+    }
+
+    @Test
+    public void endBatch_shouldAppendTheWholeBatchWithASingleWrite_givenNoLocking() throws Exception {
+        PathDestination<TestMessages> unlocked = destinationWithLockingPolicy(FileLockingPolicy.NONE);
+        unlocked.beginBatch();
+        unlocked.publishSyntheticLine("first line");
+        unlocked.publishSyntheticLine("second line");
+
+        unlocked.endBatch();
+
+        verify(channel, times(1)).write(any(ByteBuffer.class));
+        String separator = System.getProperty("line.separator");
+        assertEquals("first line" + separator + "second line" + separator, written.toString());
+    }
+
+    @Test
+    public void publish_shouldAppendRecordsToTheFile_givenNoLockingAndARealFile() throws Exception {
+        Path logFile = tempFiles.createTempFile(".log");
+        PathDestination<TestMessages> unlocked = new PathDestination<>(new FileChannelProvider(logFile), processor, registry, false, Optional.empty(), FileLockingPolicy.NONE);
+        LogicalLogRecord<TestMessages> record = new LogicalLogRecord<>(Instant.parse("2014-02-01T14:57:12.500Z"), new DiagnosticContext(Collections::emptyMap), TestMessages.Foo, Optional.empty());
+
+        for (int i = 0; i < 2; i++) {
+            unlocked.beginBatch();
+            unlocked.publish(record);
+            unlocked.endBatch();
+        }
+        unlocked.close();
+
+        String expectedLine = record.format(processor);
+        assertEquals(Arrays.asList(expectedLine, expectedLine), Files.readAllLines(logFile, UTF_8));
+    }
+
+    @Test
+    public void beginBatch_shouldTryToLockTheFileWithoutWaiting_givenTryLockWithBackoff() throws Exception {
+        doReturn(lock).when(channel).tryLock();
+        PathDestination<TestMessages> tryLock = destinationWithLockingPolicy(FileLockingPolicy.TRY_LOCK_WITH_BACKOFF);
+
+        tryLock.beginBatch();
+
+        verify(channel, times(1)).tryLock();
+        verify(channel, never()).lock();
+        assertEquals(0L, tryLock.getLockContentionCount());
+    }
+
+    @Test
+    public void beginBatch_shouldBackOffAndCountContention_whenTheFileIsLockedElsewhere_givenTryLockWithBackoff() throws Exception {
+        when(channel.tryLock()).thenReturn(null, null, lock);
+        PathDestination<TestMessages> tryLock = destinationWithLockingPolicy(FileLockingPolicy.TRY_LOCK_WITH_BACKOFF);
+
+        tryLock.beginBatch();
+        tryLock.endBatch();
+
+        verify(channel, times(3)).tryLock();
+        verify(lock).release();
+        assertEquals(1L, tryLock.getLockContentionCount()); //counts contended batches, not attempts
+    }
+
+    @Test
+    public void beginBatch_shouldWaitForTheLock_afterTheMaximumNumberOfAttempts_givenTryLockWithBackoff() throws Exception {
+        when(channel.tryLock()).thenReturn(null);
+        PathDestination<TestMessages> tryLock = destinationWithLockingPolicy(FileLockingPolicy.TRY_LOCK_WITH_BACKOFF);
+
+        tryLock.beginBatch();
+
+        verify(channel, times(PathDestination.MAX_TRY_LOCK_ATTEMPTS)).tryLock();
+        verify(channel).lock();
+        assertEquals(1L, tryLock.getLockContentionCount());
+    }
+
+    @Test
+    public void force_shouldForceTheOpenFile_givenTheFileIsKeptOpen() throws Exception {
+        PathDestination<TestMessages> keepOpen = keepOpenDestination(Optional.empty());
+        keepOpen.beginBatch();
+        keepOpen.endBatch();
+
+        keepOpen.force();
+
+        verify(provider, times(1)).getChannel();
+        verify(channel).force(false);
+        verify(result, never()).close();
+    }
+
+    @Test
+    public void force_shouldOpenTheFileToForceItAndThenCloseIt_givenTheFileIsNotKeptOpen() throws Exception {
+        destination.beginBatch();
+        destination.endBatch();
+
+        destination.force();
+
+        verify(provider, times(2)).getChannel();
+        InOrder order = inOrder(channel, result);
+        order.verify(result).close(); //closed at the end of the batch
+        order.verify(channel).force(false);
+        order.verify(result).close();
+    }
+
+    private PathDestination<TestMessages> keepOpenDestination(Optional<RotationDetector> detector) {
+        return new PathDestination<>(provider, processor, registry, true, detector, FileLockingPolicy.EXCLUSIVE_LOCK);
+    }
+
+    private PathDestination<TestMessages> destinationWithLockingPolicy(FileLockingPolicy policy) {
+        return new PathDestination<>(provider, processor, registry, false, Optional.empty(), policy);
+    }
+
+    /*
+        FileChannel.close() is final, so the result is closed without closing the mock channel
+     */
+    private static Result resultFor(FileChannel channel) {
+        Result result = spy(new Result(channel));
+        try {
+            doNothing().when(result).close();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return result;
     }
 
     private enum TestMessages implements LogMessage {
-        Foo("CODE-Foo", "An event of some kind occurred");
+        Foo("CODE-Foo", "An event of some kind occurred"),
+        Bar("CODE-Bar", "An event with %d things");
 
         //region LogMessage implementation guts
         private final String messageCode;
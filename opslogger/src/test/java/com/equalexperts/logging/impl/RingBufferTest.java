@@ -0,0 +1,429 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.AsyncWaitStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    private final RingBuffer<String> buffer = new RingBuffer<>(4);
+
+    @Test
+    public void constructor_shouldRoundTheCapacityUpToAPowerOfTwo() throws Exception {
+        assertEquals(8, new RingBuffer<String>(5).getCapacity());
+        assertEquals(8, new RingBuffer<String>(8).getCapacity());
+    }
+
+    @Test
+    public void constructor_shouldUseACapacityOfAtLeastTwo() throws Exception {
+        RingBuffer<String> smallBuffer = new RingBuffer<>(1);
+
+        assertEquals(2, smallBuffer.getCapacity());
+        assertTrue(smallBuffer.offer("a"));
+        assertTrue(smallBuffer.offer("b"));
+        assertFalse(smallBuffer.offer("c"));
+    }
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveCapacity() throws Exception {
+        try {
+            new RingBuffer<String>(0);
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), containsString("must be positive"));
+        }
+    }
+
+    @Test
+    public void drainTo_shouldReturnEntriesInTheOrderTheyWereAdded() throws Exception {
+        buffer.put("a");
+        buffer.put("b");
+        buffer.put("c");
+        List<String> result = new ArrayList<>();
+
+        int count = buffer.drainTo(result, 10);
+
+        assertEquals(3, count);
+        assertEquals(Arrays.asList("a", "b", "c"), result);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void drainTo_shouldNotReturnMoreEntriesThanRequested() throws Exception {
+        buffer.put("a");
+        buffer.put("b");
+        buffer.put("c");
+        List<String> result = new ArrayList<>();
+
+        buffer.drainTo(result, 2);
+
+        assertEquals(Arrays.asList("a", "b"), result);
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void offer_shouldReturnFalse_whenTheBufferIsFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer("entry " + i));
+        }
+
+        assertFalse(buffer.offer("one too many"));
+    }
+
+    @Test
+    public void offer_shouldReuseSlots_afterTheConsumerHasDrainedThem() throws Exception {
+        List<String> result = new ArrayList<>();
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(lap + ":" + i));
+            }
+            buffer.drainTo(result, 4);
+        }
+
+        assertEquals(12, result.size());
+        assertEquals("2:3", result.get(11));
+    }
+
+    @Test
+    public void offer_shouldThrowAnException_whenTheBufferHasBeenShutDown() throws Exception {
+        buffer.shutdown();
+
+        try {
+            buffer.offer("too late");
+            fail("expected an exception");
+        } catch (IllegalStateException expected) {
+            assertThat(expected.getMessage(), containsString("shut down"));
+        }
+    }
+
+    @Test
+    public void offer_shouldGiveUpAfterTheTimeout_whenTheBufferStaysFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            buffer.put("entry " + i);
+        }
+
+        long start = System.nanoTime();
+        boolean result = buffer.offer("waiting", 20, TimeUnit.MILLISECONDS);
+
+        assertFalse(result);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void offer_shouldAddTheEntryWithoutWaiting_givenATimeoutAndSpaceInTheBuffer() throws Exception {
+        assertTrue(buffer.offer("a", 0, TimeUnit.MILLISECONDS));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void tryClaim_shouldReturnMinusOne_whenTheBufferIsFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            buffer.put("entry " + i);
+        }
+
+        assertEquals(-1L, buffer.tryClaim());
+    }
+
+    @Test
+    public void claim_shouldReturnMinusOneAfterTheTimeout_whenTheBufferStaysFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            buffer.put("entry " + i);
+        }
+
+        long start = System.nanoTime();
+        long result = buffer.claim(TimeUnit.MILLISECONDS.toNanos(20));
+
+        assertEquals(-1L, result);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void commit_shouldMakeTheEntryStoredForAClaimedSequenceAvailable() throws Exception {
+        long sequence = buffer.tryClaim();
+        assertEquals(0, buffer.drainTo(new ArrayList<>(), 10));
+
+        buffer.store(sequence, "a");
+        buffer.commit(sequence);
+
+        assertEquals("a", buffer.poll());
+    }
+
+    @Test
+    public void poll_shouldRemoveTheOldestEntry() throws Exception {
+        buffer.put("a");
+        buffer.put("b");
+
+        assertEquals("a", buffer.poll());
+        assertEquals("b", buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void poll_shouldMakeSpaceForAnotherEntry_whenTheBufferIsFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            buffer.put("entry " + i);
+        }
+
+        buffer.poll();
+
+        assertTrue(buffer.offer("new entry"));
+        List<String> result = new ArrayList<>();
+        buffer.drainTo(result, 10);
+        assertEquals(Arrays.asList("entry 1", "entry 2", "entry 3", "new entry"), result);
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnTrueAfterTheTimeout_givenAnEmptyBuffer() throws Exception {
+        assertTrue(buffer.awaitEntries(10, TimeUnit.MILLISECONDS));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnFalseBeforeTheTimeout_givenAShutDownAndEmptyBuffer() throws Exception {
+        buffer.shutdown();
+
+        assertFalse(buffer.awaitEntries(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnTrue_whenAnEntryIsAvailable() throws Exception {
+        buffer.put("a");
+
+        assertTrue(buffer.awaitEntries());
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnTrueUntilEntriesAddedBeforeShutdownHaveBeenDrained() throws Exception {
+        buffer.put("a");
+        buffer.shutdown();
+
+        assertTrue(buffer.awaitEntries());
+        buffer.drainTo(new ArrayList<>(), 10);
+        assertFalse(buffer.awaitEntries());
+    }
+
+    @Test
+    public void awaitEntries_shouldBlockUntilAnEntryIsAdded() throws Exception {
+        AtomicBoolean callReturned = new AtomicBoolean(false);
+        CountDownLatch startupLatch = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            startupLatch.countDown();
+            try {
+                callReturned.set(buffer.awaitEntries());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        startupLatch.await();
+
+        Thread.sleep(100L);
+        assertFalse(callReturned.get());
+
+        buffer.put("a");
+        consumer.join(1000L);
+
+        assertTrue(callReturned.get());
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnFalse_whenTheBufferIsShutDownWhileWaiting() throws Exception {
+        AtomicBoolean result = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            try {
+                result.set(buffer.awaitEntries());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        Thread.sleep(50L);
+
+        buffer.shutdown();
+        consumer.join(1000L);
+
+        assertFalse(consumer.isAlive());
+        assertFalse(result.get());
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnWhenAnEntryIsAddedOrTheBufferIsShutDown_givenAnyWaitStrategy() throws Exception {
+        for (AsyncWaitStrategy strategy : AsyncWaitStrategy.values()) {
+            RingBuffer<String> strategyBuffer = new RingBuffer<>(4, strategy);
+            assertEquals(strategy, strategyBuffer.getWaitStrategy());
+
+            assertEquals(strategy.name(), Boolean.TRUE, awaitInAnotherThread(strategyBuffer, () -> strategyBuffer.offer("a")));
+            strategyBuffer.poll();
+            assertEquals(strategy.name(), Boolean.FALSE, awaitInAnotherThread(strategyBuffer, strategyBuffer::shutdown));
+        }
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnTrueAfterTheTimeout_givenAnyWaitStrategyAndAnEmptyBuffer() throws Exception {
+        for (AsyncWaitStrategy strategy : AsyncWaitStrategy.values()) {
+            assertTrue(strategy.name(), new RingBuffer<String>(4, strategy).awaitEntries(10, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void awaitEntries_shouldNotAskToBeWoken_givenAWaitStrategyWhichDoesNotPark() throws Exception {
+        for (AsyncWaitStrategy strategy : Arrays.asList(AsyncWaitStrategy.SLEEPING, AsyncWaitStrategy.YIELDING, AsyncWaitStrategy.BUSY_SPIN)) {
+            List<Thread> registered = new ArrayList<>();
+            RingBuffer<String> strategyBuffer = new RingBuffer<String>(4, strategy) {
+                @Override
+                protected void setWaitingConsumer(Thread consumer) {
+                    registered.add(consumer);
+                }
+            };
+
+            strategyBuffer.awaitEntries(10, TimeUnit.MILLISECONDS);
+
+            assertEquals(strategy.name(), Collections.emptyList(), registered);
+        }
+    }
+
+    @Test
+    public void awaitEntries_shouldAskToBeWokenAndThenWithdraw_givenTheBlockingStrategy() throws Exception {
+        List<Thread> registered = new ArrayList<>();
+        RingBuffer<String> blockingBuffer = new RingBuffer<String>(4, AsyncWaitStrategy.BLOCKING) {
+            @Override
+            protected void setWaitingConsumer(Thread consumer) {
+                registered.add(consumer);
+            }
+        };
+
+        blockingBuffer.awaitEntries(10, TimeUnit.MILLISECONDS);
+
+        assertEquals(Arrays.asList(Thread.currentThread(), null), registered);
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnTrue_whenTheConsumerIsWokenWithoutAnEntry() throws Exception {
+        assertEquals(Boolean.TRUE, awaitInAnotherThread(buffer, buffer::wake));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnStraightAwayOnlyOnce_givenTheConsumerWasWokenWhileBusy() throws Exception {
+        buffer.wake();
+
+        assertTrue(buffer.awaitEntries(10, TimeUnit.SECONDS));
+        assertFalse(buffer.isWakeRequested());
+        long start = System.nanoTime();
+        assertTrue(buffer.awaitEntries(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void pollAll_shouldRemoveEveryEntryInOrder() throws Exception {
+        buffer.put("a");
+        buffer.put("b");
+        buffer.put("c");
+        List<String> removed = new ArrayList<>();
+
+        int result = buffer.pollAll(removed::add);
+
+        assertEquals(3, result);
+        assertEquals(Arrays.asList("a", "b", "c"), removed);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void put_shouldWaitForSpace_whenTheBufferIsFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            buffer.put("entry " + i);
+        }
+        AtomicBoolean callReturned = new AtomicBoolean(false);
+        Thread producer = new Thread(() -> {
+            try {
+                buffer.put("waiting");
+                callReturned.set(true);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        Thread.sleep(100L);
+        assertFalse(callReturned.get());
+
+        buffer.drainTo(new ArrayList<>(), 1);
+        producer.join(1000L);
+
+        assertTrue(callReturned.get());
+    }
+
+    @Test
+    public void buffer_shouldDeliverEveryEntryExactlyOnce_givenConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        RingBuffer<Integer> sharedBuffer = new RingBuffer<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    try {
+                        sharedBuffer.put(offset + i);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+
+        boolean[] seen = new boolean[producers * perProducer];
+        List<Integer> batch = new ArrayList<>();
+        int received = 0;
+        while (received < seen.length) {
+            assertTrue(sharedBuffer.awaitEntries());
+            batch.clear();
+            received += sharedBuffer.drainTo(batch, 100);
+            for (int value : batch) {
+                assertFalse("duplicate entry " + value, seen[value]);
+                seen[value] = true;
+            }
+        }
+        for (Thread t : threads) {
+            t.join(1000L);
+        }
+        assertEquals(0, sharedBuffer.size());
+    }
+
+    private static Boolean awaitInAnotherThread(RingBuffer<String> buffer, Runnable action) throws Exception {
+        AtomicReference<Boolean> result = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                result.set(buffer.awaitEntries());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        Thread.sleep(20L);
+
+        action.run();
+        consumer.join(1000L);
+
+        assertFalse(consumer.isAlive());
+        return result.get();
+    }
+}
@@ -0,0 +1,132 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.TempFileFixture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RotationDetectorTest {
+
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
+    private static final Instant START = Instant.parse("2014-02-01T14:57:12.500Z");
+    private final Clock clock = mock(Clock.class);
+    private Path logFile;
+    private RotationDetector detector;
+
+    @Before
+    public void setup() throws Exception {
+        when(clock.instant()).thenReturn(START);
+        logFile = tempFiles.createTempFile(".log");
+        Files.write(logFile, Collections.singletonList("a line"), UTF_8);
+        detector = new RotationDetector(logFile, Duration.ofSeconds(1), false, clock);
+        detector.fileOpened();
+        advanceClock(Duration.ofSeconds(1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        detector.close();
+    }
+
+    @Test
+    public void rotationDetected_shouldReturnFalse_whenTheFileHasNotChanged() throws Exception {
+        assertFalse(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldReturnFalse_whenTheFileHasGrown() throws Exception {
+        Files.write(logFile, Collections.singletonList("another line"), UTF_8, APPEND);
+
+        assertFalse(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldReturnTrue_whenTheFileHasBeenMovedAndReplaced() throws Exception {
+        rotate();
+
+        assertTrue(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldReturnTrue_whenTheFileHasBeenMovedAndNotReplaced() throws Exception {
+        Files.move(logFile, tempFiles.createTempFileThatDoesNotExist(".log"));
+
+        assertTrue(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldReturnTrue_whenTheFileHasBeenTruncated() throws Exception {
+        Files.write(logFile, new byte[0]);
+
+        assertTrue(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldNotCheckTheFile_untilTheCheckIntervalHasPassed() throws Exception {
+        assertFalse(detector.rotationDetected()); //checks, and schedules the next check for a second later
+        rotate();
+
+        advanceClock(Duration.ofMillis(500));
+        assertFalse(detector.rotationDetected());
+
+        advanceClock(Duration.ofMillis(500));
+        assertTrue(detector.rotationDetected());
+    }
+
+    @Test
+    public void rotationDetected_shouldCheckTheFileStraightAway_whenWatchingAndTheFileIsReplaced() throws Exception {
+        RotationDetector watchingDetector = new RotationDetector(logFile, Duration.ofDays(1), true, clock);
+        try {
+            watchingDetector.fileOpened();
+            assertFalse(watchingDetector.rotationDetected());
+
+            rotate();
+
+            boolean detected = false;
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (!detected && System.nanoTime() < deadline) {
+                detected = watchingDetector.rotationDetected(); //watch events are delivered asynchronously
+                Thread.sleep(10L);
+            }
+            assertTrue(detected);
+        } finally {
+            watchingDetector.close();
+        }
+    }
+
+    @Test
+    public void fileOpened_shouldAcceptTheNewFile_afterRotation() throws Exception {
+        rotate();
+
+        detector.fileOpened();
+        advanceClock(Duration.ofSeconds(1));
+
+        assertFalse(detector.rotationDetected());
+    }
+
+    private void rotate() throws Exception {
+        Files.move(logFile, tempFiles.createTempFileThatDoesNotExist(".log"));
+        Files.write(logFile, Collections.singletonList("a new file"), UTF_8);
+    }
+
+    private void advanceClock(Duration duration) {
+        Instant now = clock.instant();
+        when(clock.instant()).thenReturn(now.plus(duration));
+    }
+}
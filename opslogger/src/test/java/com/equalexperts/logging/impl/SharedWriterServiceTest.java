@@ -0,0 +1,211 @@
+package com.equalexperts.logging.impl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class SharedWriterServiceTest {
+
+    private final List<SharedWriterService> services = new ArrayList<>();
+
+    @After
+    public void shutdownServices() {
+        services.forEach(SharedWriterService::shutdown);
+    }
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveNumberOfThreads() throws Exception {
+        try {
+            new SharedWriterService(0, Executors.defaultThreadFactory());
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("threads must be positive", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void getShared_shouldReturnTheSameService() throws Exception {
+        assertSame(SharedWriterService.getShared(), SharedWriterService.getShared());
+        assertEquals(SharedWriterService.DEFAULT_THREADS, SharedWriterService.getShared().getThreads());
+    }
+
+    @Test
+    public void register_shouldRunStepsUntilTheRingBufferIsShutDownAndDrained() throws Exception {
+        SharedWriterService service = createService(1);
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        ring.put(1);
+        ring.put(2);
+
+        Future<?> completion = service.register(ring, drainingStep(ring, written, 8));
+        ring.put(3);
+        ring.shutdown();
+
+        completion.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 2, 3), written);
+        assertEquals(0, service.getRegistrationCount());
+    }
+
+    @Test
+    public void register_shouldWakeAnIdleService_whenAnEntryIsAdded() throws Exception {
+        SharedWriterService service = createService(1);
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        CountDownLatch written = new CountDownLatch(1);
+        service.register(ring, () -> {
+            List<Integer> entries = new ArrayList<>();
+            ring.drainTo(entries, 8);
+            if (!entries.isEmpty()) {
+                written.countDown();
+            }
+            return true;
+        });
+        Thread.sleep(50); //let the service go idle
+
+        ring.put(1);
+
+        //well before the periodic step of idle loggers
+        assertTrue(written.await(TimeUnit.NANOSECONDS.toMillis(SharedWriterService.IDLE_STEP_INTERVAL_NANOS) / 2, TimeUnit.MILLISECONDS));
+        assertEquals(1, service.getRegistrationCount());
+    }
+
+    @Test
+    public void register_shouldTakeTurnsBetweenRingBuffers_givenABusyRingBuffer() throws Exception {
+        SharedWriterService service = createService(1);
+        RingBuffer<Integer> busy = new RingBuffer<>(1024);
+        RingBuffer<Integer> quiet = new RingBuffer<>(8);
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 1000; i++) {
+            busy.put(i);
+        }
+        quiet.put(1);
+        busy.shutdown();
+        quiet.shutdown();
+
+        CountDownLatch quietRegistered = new CountDownLatch(1);
+        BooleanSupplier busyStep = recordingStep(busy, "busy", steps);
+
+        Future<?> busyCompletion = service.register(busy, () -> {
+            awaitUninterruptibly(quietRegistered); //so that the busy ring buffer is already being written
+            return busyStep.getAsBoolean();
+        });
+        Future<?> quietCompletion = service.register(quiet, recordingStep(quiet, "quiet", steps));
+        quietRegistered.countDown();
+        busyCompletion.get(10, TimeUnit.SECONDS);
+        quietCompletion.get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, steps.indexOf("quiet"));
+    }
+
+    @Test
+    public void register_shouldKeepTheOrderOfEachRingBuffer_givenSeveralThreadsAndRingBuffers() throws Exception {
+        SharedWriterService service = createService(3);
+        List<RingBuffer<Integer>> rings = new ArrayList<>();
+        List<List<Integer>> written = new ArrayList<>();
+        List<Future<?>> completions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            RingBuffer<Integer> ring = new RingBuffer<>(16);
+            List<Integer> ringWritten = new ArrayList<>(); //a ring buffer is never stepped by two threads at once
+            rings.add(ring);
+            written.add(ringWritten);
+            completions.add(service.register(ring, drainingStep(ring, ringWritten, 4)));
+        }
+
+        List<Thread> producers = rings.stream()
+                .map(ring -> new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            ring.put(i);
+                        }
+                        ring.shutdown();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }))
+                .collect(Collectors.toList());
+        producers.forEach(Thread::start);
+        for (Future<?> completion : completions) {
+            completion.get(10, TimeUnit.SECONDS);
+        }
+
+        List<Integer> expected = IntStream.range(0, 2000).boxed().collect(Collectors.toList());
+        for (List<Integer> ringWritten : written) {
+            assertEquals(expected, ringWritten);
+        }
+    }
+
+    @Test
+    public void register_shouldCompleteTheFutureExceptionally_givenAStepWhichThrowsAnException() throws Exception {
+        SharedWriterService service = createService(1);
+        RuntimeException expectedException = new RuntimeException();
+
+        Future<?> completion = service.register(new RingBuffer<>(8), () -> {
+            throw expectedException;
+        });
+
+        try {
+            completion.get(10, TimeUnit.SECONDS);
+            fail("expected an exception");
+        } catch (ExecutionException expected) {
+            assertSame(expectedException, expected.getCause());
+        }
+        assertEquals(0, service.getRegistrationCount());
+    }
+
+    @Test
+    public void register_shouldThrowAnException_givenTheServiceHasBeenShutDown() throws Exception {
+        SharedWriterService service = createService(1);
+        service.shutdown();
+
+        try {
+            service.register(new RingBuffer<>(8), () -> false);
+            fail("expected an exception");
+        } catch (IllegalStateException expected) {
+            assertEquals("SharedWriterService has been shut down", expected.getMessage());
+        }
+    }
+
+    private SharedWriterService createService(int threads) {
+        SharedWriterService service = new SharedWriterService(threads, Executors.defaultThreadFactory());
+        services.add(service);
+        return service;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static BooleanSupplier drainingStep(RingBuffer<Integer> ring, List<Integer> written, int maxEntries) {
+        return () -> {
+            boolean open = !ring.shutdownComplete();
+            ring.drainTo(written, maxEntries);
+            return open;
+        };
+    }
+
+    private static BooleanSupplier recordingStep(RingBuffer<Integer> ring, String name, List<String> steps) {
+        return () -> {
+            boolean open = !ring.shutdownComplete();
+            ring.drainTo(new ArrayList<>(), 1);
+            steps.add(name);
+            return open;
+        };
+    }
+}
@@ -0,0 +1,213 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.TempFileFixture;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.junit.Assert.*;
+
+public class StackTracePackTest {
+
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
+    private final Path directory = tempFiles.createTempDirectory();
+    private final List<StackTracePack> openPacks = new ArrayList<>();
+
+    @After
+    public void closePacksAndRegisterFiles() throws Exception {
+        for (StackTracePack pack : openPacks) {
+            pack.close();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(tempFiles::register);
+        }
+    }
+
+    @Test
+    public void store_shouldAppendTheStackTraceSoThatItCanBeReadByFingerprint() throws Exception {
+        StackTracePack pack = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        RuntimeException exception = new RuntimeException("blah!");
+
+        String uri = pack.store("abc", exception);
+
+        assertEquals(directory.resolve("stacktraces.idx").toUri().toString() + "#abc", uri);
+        assertEquals(Optional.of(printed(exception)), StackTracePack.read(directory, "abc"));
+        assertEquals(Optional.empty(), StackTracePack.read(directory, "unknown"));
+    }
+
+    @Test
+    public void store_shouldOnlyAppendAFingerprintOnce() throws Exception {
+        StackTracePack pack = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+
+        pack.store("abc", new RuntimeException("first"));
+        long segmentSize = Files.size(directory.resolve("stacktraces_0.pack"));
+        pack.store("abc", new RuntimeException("second"));
+
+        assertEquals(segmentSize, Files.size(directory.resolve("stacktraces_0.pack")));
+        assertEquals(1, Files.readAllLines(directory.resolve("stacktraces.idx")).size());
+    }
+
+    @Test
+    public void store_shouldCompressTheStackTrace() throws Exception {
+        StackTracePack pack = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        RuntimeException exception = new RuntimeException("blah!", new RuntimeException(new RuntimeException()));
+
+        pack.store("abc", exception);
+
+        assertTrue(Files.size(directory.resolve("stacktraces_0.pack")) < printed(exception).getBytes(UTF_8).length);
+    }
+
+    @Test
+    public void store_shouldNotAppendAFingerprintAgain_givenAPackWhichIsOpenedAgain() throws Exception {
+        StackTracePack first = new StackTracePack(directory, StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        first.store("abc", new RuntimeException());
+        first.close();
+        long segmentSize = Files.size(directory.resolve("stacktraces_0.pack"));
+
+        StackTracePack second = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        second.store("abc", new RuntimeException());
+
+        assertEquals(segmentSize, Files.size(directory.resolve("stacktraces_0.pack")));
+    }
+
+    @Test
+    public void store_shouldStartANewSegment_whenTheCurrentSegmentIsFull() throws Exception {
+        StackTracePack pack = open(1);
+        RuntimeException second = new RuntimeException("second");
+
+        pack.store("a", new RuntimeException("first"));
+        pack.store("b", second);
+
+        assertEquals(1, pack.getSegment());
+        assertTrue(Files.exists(directory.resolve("stacktraces_1.pack")));
+        assertEquals("b", StackTracePack.readRecord(directory.resolve("stacktraces_1.pack"), 0).getFingerprint());
+        assertEquals(Optional.of(printed(second)), StackTracePack.read(directory, "b"));
+    }
+
+    @Test
+    public void store_shouldContinueInTheLastSegment_givenAPackWhichIsOpenedAgain() throws Exception {
+        StackTracePack first = new StackTracePack(directory, 1);
+        first.store("a", new RuntimeException());
+        first.store("b", new RuntimeException());
+        first.close();
+
+        StackTracePack second = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+
+        assertEquals(1, second.getSegment());
+    }
+
+    @Test
+    public void open_shouldIgnoreAnIndexLineWhichWasNotCompletelyWritten() throws Exception {
+        StackTracePack first = new StackTracePack(directory, StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        first.store("abc", new RuntimeException());
+        first.close();
+        Files.write(directory.resolve("stacktraces.idx"), "def\t0\t12".getBytes(UTF_8), APPEND);
+
+        assertEquals(Optional.empty(), StackTracePack.read(directory, "def"));
+        assertTrue(StackTracePack.read(directory, "abc").isPresent());
+    }
+
+    @Test
+    public void open_shouldShareThePackOfTheSameDirectory_untilEveryLoggerHasClosedIt() throws Exception {
+        StackTracePack first = StackTracePack.open(directory, StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        StackTracePack second = StackTracePack.open(directory.resolve("."), StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        assertSame(first, second);
+
+        first.close();
+        second.store("abc", new RuntimeException()); //still open
+        second.close();
+
+        StackTracePack third = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void readRecord_shouldThrowAnException_givenAnOffsetWhichIsNotTheStartOfARecord() throws Exception {
+        StackTracePack pack = open(StackTracePack.DEFAULT_MAX_SEGMENT_BYTES);
+        pack.store("abc", new RuntimeException());
+
+        try {
+            StackTracePack.readRecord(directory.resolve("stacktraces_0.pack"), 1);
+            fail("expected an exception");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("No stack trace record at offset 1"));
+        }
+    }
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveMaximumSegmentSize() throws Exception {
+        try {
+            new StackTracePack(directory, 0);
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("max segment bytes must be positive", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void listStored_shouldListEverySegmentExceptTheCurrentOne_withTheFingerprintsItHolds() throws Exception {
+        StackTracePack pack = open(1);
+        pack.store("a", new RuntimeException());
+        pack.store("b", new RuntimeException());
+
+        List<StoredStackTraces> stored = pack.listStored();
+
+        assertEquals(1, stored.size());
+        assertEquals(directory.resolve("stacktraces_0.pack"), stored.get(0).getFile());
+        assertEquals(Files.size(directory.resolve("stacktraces_0.pack")), stored.get(0).getBytes());
+        assertEquals(Collections.singleton("a"), stored.get(0).getFingerprints());
+    }
+
+    @Test
+    public void delete_shouldDeleteTheSegmentAndRemoveItsFingerprintsFromTheIndex() throws Exception {
+        StackTracePack pack = open(1);
+        pack.store("a", new RuntimeException());
+        pack.store("b", new RuntimeException());
+
+        pack.delete(pack.listStored().get(0));
+
+        assertFalse(Files.exists(directory.resolve("stacktraces_0.pack")));
+        assertEquals(Optional.empty(), StackTracePack.read(directory, "a"));
+        assertTrue(StackTracePack.read(directory, "b").isPresent());
+        assertEquals(Collections.emptyList(), pack.listStored());
+    }
+
+    @Test
+    public void store_shouldAppendAFingerprintAgain_givenItsSegmentHasBeenDeleted() throws Exception {
+        StackTracePack pack = open(1);
+        RuntimeException exception = new RuntimeException("blah!");
+        pack.store("a", exception);
+        pack.store("b", new RuntimeException());
+        pack.delete(pack.listStored().get(0));
+
+        pack.store("a", exception);
+
+        assertEquals(Optional.of(printed(exception)), StackTracePack.read(directory, "a"));
+        assertEquals(2, Files.readAllLines(directory.resolve("stacktraces.idx")).size());
+    }
+
+    private StackTracePack open(long maxSegmentBytes) throws IOException {
+        StackTracePack pack = StackTracePack.open(directory, maxSegmentBytes);
+        openPacks.add(pack);
+        return pack;
+    }
+
+    private static String printed(Throwable throwable) {
+        TestPrintStream out = new TestPrintStream();
+        throwable.printStackTrace(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.TempFileFixture;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class StackTracePersistenceWorkerTest {
+
+    @Rule
+    public TempFileFixture tempFiles = new TempFileFixture();
+
+    private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveQueueCapacity() throws Exception {
+        try {
+            new StackTracePersistenceWorker(0, mock(StackTraceStore.class), errors::add, Executors.defaultThreadFactory());
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("queue capacity must be positive", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void submit_shouldStoreTheStackTraceInTheBackground() throws Exception {
+        Path directory = tempFiles.createTempDirectory();
+        StackTracePersistenceWorker worker = new StackTracePersistenceWorker(4, new FilePerTraceStore(directory), errors::add, Executors.defaultThreadFactory());
+        Path file = tempFiles.register(directory.resolve("stacktrace_1.txt"));
+        RuntimeException exception = new RuntimeException("blah!");
+        TestPrintStream expectedContents = new TestPrintStream();
+        exception.printStackTrace(expectedContents);
+
+        assertTrue(worker.submit("1", exception, () -> fail("unexpected failure")));
+        worker.close();
+
+        assertEquals(expectedContents.toString(), new String(Files.readAllBytes(file)));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void submit_shouldOnlyQueueAFingerprintOnce_givenTheSameFingerprintWhileItIsQueued() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StackTraceStore store = mock(StackTraceStore.class);
+        StackTracePersistenceWorker worker = new StackTracePersistenceWorker(4, store, errors::add, blockedUntil(release));
+        RuntimeException first = new RuntimeException();
+
+        assertTrue(worker.submit("1", first, () -> {}));
+        assertTrue(worker.submit("1", new RuntimeException(), () -> {}));
+        assertEquals(1, worker.getQueuedCount());
+
+        release.countDown();
+        worker.close();
+        assertEquals(0, worker.getQueuedCount());
+        verify(store).store("1", first);
+        verifyNoMoreInteractions(store);
+    }
+
+    @Test
+    public void submit_shouldRefuseTheStackTrace_whenTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StackTraceStore store = mock(StackTraceStore.class);
+        StackTracePersistenceWorker worker = new StackTracePersistenceWorker(2, store, errors::add, blockedUntil(release));
+
+        assertTrue(worker.submit("1", new RuntimeException(), () -> {}));
+        assertTrue(worker.submit("2", new RuntimeException(), () -> {}));
+        assertFalse(worker.submit("3", new RuntimeException(), () -> {}));
+
+        release.countDown();
+        worker.close();
+        verify(store, never()).store(eq("3"), any());
+        assertFalse("a closed worker should refuse stack traces", worker.submit("3", new RuntimeException(), () -> {}));
+    }
+
+    @Test
+    public void submit_shouldReportTheProblemAndRunTheFailureAction_whenTheStackTraceCannotBeStored() throws Exception {
+        Path missingDirectory = tempFiles.createTempDirectoryThatDoesNotExist();
+        StackTracePersistenceWorker worker = new StackTracePersistenceWorker(4, new FilePerTraceStore(missingDirectory), errors::add, Executors.defaultThreadFactory());
+        AtomicInteger failures = new AtomicInteger();
+
+        assertTrue(worker.submit("1", new RuntimeException(), failures::incrementAndGet));
+        worker.close();
+
+        assertEquals(1, failures.get());
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void close_shouldStoreEveryQueuedStackTraceBeforeReturning() throws Exception {
+        Path directory = tempFiles.createTempDirectory();
+        StackTracePersistenceWorker worker = new StackTracePersistenceWorker(16, new FilePerTraceStore(directory), errors::add, Executors.defaultThreadFactory());
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(tempFiles.register(directory.resolve("stacktrace_" + i + ".txt")));
+            worker.submit(String.valueOf(i), new RuntimeException("exception " + i), () -> {});
+        }
+
+        worker.close();
+
+        for (Path file : files) {
+            assertTrue(file + " should exist", Files.exists(file));
+        }
+    }
+
+    /*
+        The worker thread waits for the latch before it starts, so submitted files stay queued.
+     */
+    private static ThreadFactory blockedUntil(CountDownLatch release) {
+        return runnable -> new Thread(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            runnable.run();
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package com.equalexperts.logging.impl;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class StackTraceRetentionTest {
+
+    private final StackTraceStore store = mock(StackTraceStore.class);
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(100_000), ZoneOffset.UTC);
+    @SuppressWarnings("unchecked")
+    private final Consumer<Throwable> errorHandler = (Consumer<Throwable>) mock(Consumer.class);
+
+    @Test
+    public void run_shouldDeleteTheLeastRecentlyModifiedFiles_untilTheTotalSizeIsWithinTheLimit() throws Exception {
+        StoredStackTraces newest = stored("newest", 100, 3000);
+        StoredStackTraces oldest = stored("oldest", 100, 1000);
+        StoredStackTraces middle = stored("middle", 100, 2000);
+        when(store.listStored()).thenReturn(Arrays.asList(newest, oldest, middle));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.of(150L), Optional.empty(), Optional.empty(), clock, errorHandler);
+
+        assertEquals(2, retention.run());
+
+        verify(store).delete(oldest);
+        verify(store).delete(middle);
+        verify(store, never()).delete(newest);
+    }
+
+    @Test
+    public void run_shouldDeleteTheLeastRecentlyModifiedFiles_untilTheNumberOfFilesIsWithinTheLimit() throws Exception {
+        StoredStackTraces newest = stored("newest", 100, 3000);
+        StoredStackTraces oldest = stored("oldest", 100, 1000);
+        StoredStackTraces middle = stored("middle", 100, 2000);
+        when(store.listStored()).thenReturn(Arrays.asList(newest, oldest, middle));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.of(2), Optional.empty(), clock, errorHandler);
+
+        assertEquals(1, retention.run());
+
+        verify(store).delete(oldest);
+        verify(store, never()).delete(middle);
+        verify(store, never()).delete(newest);
+    }
+
+    @Test
+    public void run_shouldDeleteFilesWhichHaveNotBeenUsedForLongerThanTheMaximumAge() throws Exception {
+        StoredStackTraces recent = stored("recent", 100, 95_000);
+        StoredStackTraces old = stored("old", 100, 85_000);
+        when(store.listStored()).thenReturn(Arrays.asList(recent, old));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.empty(), Optional.of(Duration.ofSeconds(10)), clock, errorHandler);
+
+        assertEquals(1, retention.run());
+
+        verify(store).delete(old);
+        verify(store, never()).delete(recent);
+    }
+
+    @Test
+    public void run_shouldKeepAFileWhoseStackTraceWasSeenRecently_evenWhenItWasModifiedLongAgo() throws Exception {
+        StoredStackTraces seen = stored("seen", 100, 1000);
+        StoredStackTraces unseen = stored("unseen", 100, 2000);
+        when(store.listStored()).thenReturn(Arrays.asList(seen, unseen));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.of(1), Optional.empty(), clock, errorHandler);
+
+        retention.touch("seen");
+        retention.run();
+
+        verify(store).delete(unseen);
+        verify(store, never()).delete(seen);
+    }
+
+    @Test
+    public void run_shouldDeleteNothing_givenEveryLimitIsMet() throws Exception {
+        when(store.listStored()).thenReturn(Arrays.asList(stored("a", 100, 99_000), stored("b", 100, 99_000)));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.of(200L), Optional.of(2), Optional.of(Duration.ofSeconds(10)), clock, errorHandler);
+
+        assertEquals(0, retention.run());
+
+        verify(store, never()).delete(any());
+    }
+
+    @Test
+    public void run_shouldTellEveryEvictionListenerAboutEveryDeletedFingerprint() throws Exception {
+        StoredStackTraces segment = new StoredStackTraces(Paths.get("segment"), 100, 1000, new HashSet<>(Arrays.asList("a", "b")));
+        when(store.listStored()).thenReturn(Collections.singletonList(segment));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.of(0), Optional.empty(), clock, errorHandler);
+        List<String> evicted = new ArrayList<>();
+        List<String> alsoEvicted = new ArrayList<>();
+        retention.addEvictionListener(evicted::add);
+        retention.addEvictionListener(alsoEvicted::add);
+
+        retention.run();
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(evicted));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(alsoEvicted));
+    }
+
+    @Test
+    public void run_shouldNotTellAnEvictionListenerWhichHasBeenRemoved() throws Exception {
+        when(store.listStored()).thenReturn(Collections.singletonList(stored("a", 100, 1000)));
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.of(0), Optional.empty(), clock, errorHandler);
+        List<String> evicted = new ArrayList<>();
+        Consumer<String> listener = evicted::add;
+        retention.addEvictionListener(listener);
+        retention.removeEvictionListener(listener);
+
+        retention.run();
+
+        assertEquals(Collections.emptyList(), evicted);
+    }
+
+    @Test
+    public void run_shouldOnlyDeleteALimitedNumberOfFilesInOneRun() throws Exception {
+        List<StoredStackTraces> stored = new ArrayList<>();
+        for (int i = 0; i < StackTraceRetention.MAX_DELETIONS_PER_RUN + 5; i++) {
+            stored.add(stored("fingerprint" + i, 100, i));
+        }
+        when(store.listStored()).thenReturn(stored);
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.empty(), Optional.of(1), Optional.empty(), clock, errorHandler);
+
+        assertEquals(StackTraceRetention.MAX_DELETIONS_PER_RUN, retention.run());
+    }
+
+    @Test
+    public void start_shouldRunInTheBackground_andPassAnyExceptionToTheErrorHandler() throws Exception {
+        RuntimeException expectedException = new RuntimeException("blah!");
+        when(store.listStored()).thenThrow(expectedException);
+        StackTraceRetention retention = new StackTraceRetention(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+
+        retention.start(Duration.ofHours(1));
+        try {
+            verify(errorHandler, timeout(5000)).accept(expectedException);
+        } finally {
+            retention.close();
+        }
+    }
+
+    @Test
+    public void open_shouldShareOneRetention_givenStoresInTheSameDirectory() throws Exception {
+        when(store.getDirectory()).thenReturn(Paths.get("shared-retention"));
+        StackTraceStore sameDirectoryStore = mock(StackTraceStore.class);
+        when(sameDirectoryStore.getDirectory()).thenReturn(Paths.get("shared-retention").toAbsolutePath());
+
+        StackTraceRetention retention = StackTraceRetention.open(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+        StackTraceRetention sharedRetention = StackTraceRetention.open(sameDirectoryStore, Optional.of(2L), Optional.empty(), Optional.empty(), clock, errorHandler);
+        try {
+            assertSame(retention, sharedRetention);
+            assertEquals(Optional.of(1L), sharedRetention.getMaxTotalBytes());
+        } finally {
+            sharedRetention.close();
+            retention.close();
+        }
+    }
+
+    @Test
+    public void close_shouldOnlyStopTheSharedRetention_onceEveryLoggerHasClosedIt() throws Exception {
+        when(store.getDirectory()).thenReturn(Paths.get("closing-retention"));
+        StackTraceRetention retention = StackTraceRetention.open(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+        StackTraceRetention sharedRetention = StackTraceRetention.open(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+
+        sharedRetention.close();
+        StackTraceRetention stillShared = StackTraceRetention.open(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+        assertSame(retention, stillShared);
+        stillShared.close();
+        retention.close();
+
+        StackTraceRetention reopened = StackTraceRetention.open(store, Optional.of(1L), Optional.empty(), Optional.empty(), clock, errorHandler);
+        try {
+            assertNotSame(retention, reopened);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static StoredStackTraces stored(String fingerprint, long bytes, long lastModifiedMillis) {
+        Path file = Paths.get("stacktrace_" + fingerprint + ".txt");
+        return new StoredStackTraces(file, bytes, lastModifiedMillis, Collections.singleton(fingerprint));
+    }
+}
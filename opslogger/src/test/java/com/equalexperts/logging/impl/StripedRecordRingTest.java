@@ -0,0 +1,194 @@
+package com.equalexperts.logging.impl;
+
+import com.equalexperts.logging.LogMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StripedRecordRingTest {
+
+    private static final DiagnosticContext CONTEXT = new DiagnosticContext(Collections::emptyMap);
+
+    private final StripedRecordRing<TestMessages> ring = new StripedRecordRing<>(4, () -> new RingBuffer<>(8));
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveStripeCount() throws Exception {
+        try {
+            new StripedRecordRing<TestMessages>(0, () -> new RingBuffer<>(8));
+            fail("expected an exception");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("stripe count must be positive", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void getCapacity_shouldReturnTheCapacityOfAllStripes() throws Exception {
+        assertEquals(4, ring.getStripeCount());
+        assertEquals(32, ring.getCapacity());
+    }
+
+    @Test
+    public void put_shouldAddToTheStripeOfTheCallingThread() throws Exception {
+        LogicalLogRecord<TestMessages> record = createRecord(1L);
+
+        ring.put(record);
+
+        RingBuffer<LogicalLogRecord<TestMessages>> stripe = ring.getStripe((int) (Thread.currentThread().getId() % 4));
+        assertEquals(1, stripe.size());
+        assertEquals(1, ring.size());
+        assertSame(record, ring.poll());
+    }
+
+    @Test
+    public void drainTo_shouldMergeTheStripesByTimestamp() throws Exception {
+        LogicalLogRecord<TestMessages> first = createRecord(1L);
+        LogicalLogRecord<TestMessages> second = createRecord(2L);
+        LogicalLogRecord<TestMessages> third = createRecord(3L);
+        LogicalLogRecord<TestMessages> fourth = createRecord(4L);
+        ring.getStripe(0).put(second);
+        ring.getStripe(0).put(fourth);
+        ring.getStripe(3).put(first);
+        ring.getStripe(3).put(third);
+        List<LogicalLogRecord<TestMessages>> result = new ArrayList<>();
+
+        int drained = ring.drainTo(result, 10);
+
+        assertEquals(4, drained);
+        assertEquals(Arrays.asList(first, second, third, fourth), result);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void drainTo_shouldKeepTheOrderWithinAStripe_givenATimestampWhichGoesBackwards() throws Exception {
+        LogicalLogRecord<TestMessages> first = createRecord(5L);
+        LogicalLogRecord<TestMessages> second = createRecord(2L);
+        LogicalLogRecord<TestMessages> other = createRecord(3L);
+        ring.getStripe(1).put(first);
+        ring.getStripe(1).put(second);
+        ring.getStripe(2).put(other);
+        List<LogicalLogRecord<TestMessages>> result = new ArrayList<>();
+
+        ring.drainTo(result, 10);
+
+        assertEquals(Arrays.asList(other, first, second), result);
+    }
+
+    @Test
+    public void drainTo_shouldNotDrainMoreThanTheMaximum() throws Exception {
+        for (int stripe = 0; stripe < 4; stripe++) {
+            ring.getStripe(stripe).put(createRecord(stripe));
+            ring.getStripe(stripe).put(createRecord(stripe + 10));
+        }
+        List<LogicalLogRecord<TestMessages>> result = new ArrayList<>();
+
+        assertEquals(3, ring.drainTo(result, 3));
+        assertEquals(3, result.size());
+        assertEquals(5, ring.size());
+        assertEquals(5, ring.drainTo(result, 10));
+    }
+
+    @Test
+    public void pollAll_shouldRemoveTheRecordsOfEveryStripe() throws Exception {
+        ring.getStripe(0).put(createRecord(1L));
+        ring.getStripe(2).put(createRecord(2L));
+        ring.getStripe(3).put(createRecord(3L));
+        List<LogicalLogRecord<TestMessages>> removed = new ArrayList<>();
+
+        assertEquals(3, ring.pollAll(removed::add));
+        assertEquals(3, removed.size());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void awaitEntries_shouldWakeTheConsumer_whenARecordIsAddedToAnyStripe() throws Exception {
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                ring.getStripe(2).put(createRecord(1L));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+
+        assertTrue(ring.awaitEntries(10, TimeUnit.SECONDS));
+        assertEquals(1, ring.size());
+        producer.join();
+    }
+
+    @Test
+    public void awaitEntries_shouldReturn_whenTheConsumerIsWoken() throws Exception {
+        Thread waker = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                ring.wake();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waker.start();
+
+        assertTrue(ring.awaitEntries(10, TimeUnit.SECONDS));
+        assertEquals(0, ring.size());
+        waker.join();
+    }
+
+    @Test
+    public void awaitEntries_shouldReturnFalse_givenEveryStripeHasBeenShutDownAndDrained() throws Exception {
+        ring.getStripe(1).put(createRecord(1L));
+
+        ring.shutdown();
+
+        assertTrue(ring.isShutdown());
+        assertTrue(ring.awaitEntries());
+        ring.drainTo(new ArrayList<>(), 10);
+        assertFalse(ring.awaitEntries());
+    }
+
+    @Test
+    public void offer_shouldThrowAnException_givenTheRingHasBeenShutDown() throws Exception {
+        ring.shutdown();
+
+        try {
+            ring.offer(createRecord(1L));
+            fail("expected an exception");
+        } catch (IllegalStateException expected) {
+            assertEquals("RingBuffer has been shut down", expected.getMessage());
+        }
+    }
+
+    private static LogicalLogRecord<TestMessages> createRecord(long epochMillis) {
+        return new LogicalLogRecord<>(epochMillis, CONTEXT, TestMessages.Foo, Optional.empty());
+    }
+
+    private enum TestMessages implements LogMessage {
+        Foo("CODE-Foo", "An event of some kind occurred");
+
+        //region LogMessage implementation guts
+        private final String messageCode;
+        private final String messagePattern;
+
+        TestMessages(String messageCode, String messagePattern) {
+            this.messageCode = messageCode;
+            this.messagePattern = messagePattern;
+        }
+
+        @Override
+        public String getMessageCode() {
+            return messageCode;
+        }
+
+        @Override
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+        //endregion
+    }
+}
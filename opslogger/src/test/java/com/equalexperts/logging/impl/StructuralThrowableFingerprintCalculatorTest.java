@@ -0,0 +1,203 @@
+package com.equalexperts.logging.impl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.*;
+
+public class StructuralThrowableFingerprintCalculatorTest {
+    private final StructuralThrowableFingerprintCalculator calculator = new StructuralThrowableFingerprintCalculator();
+
+    @Test
+    public void calculateFingerprint_shouldGenerateTheSameFingerprint_givenTwoIdenticalThrowables() throws Exception {
+        //ensure the exceptions are identical by giving them the same message, same class, and same stack trace
+        String exceptionMessage = "message";
+        Throwable firstException = new RuntimeException(exceptionMessage);
+        Throwable secondException = new RuntimeException(exceptionMessage);
+        firstException.setStackTrace(constructCustomStackTrace());
+        secondException.setStackTrace(constructCustomStackTrace());
+
+        String firstFingerprint = calculator.calculateFingerprint(firstException);
+        String secondFingerprint = calculator.calculateFingerprint(secondException);
+
+        assertEquals(firstFingerprint, secondFingerprint);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnTheSameFingerprint_givenTheSameExceptionTwice() throws Exception {
+        Throwable t = new RuntimeException();
+        String expectedFingerprint = calculator.calculateFingerprint(t);
+
+        String actualFingerprint = calculator.calculateFingerprint(t);
+
+        assertEquals(expectedFingerprint, actualFingerprint);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_whenTheStackTraceChanges() throws Exception {
+        Throwable t = new RuntimeException();
+        String originalFingerprint = calculator.calculateFingerprint(t);
+
+        t.setStackTrace(constructCustomStackTrace());
+        String newFingerprint = calculator.calculateFingerprint(t);
+
+        assertNotEquals(originalFingerprint, newFingerprint);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnDifferentFingerprints_forDifferentThrowableTypes() throws Exception {
+        //same message and stack trace to create throwable instances that differ only by type
+        String message = "foo";
+        Throwable a = new Exception(message);
+        a.setStackTrace(constructCustomStackTrace());
+        Throwable b = new RuntimeException(message);
+        b.setStackTrace(constructCustomStackTrace());
+
+        String fingerprintA = calculator.calculateFingerprint(a);
+        String fingerprintB = calculator.calculateFingerprint(b);
+
+        assertNotEquals(fingerprintA, fingerprintB);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnDifferentFingerprints_givenDifferentMessages() throws Exception {
+        //same class and stack trace to create throwable instances that differ only by message
+        Throwable a = new RuntimeException("a");
+        a.setStackTrace(constructCustomStackTrace());
+        Throwable b = new RuntimeException("b");
+        b.setStackTrace(constructCustomStackTrace());
+
+        String fingerprintA = calculator.calculateFingerprint(a);
+        String fingerprintB = calculator.calculateFingerprint(b);
+
+        assertNotEquals(fingerprintA, fingerprintB);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_givenADifferentCause() throws Exception {
+        Throwable t = new RuntimeException();
+        String originalFingerprint = calculator.calculateFingerprint(t);
+        t.initCause(new RuntimeException());
+
+        String modifiedFingerprint = calculator.calculateFingerprint(t);
+
+        assertNotEquals(originalFingerprint, modifiedFingerprint);
+    }
+    
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_givenAChangeInSuppressedExceptions() throws Exception {
+        Throwable t = new RuntimeException();
+        String originalFingerprint = calculator.calculateFingerprint(t);
+        t.addSuppressed(new RuntimeException());
+
+        String modifiedFingerprint = calculator.calculateFingerprint(t);
+
+        assertNotEquals(originalFingerprint, modifiedFingerprint);
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_givenADifferentLineNumber() throws Exception {
+        Throwable a = new RuntimeException("message");
+        a.setStackTrace(constructCustomStackTrace());
+        Throwable b = new RuntimeException("message");
+        StackTraceElement[] stackTrace = constructCustomStackTrace();
+        stackTrace[2] = new StackTraceElement("org,example.Foo", "foo", "Foo.java", 43);
+        b.setStackTrace(stackTrace);
+
+        assertNotEquals(calculator.calculateFingerprint(a), calculator.calculateFingerprint(b));
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_whenAFrameMovesFromTheCauseToTheEnclosingThrowable() throws Exception {
+        StackTraceElement[] stackTrace = constructCustomStackTrace();
+        Throwable a = new RuntimeException("message", new RuntimeException("cause"));
+        a.setStackTrace(Arrays.copyOfRange(stackTrace, 0, 2));
+        a.getCause().setStackTrace(Arrays.copyOfRange(stackTrace, 2, 4));
+        Throwable b = new RuntimeException("message", new RuntimeException("cause"));
+        b.setStackTrace(Arrays.copyOfRange(stackTrace, 0, 3));
+        b.getCause().setStackTrace(Arrays.copyOfRange(stackTrace, 3, 4));
+
+        assertNotEquals(calculator.calculateFingerprint(a), calculator.calculateFingerprint(b));
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnADifferentFingerprint_whenASuppressedExceptionBecomesTheCause() throws Exception {
+        Throwable a = new RuntimeException("message");
+        a.setStackTrace(constructCustomStackTrace());
+        a.addSuppressed(new RuntimeException("other"));
+        Throwable b = new RuntimeException("message", new RuntimeException("other"));
+        b.setStackTrace(constructCustomStackTrace());
+        a.getSuppressed()[0].setStackTrace(new StackTraceElement[0]);
+        b.getCause().setStackTrace(new StackTraceElement[0]);
+
+        assertNotEquals(calculator.calculateFingerprint(a), calculator.calculateFingerprint(b));
+    }
+
+    @Test
+    public void calculateFingerprint_shouldCompleteAndBeRepeatable_givenACircularCauseChain() throws Exception {
+        RuntimeException a = new RuntimeException("a");
+        RuntimeException b = new RuntimeException("b", a);
+        a.initCause(b);
+
+        assertEquals(calculator.calculateFingerprint(a), calculator.calculateFingerprint(a));
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnTheSameLengthFingerprintAsMD5_butADifferentValue() throws Exception {
+        Throwable t = new RuntimeException("message");
+        t.setStackTrace(constructCustomStackTrace());
+        String md5Fingerprint = new ThrowableFingerprintCalculator().calculateFingerprint(t);
+
+        String fingerprint = calculator.calculateFingerprint(t);
+
+        assertEquals(md5Fingerprint.length(), fingerprint.length());
+        assertNotEquals(md5Fingerprint, fingerprint);
+        assertTrue(fingerprint.matches("[A-Za-z0-9_-]+")); //safe in a filename
+    }
+
+    @Test
+    public void calculateFingerprint_shouldReturnTheSameFingerprint_whenTheFrameHashesHaveBeenForgotten() throws Exception {
+        StructuralThrowableFingerprintCalculator smallCalculator = new StructuralThrowableFingerprintCalculator(2);
+        Throwable t = new RuntimeException("message");
+        t.setStackTrace(constructCustomStackTrace());
+
+        String first = smallCalculator.calculateFingerprint(t);
+        String second = smallCalculator.calculateFingerprint(t);
+
+        assertEquals(first, second);
+        assertThat(smallCalculator.getCachedFrameCount(), lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void calculateFingerprint_shouldRememberTheHashOfEachFrame() throws Exception {
+        Throwable t = new RuntimeException("message");
+        t.setStackTrace(constructCustomStackTrace());
+
+        calculator.calculateFingerprint(t);
+        calculator.calculateFingerprint(new RuntimeException("other message")); //stack trace of this test method
+
+        assertThat(calculator.getCachedFrameCount(), greaterThan(4));
+    }
+
+    @Test
+    public void constructor_shouldThrowAnException_givenANonPositiveNumberOfCachedFrames() throws Exception {
+        try {
+            new StructuralThrowableFingerprintCalculator(0);
+            fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("max cached frames must be positive", e.getMessage());
+        }
+    }
+
+    private StackTraceElement[] constructCustomStackTrace() {
+        return new StackTraceElement[]{
+                new StackTraceElement("org,example.Foo", "baz", "Foo.java", 128),
+                new StackTraceElement("org,example.Foo", "bar", "Foo.java", 67),
+                new StackTraceElement("org,example.Foo", "foo", "Foo.java", 42),
+                new StackTraceElement("org,example.Foo", "main", "Foo.java", 21)
+        };
+    }
+}
\ No newline at end of file
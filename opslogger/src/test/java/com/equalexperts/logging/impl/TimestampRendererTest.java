@@ -0,0 +1,55 @@
+package com.equalexperts.logging.impl;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static com.equalexperts.logging.impl.LogicalLogRecord.ISO_ALWAYS_WITH_MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+
+public class TimestampRendererTest {
+
+    private final TimestampRenderer renderer = new TimestampRenderer(ISO_ALWAYS_WITH_MILLISECONDS);
+
+    @Test
+    public void renderTo_shouldAppendTheTimestampWithMilliseconds() throws Exception {
+        StringBuilder result = new StringBuilder("existing;");
+
+        renderer.renderTo(Instant.parse("2014-02-01T14:57:12.500Z").toEpochMilli(), result);
+
+        assertEquals("existing;2014-02-01T14:57:12.500Z", result.toString());
+    }
+
+    @Test
+    public void renderTo_shouldRenderEachMillisecondOfTheSameSecond() throws Exception {
+        long start = Instant.parse("2014-02-01T14:57:12Z").toEpochMilli();
+
+        for (long millis = start; millis < start + 1000L; millis++) {
+            assertRendersLikeTheFormatter(millis);
+        }
+    }
+
+    @Test
+    public void renderTo_shouldRenderTheCorrectSecond_givenTimestampsOutOfOrder() throws Exception {
+        assertRendersLikeTheFormatter(Instant.parse("2014-02-01T14:57:12.999Z").toEpochMilli());
+        assertRendersLikeTheFormatter(Instant.parse("2014-02-01T14:57:13.000Z").toEpochMilli());
+        assertRendersLikeTheFormatter(Instant.parse("2014-02-01T14:57:12.001Z").toEpochMilli());
+        assertRendersLikeTheFormatter(Instant.parse("2015-12-31T23:59:59.999Z").toEpochMilli());
+    }
+
+    @Test
+    public void renderTo_shouldMatchTheFormatter_givenTimestampsBeforeTheEpochOrFarInTheFuture() throws Exception {
+        assertRendersLikeTheFormatter(-1L);
+        assertRendersLikeTheFormatter(-1001L);
+        assertRendersLikeTheFormatter(Instant.parse("1969-07-20T20:17:40.123Z").toEpochMilli());
+        assertRendersLikeTheFormatter(Instant.parse("+12345-01-01T00:00:00.042Z").toEpochMilli());
+    }
+
+    private void assertRendersLikeTheFormatter(long epochMillis) {
+        StringBuilder result = new StringBuilder();
+
+        renderer.renderTo(epochMillis, result);
+
+        assertEquals(ISO_ALWAYS_WITH_MILLISECONDS.format(Instant.ofEpochMilli(epochMillis)), result.toString());
+    }
+}